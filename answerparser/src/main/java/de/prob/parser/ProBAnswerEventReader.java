@@ -0,0 +1,408 @@
+package de.prob.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.prob.prolog.term.CompoundPrologTerm;
+import de.prob.prolog.term.IntegerPrologTerm;
+import de.prob.prolog.term.ListPrologTerm;
+import de.prob.prolog.term.PrologTerm;
+import de.prob.prolog.term.VariablePrologTerm;
+
+/**
+ * Reads the term of an answer of ProB as a sequence of events, one event per
+ * call of {@link #next()}. Nothing but the current token is kept in memory, so
+ * the caller can process answers which are larger than the heap, e.g. the
+ * bindings of a state export with {@link #nextBinding()}. Subterms can be
+ * skipped with {@link #skip()} or read into a {@link PrologTerm} with
+ * {@link #readTerm()}.
+ *
+ * Lists given in the form <code>'.'(Head,Tail)</code> are reported as
+ * {@link Event#START_LIST}, the events of the elements and
+ * {@link Event#END_LIST}. If the list does not end with <code>[]</code>, its
+ * tail is reported after a {@link Event#TAIL} event. ProB never sends terms
+ * <code>'.'/N</code> with other arities than 2, they are not accepted.
+ *
+ * For the answer <code>yes(f(a,'.'(1,[]),X))</code> the events are
+ * {@link Event#START_TERM} <code>f</code>, {@link Event#ATOM} <code>a</code>,
+ * {@link Event#START_LIST}, {@link Event#INTEGER} <code>1</code>,
+ * {@link Event#END_LIST}, {@link Event#VARIABLE} <code>X</code>,
+ * {@link Event#END_TERM} and {@link Event#END}.
+ */
+public final class ProBAnswerEventReader {
+	public enum Event {
+		START_TERM, END_TERM, ATOM, INTEGER, VARIABLE, START_LIST, TAIL, END_LIST, END
+	}
+
+	private static final PrologTerm[] EMPTY_PROLOG_LIST = new PrologTerm[0];
+
+	// the kinds of the open terms
+	private static final byte TERM = 0;
+	private static final byte LIST = 1;
+	private static final byte LIST_TAIL = 2;
+
+	private final ProBAnswerLexer lexer;
+	private final boolean hasResult;
+
+	// the open terms, for lists the number of '.'( which must be closed
+	private byte[] kinds = new byte[16];
+	private int[] parentheses = new int[16];
+	private int depth = 0;
+
+	// true if the next event is the beginning of a term
+	private boolean termExpected;
+	// the token of the tail of a list has already been read
+	private boolean tokenPending = false;
+	private int pendingToken;
+	private boolean pendingParenthesis;
+	// [] is reported as START_LIST and END_LIST
+	private boolean emptyListPending = false;
+
+	private Event current = null;
+	// the depth of the list of bindings, -1 before the first binding
+	private int bindingDepth = -1;
+	private boolean bindingsRead = false;
+
+	private ProBAnswerEventReader(final Reader in) throws IOException {
+		this.lexer = new ProBAnswerLexer(in);
+		this.hasResult = lexer.readAnswerStart();
+		this.termExpected = hasResult;
+	}
+
+	/**
+	 * Reads the beginning of the answer. The reader is not closed.
+	 *
+	 * @throws IOException
+	 *             if the reader throws an exception
+	 * @throws ResultParserException
+	 *             if the answer is an exception or cannot be read
+	 */
+	public static ProBAnswerEventReader open(final Reader in) throws IOException {
+		return new ProBAnswerEventReader(in);
+	}
+
+	/**
+	 * Like {@link #open(Reader)}, the stream is decoded with the given
+	 * charset.
+	 */
+	public static ProBAnswerEventReader open(final InputStream in, final Charset charset) throws IOException {
+		return open(new InputStreamReader(in, charset));
+	}
+
+	public static ProBAnswerEventReader open(final String answer) {
+		if (answer.length() == 0)
+			throw new ResultParserException("Received empty Result", null);
+		try {
+			return open(new StringReader(answer));
+		} catch (IOException e) {
+			// not thrown by a StringReader
+			throw new ResultParserException(e.getLocalizedMessage(), e);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the answer is <code>yes</code>,
+	 *         <code>false</code> if it is <code>no</code> or
+	 *         <code>interrupted</code>. In the latter case, the only event is
+	 *         {@link Event#END}.
+	 */
+	public boolean hasResult() {
+		return hasResult;
+	}
+
+	/**
+	 * @return the current event, <code>null</code> before the first call of
+	 *         {@link #next()}
+	 */
+	public Event getEvent() {
+		return current;
+	}
+
+	/**
+	 * Reads the next event. After the whole term has been read, the end of the
+	 * answer is checked and {@link Event#END} is returned.
+	 *
+	 * @throws IOException
+	 *             if the reader throws an exception
+	 * @throws ResultParserException
+	 *             if the answer cannot be read
+	 */
+	public Event next() throws IOException {
+		current = readEvent();
+		return current;
+	}
+
+	private Event readEvent() throws IOException {
+		if (current == Event.END) {
+			return Event.END;
+		} else if (emptyListPending) {
+			emptyListPending = false;
+			return Event.END_LIST;
+		} else if (termExpected) {
+			return readTermStart();
+		} else if (depth == 0) {
+			if (hasResult) {
+				lexer.readAnswerEnd();
+			}
+			return Event.END;
+		}
+		switch (kinds[depth - 1]) {
+		case TERM:
+			if (lexer.readSeparator() == ',') {
+				return readTermStart();
+			}
+			depth--;
+			return Event.END_TERM;
+		case LIST:
+			if (lexer.readSeparator() != ',')
+				throw lexer.error("'.' with one argument is not supported");
+			return readTail();
+		default:
+			closeList();
+			return Event.END_LIST;
+		}
+	}
+
+	private Event readTermStart() throws IOException {
+		final int token;
+		final boolean parenthesis;
+		if (tokenPending) {
+			tokenPending = false;
+			token = pendingToken;
+			parenthesis = pendingParenthesis;
+		} else {
+			token = lexer.readToken();
+			parenthesis = token == ProBAnswerLexer.NAME && lexer.readOpenParenthesis();
+		}
+		termExpected = parenthesis;
+		if (token == ProBAnswerLexer.NUMBER) {
+			return Event.INTEGER;
+		} else if (token == ProBAnswerLexer.VARIABLE) {
+			return Event.VARIABLE;
+		} else if (parenthesis) {
+			final boolean dot = lexer.isDot();
+			push(dot ? LIST : TERM);
+			return dot ? Event.START_LIST : Event.START_TERM;
+		} else if (lexer.textEquals("[]")) {
+			emptyListPending = true;
+			return Event.START_LIST;
+		} else {
+			return Event.ATOM;
+		}
+	}
+
+	/*
+	 * the second argument of '.'(Head,Tail): either the next element, the end
+	 * of the list or another tail
+	 */
+	private Event readTail() throws IOException {
+		final int token = lexer.readToken();
+		final boolean parenthesis = token == ProBAnswerLexer.NAME && lexer.readOpenParenthesis();
+		if (parenthesis && lexer.isDot()) {
+			parentheses[depth - 1]++;
+			return readTermStart();
+		} else if (token == ProBAnswerLexer.NAME && !parenthesis && lexer.textEquals("[]")) {
+			closeList();
+			return Event.END_LIST;
+		}
+		kinds[depth - 1] = LIST_TAIL;
+		tokenPending = true;
+		pendingToken = token;
+		pendingParenthesis = parenthesis;
+		termExpected = true;
+		return Event.TAIL;
+	}
+
+	private void push(final byte kind) {
+		if (depth == kinds.length) {
+			kinds = Arrays.copyOf(kinds, depth * 2);
+			parentheses = Arrays.copyOf(parentheses, depth * 2);
+		}
+		kinds[depth] = kind;
+		parentheses[depth] = 1;
+		depth++;
+	}
+
+	private void closeList() throws IOException {
+		depth--;
+		for (int i = 0; i < parentheses[depth]; i++) {
+			if (lexer.readSeparator() != ')')
+				throw lexer.error("'.' with more than two arguments is not supported");
+		}
+	}
+
+	/**
+	 * @return the functor of {@link Event#START_TERM}, the name of
+	 *         {@link Event#ATOM} or {@link Event#VARIABLE}
+	 * @throws IllegalStateException
+	 *             if the current event has no name
+	 */
+	public String getName() {
+		if (current != Event.START_TERM && current != Event.ATOM && current != Event.VARIABLE)
+			throw new IllegalStateException("No name for event " + current);
+		return lexer.getText();
+	}
+
+	/**
+	 * @return the value of {@link Event#INTEGER}
+	 * @throws IllegalStateException
+	 *             if the current event is not {@link Event#INTEGER}
+	 */
+	public IntegerPrologTerm getInteger() {
+		if (current != Event.INTEGER)
+			throw new IllegalStateException("No integer for event " + current);
+		return IntegerPrologTerm.valueOf(lexer.getText());
+	}
+
+	/**
+	 * Skips the term which begins with the current event, i.e. if the current
+	 * event is {@link Event#START_TERM} or {@link Event#START_LIST} the events
+	 * up to the matching end are read without creating any terms. Afterwards,
+	 * the current event is the end of the skipped term.
+	 */
+	public void skip() throws IOException {
+		if (current != Event.START_TERM && current != Event.START_LIST)
+			return;
+		int level = 1;
+		while (level > 0) {
+			final Event event = next();
+			if (event == Event.START_TERM || event == Event.START_LIST) {
+				level++;
+			} else if (event == Event.END_TERM || event == Event.END_LIST) {
+				level--;
+			}
+		}
+	}
+
+	/**
+	 * Reads the term which begins with the current event. The result is the
+	 * same as the term created by {@link PrologTermGenerator}, i.e. lists
+	 * which do not end with <code>[]</code> are compound terms
+	 * <code>'.'/2</code>. Afterwards, the current event is the end of the
+	 * term.
+	 *
+	 * @throws IllegalStateException
+	 *             if no term begins with the current event
+	 */
+	public PrologTerm readTerm() throws IOException {
+		if (current == null || current == Event.END_TERM || current == Event.END_LIST || current == Event.TAIL
+				|| current == Event.END)
+			throw new IllegalStateException("No term begins with event " + current);
+
+		// the functors of the open terms, null for lists
+		final List<String> functors = new ArrayList<>();
+		final List<Integer> starts = new ArrayList<>();
+		// where the tail of each open list begins, -1 if there is no tail
+		final List<Integer> tails = new ArrayList<>();
+		final List<PrologTerm> arguments = new ArrayList<>();
+
+		Event event = current;
+		while (true) {
+			final PrologTerm term;
+			switch (event) {
+			case START_TERM:
+			case START_LIST:
+				functors.add(event == Event.START_TERM ? getName() : null);
+				starts.add(arguments.size());
+				tails.add(-1);
+				event = next();
+				continue;
+			case TAIL:
+				tails.set(tails.size() - 1, arguments.size());
+				event = next();
+				continue;
+			case ATOM:
+				term = new CompoundPrologTerm(getName());
+				break;
+			case INTEGER:
+				term = getInteger();
+				break;
+			case VARIABLE:
+				term = new VariablePrologTerm(getName());
+				break;
+			case END_TERM:
+			case END_LIST:
+				final int last = functors.size() - 1;
+				final String functor = functors.remove(last);
+				final int start = starts.remove(last);
+				final int tail = tails.remove(last);
+				final List<PrologTerm> args = arguments.subList(start, arguments.size());
+				if (functor != null) {
+					term = new CompoundPrologTerm(functor, args.toArray(EMPTY_PROLOG_LIST));
+				} else if (tail < 0) {
+					term = new ListPrologTerm(args.toArray(EMPTY_PROLOG_LIST));
+				} else {
+					PrologTerm list = arguments.get(tail);
+					for (int i = tail - 1; i >= start; i--) {
+						list = new CompoundPrologTerm(".", arguments.get(i), list);
+					}
+					term = list;
+				}
+				args.clear();
+				break;
+			default:
+				throw lexer.error("unexpected end of term");
+			}
+			if (functors.isEmpty()) {
+				return term;
+			}
+			arguments.add(term);
+			event = next();
+		}
+	}
+
+	/**
+	 * Reads the term as a list of bindings <code>[x=a,y=b,...]</code>, like
+	 * {@link BindingGenerator}, one binding per call. After the name of the
+	 * next binding has been returned, the current event is the first event
+	 * of its value. The value can be read with {@link #readTerm()},
+	 * {@link #skip()} or {@link #next()}. Values which have not been read
+	 * completely are skipped by the next call.
+	 *
+	 * @return the name of the next binding, <code>null</code> if there are no
+	 *         more bindings
+	 * @throws ResultParserException
+	 *             if the term is not a list of bindings
+	 */
+	public String nextBinding() throws IOException {
+		if (bindingsRead)
+			return null;
+		Event event;
+		if (bindingDepth < 0) {
+			if (current != null)
+				throw new IllegalStateException("The bindings must be read from the beginning of the answer");
+			event = next();
+			if (event != Event.START_LIST)
+				throw new ResultParserException("Expected list of bindings, but found " + event, null);
+			bindingDepth = depth;
+			event = next();
+		} else {
+			// skip the rest of the previous value
+			while (depth > bindingDepth + 1 || emptyListPending) {
+				next();
+			}
+			if (next() != Event.END_TERM)
+				throw new ResultParserException("Expected binding (=/2), but found more arguments", null);
+			event = next();
+		}
+		if (event == Event.END_LIST) {
+			bindingsRead = true;
+			return null;
+		}
+		if (event != Event.START_TERM || !"=".equals(getName()))
+			throw new ResultParserException("Expected binding (=/2), but found " + event, null);
+		if (next() != Event.ATOM)
+			throw new ResultParserException("Expected atomic variable name, but found " + current, null);
+		final String name = getName();
+		if (next() == Event.END_TERM)
+			throw new ResultParserException("Expected binding (=/2), but found =/1", null);
+		return name;
+	}
+}
@@ -0,0 +1,324 @@
+package de.prob.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits an answer of ProB into tokens, used by {@link ProBAnswerReader} and
+ * {@link ProBAnswerEventReader}. The characters are read in chunks from the
+ * underlying reader, the text of the last token is kept in a reused buffer.
+ */
+final class ProBAnswerLexer {
+	static final int NUMBER = 0;
+	static final int VARIABLE = 1;
+	static final int NAME = 2;
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final int EOF = -1;
+
+	private final Reader in;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int position = 0;
+	private int limit = 0;
+	// the number of characters read before the current buffer
+	private long offset = 0;
+
+	// the text of the last token, quoted names still contain the quotes and
+	// escape sequences
+	private final StringBuilder text = new StringBuilder();
+
+	ProBAnswerLexer(final Reader in) {
+		this.in = in;
+	}
+
+	/**
+	 * Reads the beginning of the answer, i.e. <code>yes(</code> or the whole
+	 * answer if it has no term.
+	 *
+	 * @return <code>true</code> if the answer is <code>yes</code>,
+	 *         <code>false</code> if it is <code>no</code> or
+	 *         <code>interrupted</code>
+	 * @throws ResultParserException
+	 *             if the answer is an exception
+	 */
+	boolean readAnswerStart() throws IOException {
+		skipLayout();
+		if (peek() == EOF)
+			throw new ResultParserException("Received empty Result", null);
+		readWhile(CharType.SMALL_LETTER);
+		if (textEquals("yes")) {
+			skipLayout();
+			expect('(');
+			return true;
+		} else if (textEquals("no") || textEquals("interrupted")) {
+			readEnd();
+			return false;
+		} else if (textEquals("exception")) {
+			text.setLength(0);
+			for (int c = next(); c != EOF; c = next()) {
+				text.append((char) c);
+			}
+			throw new ResultParserException("ProB raised an exception: " + text, null);
+		} else {
+			throw error("yes, no, interrupted or exception expected");
+		}
+	}
+
+	/**
+	 * Reads the closing parenthesis of <code>yes(...)</code> and checks that
+	 * the answer ends there.
+	 */
+	void readAnswerEnd() throws IOException {
+		skipLayout();
+		expect(')');
+		readEnd();
+	}
+
+	private void readEnd() throws IOException {
+		skipLayout();
+		if (peek() != EOF)
+			throw error("end of answer expected");
+	}
+
+	/**
+	 * Reads the next term or the functor of a compound term.
+	 *
+	 * @return {@link #NUMBER}, {@link #VARIABLE} or {@link #NAME}
+	 */
+	int readToken() throws IOException {
+		skipLayout();
+		final int c = peek();
+		if (c == '-' && CharType.DIGIT.matches(peek(1)) || CharType.DIGIT.matches(c)) {
+			text.setLength(0);
+			if (c == '-') {
+				text.append((char) next());
+			}
+			while (CharType.DIGIT.matches(peek())) {
+				text.append((char) next());
+			}
+			return NUMBER;
+		} else if (c == '_' || CharType.CAPITAL_LETTER.matches(c)) {
+			readWhile(CharType.ALPHA);
+			return VARIABLE;
+		} else {
+			readName();
+			return NAME;
+		}
+	}
+
+	/**
+	 * Reads an opening parenthesis if it is the next character.
+	 *
+	 * @return <code>true</code> if the last name is the functor of a compound
+	 *         term
+	 */
+	boolean readOpenParenthesis() throws IOException {
+		skipLayout();
+		if (peek() == '(') {
+			next();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return <code>','</code> or <code>')'</code>
+	 */
+	int readSeparator() throws IOException {
+		skipLayout();
+		final int separator = next();
+		if (separator != ',' && separator != ')')
+			throw error("',' or ')' expected");
+		return separator;
+	}
+
+	boolean textEquals(final String s) {
+		final int length = s.length();
+		if (text.length() != length)
+			return false;
+		for (int i = 0; i < length; i++) {
+			if (text.charAt(i) != s.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return <code>true</code> if the last name is the list constructor
+	 *         <code>'.'</code>
+	 */
+	boolean isDot() {
+		return textEquals(".") || textEquals("'.'");
+	}
+
+	/**
+	 * @return the text of the last token, names without quotes
+	 */
+	String getText() {
+		return PrologTermGenerator.removeQuotes(text.toString());
+	}
+
+	ResultParserException error(final String message) {
+		return new ResultParserException(
+				"Error while reading ProB answer at character " + (offset + position) + ": " + message, null);
+	}
+
+	private void readName() throws IOException {
+		final int c = peek();
+		if (CharType.SMALL_LETTER.matches(c)) {
+			readWhile(CharType.ALPHA);
+		} else if (CharType.SYMBOL.matches(c)) {
+			readWhile(CharType.SYMBOL);
+		} else if (c == '!' || c == ';') {
+			text.setLength(0);
+			text.append((char) next());
+		} else if (c == '[' && peek(1) == ']' || c == '{' && peek(1) == '}') {
+			text.setLength(0);
+			text.append((char) next());
+			text.append((char) next());
+		} else if (c == '\'') {
+			readQuotedName();
+		} else {
+			throw error("term expected");
+		}
+	}
+
+	private void readQuotedName() throws IOException {
+		text.setLength(0);
+		text.append((char) next());
+		while (true) {
+			int c = next();
+			if (c == EOF) {
+				throw error("unterminated quoted name");
+			}
+			text.append((char) c);
+			if (c == '\'') {
+				return;
+			} else if (c == '\\') {
+				c = next();
+				if (c == EOF) {
+					throw error("unterminated quoted name");
+				}
+				text.append((char) c);
+				if (c == 'x') {
+					// hexadecimal escape sequences end with a backslash
+					do {
+						c = next();
+						if (c == EOF) {
+							throw error("unterminated quoted name");
+						}
+						text.append((char) c);
+					} while (c != '\\');
+				}
+			}
+		}
+	}
+
+	private void readWhile(final CharType type) throws IOException {
+		text.setLength(0);
+		while (type.matches(peek())) {
+			text.append((char) next());
+		}
+	}
+
+	private void skipLayout() throws IOException {
+		int c = peek();
+		while (c == '\n' || c == '\r') {
+			next();
+			c = peek();
+		}
+	}
+
+	private void expect(final char expected) throws IOException {
+		if (next() != expected) {
+			throw error("'" + expected + "' expected");
+		}
+	}
+
+	private int peek() throws IOException {
+		if (position == limit && !fill()) {
+			return EOF;
+		}
+		return buffer[position];
+	}
+
+	/*
+	 * the character after the next one, the buffer is compacted if necessary
+	 */
+	private int peek(final int ahead) throws IOException {
+		if (position + ahead >= limit) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			offset += position;
+			limit -= position;
+			position = 0;
+			while (position + ahead >= limit) {
+				final int count = in.read(buffer, limit, buffer.length - limit);
+				if (count < 0) {
+					return EOF;
+				}
+				limit += count;
+			}
+		}
+		return buffer[position + ahead];
+	}
+
+	private int next() throws IOException {
+		if (position == limit && !fill()) {
+			return EOF;
+		}
+		return buffer[position++];
+	}
+
+	private boolean fill() throws IOException {
+		offset += limit;
+		position = 0;
+		limit = 0;
+		int count;
+		do {
+			count = in.read(buffer, 0, buffer.length);
+		} while (count == 0);
+		if (count < 0) {
+			return false;
+		}
+		limit = count;
+		return true;
+	}
+
+	/*
+	 * the character classes of the answer grammar (prob.scc)
+	 */
+	private enum CharType {
+		SMALL_LETTER {
+			@Override
+			boolean matches(final int c) {
+				return c >= 'a' && c <= 'z' || c == 170 || c == 186 || c >= 223 && c <= 246 || c >= 248 && c <= 255;
+			}
+		},
+		CAPITAL_LETTER {
+			@Override
+			boolean matches(final int c) {
+				return c >= 'A' && c <= 'Z' || c >= 192 && c <= 214 || c >= 216 && c <= 222;
+			}
+		},
+		DIGIT {
+			@Override
+			boolean matches(final int c) {
+				return c >= '0' && c <= '9';
+			}
+		},
+		ALPHA {
+			@Override
+			boolean matches(final int c) {
+				return SMALL_LETTER.matches(c) || CAPITAL_LETTER.matches(c) || DIGIT.matches(c) || c == '_';
+			}
+		},
+		SYMBOL {
+			@Override
+			boolean matches(final int c) {
+				return c >= 0 && "+-*/\\^<>=~:.?@#$&".indexOf(c) >= 0;
+			}
+		};
+
+		abstract boolean matches(int c);
+	}
+}
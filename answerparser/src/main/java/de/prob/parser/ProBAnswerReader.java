@@ -0,0 +1,177 @@
+package de.prob.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.prob.prolog.term.CompoundPrologTerm;
+import de.prob.prolog.term.IntegerPrologTerm;
+import de.prob.prolog.term.ListPrologTerm;
+import de.prob.prolog.term.PrologTerm;
+import de.prob.prolog.term.VariablePrologTerm;
+
+/**
+ * Reads an answer of ProB directly into a {@link PrologTerm}. The result is
+ * the same as of {@link PrologTermGenerator#toPrologTerm(de.prob.core.sablecc.node.Start)}
+ * applied to the result of {@link ProBResultParser#parse(String)}, but no
+ * syntax tree is built and the terms are read with an explicit stack instead
+ * of recursion. Thus answers with long lists or deeply nested terms can be
+ * read with little memory.
+ *
+ * The answer is one of <code>yes(Term)</code>, <code>no</code>,
+ * <code>interrupted</code> or <code>exception...</code>. Lists are given in
+ * the form <code>'.'(Head,Tail)</code>.
+ */
+public final class ProBAnswerReader {
+	private static final PrologTerm[] EMPTY_PROLOG_LIST = new PrologTerm[0];
+
+	private final ProBAnswerLexer lexer;
+
+	private ProBAnswerReader(final Reader in) {
+		this.lexer = new ProBAnswerLexer(in);
+	}
+
+	/**
+	 * @param answer
+	 *            the answer of ProB
+	 * @return the term of a <code>yes</code> answer, <code>null</code> if the
+	 *         answer is <code>no</code> or <code>interrupted</code>
+	 * @throws ResultParserException
+	 *             if the answer is an exception or cannot be read
+	 */
+	public static PrologTerm read(final String answer) {
+		if (answer.length() == 0)
+			throw new ResultParserException("Received empty Result", null);
+		try {
+			return read(new StringReader(answer));
+		} catch (IOException e) {
+			// not thrown by a StringReader
+			throw new ResultParserException(e.getLocalizedMessage(), e);
+		}
+	}
+
+	/**
+	 * Like {@link #read(Reader)}, the stream is decoded with the given
+	 * charset.
+	 */
+	public static PrologTerm read(final InputStream in, final Charset charset) throws IOException {
+		return read(new InputStreamReader(in, charset));
+	}
+
+	/**
+	 * Reads the answer until the end of the reader. The reader is not closed.
+	 *
+	 * @param in
+	 *            the answer of ProB
+	 * @return the term of a <code>yes</code> answer, <code>null</code> if the
+	 *         answer is <code>no</code> or <code>interrupted</code>
+	 * @throws IOException
+	 *             if the reader throws an exception
+	 * @throws ResultParserException
+	 *             if the answer is an exception or cannot be read
+	 */
+	public static PrologTerm read(final Reader in) throws IOException {
+		return new ProBAnswerReader(in).readAnswer();
+	}
+
+	private PrologTerm readAnswer() throws IOException {
+		if (!lexer.readAnswerStart())
+			return null;
+		final PrologTerm result = readTerm();
+		lexer.readAnswerEnd();
+		return result;
+	}
+
+	/*
+	 * The open compound terms are kept on a stack. The arguments of all open
+	 * terms are stored in one list, start marks where the arguments of each
+	 * open term begin.
+	 */
+	private PrologTerm readTerm() throws IOException {
+		final List<String> functors = new ArrayList<>();
+		final List<Boolean> dots = new ArrayList<>();
+		final List<Integer> starts = new ArrayList<>();
+		final List<Object> arguments = new ArrayList<>();
+
+		while (true) {
+			// read a term, or the beginning of a compound term
+			Object term = null;
+			final int token = lexer.readToken();
+			if (token == ProBAnswerLexer.NUMBER) {
+				term = IntegerPrologTerm.valueOf(lexer.getText());
+			} else if (token == ProBAnswerLexer.VARIABLE) {
+				term = new VariablePrologTerm(lexer.getText());
+			} else if (lexer.readOpenParenthesis()) {
+				functors.add(lexer.getText());
+				dots.add(lexer.isDot());
+				starts.add(arguments.size());
+				continue;
+			} else if (lexer.textEquals("[]")) {
+				term = new ListBuilder();
+			} else {
+				term = new CompoundPrologTerm(lexer.getText());
+			}
+
+			// close the compound terms which are complete
+			while (true) {
+				if (functors.isEmpty()) {
+					return toTerm(term);
+				}
+				arguments.add(term);
+				if (lexer.readSeparator() == ',') {
+					break;
+				}
+				final int last = functors.size() - 1;
+				final int start = starts.remove(last);
+				final boolean dot = dots.remove(last);
+				final String functor = functors.remove(last);
+				final int arity = arguments.size() - start;
+				final Object tail = arguments.get(arguments.size() - 1);
+				if (dot && arity == 2 && tail instanceof ListBuilder) {
+					term = ((ListBuilder) tail).prepend(toTerm(arguments.get(start)));
+				} else {
+					final PrologTerm[] args = new PrologTerm[arity];
+					for (int i = 0; i < arity; i++) {
+						args[i] = toTerm(arguments.get(start + i));
+					}
+					term = new CompoundPrologTerm(functor, args);
+				}
+				arguments.subList(start, arguments.size()).clear();
+			}
+		}
+	}
+
+	/*
+	 * The elements of a list in reverse order, i.e. a list given as
+	 * '.'(Head,Tail) can be created in linear time.
+	 */
+	private static final class ListBuilder {
+		private final List<PrologTerm> reversed = new ArrayList<>();
+
+		ListBuilder prepend(final PrologTerm head) {
+			reversed.add(head);
+			return this;
+		}
+
+		ListPrologTerm toList() {
+			final int size = reversed.size();
+			if (size == 0) {
+				return new ListPrologTerm(EMPTY_PROLOG_LIST);
+			}
+			final PrologTerm[] elements = new PrologTerm[size];
+			for (int i = 0; i < size; i++) {
+				elements[i] = reversed.get(size - 1 - i);
+			}
+			return new ListPrologTerm(elements);
+		}
+	}
+
+	private static PrologTerm toTerm(final Object term) {
+		return term instanceof ListBuilder ? ((ListBuilder) term).toList() : (PrologTerm) term;
+	}
+}
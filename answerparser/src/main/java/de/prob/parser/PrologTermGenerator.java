@@ -9,8 +9,6 @@
  */
 package de.prob.parser;
 
-import java.math.BigInteger;
-
 import de.prob.core.sablecc.node.AAtomTerm;
 import de.prob.core.sablecc.node.AEmptyMoreParams;
 import de.prob.core.sablecc.node.AExceptionResult;
@@ -30,6 +28,7 @@ import de.prob.prolog.term.CompoundPrologTerm;
 import de.prob.prolog.term.IntegerPrologTerm;
 import de.prob.prolog.term.ListPrologTerm;
 import de.prob.prolog.term.PrologTerm;
+import de.prob.prolog.term.PrologTermInterner;
 import de.prob.prolog.term.VariablePrologTerm;
 
 /**
@@ -42,10 +41,22 @@ public class PrologTermGenerator {
 
 	public static PrologTerm toPrologTerm(final Start node)
 			throws ResultParserException {
+		return toPrologTerm(node, null);
+	}
+
+	/**
+	 * Like {@link #toPrologTerm(Start)}, but equal atoms and small ground
+	 * terms are shared by the given interner.
+	 * 
+	 * @param interner
+	 *            the interner, may be <code>null</code>
+	 */
+	public static PrologTerm toPrologTerm(final Start node,
+			final PrologTermInterner interner) throws ResultParserException {
 		PResult topnode = node.getPResult();
 		PrologTerm term = null;
 		if (topnode instanceof AYesResult) {
-			term = toPrologTerm(((AYesResult) topnode).getTerm());
+			term = toPrologTerm(((AYesResult) topnode).getTerm(), interner);
 		} else if (topnode instanceof ANoResult) {
 			term = null;
 		} else if (topnode instanceof AInterruptedResult) {
@@ -70,43 +81,50 @@ public class PrologTermGenerator {
 		return term;
 	}
 
-	private static PrologTerm toPrologTerm(final PTerm node) {
+	private static PrologTerm toPrologTerm(final PTerm node,
+			final PrologTermInterner interner) {
 		PrologTerm term;
 		if (node instanceof ANumberTerm) {
 			String text = ((ANumberTerm) node).getNumber().getText();
-			term = new IntegerPrologTerm(new BigInteger(text));
+			term = interner == null ? IntegerPrologTerm.valueOf(text)
+					: interner.intern(IntegerPrologTerm.valueOf(text));
 		} else if (node instanceof AAtomTerm) {
 			String text = ((AAtomTerm) node).getName().getText();
 			if ("[]".equals(text)) {
-				term = new ListPrologTerm(EMPTY_PROLOG_LIST);
+				term = interner == null ? new ListPrologTerm(EMPTY_PROLOG_LIST)
+						: interner.list(EMPTY_PROLOG_LIST);
 			} else {
 				text = removeQuotes(text);
-				term = new CompoundPrologTerm(text);
+				term = interner == null ? new CompoundPrologTerm(text)
+						: interner.atom(text);
 			}
 		} else if (node instanceof ATerm) {
 			ATerm aterm = (ATerm) node;
 			int listSize = getListSize(node);
 			if (listSize >= 0) {
 				PrologTerm[] list = new PrologTerm[listSize];
-				fillListWithElements(list, aterm);
-				term = new ListPrologTerm(list);
+				fillListWithElements(list, aterm, interner);
+				term = interner == null ? new ListPrologTerm(list) : interner
+						.list(list);
 			} else {
 				String functor = removeQuotes(aterm.getFunctor().getText());
 				PrologTerm[] params = evalParameters((AParams) aterm
-						.getParams());
-				term = new CompoundPrologTerm(functor, params);
+						.getParams(), interner);
+				term = interner == null ? new CompoundPrologTerm(functor,
+						params) : interner.compound(functor, params);
 			}
 		} else if (node instanceof AVariableTerm) {
 			String text = removeQuotes(((AVariableTerm) node).getVariable()
 					.getText());
-			term = new VariablePrologTerm(text);
+			term = interner == null ? new VariablePrologTerm(text)
+					: interner.variable(text);
 		} else
 			throw new IllegalStateException("Unexpected subclass of PTerm: "
 					+ node.getClass().getCanonicalName());
 		return term;
 	}
 
-	private static String removeQuotes(final String text) {
+	static String removeQuotes(final String text) {
 		String result;
 		if (text.charAt(0) == '\'') {
 			int length = text.length();
@@ -184,21 +202,24 @@ public class PrologTermGenerator {
 		return i;
 	}
 
-	private static PrologTerm[] evalParameters(final AParams node) {
-		PrologTerm[] params = evalParameters(1, node.getMoreParams());
-		params[0] = toPrologTerm(node.getTerm());
+	private static PrologTerm[] evalParameters(final AParams node,
+			final PrologTermInterner interner) {
+		PrologTerm[] params = evalParameters(1, node.getMoreParams(),
+				interner);
+		params[0] = toPrologTerm(node.getTerm(), interner);
 		return params;
 	}
 
 	private static PrologTerm[] evalParameters(final int before,
-			final PMoreParams moreParams) {
+			final PMoreParams moreParams, final PrologTermInterner interner) {
 		PrologTerm[] params;
 		if (moreParams instanceof AEmptyMoreParams) {
 			params = new PrologTerm[before];
 		} else if (moreParams instanceof AMoreParams) {
 			AMoreParams nonempty = (AMoreParams) moreParams;
-			params = evalParameters(before + 1, nonempty.getMoreParams());
-			params[before] = toPrologTerm(nonempty.getTerm());
+			params = evalParameters(before + 1, nonempty.getMoreParams(),
+					interner);
+			params[before] = toPrologTerm(nonempty.getTerm(), interner);
 		} else
 			throw new IllegalStateException(
 					"Unexpected subclass of PMoreParams: "
@@ -256,10 +277,10 @@ public class PrologTermGenerator {
 	}
 
 	private static void fillListWithElements(final PrologTerm[] list,
-			ATerm aterm) {
+			ATerm aterm, final PrologTermInterner interner) {
 		for (int i = 0; i < list.length; i++) {
 			AParams params = (AParams) aterm.getParams();
-			list[i] = toPrologTerm(params.getTerm());
+			list[i] = toPrologTerm(params.getTerm(), interner);
 			if (i < list.length - 1) {
 				// only get next element when this iteration was not the last
 				aterm = (ATerm) ((AMoreParams) params.getMoreParams())
@@ -0,0 +1,82 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import org.junit.Test;
+
+import de.prob.core.sablecc.node.Start;
+import de.prob.prolog.term.PrologTerm;
+import de.prob.prolog.term.PrologTermInterner;
+
+/**
+ * Compares the heap used by the terms created by {@link PrologTermGenerator}
+ * with and without a {@link PrologTermInterner} for an answer which has the
+ * shape of a state value computed by ProB: a set of records with an
+ * identifier, enumerated set elements, integers and booleans.
+ */
+public class AnswerInterningBenchmark {
+
+	private static final int SIZE = 5000;
+
+	@Test
+	public void testRecords() {
+		final Start ast = ProBResultParser.parse(createAnswer());
+		assertEquals(PrologTermGenerator.toPrologTerm(ast),
+				PrologTermGenerator.toPrologTerm(ast, new PrologTermInterner()));
+		retainedHeap(ast, false);
+		final long plain = retainedHeap(ast, false);
+		final long shared = retainedHeap(ast, true);
+		System.out.println(SIZE + " records: without interner " + plain / 1024 + "KB, with interner " + shared / 1024
+				+ "KB");
+	}
+
+	/*
+	 * yes([=(db,[rec([field(id,int(0)),field(colour,fd(1,'Colour')),...]),...])])
+	 */
+	private static String createAnswer() {
+		final StringBuilder sb = new StringBuilder("yes('.'(=(db,");
+		for (int i = 0; i < SIZE; i++) {
+			sb.append("'.'(rec('.'(field(id,int(").append(i).append(")),");
+			sb.append("'.'(field(colour,fd(").append(i % 8 + 1).append(",'Colour')),");
+			sb.append("'.'(field(age,int(").append(i % 90).append(")),");
+			sb.append("'.'(field(active,").append(i % 3 == 0 ? "pred_true" : "pred_false").append("),[]))))),");
+		}
+		sb.append("[]");
+		for (int i = 0; i < SIZE; i++) {
+			sb.append(')');
+		}
+		return sb.append("),[]))").toString();
+	}
+
+	/*
+	 * the heap used by the term, the interner is garbage when it is measured
+	 */
+	private static long retainedHeap(final Start ast, final boolean intern) {
+		final long before = usedHeap();
+		final PrologTerm term = PrologTermGenerator.toPrologTerm(ast, intern ? new PrologTermInterner() : null);
+		final long after = usedHeap();
+		// keep the term alive until the heap has been measured
+		assertEquals(term, term);
+		return after - before;
+	}
+
+	/*
+	 * collects the garbage until the used heap does not shrink anymore
+	 */
+	private static long usedHeap() {
+		final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		long used = Long.MAX_VALUE;
+		while (true) {
+			memory.gc();
+			System.runFinalization();
+			final long current = memory.getHeapMemoryUsage().getUsed();
+			if (current >= used) {
+				return current;
+			}
+			used = current;
+		}
+	}
+}
@@ -1,10 +1,12 @@
 package de.prob.parser;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import org.junit.Test;
 
 import de.prob.core.sablecc.node.Start;
+import de.prob.prolog.term.PrologTermInterner;
 
 public class AnswerTest {
 	private static final String PARSETREE_WAS_NULL = "Parsetree was null";
@@ -127,4 +129,13 @@ public class AnswerTest {
 		assertNotNull(PARSETREE_WAS_NULL, rootNode);
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testInternedRecords() throws ResultParserException {
+		final String input = "yes('.'(=(db,'.'(rec('.'(field(id,int(1)),'.'(field(colour,fd(1,'Colour')),[]))),"
+				+ "'.'(rec('.'(field(id,int(2)),'.'(field(colour,fd(1,'Colour')),[]))),[]))),[]))";
+		final Start rootNode = ProBResultParser.parse(input);
+		assertEquals(PrologTermGenerator.toPrologTerm(rootNode),
+				PrologTermGenerator.toPrologTerm(rootNode, new PrologTermInterner()));
+	}
+
+}
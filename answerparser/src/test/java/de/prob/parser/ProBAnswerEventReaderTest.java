@@ -0,0 +1,260 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.prob.parser.ProBAnswerEventReader.Event;
+import de.prob.prolog.term.CompoundPrologTerm;
+import de.prob.prolog.term.IntegerPrologTerm;
+import de.prob.prolog.term.ListPrologTerm;
+import de.prob.prolog.term.PrologTerm;
+
+public class ProBAnswerEventReaderTest {
+
+	private static final String[] ATOMS = { "a", "abc_D1", "'Abc'", "'with space'", "'\\n\\t'", "'\\x41\\'",
+			"'\\\\'", "'\\''", "[]", "'[]'", "{}", "!", ";", "=", "-", "'.'", ".", "'ä'" };
+	// '.' is only allowed as the functor of lists
+	private static final String[] FUNCTORS = { "f", "'Abc'", "'[]'", "{}", "=", "-", "=.." };
+	private static final String[] VARIABLES = { "X", "_", "_G123" };
+
+	@Test
+	public void testEvents() throws IOException {
+		final ProBAnswerEventReader reader = ProBAnswerEventReader.open("yes(f(a,'.'(1,[]),X,\n[],'.'(b,T)))");
+		final List<String> events = new ArrayList<>();
+		for (Event event = reader.next(); event != Event.END; event = reader.next()) {
+			switch (event) {
+			case START_TERM:
+			case ATOM:
+			case VARIABLE:
+				events.add(event + " " + reader.getName());
+				break;
+			case INTEGER:
+				events.add(event + " " + reader.getInteger());
+				break;
+			default:
+				events.add(event.toString());
+			}
+		}
+		assertEquals(Arrays.asList("START_TERM f", "ATOM a", "START_LIST", "INTEGER 1", "END_LIST", "VARIABLE X",
+				"START_LIST", "END_LIST", "START_LIST", "ATOM b", "TAIL", "VARIABLE T", "END_LIST", "END_TERM"),
+				events);
+		assertEquals(Event.END, reader.next());
+	}
+
+	@Test
+	public void testNoResult() throws IOException {
+		final ProBAnswerEventReader reader = ProBAnswerEventReader.open("no\n");
+		assertFalse(reader.hasResult());
+		assertEquals(Event.END, reader.next());
+	}
+
+	@Test
+	public void testSameAsGenerator() throws IOException {
+		final Random random = new Random(1);
+		for (int i = 0; i < 1000; i++) {
+			final StringBuilder sb = new StringBuilder("yes(");
+			randomTerm(sb, random, 0);
+			final String answer = sb.append(')').toString();
+			final PrologTerm expected = PrologTermGenerator.toPrologTerm(ProBResultParser.parse(answer));
+			final ProBAnswerEventReader reader = ProBAnswerEventReader.open(answer);
+			reader.next();
+			assertEquals(answer, expected, reader.readTerm());
+			assertEquals(Event.END, reader.next());
+		}
+	}
+
+	@Test
+	public void testSkip() throws IOException {
+		final ProBAnswerEventReader reader = ProBAnswerEventReader
+				.open("yes(f(g('.'(1,'.'(2,[])),h(x)),'.'(a,X),[],y))");
+		assertEquals(Event.START_TERM, reader.next());
+		assertEquals(Event.START_TERM, reader.next());
+		reader.skip();
+		assertEquals(Event.END_TERM, reader.getEvent());
+		assertEquals(Event.START_LIST, reader.next());
+		reader.skip();
+		assertEquals(Event.END_LIST, reader.getEvent());
+		assertEquals(Event.START_LIST, reader.next());
+		reader.skip();
+		assertEquals(Event.END_LIST, reader.getEvent());
+		assertEquals(Event.ATOM, reader.next());
+		assertEquals("y", reader.getName());
+		assertEquals(Event.END_TERM, reader.next());
+		assertEquals(Event.END, reader.next());
+	}
+
+	@Test
+	public void testBindings() throws IOException {
+		final ProBAnswerEventReader reader = ProBAnswerEventReader
+				.open("yes('.'(=('X',1),'.'(=('Y',f(a,b)),'.'(=('Z',[]),'.'(=('W','.'(c,[])),[])))))");
+		assertEquals("X", reader.nextBinding());
+		assertEquals(IntegerPrologTerm.valueOf(1), reader.readTerm());
+		assertEquals("Y", reader.nextBinding());
+		// not read, skipped by the next call
+		assertEquals("Z", reader.nextBinding());
+		assertEquals(new ListPrologTerm(), reader.readTerm());
+		assertEquals("W", reader.nextBinding());
+		assertEquals(Event.START_LIST, reader.getEvent());
+		assertEquals(Event.ATOM, reader.next());
+		assertNull(reader.nextBinding());
+		assertNull(reader.nextBinding());
+		assertEquals(Event.END, reader.next());
+
+		assertNull(ProBAnswerEventReader.open("yes([])").nextBinding());
+	}
+
+	@Test
+	public void testNoBindings() throws IOException {
+		for (final String answer : new String[] { "yes(a)", "yes('.'(a,[]))", "yes('.'(=(a),[]))",
+				"yes('.'(=(a,b,c),[]))", "yes('.'(=('X'(a),b),[]))" }) {
+			try {
+				final ProBAnswerEventReader reader = ProBAnswerEventReader.open(answer);
+				while (reader.nextBinding() != null) {
+					// only the structure is checked
+				}
+				fail("exception expected for " + answer);
+			} catch (ResultParserException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testErrors() throws IOException {
+		for (final String answer : new String[] { "yes(a))", "yes(f(a,))", "yes('.'(a))", "yes('.'(a,b,c))",
+				"yes('.'(a,'.'(b,[],c)))", "yes(f(a) b)" }) {
+			try {
+				final ProBAnswerEventReader reader = ProBAnswerEventReader.open(answer);
+				while (reader.next() != Event.END) {
+					// read all events
+				}
+				fail("exception expected for " + answer);
+			} catch (ResultParserException e) {
+				// expected
+			}
+		}
+	}
+
+	/*
+	 * The answer is created while it is read, so it is never kept in memory as
+	 * a whole.
+	 */
+	@Test
+	public void testStreamedBindings() throws IOException {
+		final int size = 1000000;
+		final ProBAnswerEventReader reader = ProBAnswerEventReader.open(new BindingsReader(size));
+		long sum = 0;
+		int count = 0;
+		for (String name = reader.nextBinding(); name != null; name = reader.nextBinding()) {
+			assertEquals("x" + count, name);
+			if (count % 2 == 0) {
+				final PrologTerm value = reader.readTerm();
+				assertEquals(new CompoundPrologTerm("v", IntegerPrologTerm.valueOf(count)), value);
+				sum += count;
+			}
+			count++;
+		}
+		assertEquals(size, count);
+		assertEquals((long) size / 2 * (size / 2 - 1), sum);
+		assertEquals(Event.END, reader.next());
+	}
+
+	/*
+	 * yes('.'(=(x0,v(0)),'.'(=(x1,v(1)),...[])...))
+	 */
+	private static final class BindingsReader extends Reader {
+		private final int size;
+		private final StringBuilder chunk = new StringBuilder();
+		private int position = 0;
+		private int binding = 0;
+		private boolean closed = false;
+
+		BindingsReader(final int size) {
+			this.size = size;
+			chunk.append("yes(");
+		}
+
+		@Override
+		public int read(final char[] cbuf, final int off, final int len) {
+			if (position == chunk.length()) {
+				chunk.setLength(0);
+				position = 0;
+				if (binding < size) {
+					chunk.append("'.'(=(x").append(binding).append(",v(").append(binding).append(")),");
+					binding++;
+				} else if (!closed) {
+					chunk.append("[]");
+					// the closing parentheses of the list in chunks
+					for (int i = 0; i < size; i++) {
+						chunk.append(')');
+					}
+					chunk.append(')');
+					closed = true;
+				} else {
+					return -1;
+				}
+			}
+			final int count = Math.min(len, chunk.length() - position);
+			chunk.getChars(position, position + count, cbuf, off);
+			position += count;
+			return count;
+		}
+
+		@Override
+		public void close() {
+			// nothing to close
+		}
+	}
+
+	private static void randomTerm(final StringBuilder sb, final Random random, final int depth) {
+		switch (depth < 4 ? random.nextInt(6) : random.nextInt(3)) {
+		case 0:
+			sb.append(random.nextInt(2000) - 1000);
+			break;
+		case 1:
+			sb.append(ATOMS[random.nextInt(ATOMS.length)]);
+			break;
+		case 2:
+			sb.append(VARIABLES[random.nextInt(VARIABLES.length)]);
+			break;
+		case 3:
+			// a list, possibly with a tail which is not []
+			final int length = random.nextInt(4);
+			for (int i = 0; i < length; i++) {
+				sb.append(random.nextBoolean() ? "'.'(" : ".(");
+				randomTerm(sb, random, depth + 1);
+				sb.append(random.nextBoolean() ? "," : ",\n");
+			}
+			if (random.nextInt(4) == 0) {
+				randomTerm(sb, random, depth + 1);
+			} else {
+				sb.append("[]");
+			}
+			for (int i = 0; i < length; i++) {
+				sb.append(')');
+			}
+			break;
+		default:
+			sb.append(FUNCTORS[random.nextInt(FUNCTORS.length)]).append('(');
+			final int arity = 1 + random.nextInt(3);
+			for (int i = 0; i < arity; i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				randomTerm(sb, random, depth + 1);
+			}
+			sb.append(')');
+		}
+	}
+}
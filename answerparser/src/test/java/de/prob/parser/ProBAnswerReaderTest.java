@@ -0,0 +1,156 @@
+package de.prob.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.prob.prolog.term.CompoundPrologTerm;
+import de.prob.prolog.term.IntegerPrologTerm;
+import de.prob.prolog.term.ListPrologTerm;
+import de.prob.prolog.term.PrologTerm;
+
+public class ProBAnswerReaderTest {
+
+	private static final String[] ATOMS = { "a", "abc_D1", "'Abc'", "'with space'", "'\\n\\t'", "'\\x41\\'",
+			"'\\\\'", "'\\''", "'\\101'", "[]", "'[]'", "{}", "!", ";", "=", "-", "=..", "'.'", ".", "'ä'",
+			"äb" };
+	private static final String[] VARIABLES = { "X", "_", "_G123", "Abc_1" };
+
+	@Test
+	public void testEnvelopes() {
+		assertNull(ProBAnswerReader.read("no"));
+		assertNull(ProBAnswerReader.read("interrupted\n"));
+		assertEquals(new ListPrologTerm(), ProBAnswerReader.read("yes([])"));
+		assertEquals(IntegerPrologTerm.valueOf(-1), ProBAnswerReader.read("yes(\r\n-1)\n"));
+		try {
+			ProBAnswerReader.read("exception(ERR-UNKNOWN) cannot start an expression");
+			fail("exception expected");
+		} catch (ResultParserException e) {
+			assertEquals("ProB raised an exception: (ERR-UNKNOWN) cannot start an expression", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testSameAsGenerator() {
+		compare("yes('.'(=('X','.'(op(initialise_machine([]),0,[],root),[])),[]))");
+		compare("yes('.'(=('CurId',-1),[]))");
+		compare("yes(f('.'(a,b),'.'(a,'.'(b,X)),'.'(1,2,[]),'.'([],[]),'.'(a,'[]')))");
+		compare("yes(-(1,-1))");
+		compare("yes(-(-1))");
+		compare("yes(=..(007,a))");
+		final Random random = new Random(1);
+		for (int i = 0; i < 1000; i++) {
+			final StringBuilder sb = new StringBuilder("yes(");
+			randomTerm(sb, random, 0);
+			compare(sb.append(')').toString());
+		}
+	}
+
+	@Test
+	public void testErrors() {
+		for (final String answer : new String[] { "", "yes", "yes(", "yes(a", "yes(a))", "yes(f(a,))", "maybe",
+				"no(a)", "yes('abc)", "yes(f(a) b)", "yes(f(,))" }) {
+			try {
+				ProBAnswerReader.read(answer);
+				fail("exception expected for " + answer);
+			} catch (ResultParserException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testLongList() throws Exception {
+		final int size = 100000;
+		final StringBuilder sb = new StringBuilder("yes(");
+		for (int i = 0; i < size; i++) {
+			sb.append("'.'(e(").append(i).append("),");
+		}
+		sb.append("[]");
+		for (int i = 0; i < size; i++) {
+			sb.append(')');
+		}
+		sb.append(')');
+		final PrologTerm term = ProBAnswerReader
+				.read(new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+		assertTrue(term.isList());
+		final ListPrologTerm list = (ListPrologTerm) term;
+		assertEquals(size, list.size());
+		for (int i = 0; i < size; i++) {
+			assertEquals(new CompoundPrologTerm("e", IntegerPrologTerm.valueOf(i)), list.get(i));
+		}
+	}
+
+	@Test
+	public void testDeepNesting() {
+		final int depth = 100000;
+		final StringBuilder sb = new StringBuilder("yes(");
+		for (int i = 0; i < depth; i++) {
+			sb.append("f(");
+		}
+		sb.append("x");
+		for (int i = 0; i < depth; i++) {
+			sb.append(')');
+		}
+		sb.append(')');
+		PrologTerm term = ProBAnswerReader.read(sb.toString());
+		for (int i = 0; i < depth; i++) {
+			assertTrue(term.hasFunctor("f", 1));
+			term = term.getArgument(1);
+		}
+		assertEquals(new CompoundPrologTerm("x"), term);
+	}
+
+	private static void compare(final String answer) {
+		final PrologTerm expected = PrologTermGenerator.toPrologTerm(ProBResultParser.parse(answer));
+		assertEquals(answer, expected, ProBAnswerReader.read(answer));
+	}
+
+	private static void randomTerm(final StringBuilder sb, final Random random, final int depth) {
+		switch (depth < 4 ? random.nextInt(6) : random.nextInt(3)) {
+		case 0:
+			sb.append(random.nextInt(2000) - 1000);
+			break;
+		case 1:
+			sb.append(ATOMS[random.nextInt(ATOMS.length)]);
+			break;
+		case 2:
+			sb.append(VARIABLES[random.nextInt(VARIABLES.length)]);
+			break;
+		case 3:
+			// a list, possibly with a tail which is not []
+			final int length = random.nextInt(4);
+			for (int i = 0; i < length; i++) {
+				sb.append(random.nextBoolean() ? "'.'(" : ".(");
+				randomTerm(sb, random, depth + 1);
+				sb.append(',');
+			}
+			if (random.nextInt(4) == 0) {
+				randomTerm(sb, random, depth + 1);
+			} else {
+				sb.append("[]");
+			}
+			for (int i = 0; i < length; i++) {
+				sb.append(')');
+			}
+			break;
+		default:
+			sb.append(ATOMS[random.nextInt(ATOMS.length)]).append('(');
+			final int arity = 1 + random.nextInt(3);
+			for (int i = 0; i < arity; i++) {
+				if (i > 0) {
+					sb.append(random.nextBoolean() ? "," : ",\n");
+				}
+				randomTerm(sb, random, depth + 1);
+			}
+			sb.append(')');
+		}
+	}
+}
@@ -2,6 +2,7 @@ package de.be4.classicalb.core.parser;
 
 import java.io.IOException;
 import java.io.PushbackReader;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -17,11 +18,16 @@ public class BLexer extends Lexer {
 	// PUSHBACK_BUFFER_SIZE should be more than the max length of any keyword
 	public static final int PUSHBACK_BUFFER_SIZE = 99;
 
-	private static Map<Class<? extends Token>, Map<Class<? extends Token>, String>> invalid = new HashMap<>();
-	private static Set<Class<? extends Token>> clauseTokenClasses = new HashSet<>();
-	private static Map<Character, Character> stringReplacements = new HashMap<>();
+	/*
+	 * The tables are filled once when the class is loaded and cannot be
+	 * modified afterwards, so they can be read by lexers in several threads at
+	 * the same time.
+	 */
+	private static final Map<Class<? extends Token>, Map<Class<? extends Token>, String>> invalid = createInvalid();
+	private static final Map<Character, Character> stringReplacements = createStringReplacements();
 
-	private static void addInvalid(Class<? extends Token> f, Class<? extends Token> s, String message) {
+	private static void addInvalid(Map<Class<? extends Token>, Map<Class<? extends Token>, String>> invalid,
+			Class<? extends Token> f, Class<? extends Token> s, String message) {
 		Map<Class<? extends Token>, String> secs = invalid.get(f);
 		if (secs == null)
 			secs = new HashMap<>();
@@ -29,25 +35,27 @@ public class BLexer extends Lexer {
 		invalid.put(f, secs);
 	}
 
-	static {
-		addInvalid(TSemicolon.class, TSemicolon.class, "Two succeeding semicolons are not allowed.");
-		addInvalid(TConjunction.class, TConjunction.class, "& & is not allowed (probably one & too many).");
-		addInvalid(TConjunction.class, TLogicalOr.class, "& or is not allowed.");
-		addInvalid(TConjunction.class, TImplies.class, "& => is not allowed.");
-		addInvalid(TConjunction.class, TEquivalence.class, "& <=> is not allowed.");
-		addInvalid(TImplies.class, TConjunction.class, "=> & is not allowed.");
-		addInvalid(TImplies.class, TImplies.class, "=> => is not allowed.");
-		addInvalid(TEquivalence.class, TConjunction.class, "<=> & is not allowed.");
-		addInvalid(TEquivalence.class, TEquivalence.class, "<=> <=> is not allowed.");
-		addInvalid(TLogicalOr.class, TConjunction.class, "or & is not allowed.");
-		addInvalid(TLogicalOr.class, TLogicalOr.class, "or or is not allowed (probably one or too many).");
-		addInvalid(TDoubleVerticalBar.class, TDoubleVerticalBar.class,
+	private static Map<Class<? extends Token>, Map<Class<? extends Token>, String>> createInvalid() {
+		final Map<Class<? extends Token>, Map<Class<? extends Token>, String>> invalid = new HashMap<>();
+		addInvalid(invalid, TSemicolon.class, TSemicolon.class, "Two succeeding semicolons are not allowed.");
+		addInvalid(invalid, TConjunction.class, TConjunction.class, "& & is not allowed (probably one & too many).");
+		addInvalid(invalid, TConjunction.class, TLogicalOr.class, "& or is not allowed.");
+		addInvalid(invalid, TConjunction.class, TImplies.class, "& => is not allowed.");
+		addInvalid(invalid, TConjunction.class, TEquivalence.class, "& <=> is not allowed.");
+		addInvalid(invalid, TImplies.class, TConjunction.class, "=> & is not allowed.");
+		addInvalid(invalid, TImplies.class, TImplies.class, "=> => is not allowed.");
+		addInvalid(invalid, TEquivalence.class, TConjunction.class, "<=> & is not allowed.");
+		addInvalid(invalid, TEquivalence.class, TEquivalence.class, "<=> <=> is not allowed.");
+		addInvalid(invalid, TLogicalOr.class, TConjunction.class, "or & is not allowed.");
+		addInvalid(invalid, TLogicalOr.class, TLogicalOr.class, "or or is not allowed (probably one or too many).");
+		addInvalid(invalid, TDoubleVerticalBar.class, TDoubleVerticalBar.class,
 				"|| || is not allowed (probably one || too many).");
-		addInvalid(TSetSubtraction.class, TEqual.class, "You need to use /= for inequality and not \\=.");
-		addInvalid(TSetSubtraction.class, TElementOf.class, "You need to use /: for not membership and not \\:.");
-		addInvalid(TSetSubtraction.class, TInclusion.class, "You need to use /<: for not subset and not \\<:.");
-		addInvalid(TSetSubtraction.class, TStrictInclusion.class, "You need to use /<<: for not strict subset and not \\<<:.");
+		addInvalid(invalid, TSetSubtraction.class, TEqual.class, "You need to use /= for inequality and not \\=.");
+		addInvalid(invalid, TSetSubtraction.class, TElementOf.class, "You need to use /: for not membership and not \\:.");
+		addInvalid(invalid, TSetSubtraction.class, TInclusion.class, "You need to use /<: for not subset and not \\<:.");
+		addInvalid(invalid, TSetSubtraction.class, TStrictInclusion.class, "You need to use /<<: for not strict subset and not \\<<:.");
 
+		final Set<Class<? extends Token>> clauseTokenClasses = new HashSet<>();
 		clauseTokenClasses.add(TConstants.class);
 		clauseTokenClasses.add(TAssertions.class);
 		clauseTokenClasses.add(TVariables.class);
@@ -59,9 +67,17 @@ public class BLexer extends Lexer {
 
 		for (Class<? extends Token> clauseTokenClass : clauseTokenClasses) {
 			String clauseName = clauseTokenClass.getSimpleName().substring(1).toUpperCase();
-			addInvalid(TConjunction.class, clauseTokenClass, "& " + clauseName + " is not allowed.");
+			addInvalid(invalid, TConjunction.class, clauseTokenClass, "& " + clauseName + " is not allowed.");
 		}
 
+		for (Map.Entry<Class<? extends Token>, Map<Class<? extends Token>, String>> entry : invalid.entrySet()) {
+			entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+		}
+		return Collections.unmodifiableMap(invalid);
+	}
+
+	private static Map<Character, Character> createStringReplacements() {
+		final Map<Character, Character> stringReplacements = new HashMap<>();
 		// replacements in strings '\' + ..
 		// e.g. '\' + 'n' is replaced by '\n'
 		stringReplacements.put('"', '"');
@@ -70,6 +86,7 @@ public class BLexer extends Lexer {
 		stringReplacements.put('r', '\r');
 		stringReplacements.put('t', '\t');
 		stringReplacements.put('\\', '\\');
+		return Collections.unmodifiableMap(stringReplacements);
 	}
 
 	private ParseOptions parseOptions = null;
@@ -199,7 +216,7 @@ public class BLexer extends Lexer {
 		token.setText(sb.toString());
 	}
 
-	private void replaceDefTokens() {
+	protected void replaceDefTokens() {
 		if (token instanceof TIdentifierLiteral) {
 			final Definitions.Type type = definitions.getType(token.getText());
 
@@ -9,9 +9,9 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
 
 import de.be4.classicalb.core.parser.analysis.checking.ClausesCheck;
 import de.be4.classicalb.core.parser.analysis.checking.DefinitionCollector;
@@ -38,9 +38,29 @@ import de.be4.classicalb.core.parser.util.DebugPrinter;
 import de.be4.classicalb.core.parser.util.Utils;
 import de.be4.classicalb.core.parser.visualisation.ASTDisplay;
 import de.be4.classicalb.core.parser.visualisation.ASTPrinter;
-import de.prob.prolog.output.StructuredPrologOutput;
-import de.prob.prolog.term.PrologTerm;
-
+import de.prob.prolog.output.BufferedPrologTermOutput;
+import de.prob.prolog.output.FastReadPrologOutput;
+import de.prob.prolog.output.IPrologTermOutput;
+import de.prob.prolog.output.PrologTermDelegate;
+
+/**
+ * Parses B machines and formulas.
+ * 
+ * A parser is confined to one thread at a time: it keeps the definitions, the
+ * loaded definition files and the directory of the input between the calls.
+ * Using a parser in several threads at the same time, including setting its
+ * directory, definitions, loaded definition files or options while another
+ * thread parses, is rejected with an
+ * {@link IllegalStateException}. Different parsers can be used in parallel,
+ * they only share tables which cannot be modified. The ASTs, the
+ * {@link Definitions} and the objects used to print them, like
+ * {@link de.be4.classicalb.core.parser.analysis.prolog.NodeIdAssignment}, are
+ * not thread-safe either, they may be passed to another thread after the parse
+ * but must not be used by several threads at the same time.
+ * 
+ * {@link FormulaParserPool} provides a parser for each thread for parsing
+ * formulas.
+ */
 public class BParser {
 
 	public static final String EXPRESSION_PREFIX = "#EXPRESSION";
@@ -49,7 +69,15 @@ public class BParser {
 	public static final String SUBSTITUTION_PREFIX = "#SUBSTITUTION";
 	public static final String OPERATION_PATTERN_PREFIX = "#OPPATTERN";
 
+	/**
+	 * The maximal number of distinct identifiers for which {@link #eparse}
+	 * tries all combinations of expressions and predicates.
+	 */
+	public static final int MAX_EXHAUSTIVE_EPARSE_IDENTIFIERS = 10;
+
 	private IDefinitions definitions = new Definitions();
+	// the types of the definitions, shared instead of copied, may be null
+	private DefinitionTypes definitionsTypes;
 	private ParseOptions parseOptions;
 
 	private List<String> doneDefFiles = new ArrayList<>();
@@ -59,6 +87,9 @@ public class BParser {
 
 	private IDefinitionFileProvider contentProvider;
 
+	// the thread which is parsing, null if the parser is not used
+	private final AtomicReference<Thread> parsingThread = new AtomicReference<>();
+
 	public static String getVersion() {
 		Properties p = loadProperties();
 		if (p != null) {
@@ -110,30 +141,39 @@ public class BParser {
 			throws BCompoundException {
 		final RecursiveMachineLoader rml = new RecursiveMachineLoader(bfile.getParent(), contentProvider,
 				parsingBehaviour);
-		rml.loadAllMachines(bfile, tree, parser.getDefinitions());
-		rml.printAsProlog(new PrintWriter(out));
+		if (parsingBehaviour.isStreamingPrologOutput()) {
+			final IPrologTermOutput pout = new BufferedPrologTermOutput(new PrintWriter(out),
+					parsingBehaviour.isUseIndention());
+			rml.loadAndPrintAllMachines(bfile, tree, parser.getDefinitions(), pout);
+		} else {
+			rml.loadAllMachines(bfile, tree, parser.getDefinitions());
+			rml.printAsProlog(new PrintWriter(out));
+		}
 	}
 
-	private static String getASTasFastProlog(final BParser parser, final File bfile, final Start tree,
-			final ParsingBehaviour parsingBehaviour, IDefinitionFileProvider contentProvider)
+	/**
+	 * Prints all machines as one list of facts in the binary format of
+	 * SICStus' fast_read. The facts are encoded while the AST is visited,
+	 * without building an intermediate term.
+	 */
+	public static void printASTasFastProlog(final PrintStream out, final BParser parser, final File bfile,
+			final Start tree, final ParsingBehaviour parsingBehaviour, IDefinitionFileProvider contentProvider)
 			throws BCompoundException {
 		final RecursiveMachineLoader rml = new RecursiveMachineLoader(bfile.getParent(), contentProvider,
 				parsingBehaviour);
 		rml.loadAllMachines(bfile, tree, parser.getDefinitions());
-		StructuredPrologOutput structuredPrologOutput = new StructuredPrologOutput();
-		rml.printAsProlog(structuredPrologOutput);
-		Collection<PrologTerm> sentences = structuredPrologOutput.getSentences();
-		StructuredPrologOutput output = new StructuredPrologOutput();
-
-		output.openList();
-		for (PrologTerm term : sentences) {
-			output.printTerm(term);
-		}
-		output.closeList();
-		output.fullstop();
-
-		FastReadTransformer transformer = new FastReadTransformer(output);
-		return transformer.write();
+		final FastReadPrologOutput fastOutput = new FastReadPrologOutput(out);
+		fastOutput.openList();
+		// the facts become elements of the list instead of sentences
+		rml.printAsProlog(new PrologTermDelegate(fastOutput) {
+			@Override
+			public IPrologTermOutput fullstop() {
+				return this;
+			}
+		});
+		fastOutput.closeList();
+		fastOutput.fullstop();
+		fastOutput.flush();
 	}
 
 	/**
@@ -151,8 +191,13 @@ public class BParser {
 	 *             if the file cannot be parsed
 	 */
 	public Start parseFile(final File machineFile, final boolean verbose) throws IOException, BCompoundException {
-		contentProvider = new CachingDefinitionFileProvider();
-		return parseFile(machineFile, verbose, contentProvider);
+		final boolean entered = enter();
+		try {
+			contentProvider = new CachingDefinitionFileProvider();
+			return parseFile(machineFile, verbose, contentProvider);
+		} finally {
+			leave(entered);
+		}
 	}
 
 	/**
@@ -173,12 +218,17 @@ public class BParser {
 	 */
 	public Start parseFile(final File machineFile, final boolean verbose, final IFileContentProvider contentProvider)
 			throws IOException, BCompoundException {
-		this.directory = machineFile.getParentFile();
-		if (verbose) {
-			DebugPrinter.println("Parsing file '" + machineFile.getCanonicalPath() + "'");
+		final boolean entered = enter();
+		try {
+			this.directory = machineFile.getParentFile();
+			if (verbose) {
+				DebugPrinter.println("Parsing file '" + machineFile.getCanonicalPath() + "'");
+			}
+			String content = Utils.readFile(machineFile);
+			return parse(content, verbose, contentProvider);
+		} finally {
+			leave(entered);
 		}
-		String content = Utils.readFile(machineFile);
-		return parse(content, verbose, contentProvider);
 	}
 
 	/**
@@ -224,15 +274,62 @@ public class BParser {
 		return this.parse(theFormula, false, new NoContentProvider());
 	}
 
+	/**
+	 * Parses a formula in which identifiers may be used as predicates. Such an
+	 * identifier <code>x</code> is replaced by <code>(x=TRUE)</code>.
+	 * 
+	 * First, the formula is parsed with all identifiers being expressions and
+	 * then with all identifiers being predicates. If both fail, the identifiers
+	 * are turned into predicates one at a time: the identifiers in front of the
+	 * token where the parser failed are tried, nearest first, until one of them
+	 * moves the error further to the end of the formula. Each accepted change
+	 * turns one more identifier into a predicate, so at most
+	 * <code>n*(n+1)/2 + 2</code> attempts are made for <code>n</code> distinct
+	 * identifiers (and usually only <code>n + 2</code>). If this does not find
+	 * a parsable assignment either, all remaining combinations are tried, but
+	 * only for formulas with at most {@value #MAX_EXHAUSTIVE_EPARSE_IDENTIFIERS}
+	 * distinct identifiers.
+	 * <p>
+	 * If several assignments can be parsed, the result may differ from
+	 * trying all combinations: identifiers behind the token where the parser
+	 * failed remain expressions if they can, e.g., <code>x &amp; y = z</code>
+	 * is parsed as <code>(x=TRUE) &amp; y = z</code>.
+	 * 
+	 * @param input
+	 *            the formula, including its prefix
+	 * @param context
+	 *            the definitions which can be used in the formula
+	 * @return the AST or <code>null</code> if the formula cannot be parsed
+	 * @throws BCompoundException
+	 *             not thrown
+	 * @throws LexerException
+	 *             if the formula cannot be lexed
+	 * @throws IOException
+	 *             if the formula cannot be read
+	 */
 	public Start eparse(String input, IDefinitions context) throws BCompoundException, LexerException, IOException {
-		final Reader reader = new StringReader(input);
+		final boolean entered = enter();
+		try {
+			return eparseInput(input, context);
+		} finally {
+			leave(entered);
+		}
+	}
 
-		Start ast = null;
+	private Start eparseInput(String input, IDefinitions context) throws LexerException, IOException {
+		final Reader reader = new StringReader(input);
 
-		List<String> ids = new ArrayList<>();
+		final List<String> ids = new ArrayList<>();
+		// all occurrences of the identifiers, in the order of the input
+		final List<Token> occurrences = new ArrayList<>();
 
-		final DefinitionTypes defTypes = new DefinitionTypes();
-		defTypes.addAll(context.getTypes());
+		final DefinitionTypes defTypes;
+		if (context == definitions && definitionsTypes != null) {
+			defTypes = new DefinitionTypes(definitionsTypes);
+		} else {
+			defTypes = new DefinitionTypes();
+			defTypes.addAll(context.getTypes());
+		}
 
 		BLexer bLexer = new BLexer(new PushbackReader(reader, BLexer.PUSHBACK_BUFFER_SIZE), defTypes);
 		bLexer.setParseOptions(parseOptions);
@@ -243,39 +340,79 @@ public class BParser {
 				if (!ids.contains(t.getText())) {
 					ids.add(t.getText());
 				}
+				occurrences.add(t);
 			}
 		} while (!(t instanceof EOF));
 
-		Parser p = new Parser(new EBLexer(input, BigInteger.ZERO, ids, defTypes));
-		boolean ok;
+		BigInteger predicates = BigInteger.ZERO;
+		final BigInteger allPredicates = BigInteger.ONE.shiftLeft(ids.size()).subtract(BigInteger.ONE);
+		// null if the first attempt did not fail in the parser, then all
+		// identifiers are candidates
+		Token error = null;
 		try {
-			ast = p.parse();
-			ok = true;
+			return eparse(input, predicates, ids, defTypes);
 		} catch (Exception e) {
-			handleException(e);
-			ok = false;
+			error = getParserErrorToken(e);
+		}
+		if (!ids.isEmpty()) {
+			try {
+				return eparse(input, allPredicates, ids, defTypes);
+			} catch (Exception e) {
+				// continue with the directed search
+			}
 		}
 
-		BigInteger b = new BigInteger("2");
-		b = b.pow(ids.size());
-		b = b.subtract(BigInteger.ONE);
+		boolean progress = true;
+		while (progress) {
+			progress = false;
+			final boolean[] tried = new boolean[ids.size()];
+			for (int i = occurrences.size() - 1; i >= 0 && !progress; i--) {
+				final Token occurrence = occurrences.get(i);
+				final int index = ids.indexOf(occurrence.getText());
+				if (error != null && !isBefore(occurrence, error) || predicates.testBit(index) || tried[index]) {
+					continue;
+				}
+				tried[index] = true;
+				final BigInteger candidate = predicates.setBit(index);
+				try {
+					return eparse(input, candidate, ids, defTypes);
+				} catch (Exception e) {
+					final Token candidateError = getParserErrorToken(e);
+					if (candidateError != null && (error == null || isBefore(error, candidateError))) {
+						predicates = candidate;
+						error = candidateError;
+						progress = true;
+					}
+				}
+			}
+		}
 
-		while (!ok && b.compareTo(BigInteger.ZERO) > 0) {
-			p = new Parser(new EBLexer(input, b, ids, defTypes));
-			try {
-				ast = p.parse();
-				ok = true;
-			} catch (ParserException e) {
-				b = b.subtract(BigInteger.ONE);
-				handleException(e);
+		// the exhaustive search of earlier versions, without the combinations
+		// which have been tried first
+		if (ids.size() <= MAX_EXHAUSTIVE_EPARSE_IDENTIFIERS) {
+			for (BigInteger b = allPredicates.subtract(BigInteger.ONE); b.signum() > 0; b = b
+					.subtract(BigInteger.ONE)) {
+				try {
+					return eparse(input, b, ids, defTypes);
+				} catch (Exception e) {
+					// try the next combination
+				}
 			}
 		}
+		return null;
+	}
+
+	private Start eparse(final String input, final BigInteger predicates, final List<String> ids,
+			final DefinitionTypes defTypes) throws ParserException, LexerException, IOException {
+		return new Parser(new EBLexer(input, predicates, ids, defTypes)).parse();
+	}
 
-		return ast;
+	private static Token getParserErrorToken(final Exception e) {
+		return e instanceof ParserException ? ((ParserException) e).getToken() : null;
 	}
 
-	private void handleException(Exception e) {
-		// do nothing
+	private static boolean isBefore(final Token a, final Token b) {
+		return a.getLine() < b.getLine() || a.getLine() == b.getLine() && a.getPos() < b.getPos();
 	}
 
 	/**
@@ -353,10 +490,56 @@ public class BParser {
 	 */
 	public Start parse(final String input, final boolean debugOutput, final IFileContentProvider contentProvider)
 			throws BCompoundException {
-		final Reader reader = new StringReader(input);
+		final boolean entered = enter();
+		try {
+			return parseInput(input, debugOutput, contentProvider);
+		} finally {
+			leave(entered);
+		}
+	}
+
+	/**
+	 * Marks the parser as used by the current thread.
+	 * 
+	 * @return <code>false</code> if the current thread already uses the
+	 *         parser, i.e., the call is nested
+	 * @throws IllegalStateException
+	 *             if another thread uses the parser
+	 */
+	private boolean enter() {
+		final Thread current = Thread.currentThread();
+		if (parsingThread.compareAndSet(null, current)) {
+			return true;
+		} else if (parsingThread.get() == current) {
+			return false;
+		} else {
+			throw new IllegalStateException("The parser is used by several threads at the same time");
+		}
+	}
+
+	private void leave(final boolean entered) {
+		if (entered) {
+			parsingThread.set(null);
+		}
+	}
+
+	private Start parseInput(final String input, final boolean debugOutput, final IFileContentProvider contentProvider)
+			throws BCompoundException {
+		final ParseCache parseCache = parseOptions.getParseCache();
+		final boolean useCache = parseCache != null && ParseCache.isCacheable(definitions);
+		if (useCache) {
+			final Start cachedRootNode = parseCache.load(input, directory, contentProvider, parseOptions, doneDefFiles,
+					debugOutput, (Definitions) definitions);
+			if (cachedRootNode != null) {
+				return cachedRootNode;
+			}
+		}
+		final TokenBuffer tokenBuffer = parseOptions.isSinglePassLexing() ? lexIntoBuffer(input) : null;
+		final Reader reader = new StringReader(tokenBuffer == null ? input : tokenBuffer.getPreParserInput());
 		try {
 			// PreParsing
-			final DefinitionTypes defTypes = preParsing(debugOutput, reader, contentProvider, directory);
+			final PreParser preParser = preParsing(debugOutput, reader, contentProvider, directory);
+			final DefinitionTypes defTypes = preParser.getDefinitionTypes();
 
 			/*
 			 * The definition types are used in the lexer in order to replace an
@@ -367,12 +550,22 @@ public class BParser {
 			 * identifier token "def" by a TDefLiteralPredicate which will be
 			 * excepted by the parser
 			 * 
+			 * If the definition types already fall back to the shared types
+			 * of the definitions, they only have to be copied if other types
+			 * have been added which they must take precedence over.
 			 */
-			defTypes.addAll(definitions.getTypes());
+			if (definitionsTypes == null || defTypes.hasOwnTypes()) {
+				defTypes.addAll(definitions.getTypes());
+			}
 			/*
 			 * Main parser
 			 */
-			final BLexer lexer = new BLexer(new PushbackReader(reader, BLexer.PUSHBACK_BUFFER_SIZE), defTypes);
+			final BLexer lexer;
+			if (tokenBuffer == null) {
+				lexer = new BLexer(new PushbackReader(reader, BLexer.PUSHBACK_BUFFER_SIZE), defTypes);
+			} else {
+				lexer = tokenBuffer.createLexer(defTypes);
+			}
 			lexer.setParseOptions(parseOptions);
 			SabbleCCBParser parser = new SabbleCCBParser(lexer);
 			final Start rootNode = parser.parse();
@@ -404,6 +597,10 @@ public class BParser {
 			if (!bExceptionList.isEmpty()) {
 				throw new BCompoundException(bExceptionList);
 			}
+			if (useCache) {
+				parseCache.store(input, directory, contentProvider, parseOptions, rootNode,
+						preParser.getDefinitionFileNames(), (Definitions) definitions);
+			}
 			return rootNode;
 		} catch (final LexerException e) {
 			throw new BCompoundException(new BException(getFileName(), e));
@@ -426,20 +623,21 @@ public class BParser {
 		}
 	}
 
-	public String getFileName() {
-		if (fileName == null) {
+	/**
+	 * Scans the input once into a {@link TokenBuffer}. If the input cannot be
+	 * lexed, <code>null</code> is returned and the input is parsed as usual in
+	 * order to report the same errors.
+	 */
+	private TokenBuffer lexIntoBuffer(final String input) {
+		try {
+			return TokenBuffer.lex(input, parseOptions);
+		} catch (LexerException | IOException e) {
 			return null;
 		}
-		File f = new File(fileName);
-		if (f.exists()) {
-			try {
-				return f.getCanonicalPath();
-			} catch (IOException e) {
-				return fileName;
-			}
-		} else {
-			return fileName;
-		}
+	}
+
+	public String getFileName() {
+		return Utils.getCanonicalFileName(fileName);
 	}
 
 	private String getImprovedErrorMessageBasedOnTheErrorToken(Token token) {
@@ -449,15 +647,16 @@ public class BParser {
 		return null;
 	}
 
-	private DefinitionTypes preParsing(final boolean debugOutput, final Reader reader,
+	private PreParser preParsing(final boolean debugOutput, final Reader reader,
 			final IFileContentProvider contentProvider, File directory)
 			throws IOException, PreParseException, BException, BCompoundException {
 		final PreParser preParser = new PreParser(new PushbackReader(reader, BLexer.PUSHBACK_BUFFER_SIZE),
-				contentProvider, doneDefFiles, this.fileName, directory, parseOptions, this.definitions);
+				contentProvider, doneDefFiles, this.fileName, directory, parseOptions, this.definitions,
+				this.definitionsTypes);
 		preParser.setDebugOutput(debugOutput);
 		preParser.parse();
 		reader.reset();
-		return preParser.getDefinitionTypes();
+		return preParser;
 	}
 
 	private void applyAstTransformations(final Start rootNode) throws CheckException {
@@ -488,7 +687,23 @@ public class BParser {
 	}
 
 	public void setDefinitions(IDefinitions definitions) {
-		this.definitions = definitions;
+		setDefinitions(definitions, null);
+	}
+
+	/**
+	 * @param definitionsTypes
+	 *            the types of the definitions, which are shared by the parses
+	 *            instead of being copied for each of them, or
+	 *            <code>null</code>; they must not change while they are used
+	 */
+	void setDefinitions(final IDefinitions definitions, final DefinitionTypes definitionsTypes) {
+		final boolean entered = enter();
+		try {
+			this.definitions = definitions;
+			this.definitionsTypes = definitionsTypes;
+		} finally {
+			leave(entered);
+		}
 	}
 
 	public static String getBuildRevision() {
@@ -500,7 +715,12 @@ public class BParser {
 	}
 
 	public void setDoneDefFiles(final List<String> doneDefFiles) {
-		this.doneDefFiles = doneDefFiles;
+		final boolean entered = enter();
+		try {
+			this.doneDefFiles = doneDefFiles;
+		} finally {
+			leave(entered);
+		}
 	}
 
 	public ParseOptions getOptions() {
@@ -508,22 +728,21 @@ public class BParser {
 	}
 
 	public void setParseOptions(ParseOptions options) {
-		this.parseOptions = options;
+		final boolean entered = enter();
+		try {
+			this.parseOptions = options;
+		} finally {
+			leave(entered);
+		}
 	}
 
 	public int fullParsing(final File bfile, final ParsingBehaviour parsingBehaviour, final PrintStream out,
 			final PrintStream err) {
 
 		try {
-
-			// Properties hashes = new Properties();
-
-			// if (parsingBehaviour.getOutputFile() != null) {
-			// if (hashesStillValid(parsingBehaviour.getOutputFile())){
-			// return 0;
-			// }
-			// }
-
+			if (parsingBehaviour.getCacheDirectory() != null) {
+				parseOptions.setParseCache(new ParseCache(parsingBehaviour.getCacheDirectory()));
+			}
 			final long start = System.currentTimeMillis();
 			final Start tree = parseFile(bfile, parsingBehaviour.isVerbose());
 			final long end = System.currentTimeMillis();
@@ -554,8 +773,8 @@ public class BParser {
 
 			if (parsingBehaviour.isFastPrologOutput()) {
 				try {
-					String fp = getASTasFastProlog(this, bfile, tree, parsingBehaviour, contentProvider);
-					out.println(fp);
+					printASTasFastProlog(out, this, bfile, tree, parsingBehaviour, contentProvider);
+					out.println();
 				} catch (Exception e) {
 					throw new RuntimeException(e);
 				}
@@ -581,42 +800,13 @@ public class BParser {
 		return 0;
 	}
 
-	@SuppressWarnings("unused")
-	private boolean hashesStillValid(final File outputFile) {
-		// File dir = outputFile.getParentFile();
-		// Properties hashValues = readHashValues(outputFile, dir);
-		// Set<Entry<Object, Object>> entrySet = hashValues.entrySet();
-		// for (Entry<Object, Object> entry : entrySet) {
-		// String file = (String) entry.getKey();
-		// String hash = (String) entry.getValue();
-		// File f = new File(dir + File.separator + file);
-		// try {
-		// if (!(f.exists() || FileDigest.sha(f).equals(hash)))
-		// return false;
-		// } catch (Exception e) {
-		// return false;
-		// }
-		// }
-		return false;
-	}
-
 	public void setDirectory(final File directory) {
-		this.directory = directory;
-	}
-
-	// private Properties readHashValues(final File target, final File dir) {
-	// String name = target.getName();
-	// Properties p = new Properties();
-	// String hashfile = name + ".hashes";
-	// File hf = new File(dir.getAbsoluteFile() + File.separator + hashfile);
-	// if (!hf.exists())
-	// return p;
-	// try {
-	// p.load(new BufferedInputStream(new FileInputStream(hf)));
-	// } catch (Exception e) {
-	// // ignore
-	// }
-	// return p;
-	// }
+		final boolean entered = enter();
+		try {
+			this.directory = directory;
+		} finally {
+			leave(entered);
+		}
+	}
 
 }
@@ -1,18 +1,46 @@
 package de.be4.classicalb.core.parser;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class CachingDefinitionFileProvider extends PlainFileContentProvider
 		implements IDefinitionFileProvider {
 
 	private final Map<String, IDefinitions> store = new HashMap<String, IDefinitions>();
+	// shared with other providers, may be null
+	private final DefinitionFileCache sharedCache;
 
 	/**
+	 * Creates a provider which caches the definition files only for itself.
+	 *
 	 * s. {@link PlainFileContentProvider#PlainFileContentProvider()}
 	 */
 	public CachingDefinitionFileProvider() {
+		this(null);
+	}
+
+	/**
+	 * Creates a provider which also looks up the definition files in a cache
+	 * shared with other providers, e.g. {@link DefinitionFileCache#getDefault()}.
+	 * The provider itself is not thread-safe, each parse needs its own one.
+	 *
+	 * @param sharedCache
+	 *            the shared cache or <code>null</code> if the definition
+	 *            files should only be cached for this provider
+	 */
+	public CachingDefinitionFileProvider(final DefinitionFileCache sharedCache) {
 		super();
+		this.sharedCache = sharedCache;
+	}
+
+	/**
+	 * @return the cache shared with other providers or <code>null</code>
+	 */
+	public DefinitionFileCache getSharedCache() {
+		return sharedCache;
 	}
 
 	public IDefinitions getDefinitions(final String filename) {
@@ -23,4 +51,59 @@ public class CachingDefinitionFileProvider extends PlainFileContentProvider
 			final IDefinitions definitions) {
 		store.put(filename, definitions);
 	}
+
+	/**
+	 * Replaces the definition files referenced by definitions which have been
+	 * parsed with another provider by the ones of this provider, as if the
+	 * definitions had been parsed with this provider. Definition files which
+	 * are not yet known to this provider are added to it.
+	 *
+	 * @param definitions
+	 *            the definitions of a machine
+	 */
+	public void adoptDefinitionFiles(final IDefinitions definitions) throws IOException {
+		final List<IDefinitions> referenced = definitions.referencedDefinitions;
+		for (int i = 0; i < referenced.size(); i++) {
+			if (!(referenced.get(i) instanceof Definitions)) {
+				continue;
+			}
+			final Definitions definitionFile = (Definitions) referenced.get(i);
+			if (definitionFile.getFile() == null) {
+				continue;
+			}
+			final String path = definitionFile.getFile().getCanonicalPath();
+			final IDefinitions known = store.get(path);
+			if (known == null) {
+				store.put(path, definitionFile);
+				adoptDefinitionFiles(definitionFile);
+			} else {
+				referenced.set(i, known);
+			}
+		}
+	}
+
+	/*
+	 * used by the PreParser, which knows the directory and the options the
+	 * definition file is parsed with
+	 */
+	IDefinitions getDefinitions(final String filename, final File directory,
+			final ParseOptions parseOptions) {
+		IDefinitions definitions = store.get(filename);
+		if (definitions == null && sharedCache != null) {
+			definitions = sharedCache.getDefinitions(filename, directory, parseOptions);
+			if (definitions != null) {
+				store.put(filename, definitions);
+			}
+		}
+		return definitions;
+	}
+
+	void storeDefinition(final String filename, final File directory,
+			final ParseOptions parseOptions, final String content,
+			final IDefinitions definitions) {
+		store.put(filename, definitions);
+		if (sharedCache != null) {
+			sharedCache.storeDefinitions(filename, directory, parseOptions, content, definitions);
+		}
+	}
 }
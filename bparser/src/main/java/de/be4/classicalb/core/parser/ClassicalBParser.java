@@ -14,11 +14,13 @@ public class ClassicalBParser implements ProBParserBase {
 	private static final String WRAPPER_PRED = "bpred";
 	private static final String WRAPPER_TRANS = "bop";
 
+	private static final FormulaParserPool PARSERS = new FormulaParserPool();
+
 	@Override
 	public void parseExpression(final IPrologTermOutput pto, final String expression, final boolean wrap)
 			throws ProBParseException {
 		try {
-			Start ast = new BParser().parseExpression(expression);
+			Start ast = PARSERS.get().parseExpression(expression);
 			printAst(pto, ast, wrap, WRAPPER_EXPR);
 		} catch (BCompoundException e) {
 			throw new ProBParseException(e.getFirstException().getLocalizedMessage());
@@ -29,7 +31,7 @@ public class ClassicalBParser implements ProBParserBase {
 	public void parsePredicate(final IPrologTermOutput pto, final String predicate, final boolean wrap)
 			throws ProBParseException {
 		try {
-			Start ast = new BParser().parsePredicate(predicate);
+			Start ast = PARSERS.get().parsePredicate(predicate);
 			printAst(pto, ast, wrap, WRAPPER_PRED);
 		} catch (BCompoundException e) {
 			throw new ProBParseException(e.getFirstException().getLocalizedMessage());
@@ -40,7 +42,7 @@ public class ClassicalBParser implements ProBParserBase {
 	public void parseTransitionPredicate(final IPrologTermOutput pto, final String trans, final boolean wrap)
 			throws ProBParseException {
 		try {
-			Start ast = new BParser().parseTranstion(trans);
+			Start ast = PARSERS.get().parseTransition(trans);
 			printAst(pto, ast, wrap, WRAPPER_TRANS);
 		} catch (BCompoundException e) {
 			throw new ProBParseException(e.getFirstException().getLocalizedMessage());
@@ -0,0 +1,201 @@
+package de.be4.classicalb.core.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.be4.classicalb.core.parser.util.Utils;
+
+/**
+ * A thread-safe cache of parsed definition files which is shared by parsers
+ * running concurrently or one after the other, e.g. when many machines using
+ * the same definition files are parsed in a batch. A
+ * {@link CachingDefinitionFileProvider} only uses a cache which has been passed
+ * to it, e.g. the process-wide cache returned by {@link #getDefault()}.
+ *
+ * The definitions are modified while a machine is parsed and printed, so the
+ * cache keeps a private copy of each definition file which is never modified
+ * and hands out copies of it. The files are cached by their canonical path and
+ * the parse options. Each entry records the SHA-256 hashes of the file and of
+ * the definition files it includes (directly or indirectly), the entry is only
+ * used if none of them has changed. If the cache is full, the least recently
+ * used entry is evicted.
+ */
+public final class DefinitionFileCache {
+
+	public static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+	private static final DefinitionFileCache DEFAULT = new DefinitionFileCache();
+
+	private final int maximumSize;
+	private final Map<String, Entry> store;
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+	private final AtomicInteger evictions = new AtomicInteger();
+
+	public DefinitionFileCache() {
+		this(DEFAULT_MAXIMUM_SIZE);
+	}
+
+	/**
+	 * @param maximumSize
+	 *            the maximum number of cached definition files
+	 */
+	public DefinitionFileCache(final int maximumSize) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("Invalid maximum size: " + maximumSize);
+		}
+		this.maximumSize = maximumSize;
+		this.store = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+				if (size() > DefinitionFileCache.this.maximumSize) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * @return the cache shared by all parsers of this process
+	 */
+	public static DefinitionFileCache getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @param directory
+	 *            the directory in which the definition files included by the
+	 *            file are looked up
+	 * @return a copy of the cached definitions of the file or
+	 *         <code>null</code> if the file has not been cached or has changed
+	 */
+	IDefinitions getDefinitions(final String path, final File directory, final ParseOptions parseOptions) {
+		final Entry entry = store.get(getKey(path, parseOptions));
+		if (entry == null || !entry.isValid(directory)) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.definitions.copy();
+	}
+
+	/**
+	 * Caches a copy of the definitions if they belong to a file which has
+	 * been found, i.e., the path is absolute, and all included definition
+	 * files are known.
+	 *
+	 * @param content
+	 *            the content of the file which has been parsed
+	 */
+	void storeDefinitions(final String path, final File directory, final ParseOptions parseOptions,
+			final String content, final IDefinitions definitions) {
+		if (!(definitions instanceof Definitions) || !new File(path).isAbsolute()) {
+			return;
+		}
+		try {
+			final Map<String, String> dependencies = new TreeMap<>();
+			if (!ParseCache.collectDependencies(definitions, dependencies)) {
+				return;
+			}
+			dependencies.put(path, ParseCache.sha256(content));
+			// the included definition files are looked up relative to the
+			// directory, files without includes can be shared between all
+			// directories
+			final String directoryPath = dependencies.size() == 1 ? null : getCanonicalPath(directory);
+			store.put(getKey(path, parseOptions),
+					new Entry(((Definitions) definitions).copy(), dependencies, directoryPath));
+		} catch (IOException e) {
+			// the cache is only an optimisation
+		}
+	}
+
+	/**
+	 * @return the number of cached definition files
+	 */
+	public int size() {
+		return store.size();
+	}
+
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * @return the number of definition files which have been taken from the
+	 *         cache
+	 */
+	public int getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of definition files which have not been found in
+	 *         the cache or have changed
+	 */
+	public int getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of definition files which have been removed because
+	 *         the cache was full
+	 */
+	public int getEvictionCount() {
+		return evictions.get();
+	}
+
+	public void clear() {
+		store.clear();
+	}
+
+	private static String getKey(final String path, final ParseOptions parseOptions) {
+		// the options which change the result of parsing a definition file
+		return path + '\n' + parseOptions.getGrammar().getClass().getName() + '\n'
+				+ parseOptions.isRestrictProverExpressions() + '\n' + parseOptions.isRestrictPrimedIdentifiers();
+	}
+
+	private static String getCanonicalPath(final File directory) throws IOException {
+		return directory == null ? "" : directory.getCanonicalPath();
+	}
+
+	private static final class Entry {
+		// never modified, only copied
+		private final Definitions definitions;
+		// canonical paths and hashes of the file and the included files
+		private final Map<String, String> dependencies;
+		// null if the file does not include other definition files
+		private final String directory;
+
+		Entry(final Definitions definitions, final Map<String, String> dependencies, final String directory) {
+			this.definitions = definitions;
+			this.dependencies = dependencies;
+			this.directory = directory;
+		}
+
+		boolean isValid(final File directory) {
+			try {
+				if (this.directory != null && !this.directory.equals(getCanonicalPath(directory))) {
+					return false;
+				}
+				for (final Map.Entry<String, String> dependency : dependencies.entrySet()) {
+					final File file = new File(dependency.getKey());
+					if (!file.isFile() || !dependency.getValue().equals(ParseCache.sha256(Utils.readFile(file)))) {
+						return false;
+					}
+				}
+				return true;
+			} catch (IOException e) {
+				return false;
+			}
+		}
+	}
+}
@@ -6,11 +6,24 @@ import java.util.Map;
 public class DefinitionTypes {
 
 	private final Map<String, Definitions.Type> types = new HashMap<String, Definitions.Type>();
+	// looked up if a definition has no type here, never modified, may be null
+	private final DefinitionTypes parent;
 
 	public DefinitionTypes() {
+		this.parent = null;
+	}
+
+	/**
+	 * Creates definition types which fall back to the types of the parent.
+	 * The parent is shared, not copied, and must not be modified while this
+	 * instance is used.
+	 */
+	public DefinitionTypes(final DefinitionTypes parent) {
+		this.parent = parent;
 	}
 
 	public DefinitionTypes(final Map<String, Definitions.Type> newTypes) {
+		this();
 		addAll(newTypes);
 	}
 
@@ -26,13 +39,23 @@ public class DefinitionTypes {
 	public Definitions.Type getType(final String definitionName) {
 		if (types.containsKey(definitionName)) {
 			return types.get(definitionName);
+		} else if (parent != null) {
+			return parent.getType(definitionName);
 		} else {
 			return IDefinitions.Type.NoDefinition;
 		}
 	}
+
+	/**
+	 * @return <code>true</code> if types have been added to this instance,
+	 *         the types of the parent are not taken into account
+	 */
+	boolean hasOwnTypes() {
+		return !types.isEmpty();
+	}
 	
 	@Override
 	public String toString(){
-		return types.toString();
+		return parent == null ? types.toString() : types.toString() + " + " + parent.toString();
 	}
 }
@@ -13,6 +13,7 @@ import de.be4.classicalb.core.parser.node.AExpressionDefinitionDefinition;
 import de.be4.classicalb.core.parser.node.APredicateDefinitionDefinition;
 import de.be4.classicalb.core.parser.node.ASubstitutionDefinitionDefinition;
 import de.be4.classicalb.core.parser.node.PDefinition;
+import de.be4.classicalb.core.parser.util.NodeCloner;
 
 public class Definitions extends IDefinitions {
 
@@ -198,6 +199,53 @@ public class Definitions extends IDefinitions {
 		types.put(key, type);
 	}
 
+	File getFile() {
+		return file;
+	}
+
+	/**
+	 * Creates a deep copy whose definitions can be modified and attached to
+	 * another AST without affecting this instance. Referenced definitions
+	 * which are not {@link Definitions} are shared.
+	 */
+	Definitions copy() {
+		final Definitions copy = new Definitions(file);
+		for (final IDefinitions referenced : referencedDefinitions) {
+			copy.addDefinitions(referenced instanceof Definitions ? ((Definitions) referenced).copy() : referenced);
+		}
+		for (final Map.Entry<String, PDefinition> entry : definitionsMap.entrySet()) {
+			copy.definitionsMap.put(entry.getKey(), NodeCloner.cloneNode(entry.getValue()));
+		}
+		copy.types.putAll(types);
+		return copy;
+	}
+
+	/**
+	 * Replaces the referenced definition files by copies. The definitions of
+	 * the files can then be attached to the AST of a machine without removing
+	 * them from the ASTs of other machines using the same files.
+	 */
+	public void copyReferencedDefinitions() {
+		for (int i = 0; i < referencedDefinitions.size(); i++) {
+			final IDefinitions referenced = referencedDefinitions.get(i);
+			if (referenced instanceof Definitions) {
+				referencedDefinitions.set(i, ((Definitions) referenced).copy());
+			}
+		}
+	}
+
+	/*
+	 * the definitions of this file without the definitions of referenced
+	 * definition files (used by ParseCache)
+	 */
+	Map<String, PDefinition> getOwnDefinitions() {
+		return definitionsMap;
+	}
+
+	Type getOwnType(final String defName) {
+		return types.get(defName);
+	}
+
 	@Override
 	public String toString() {
 		return definitionsMap.keySet().toString();
@@ -53,14 +53,14 @@ public class FastReadTransformer {
 	}
 
 	private void write(ListPrologTerm lp) {
-		if (lp.isEmpty())
-			sb.append(']');
-		else {
+		// each element is prefixed by '[', the elements are visited by index
+		// instead of creating the tail of each sublist
+		final int size = lp.size();
+		for (int i = 0; i < size; i++) {
 			sb.append('[');
-			fastwrite(lp.head());
-			ListPrologTerm tail = lp.tail();
-			write(tail);
+			fastwrite(lp.get(i));
 		}
+		sb.append(']');
 	}
 
 	private void write(VariablePrologTerm vp) {
@@ -72,7 +72,11 @@ public class FastReadTransformer {
 
 	private void write(IntegerPrologTerm ip) {
 		sb.append("I");
-		sb.append(ip.getValue());
+		if (ip.fitsInLong()) {
+			sb.append(ip.longValue());
+		} else {
+			sb.append(ip.getValue());
+		}
 		sb.append(ZERO);
 	}
 
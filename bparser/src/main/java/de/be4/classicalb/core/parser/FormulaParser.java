@@ -0,0 +1,111 @@
+package de.be4.classicalb.core.parser;
+
+import java.io.IOException;
+
+import de.be4.classicalb.core.parser.exceptions.BCompoundException;
+import de.be4.classicalb.core.parser.lexer.LexerException;
+import de.be4.classicalb.core.parser.node.Start;
+
+/**
+ * A reusable session for parsing many formulas, e.g. in a REPL or for the
+ * formulas sent by ProB. In contrast to creating a new {@link BParser} for
+ * each formula, the parser is kept and the types of the definitions context
+ * are computed once and then shared by all parses instead of being copied for
+ * each of them. With a large context this makes up most of the time needed to
+ * parse a short formula.
+ *
+ * If the definitions context is changed, {@link #definitionsChanged()} has to
+ * be called before the next formula is parsed.
+ *
+ * A session is not thread-safe, it must only be used by one thread at a time.
+ * Use a {@link FormulaParserPool} to parse formulas in several threads.
+ */
+public class FormulaParser {
+
+	private static final IFileContentProvider NO_CONTENT = new NoContentProvider();
+
+	private final BParser parser = new BParser();
+	// null if there is no definitions context
+	private final IDefinitions context;
+	// null if not yet computed
+	private DefinitionTypes contextTypes;
+
+	/**
+	 * Creates a session without definitions context.
+	 */
+	public FormulaParser() {
+		this(null, null);
+	}
+
+	public FormulaParser(final IDefinitions context) {
+		this(context, null);
+	}
+
+	FormulaParser(final IDefinitions context, final DefinitionTypes contextTypes) {
+		this.context = context;
+		this.contextTypes = contextTypes;
+	}
+
+	/**
+	 * Has to be called if definitions have been added to or removed from the
+	 * definitions context of this session.
+	 */
+	public void definitionsChanged() {
+		contextTypes = null;
+	}
+
+	public Start parseFormula(final String input) throws BCompoundException {
+		return parse(BParser.FORMULA_PREFIX + "\n" + input);
+	}
+
+	public Start parseExpression(final String input) throws BCompoundException {
+		return parse(BParser.EXPRESSION_PREFIX + "\n" + input);
+	}
+
+	public Start parseSubstitution(final String input) throws BCompoundException {
+		return parse(BParser.SUBSTITUTION_PREFIX + "\n" + input);
+	}
+
+	public Start parseTransition(final String input) throws BCompoundException {
+		return parse(BParser.OPERATION_PATTERN_PREFIX + "\n" + input);
+	}
+
+	public Start parsePredicate(final String input) throws BCompoundException {
+		return parse(BParser.PREDICATE_PREFIX + "\n" + input);
+	}
+
+	/**
+	 * Parses a formula including its prefix, e.g. {@link BParser#PREDICATE_PREFIX}.
+	 *
+	 * @see BParser#parse(String, boolean, IFileContentProvider)
+	 */
+	public Start parse(final String input) throws BCompoundException {
+		prepare();
+		return parser.parse(input, false, NO_CONTENT);
+	}
+
+	/**
+	 * Parses a formula including its prefix in which identifiers may be used as
+	 * predicates.
+	 *
+	 * @see BParser#eparse(String, IDefinitions)
+	 */
+	public Start eparse(final String input) throws BCompoundException, LexerException, IOException {
+		prepare();
+		return parser.eparse(input, parser.getDefinitions());
+	}
+
+	private void prepare() {
+		parser.getDoneDefFiles().clear();
+		if (context == null) {
+			// the parser adds the definitions of the formula, they must not be
+			// visible in the next one
+			parser.setDefinitions(new Definitions());
+		} else {
+			if (contextTypes == null) {
+				contextTypes = new DefinitionTypes(context.getTypes());
+			}
+			parser.setDefinitions(context, contextTypes);
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package de.be4.classicalb.core.parser;
+
+/**
+ * Provides a {@link FormulaParser} for each thread. All of them share the
+ * same definitions context, whose types are computed only once for all
+ * threads. The context must not be changed while the pool is used, create a
+ * new pool instead.
+ *
+ * The parsers are kept by the threads as long as they are alive, even if the
+ * pool is no longer used. Hence a pool should live as long as its threads,
+ * e.g., in a static field. Sessions whose context changes should keep their
+ * own {@link FormulaParser} instead.
+ */
+public final class FormulaParserPool {
+
+	// null if there is no definitions context
+	private final IDefinitions context;
+	private final DefinitionTypes contextTypes;
+
+	private final ThreadLocal<FormulaParser> parsers = new ThreadLocal<FormulaParser>() {
+		@Override
+		protected FormulaParser initialValue() {
+			return new FormulaParser(context, contextTypes);
+		}
+	};
+
+	/**
+	 * Creates a pool without definitions context.
+	 */
+	public FormulaParserPool() {
+		this.context = null;
+		this.contextTypes = null;
+	}
+
+	public FormulaParserPool(final IDefinitions context) {
+		this.context = context;
+		this.contextTypes = new DefinitionTypes(context.getTypes());
+	}
+
+	/**
+	 * @return the session of the calling thread, which must not be passed to
+	 *         other threads
+	 */
+	public FormulaParser get() {
+		return parsers.get();
+	}
+}
@@ -0,0 +1,283 @@
+package de.be4.classicalb.core.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.be4.classicalb.core.parser.IDefinitions.Type;
+import de.be4.classicalb.core.parser.exceptions.BCompoundException;
+import de.be4.classicalb.core.parser.node.Node;
+import de.be4.classicalb.core.parser.node.PDefinition;
+import de.be4.classicalb.core.parser.node.Start;
+import de.be4.classicalb.core.parser.util.NodeSerializer;
+import de.be4.classicalb.core.parser.util.Utils;
+
+/**
+ * A persistent cache for parsed machines and definition files. For each parsed
+ * input, the AST (after all transformations and checks) and the definitions of
+ * the input are stored in a file in the cache directory. The name of the file
+ * is the SHA-256 hash of the input and the parse options. Thus, a changed
+ * machine gets a new entry.
+ *
+ * Each entry also records the definition files which have been loaded
+ * (directly or indirectly) together with the hashes of their contents. The
+ * entry is only used if none of these files has changed, i.e., changing a
+ * definition file invalidates all entries which depend on it.
+ *
+ * If an entry cannot be read for any reason, the input is parsed as usual.
+ */
+public class ParseCache {
+
+	private static final int MAGIC = 0x42415354;
+	private static final int FORMAT_VERSION = 3;
+	private static final String FILE_EXTENSION = ".bast";
+
+	private final File directory;
+	private final AtomicInteger hits = new AtomicInteger();
+
+	public ParseCache(final File directory) {
+		this.directory = directory;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return the number of inputs which have been loaded from the cache
+	 */
+	public int getHitCount() {
+		return hits.get();
+	}
+
+	/*
+	 * Only inputs parsed into fresh definitions can be cached, otherwise the
+	 * AST may depend on definitions which are not known to the cache.
+	 */
+	static boolean isCacheable(final IDefinitions definitions) {
+		return definitions instanceof Definitions && definitions.getDefinitionNames().isEmpty();
+	}
+
+	/**
+	 * Loads the AST of the input from the cache. On success, the definitions
+	 * of the input are added to the given definitions.
+	 *
+	 * @return the AST or <code>null</code> if there is no valid entry
+	 */
+	Start load(final String input, final File inputDirectory, final IFileContentProvider contentProvider,
+			final ParseOptions parseOptions, final List<String> doneDefFiles, final boolean debugOutput,
+			final Definitions definitions) {
+		final File entry;
+		try {
+			entry = getEntryFile(input, inputDirectory, parseOptions);
+		} catch (IOException e) {
+			return null;
+		}
+		if (!entry.isFile()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+				return null;
+			}
+			final int dependencyCount = in.readInt();
+			for (int i = 0; i < dependencyCount; i++) {
+				final File file = new File(in.readUTF());
+				final String hash = in.readUTF();
+				if (!file.isFile() || !hash.equals(sha256(Utils.readFile(file)))) {
+					return null;
+				}
+			}
+			final int defFileCount = in.readInt();
+			final Map<String, String> defFiles = new LinkedHashMap<>();
+			for (int i = 0; i < defFileCount; i++) {
+				final String fileName = in.readUTF();
+				final String path = in.readUTF();
+				if (doneDefFiles.contains(fileName)
+						|| !path.equals(getCanonicalPath(contentProvider, inputDirectory, fileName))) {
+					return null;
+				}
+				defFiles.put(fileName, path);
+			}
+
+			final NodeSerializer.Reader reader = new NodeSerializer.Reader(in);
+			final Start ast = (Start) reader.read();
+			final int definitionCount = in.readInt();
+			final List<String> keys = new ArrayList<>(definitionCount);
+			final List<Type> types = new ArrayList<>(definitionCount);
+			final List<PDefinition> nodes = new ArrayList<>(definitionCount);
+			for (int i = 0; i < definitionCount; i++) {
+				keys.add(reader.readString());
+				types.add(Type.valueOf(reader.readString()));
+				final int index = in.readInt();
+				nodes.add((PDefinition) (index < 0 ? reader.read() : reader.getNode(index)));
+			}
+
+			final List<IDefinitions> referencedDefinitions = new ArrayList<>();
+			for (final String fileName : defFiles.keySet()) {
+				referencedDefinitions.add(PreParser.loadDefinitionFile(fileName, contentProvider, inputDirectory,
+						doneDefFiles, parseOptions, debugOutput));
+			}
+			for (final IDefinitions referenced : referencedDefinitions) {
+				definitions.addDefinitions(referenced);
+			}
+			for (int i = 0; i < definitionCount; i++) {
+				definitions.addDefinition(nodes.get(i), types.get(i), keys.get(i));
+			}
+			hits.incrementAndGet();
+			return ast;
+		} catch (IllegalStateException e) {
+			// the node classes do not match the serializer
+			throw e;
+		} catch (IOException | BCompoundException | RuntimeException e) {
+			// the entry is corrupt or a definition file cannot be loaded
+			// anymore: parse the input to get the usual result
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the AST and the definitions of an input which has been parsed
+	 * successfully. Errors are ignored, the input will just be parsed again
+	 * next time.
+	 */
+	void store(final String input, final File inputDirectory, final IFileContentProvider contentProvider,
+			final ParseOptions parseOptions, final Start ast, final List<String> definitionFileNames,
+			final Definitions definitions) {
+		File tmp = null;
+		try {
+			final Map<String, String> dependencies = new TreeMap<>();
+			if (!collectDependencies(definitions, dependencies)) {
+				return;
+			}
+			final File entry = getEntryFile(input, inputDirectory, parseOptions);
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				return;
+			}
+			tmp = File.createTempFile("entry", ".tmp", directory);
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(dependencies.size());
+				for (final Map.Entry<String, String> dependency : dependencies.entrySet()) {
+					out.writeUTF(dependency.getKey());
+					out.writeUTF(dependency.getValue());
+				}
+				out.writeInt(definitionFileNames.size());
+				for (final String fileName : definitionFileNames) {
+					out.writeUTF(fileName);
+					out.writeUTF(getCanonicalPath(contentProvider, inputDirectory, fileName));
+				}
+
+				final NodeSerializer.Writer writer = new NodeSerializer.Writer(out);
+				writer.write(ast);
+				final Map<String, PDefinition> ownDefinitions = new TreeMap<>(definitions.getOwnDefinitions());
+				out.writeInt(ownDefinitions.size());
+				for (final Map.Entry<String, PDefinition> definition : ownDefinitions.entrySet()) {
+					writer.writeString(definition.getKey());
+					writer.writeString(definitions.getOwnType(definition.getKey()).name());
+					final Node node = definition.getValue();
+					final int index = writer.getIndex(node);
+					out.writeInt(index);
+					if (index < 0) {
+						writer.write(node);
+					}
+				}
+			}
+			try {
+				Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IllegalStateException e) {
+			// the node classes do not match the serializer
+			if (tmp != null) {
+				tmp.delete();
+			}
+			throw e;
+		} catch (IOException | RuntimeException e) {
+			// the cache is only an optimisation
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+	}
+
+	/*
+	 * collects the canonical paths and hashes of all definition files which
+	 * have been loaded (directly or indirectly)
+	 */
+	static boolean collectDependencies(final IDefinitions definitions, final Map<String, String> result)
+			throws IOException {
+		for (final IDefinitions referenced : definitions.referencedDefinitions) {
+			if (!(referenced instanceof Definitions) || ((Definitions) referenced).getFile() == null) {
+				return false;
+			}
+			final File file = ((Definitions) referenced).getFile();
+			final String path = file.getCanonicalPath();
+			if (!result.containsKey(path)) {
+				result.put(path, sha256(Utils.readFile(file)));
+				if (!collectDependencies(referenced, result)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static String getCanonicalPath(final IFileContentProvider contentProvider, final File inputDirectory,
+			final String fileName) throws IOException {
+		final File file = contentProvider.getFile(inputDirectory, fileName);
+		return file == null ? "" : file.getCanonicalPath();
+	}
+
+	private File getEntryFile(final String input, final File inputDirectory, final ParseOptions parseOptions)
+			throws IOException {
+		final StringBuilder key = new StringBuilder();
+		key.append(FORMAT_VERSION).append('\n');
+		key.append(BParser.getVersion()).append('\n');
+		key.append(BParser.getGitSha()).append('\n');
+		key.append(BParser.getBuildRevision()).append('\n');
+		key.append(parseOptions.isRestrictProverExpressions()).append('\n');
+		key.append(parseOptions.isRestrictPrimedIdentifiers()).append('\n');
+		key.append(parseOptions.getGrammar().getClass().getName()).append('\n');
+		// definition files are resolved relative to the directory
+		key.append(inputDirectory == null ? "" : inputDirectory.getCanonicalPath()).append('\n');
+		key.append(input);
+		return new File(directory, sha256(key.toString()) + FILE_EXTENSION);
+	}
+
+	static String sha256(final String text) {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has to support SHA-256
+			throw new IllegalStateException(e);
+		}
+		final byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+		final StringBuilder sb = new StringBuilder(hash.length * 2);
+		for (final byte b : hash) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+}
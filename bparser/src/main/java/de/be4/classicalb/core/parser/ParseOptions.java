@@ -20,8 +20,20 @@ public class ParseOptions {
 	 * to false in order to parse PO files of AtelierB.
 	 */
 	private boolean restrictPrimedIdentifiers = true;
+
+	/*
+	 * Scan the input only once with the main lexer and reuse the buffered
+	 * tokens for the preparser and the main parser (see TokenBuffer).
+	 */
+	private boolean singlePassLexing = false;
 	private IGrammar grammar = new DefaultGrammar();
 
+	/*
+	 * Persistent cache for parsed machines and definition files (see
+	 * ParseCache). No caching is done if null.
+	 */
+	private ParseCache parseCache = null;
+
 	public boolean isRestrictProverExpressions() {
 		return restrictProverExpressions;
 	}
@@ -38,6 +50,14 @@ public class ParseOptions {
 		this.restrictPrimedIdentifiers = restrictPrimedIdentifiers;
 	}
 
+	public boolean isSinglePassLexing() {
+		return singlePassLexing;
+	}
+
+	public void setSinglePassLexing(boolean singlePassLexing) {
+		this.singlePassLexing = singlePassLexing;
+	}
+
 	public IGrammar getGrammar() {
 		return grammar;
 	}
@@ -46,4 +66,12 @@ public class ParseOptions {
 		this.grammar = grammar;
 	}
 
+	public ParseCache getParseCache() {
+		return parseCache;
+	}
+
+	public void setParseCache(ParseCache parseCache) {
+		this.parseCache = parseCache;
+	}
+
 }
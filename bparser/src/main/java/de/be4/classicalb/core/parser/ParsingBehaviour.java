@@ -15,6 +15,10 @@ public class ParsingBehaviour {
 	private boolean fastPrologOutput = false;
 	private File outputFile;
 	private boolean machineNameMustMatchFileName = false;
+	private File cacheDirectory;
+	private boolean parallelLoading = false;
+	private int parallelLoadingThreads = 0;
+	private boolean streamingPrologOutput = false;
 
 	public boolean isPrologOutput() {
 		return prologOutput;
@@ -104,4 +108,71 @@ public class ParsingBehaviour {
 		this.machineNameMustMatchFileName = machineNameMustMatchFileName;
 	}
 
+	public File getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	/**
+	 * Enables the persistent cache for parsed machines and definition files
+	 * (see {@link ParseCache}).
+	 * 
+	 * @param cacheDirectory
+	 *            the directory of the cache or <code>null</code> to disable
+	 *            the cache
+	 */
+	public void setCacheDirectory(File cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	public boolean isParallelLoading() {
+		return parallelLoading;
+	}
+
+	/**
+	 * Parse the machines referenced by the main machine concurrently (see
+	 * {@link de.be4.classicalb.core.parser.analysis.prolog.RecursiveMachineLoader}).
+	 * 
+	 * @param parallelLoading
+	 *            <code>true</code> to parse the machines concurrently (see
+	 *            {@link #setParallelLoadingThreads(int)})
+	 */
+	public void setParallelLoading(boolean parallelLoading) {
+		this.parallelLoading = parallelLoading;
+	}
+
+	public int getParallelLoadingThreads() {
+		return parallelLoadingThreads;
+	}
+
+	/**
+	 * The number of threads used to parse the referenced machines if
+	 * {@link #isParallelLoading()} is set.
+	 * 
+	 * @param parallelLoadingThreads
+	 *            the number of threads or 0 to use one thread per available
+	 *            processor
+	 */
+	public void setParallelLoadingThreads(int parallelLoadingThreads) {
+		if (parallelLoadingThreads < 0) {
+			throw new IllegalArgumentException("Invalid number of threads: " + parallelLoadingThreads);
+		}
+		this.parallelLoadingThreads = parallelLoadingThreads;
+	}
+
+	public boolean isStreamingPrologOutput() {
+		return streamingPrologOutput;
+	}
+
+	/**
+	 * Print each machine as soon as it has been loaded instead of keeping all
+	 * machines in memory (see
+	 * {@link de.be4.classicalb.core.parser.analysis.prolog.RecursiveMachineLoader#loadAndPrintAllMachines}).
+	 * 
+	 * @param streamingPrologOutput
+	 *            <code>true</code> to enable streaming
+	 */
+	public void setStreamingPrologOutput(boolean streamingPrologOutput) {
+		this.streamingPrologOutput = streamingPrologOutput;
+	}
+
 }
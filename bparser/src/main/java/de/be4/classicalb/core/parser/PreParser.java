@@ -3,14 +3,13 @@ package de.be4.classicalb.core.parser;
 import java.io.File;
 import java.io.IOException;
 import java.io.PushbackReader;
-import java.io.Reader;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -29,16 +28,18 @@ import de.be4.classicalb.core.parser.node.AExpressionParseUnit;
 import de.be4.classicalb.core.parser.node.AFunctionExpression;
 import de.be4.classicalb.core.parser.node.AIdentifierExpression;
 import de.be4.classicalb.core.parser.node.APredicateParseUnit;
-import de.be4.classicalb.core.parser.node.EOF;
 import de.be4.classicalb.core.parser.node.PExpression;
 import de.be4.classicalb.core.parser.node.PParseUnit;
 import de.be4.classicalb.core.parser.node.TIdentifierLiteral;
+import de.be4.classicalb.core.parser.node.TKwSubstitution;
+import de.be4.classicalb.core.parser.util.DependencyGraph;
 import de.be4.classicalb.core.parser.util.Utils;
 import de.be4.classicalb.core.preparser.lexer.LexerException;
 import de.be4.classicalb.core.preparser.node.Start;
 import de.be4.classicalb.core.preparser.node.Token;
 import de.be4.classicalb.core.preparser.parser.Parser;
 import de.be4.classicalb.core.preparser.parser.ParserException;
+import de.hhu.stups.sablecc.patch.IToken;
 
 public class PreParser {
 
@@ -52,10 +53,24 @@ public class PreParser {
 	private final List<String> doneDefFiles;
 	private final String modelFileName;
 	private final File directory;
+	private final List<String> definitionFileNames = new ArrayList<>();
 
 	public PreParser(final PushbackReader pushbackReader, final IFileContentProvider contentProvider,
 			final List<String> doneDefFiles, final String modelFileName, final File directory,
 			ParseOptions parseOptions, IDefinitions definitions) {
+		this(pushbackReader, contentProvider, doneDefFiles, modelFileName, directory, parseOptions, definitions,
+				null);
+	}
+
+	/**
+	 * @param definitionsTypes
+	 *            the types of <code>definitions</code>, used as parent of the
+	 *            definition types instead of copying the types of the
+	 *            definitions, may be <code>null</code>
+	 */
+	PreParser(final PushbackReader pushbackReader, final IFileContentProvider contentProvider,
+			final List<String> doneDefFiles, final String modelFileName, final File directory,
+			ParseOptions parseOptions, IDefinitions definitions, DefinitionTypes definitionsTypes) {
 		this.pushbackReader = pushbackReader;
 		this.contentProvider = contentProvider;
 		this.doneDefFiles = doneDefFiles;
@@ -63,8 +78,12 @@ public class PreParser {
 		this.directory = directory;
 		this.parseOptions = parseOptions;
 		this.defFileDefinitions = definitions;
-		this.definitionTypes = new DefinitionTypes();
-		definitionTypes.addAll(definitions.getTypes());
+		if (definitionsTypes == null) {
+			this.definitionTypes = new DefinitionTypes();
+			definitionTypes.addAll(definitions.getTypes());
+		} else {
+			this.definitionTypes = new DefinitionTypes(definitionsTypes);
+		}
 	}
 
 	public void setDebugOutput(final boolean debugOutput) {
@@ -96,23 +115,19 @@ public class PreParser {
 
 		evaluateDefinitionFiles(collector.getFileDefinitions());
 
+		final Map<Token, TokenBuffer> rhsTokens = lexDefinitionRhs(collector.getDefinitions());
+
 		List<Token> sortedDefinitionList = sortDefinitionsByTopologicalOrderAndCheckForCycles(
-				collector.getDefinitions());
+				collector.getDefinitions(), rhsTokens);
 
-		evaluateTypes(sortedDefinitionList, collector.getDefinitions());
+		evaluateTypes(sortedDefinitionList, collector.getDefinitions(), rhsTokens);
 
 	}
 
 	private void evaluateDefinitionFiles(final List<Token> list)
 			throws PreParseException, BException, BCompoundException {
 
-		IDefinitionFileProvider cache = null;
-		if (contentProvider instanceof IDefinitionFileProvider) {
-			cache = (IDefinitionFileProvider) contentProvider;
-		}
-
 		for (final Token fileNameToken : list) {
-			final List<String> newDoneList = new ArrayList<String>(doneDefFiles);
 			try {
 				final String fileName = fileNameToken.getText();
 				if (doneDefFiles.contains(fileName)) {
@@ -125,29 +140,9 @@ public class PreParser {
 							"Cyclic references in definition files: " + sb.toString());
 				}
 
-				IDefinitions definitions;
-				if (cache != null && cache.getDefinitions(fileName) != null) {
-					definitions = cache.getDefinitions(fileName);
-				} else {
-					final String content = contentProvider.getFileContent(directory, fileName);
-					newDoneList.add(fileName);
-					final File file = contentProvider.getFile(directory, fileName);
-					String filePath = fileName;
-					if (file != null) {
-						filePath = file.getCanonicalPath();
-					}
-					final BParser parser = new BParser(filePath, parseOptions);
-					parser.setDirectory(directory);
-					parser.setDoneDefFiles(newDoneList);
-					parser.setDefinitions(new Definitions(file));
-					parser.parse(content, debugOutput, contentProvider);
-
-					definitions = parser.getDefinitions();
-
-					if (cache != null) {
-						cache.storeDefinition(fileName, definitions);
-					}
-				}
+				final IDefinitions definitions = loadDefinitionFile(fileName, contentProvider, directory, doneDefFiles,
+						parseOptions, debugOutput);
+				definitionFileNames.add(fileName);
 				defFileDefinitions.addDefinitions(definitions);
 				definitionTypes.addAll(definitions.getTypes());
 			} catch (final IOException e) {
@@ -159,66 +154,129 @@ public class PreParser {
 		}
 	}
 
-	private void evaluateTypes(final List<Token> sortedDefinitionList, final Map<Token, Token> definitions)
-			throws PreParseException {
-		// use linked list as we rely on pop() and push()
-		final LinkedList<Token> remainingDefinitions = new LinkedList<>(sortedDefinitionList);
-		final LinkedList<Token> currentlyUnparseableDefinitions = new LinkedList<Token>();
-		Set<String> todoDefs = new HashSet<String>();
-		for (Token token : remainingDefinitions) {
+	/**
+	 * Returns the definitions of a definition file, either from the cache of
+	 * the content provider or by parsing the file.
+	 */
+	static IDefinitions loadDefinitionFile(final String fileName, final IFileContentProvider contentProvider,
+			final File directory, final List<String> doneDefFiles, final ParseOptions parseOptions,
+			final boolean debugOutput) throws IOException, BCompoundException {
+		IDefinitionFileProvider cache = null;
+		File file = null;
+		String filePath = fileName;
+		if (contentProvider instanceof IDefinitionFileProvider) {
+			cache = (IDefinitionFileProvider) contentProvider;
+			// the definitions are cached by their canonical path, definition
+			// files with the same name in different directories must not be
+			// mixed up
+			file = contentProvider.getFile(directory, fileName);
+			if (file != null) {
+				filePath = file.getCanonicalPath();
+			}
+			if (cache instanceof CachingDefinitionFileProvider) {
+				final IDefinitions cached = ((CachingDefinitionFileProvider) cache).getDefinitions(filePath,
+						directory, parseOptions);
+				if (cached != null) {
+					return cached;
+				}
+			} else if (cache.getDefinitions(filePath) != null) {
+				return cache.getDefinitions(filePath);
+			}
+		}
+		final String content = contentProvider.getFileContent(directory, fileName);
+		final List<String> newDoneList = new ArrayList<String>(doneDefFiles);
+		newDoneList.add(fileName);
+		if (cache == null) {
+			file = contentProvider.getFile(directory, fileName);
+			if (file != null) {
+				filePath = file.getCanonicalPath();
+			}
+		}
+		final BParser parser = new BParser(filePath, parseOptions);
+		parser.setDirectory(directory);
+		parser.setDoneDefFiles(newDoneList);
+		parser.setDefinitions(new Definitions(file));
+		parser.parse(content, debugOutput, contentProvider);
+
+		final IDefinitions definitions = parser.getDefinitions();
+		if (cache instanceof CachingDefinitionFileProvider) {
+			((CachingDefinitionFileProvider) cache).storeDefinition(filePath, directory, parseOptions, content,
+					definitions);
+		} else if (cache != null) {
+			cache.storeDefinition(filePath, definitions);
+		}
+		return definitions;
+	}
+
+	/**
+	 * @return the names of the definition files referenced by the parsed
+	 *         input, in the order in which they have been loaded
+	 */
+	public List<String> getDefinitionFileNames() {
+		return definitionFileNames;
+	}
+
+	private void evaluateTypes(final List<Token> sortedDefinitionList, final Map<Token, Token> definitions,
+			final Map<Token, TokenBuffer> rhsTokens) throws PreParseException {
+		final Set<String> todoDefs = new HashSet<String>();
+		for (Token token : sortedDefinitionList) {
 			todoDefs.add(token.getText());
 		}
 		// use main parser for the rhs of each definition to determine type
-		// if a definition can not be typed this way, it may be due to another
-		// definition that is not yet parser (because it appears later in the
-		// source code)
-		// in this case, the definition is appended to the list again
-		// the algorithm terminates if the queue is empty or if no definition
-		// has been parsed
-		boolean oneParsed = true;
-		while (oneParsed) {
-			oneParsed = false;
-
-			while (!remainingDefinitions.isEmpty()) {
-				final Token definition = remainingDefinitions.pop();
-
-				final Token defRhs = definitions.get(definition);
-				Definitions.Type type = null;
-				DefinitionType definitionType = determineType(definition, defRhs, todoDefs);
-				type = definitionType.type;
-				if (type != null) {
-					todoDefs.remove(definition.getText());
-					oneParsed = true;
-					definitionTypes.addTyping(definition.getText(), type);
-					// types.addTyping(definition.getText(), type);
+		// the definitions are sorted topologically, i.e., all definitions used
+		// in the rhs have already been typed. hence, each rhs is parsed only
+		// once (twice if it is not a formula) and a definition that cannot be
+		// typed is an error.
+		for (final Token definition : sortedDefinitionList) {
+			final Token defRhs = definitions.get(definition);
+			final DefinitionType definitionType = determineType(definition, defRhs, rhsTokens.get(definition),
+					todoDefs);
+			if (definitionType.type == null) {
+				if (definitionType.errorMessage != null) {
+					throw new PreParseException(definitionType.errorMessage + " in file: " + modelFileName);
 				} else {
-					currentlyUnparseableDefinitions.push(definition);
+					// fall back message
+					throw new PreParseException(definition, "[" + definition.getLine() + "," + definition.getPos()
+							+ "] expecting wellformed expression, predicate or substitution as DEFINITION body (DEFINITION arguments assumed to be expressions)");
 				}
 			}
-
-			remainingDefinitions.addAll(currentlyUnparseableDefinitions);
-			currentlyUnparseableDefinitions.clear();
+			todoDefs.remove(definition.getText());
+			definitionTypes.addTyping(definition.getText(), definitionType.type);
 		}
+	}
 
-		if (!remainingDefinitions.isEmpty()) {
-			final Token definition = remainingDefinitions.pop();
-			final Token defRhs = definitions.get(definition);
-			DefinitionType definitionType = determineType(definition, defRhs, todoDefs);
-			if (definitionType.errorMessage != null) {
-				throw new PreParseException(definitionType.errorMessage + " in file: " + modelFileName);
-				// throw new BParseException(definitionType.errorToken,
-				// definitionType.errorMessage + " in file: "
-				// + modelFileName);
-			} else {
-				// fall back message
-				throw new PreParseException(definition, "[" + definition.getLine() + "," + definition.getPos()
-						+ "] expecting wellformed expression, predicate or substitution as DEFINITION body (DEFINITION arguments assumed to be expressions)");
+	/*
+	 * Lexes the rhs of each definition once. The tokens are used to determine
+	 * the dependencies and to parse the rhs.
+	 */
+	private Map<Token, TokenBuffer> lexDefinitionRhs(final Map<Token, Token> definitions) throws PreParseException {
+		final Map<Token, TokenBuffer> result = new HashMap<>();
+		for (Entry<Token, Token> entry : definitions.entrySet()) {
+			final Token nameToken = entry.getKey();
+			final Token rhsToken = entry.getValue();
+			// The FORMULA_PREFIX is needed to switch the lexer state from
+			// section to normal. The SUBSTITUTION_PREFIX has the same effect,
+			// thus the tokens can also be used to parse a substitution.
+			try {
+				result.put(nameToken, TokenBuffer.lex(BParser.FORMULA_PREFIX + "\n" + rhsToken.getText(), parseOptions));
+			} catch (IOException e) {
+				throw new PreParseException(e.getMessage());
+			} catch (BLexerException e) {
+				de.be4.classicalb.core.parser.node.Token errorToken = e.getLastToken();
+				final String newMessage = determineNewErrorMessageWithCorrectedPositionInformations(nameToken, rhsToken,
+						errorToken, e.getMessage());
+				throw new PreParseException(newMessage);
+			} catch (de.be4.classicalb.core.parser.lexer.LexerException e) {
+				final String newMessage = determineNewErrorMessageWithCorrectedPositionInformationsWithoutToken(
+						nameToken, rhsToken, e.getMessage());
+				throw new PreParseException(newMessage);
 			}
 		}
+		return result;
 	}
 
-	private List<Token> sortDefinitionsByTopologicalOrderAndCheckForCycles(Map<Token, Token> definitions)
-			throws PreParseException {
+	private List<Token> sortDefinitionsByTopologicalOrderAndCheckForCycles(Map<Token, Token> definitions,
+			Map<Token, TokenBuffer> rhsTokens) throws BCompoundException {
 		final Set<String> definitionNames = new HashSet<>();
 		final Map<String, Token> definitionMap = new HashMap<>();
 		for (Token token : definitions.keySet()) {
@@ -226,21 +284,24 @@ public class PreParser {
 			definitionNames.add(definitionName);
 			definitionMap.put(definitionName, token);
 		}
-		Map<String, Set<String>> dependencies = determineDependencies(definitionNames, definitions);
-		List<String> sortedDefinitionNames = Utils.sortByTopologicalOrder(dependencies);
+		final DependencyGraph<String> graph = new DependencyGraph<>(
+				determineDependencies(definitionNames, sortDefinitionsByPosition(definitions), rhsTokens));
+		List<String> sortedDefinitionNames = graph.sortTopologically();
 		if (sortedDefinitionNames.size() < definitionNames.size()) {
-			Set<String> remaining = new HashSet<>(definitionNames);
-			remaining.removeAll(sortedDefinitionNames);
-			List<String> cycle = Utils.determineCycle(remaining, dependencies);
-			StringBuilder sb = new StringBuilder();
-			for (Iterator<String> iterator = cycle.iterator(); iterator.hasNext();) {
-				sb.append(iterator.next());
-				if (iterator.hasNext()) {
-					sb.append(" -> ");
+			final List<BException> errors = new ArrayList<>();
+			for (List<String> cycle : graph.findCycles()) {
+				StringBuilder sb = new StringBuilder();
+				for (Iterator<String> iterator = cycle.iterator(); iterator.hasNext();) {
+					sb.append(iterator.next());
+					if (iterator.hasNext()) {
+						sb.append(" -> ");
+					}
 				}
+				final Token firstDefinitionToken = definitionMap.get(cycle.get(0));
+				errors.add(new BException(Utils.getCanonicalFileName(modelFileName), new PreParseException(firstDefinitionToken,
+						"Cyclic references in definitions: " + sb.toString())));
 			}
-			final Token firstDefinitionToken = definitionMap.get(cycle.get(0));
-			throw new PreParseException(firstDefinitionToken, "Cyclic references in definitions: " + sb.toString());
+			throw new BCompoundException(errors);
 		} else {
 			List<Token> sortedDefinitionTokens = new ArrayList<>();
 			for (String name : sortedDefinitionNames) {
@@ -251,52 +312,27 @@ public class PreParser {
 
 	}
 
-	private Map<String, Set<String>> determineDependencies(Set<String> definitionNames, Map<Token, Token> definitions)
-			throws PreParseException {
-		HashMap<String, Set<String>> dependencies = new HashMap<>();
-		for (Entry<Token, Token> entry : definitions.entrySet()) {
-			Token nameToken = entry.getKey();
-			Token rhsToken = entry.getValue();
-			// The FORMULA_PREFIX is needed to switch the lexer state from
-			// section to normal. Note, that we do not parse the right hand side
-			// of the definition here. Hence FORMULA_PREFIX has no further
-			// meaning and substitutions can also be handled by the lexer.
-			final Reader reader = new StringReader(BParser.FORMULA_PREFIX + "\n" + rhsToken.getText());
-
-			final BLexer lexer = new BLexer(new PushbackReader(reader, BLexer.PUSHBACK_BUFFER_SIZE),
-					new DefinitionTypes());
-			lexer.setParseOptions(parseOptions);
+	/*
+	 * the dependencies of the definitions in the given order
+	 */
+	private Map<String, Set<String>> determineDependencies(Set<String> definitionNames, List<Token> definitions,
+			Map<Token, TokenBuffer> rhsTokens) {
+		Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+		for (Token definition : definitions) {
 			Set<String> set = new HashSet<>();
-			de.be4.classicalb.core.parser.node.Token next = null;
-			try {
-				next = lexer.next();
-				while (!(next instanceof EOF)) {
-					if (next instanceof TIdentifierLiteral) {
-						TIdentifierLiteral id = (TIdentifierLiteral) next;
-						String name = id.getText();
-						if (definitionNames.contains(name)) {
-							set.add(name);
-						}
+			for (IToken next : rhsTokens.get(definition).getTokens()) {
+				if (next instanceof TIdentifierLiteral) {
+					String name = next.getText();
+					if (definitionNames.contains(name)) {
+						set.add(name);
 					}
-					next = lexer.next();
 				}
-			} catch (IOException e) {
-			} catch (BLexerException e) {
-				de.be4.classicalb.core.parser.node.Token errorToken = e.getLastToken();
-				final String newMessage = determineNewErrorMessageWithCorrectedPositionInformations(nameToken, rhsToken,
-						errorToken, e.getMessage());
-				throw new PreParseException(newMessage);
-			} catch (de.be4.classicalb.core.parser.lexer.LexerException e) {
-				final String newMessage = determineNewErrorMessageWithCorrectedPositionInformationsWithoutToken(
-						nameToken, rhsToken, e.getMessage());
-				throw new PreParseException(newMessage);
 			}
-			dependencies.put(nameToken.getText(), set);
+			dependencies.put(definition.getText(), set);
 		}
 		return dependencies;
 	}
 
-	@SuppressWarnings("unused")
 	private LinkedList<Token> sortDefinitionsByPosition(final Map<Token, Token> definitions) {
 		// LinkedList will be used as a queue later on!
 		// however, the list is needed for collections.sort
@@ -351,15 +387,13 @@ public class PreParser {
 		}
 	}
 
-	private DefinitionType determineType(final Token definition, final Token rhsToken,
+	private DefinitionType determineType(final Token definition, final Token rhsToken, final TokenBuffer tokens,
 			final Set<String> untypedDefinitions) throws PreParseException {
 
-		final String definitionRhs = rhsToken.getText();
-
 		de.be4.classicalb.core.parser.node.Start start;
 		de.be4.classicalb.core.parser.node.Token errorToken = null;
 		try {
-			start = tryParsing(BParser.FORMULA_PREFIX, definitionRhs);
+			start = tryParsing(null, tokens);
 			// Predicate?
 			PParseUnit parseunit = start.getPParseUnit();
 			if (parseunit instanceof APredicateParseUnit) {
@@ -387,7 +421,7 @@ public class PreParser {
 		} catch (de.be4.classicalb.core.parser.parser.ParserException e) {
 			errorToken = e.getToken();
 			try {
-				tryParsing(BParser.SUBSTITUTION_PREFIX, definitionRhs);
+				tryParsing(new TKwSubstitution(1, 1), tokens);
 				return new DefinitionType(IDefinitions.Type.Substitution, errorToken);
 			} catch (de.be4.classicalb.core.parser.parser.ParserException ex) {
 				final de.be4.classicalb.core.parser.node.Token errorToken2 = ex.getToken();
@@ -401,26 +435,12 @@ public class PreParser {
 							rhsToken, errorToken2, ex.getMessage());
 					return new DefinitionType(newMessage, errorToken2);
 				}
-			} catch (BLexerException e1) {
-				errorToken = e1.getLastToken();
-				final String newMessage = determineNewErrorMessageWithCorrectedPositionInformations(definition,
-						rhsToken, errorToken, e.getMessage());
-				throw new PreParseException(newMessage);
-			} catch (de.be4.classicalb.core.parser.lexer.LexerException e3) {
-				throw new PreParseException(determineNewErrorMessageWithCorrectedPositionInformationsWithoutToken(
-						definition, rhsToken, e3.getMessage()));
-			} catch (IOException e1) {
-				throw new PreParseException(e.getMessage());
+			} catch (de.be4.classicalb.core.parser.lexer.LexerException | IOException e1) {
+				// the tokens have already been lexed
+				throw new PreParseException(e1.getMessage());
 			}
-		} catch (BLexerException e) {
-			errorToken = e.getLastToken();
-			final String newMessage = determineNewErrorMessageWithCorrectedPositionInformations(definition, rhsToken,
-					errorToken, e.getMessage());
-			throw new PreParseException(newMessage);
-		} catch (de.be4.classicalb.core.parser.lexer.LexerException e) {
-			throw new PreParseException(determineNewErrorMessageWithCorrectedPositionInformationsWithoutToken(
-					definition, rhsToken, e.getMessage()));
-		} catch (IOException e) {
+		} catch (de.be4.classicalb.core.parser.lexer.LexerException | IOException e) {
+			// the tokens have already been lexed
 			throw new PreParseException(e.getMessage());
 		}
 
@@ -456,12 +476,14 @@ public class PreParser {
 		return "[" + line + "," + pos + "]" + message;
 	}
 
-	private de.be4.classicalb.core.parser.node.Start tryParsing(final String prefix, final String definitionRhs)
-			throws de.be4.classicalb.core.parser.lexer.LexerException,
+	/*
+	 * parses the lexed rhs of a definition, the first token (the formula
+	 * prefix) can be replaced to parse a different parse unit
+	 */
+	private de.be4.classicalb.core.parser.node.Start tryParsing(
+			final de.be4.classicalb.core.parser.node.Token firstToken, final TokenBuffer tokens) throws de.be4.classicalb.core.parser.lexer.LexerException,
 			de.be4.classicalb.core.parser.parser.ParserException, IOException {
-
-		final Reader reader = new StringReader(prefix + "\n" + definitionRhs);
-		final BLexer lexer = new BLexer(new PushbackReader(reader, BLexer.PUSHBACK_BUFFER_SIZE), this.definitionTypes);
+		final BLexer lexer = tokens.createCopyingLexer(firstToken, this.definitionTypes);
 		lexer.setParseOptions(parseOptions);
 		final de.be4.classicalb.core.parser.parser.Parser parser = new SabbleCCBParser(lexer);
 		return parser.parse();
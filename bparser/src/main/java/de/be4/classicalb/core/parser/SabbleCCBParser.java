@@ -1,18 +1,17 @@
 package de.be4.classicalb.core.parser;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
 
 import de.be4.classicalb.core.parser.lexer.Lexer;
 import de.be4.classicalb.core.parser.parser.Parser;
 
 public class SabbleCCBParser extends Parser {
 
-	private static HashSet<String> productionRulesToBeOptimised = new HashSet<>();
-	static {
-		productionRulesToBeOptimised.add("AMultiComposedIdentifierList");
-		productionRulesToBeOptimised.add("AMultipleExpressionList");
-		productionRulesToBeOptimised.add("AMultiIdentifierList");
-	}
+	private static final Set<String> productionRulesToBeOptimised = Collections.unmodifiableSet(new HashSet<>(
+			Arrays.asList("AMultiComposedIdentifierList", "AMultipleExpressionList", "AMultiIdentifierList")));
 
 	public SabbleCCBParser(Lexer lexer) {
 		super(lexer);
@@ -0,0 +1,237 @@
+package de.be4.classicalb.core.parser;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.be4.classicalb.core.parser.lexer.LexerException;
+import de.be4.classicalb.core.parser.node.*;
+import de.hhu.stups.sablecc.patch.IToken;
+
+/**
+ * Holds the complete token stream of an input which has been scanned once by
+ * the {@link BLexer}. The buffered tokens are used in two places:
+ * <ul>
+ * <li>the {@link PreParser} only needs to see the DEFINITIONS clause, which is
+ * located in the buffer (see {@link #getPreParserInput()}), instead of lexing
+ * the whole input a second time,</li>
+ * <li>the main parser consumes the buffered tokens via
+ * {@link #createLexer(DefinitionTypes)}, where the definition tokens are
+ * replaced once the definition types are known.</li>
+ * </ul>
+ *
+ * The lexing of the {@link BLexer} does not depend on the definition types,
+ * they are only used to replace identifier tokens afterwards. Hence, the tokens
+ * can be collected before the preparsing has been done.
+ */
+public class TokenBuffer {
+
+	/*
+	 * Tokens which end a DEFINITIONS clause (see other_clause_begin in
+	 * PreParser.scc)
+	 */
+	private static final Set<Class<? extends Token>> clauseTokenClasses = new HashSet<>();
+
+	static {
+		clauseTokenClasses.add(TAbstractConstants.class);
+		clauseTokenClasses.add(TAbstractVariables.class);
+		clauseTokenClasses.add(TAssertions.class);
+		clauseTokenClasses.add(TConcreteConstants.class);
+		clauseTokenClasses.add(TConcreteVariables.class);
+		clauseTokenClasses.add(TConstants.class);
+		clauseTokenClasses.add(TConstraints.class);
+		clauseTokenClasses.add(TExtends.class);
+		clauseTokenClasses.add(TImplementation.class);
+		clauseTokenClasses.add(TImports.class);
+		clauseTokenClasses.add(TIncludes.class);
+		clauseTokenClasses.add(TInitialisation.class);
+		clauseTokenClasses.add(TInvariant.class);
+		clauseTokenClasses.add(TLocalOperations.class);
+		clauseTokenClasses.add(TMachine.class);
+		clauseTokenClasses.add(TModel.class);
+		clauseTokenClasses.add(TSystem.class);
+		clauseTokenClasses.add(TKwRulesMachine.class);
+		clauseTokenClasses.add(TOperations.class);
+		clauseTokenClasses.add(TPromotes.class);
+		clauseTokenClasses.add(TProperties.class);
+		clauseTokenClasses.add(TRefines.class);
+		clauseTokenClasses.add(TRefinement.class);
+		clauseTokenClasses.add(TSees.class);
+		clauseTokenClasses.add(TSets.class);
+		clauseTokenClasses.add(TUses.class);
+		clauseTokenClasses.add(TValue.class);
+		clauseTokenClasses.add(TVariables.class);
+	}
+
+	private final String input;
+	private final List<IToken> tokens;
+
+	private TokenBuffer(final String input, final List<IToken> tokens) {
+		this.input = input;
+		this.tokens = tokens;
+	}
+
+	/**
+	 * Scans the complete input with a {@link BLexer}. No definition tokens are
+	 * replaced at this point.
+	 *
+	 * @param input
+	 *            the input to be lexed
+	 * @param parseOptions
+	 *            the parse options used by the lexer
+	 * @return the buffered token stream
+	 * @throws LexerException
+	 *             if the input cannot be lexed
+	 * @throws IOException
+	 *             if the input cannot be read
+	 */
+	public static TokenBuffer lex(final String input, final ParseOptions parseOptions)
+			throws LexerException, IOException {
+		final BLexer lexer = new BLexer(new PushbackReader(new StringReader(input), BLexer.PUSHBACK_BUFFER_SIZE),
+				null);
+		lexer.setParseOptions(parseOptions);
+		final List<IToken> tokens = new ArrayList<>();
+		Token t;
+		do {
+			t = lexer.next();
+			tokens.add(t);
+		} while (!(t instanceof EOF));
+		return new TokenBuffer(input, tokens);
+	}
+
+	public List<IToken> getTokens() {
+		return tokens;
+	}
+
+	/**
+	 * Returns the part of the input which has to be analysed by the
+	 * {@link PreParser}. If the input contains exactly one DEFINITIONS clause,
+	 * only this clause is returned. The text in front of the clause is replaced
+	 * by line breaks and blanks so that the preparser reports the same line
+	 * and column numbers as for the complete input. If the input contains no
+	 * DEFINITIONS clause, the empty string is returned. In all other cases the
+	 * complete input is returned, e.g., to get the same error messages if the
+	 * clause is used more than once.
+	 *
+	 * @return the input for the preparser
+	 */
+	public String getPreParserInput() {
+		Token definitionsToken = null;
+		Token clauseEnd = null;
+		for (final IToken t : tokens) {
+			if (t instanceof TKwDefinitions || (t instanceof TDefinitions && definitionsToken != null)) {
+				return input;
+			} else if (t instanceof TDefinitions) {
+				definitionsToken = (Token) t;
+			} else if (definitionsToken != null && clauseEnd == null && clauseTokenClasses.contains(t.getClass())) {
+				clauseEnd = (Token) t;
+			}
+		}
+		if (definitionsToken == null) {
+			return "";
+		}
+		final int[] lineOffsets = computeLineOffsets();
+		final int begin = getOffset(lineOffsets, definitionsToken);
+		final int end = clauseEnd == null ? input.length() : getOffset(lineOffsets, clauseEnd);
+		final StringBuilder sb = new StringBuilder(end - begin + definitionsToken.getLine()
+				+ definitionsToken.getPos());
+		for (int i = 1; i < definitionsToken.getLine(); i++) {
+			sb.append('\n');
+		}
+		for (int i = 1; i < definitionsToken.getPos(); i++) {
+			sb.append(' ');
+		}
+		sb.append(input, begin, end);
+		return sb.toString();
+	}
+
+	/**
+	 * Creates a lexer which returns the buffered tokens. The buffer can only be
+	 * consumed once because the tokens become part of the resulting AST.
+	 *
+	 * @param definitionTypes
+	 *            the definition types determined by the preparser
+	 * @return a lexer replaying the buffered tokens
+	 */
+	public BLexer createLexer(final DefinitionTypes definitionTypes) {
+		return new ReplayLexer(tokens, definitionTypes);
+	}
+
+	/**
+	 * Creates a lexer which returns copies of the buffered tokens. In contrast
+	 * to {@link #createLexer(DefinitionTypes)}, the buffer can be parsed more
+	 * than once, e.g. to try different parse units.
+	 *
+	 * @param firstToken
+	 *            the token which is returned instead of the first buffered
+	 *            token, or <code>null</code>
+	 * @param definitionTypes
+	 *            the definition types known so far
+	 * @return a lexer replaying copies of the buffered tokens
+	 */
+	public BLexer createCopyingLexer(final Token firstToken, final DefinitionTypes definitionTypes) {
+		final List<IToken> copies = new ArrayList<>(tokens.size());
+		for (final IToken t : tokens) {
+			copies.add(copies.isEmpty() && firstToken != null ? firstToken : (IToken) ((Token) t).clone());
+		}
+		return new ReplayLexer(copies, definitionTypes);
+	}
+
+	/*
+	 * the start offsets of all lines, using the same line counting as the
+	 * generated lexer (\n, \r and \r\n are line breaks)
+	 */
+	private int[] computeLineOffsets() {
+		final List<Integer> offsets = new ArrayList<>();
+		offsets.add(0);
+		for (int i = 0; i < input.length(); i++) {
+			final char c = input.charAt(i);
+			if (c == '\r') {
+				if (i + 1 < input.length() && input.charAt(i + 1) == '\n') {
+					i++;
+				}
+				offsets.add(i + 1);
+			} else if (c == '\n') {
+				offsets.add(i + 1);
+			}
+		}
+		final int[] result = new int[offsets.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = offsets.get(i);
+		}
+		return result;
+	}
+
+	private static int getOffset(final int[] lineOffsets, final Token token) {
+		return lineOffsets[token.getLine() - 1] + token.getPos() - 1;
+	}
+
+	private static final class ReplayLexer extends BLexer {
+		private final List<IToken> buffer;
+		private int next = 0;
+
+		ReplayLexer(final List<IToken> buffer, final DefinitionTypes definitionTypes) {
+			super(new PushbackReader(new StringReader("")), definitionTypes);
+			this.buffer = buffer;
+		}
+
+		@Override
+		protected Token getToken() {
+			final IToken t = buffer.get(next);
+			if (next < buffer.size() - 1) {
+				next++;
+			}
+			return (Token) t;
+		}
+
+		@Override
+		protected void filter() {
+			// all other filtering has already been done while buffering
+			replaceDefTokens();
+		}
+	}
+}
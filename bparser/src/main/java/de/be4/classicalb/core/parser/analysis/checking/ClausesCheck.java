@@ -1,8 +1,8 @@
 package de.be4.classicalb.core.parser.analysis.checking;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -143,7 +143,7 @@ public class ClausesCheck implements SemanticCheck {
 		if ((clauses.containsKey(NAME_VARIABLES) || clauses.containsKey(NAME_CONCRETE_VARIABLES))
 				&& (!clauses.containsKey(NAME_INVARIANT) || !clauses.containsKey(NAME_INITIALISATION))) {
 
-			final Set<Node> nodes = new HashSet<>();
+			final Set<Node> nodes = new LinkedHashSet<>();
 			if (clauses.containsKey(NAME_VARIABLES)) {
 				nodes.addAll(clauses.get(NAME_VARIABLES));
 			}
@@ -173,7 +173,7 @@ public class ClausesCheck implements SemanticCheck {
 		 */
 		if ((clauses.containsKey(NAME_CONSTANTS) || clauses.containsKey(NAME_ABSTRACT_CONSTANTS))
 				&& !clauses.containsKey(NAME_PROPERTIES)) {
-			final Set<Node> nodes = new HashSet<>();
+			final Set<Node> nodes = new LinkedHashSet<>();
 
 			if (clauses.containsKey(NAME_CONSTANTS)) {
 				nodes.addAll(clauses.get(NAME_CONSTANTS));
@@ -188,7 +188,7 @@ public class ClausesCheck implements SemanticCheck {
 	private void findForbidden(final String[] forbiddenClassNames) {
 		final Set<String> clauseClasses = clauses.keySet();
 
-		final Set<Set<Node>> wrongClauses = new HashSet<>();
+		final Set<Set<Node>> wrongClauses = new LinkedHashSet<>();
 
 		for (int i = 0; i < forbiddenClassNames.length; i++) {
 			if (clauseClasses.contains(forbiddenClassNames[i])) {
@@ -197,7 +197,7 @@ public class ClausesCheck implements SemanticCheck {
 		}
 
 		if (!wrongClauses.isEmpty()) {
-			final Set<Node> nodes = new HashSet<>();
+			final Set<Node> nodes = new LinkedHashSet<>();
 
 			for (final Iterator<Set<Node>> iterator = wrongClauses.iterator(); iterator.hasNext();) {
 				final Set<Node> nodeSet = iterator.next();
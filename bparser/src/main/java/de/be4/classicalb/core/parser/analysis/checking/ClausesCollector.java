@@ -1,8 +1,8 @@
 package de.be4.classicalb.core.parser.analysis.checking;
 
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
@@ -46,7 +46,7 @@ public class ClausesCollector extends DepthFirstAdapter {
 			Set<Node> nodesForclause = availableClauses.get(className);
 
 			if (nodesForclause == null) {
-				nodesForclause = new HashSet<Node>();
+				nodesForclause = new LinkedHashSet<Node>();
 			}
 
 			nodesForclause.add(clause);
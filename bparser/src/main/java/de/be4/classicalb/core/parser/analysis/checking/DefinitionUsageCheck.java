@@ -1,7 +1,7 @@
 package de.be4.classicalb.core.parser.analysis.checking;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -19,7 +19,7 @@ import de.be4.classicalb.core.parser.util.Utils;
 public class DefinitionUsageCheck extends DepthFirstAdapter implements SemanticCheck {
 
 	private final IDefinitions definitions;
-	private final Set<Node> erroneousNodes = new HashSet<>();
+	private final Set<Node> erroneousNodes = new LinkedHashSet<>();
 	private final List<CheckException> exceptions = new ArrayList<>();
 
 	public DefinitionUsageCheck(final IDefinitions definitions) {
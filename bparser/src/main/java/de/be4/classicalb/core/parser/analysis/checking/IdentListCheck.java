@@ -1,8 +1,8 @@
 package de.be4.classicalb.core.parser.analysis.checking;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -55,7 +55,7 @@ import de.be4.classicalb.core.parser.node.Start;
  */
 public class IdentListCheck extends DepthFirstAdapter implements SemanticCheck {
 
-	private final Set<Node> nonIdentifiers = new HashSet<>();
+	private final Set<Node> nonIdentifiers = new LinkedHashSet<>();
 	private ParseOptions options;
 	private final List<CheckException> exceptions = new ArrayList<>();
 
@@ -218,7 +218,7 @@ public class IdentListCheck extends DepthFirstAdapter implements SemanticCheck {
 	}
 
 	class AssignCheck extends DepthFirstAdapter {
-		final Set<Node> nonIdentifiers = new HashSet<>();
+		final Set<Node> nonIdentifiers = new LinkedHashSet<>();
 
 		@Override
 		public void inAAssignSubstitution(final AAssignSubstitution node) {
@@ -47,8 +47,8 @@ public class ClassicalPositionPrinter implements PositionPrinter {
 	}
 
 	public void printPosition(final Node node) {
-		final Integer id = nodeIds.lookup(node);
-		if (id == null) {
+		final int id = nodeIds.lookupId(node);
+		if (id < 0) {
 			pout.printAtom("none");
 		} else {
 			if (printSourcePositions) {
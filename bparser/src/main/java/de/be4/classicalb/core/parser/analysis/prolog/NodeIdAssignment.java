@@ -1,8 +1,6 @@
 package de.be4.classicalb.core.parser.analysis.prolog;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 import de.be4.classicalb.core.parser.analysis.DepthFirstAdapter;
 import de.be4.classicalb.core.parser.node.Node;
@@ -11,20 +9,34 @@ import de.be4.classicalb.core.parser.node.Node;
  * This class implements functionality to assign identifiers to all nodes in a
  * syntax tree. Multiple syntax trees can be used with one instance of this
  * class to guarantee unique identifiers.
- * 
+ *
+ * The identifiers and file numbers are stored in an open addressing hash
+ * table with primitive <code>int</code> arrays, which uses the identity of the
+ * nodes as key. No objects are allocated per node. Instances are not thread
+ * safe.
+ *
  * @author plagge
  */
 public class NodeIdAssignment extends DepthFirstAdapter {
-	private Map<Node, Integer> nodeToIdentifierMap = new HashMap<>();
-	private ArrayList<Node> nodes = new ArrayList<>(1000);
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int NO_FILE_NUMBER = -1;
+
+	// hash table: keys[i] has the identifier ids[i] and the file number
+	// fileNumbers[i], the capacity is always a power of two
+	private Node[] keys = new Node[INITIAL_CAPACITY];
+	private int[] ids = new int[INITIAL_CAPACITY];
+	private int[] fileNumbers = new int[INITIAL_CAPACITY];
+	private int size = 0;
+
+	// nodes[id] is the node with the identifier id
+	private Node[] nodes = new Node[INITIAL_CAPACITY];
 	private int currentIdentifier = 0;
 
-	private int currentFileNumber = -1;
-	private Map<Node, Integer> nodeToFileNumberMap = new HashMap<>();
+	private int currentFileNumber = NO_FILE_NUMBER;
 
 	/**
 	 * Assign identifiers to all elements of the syntax tree.
-	 * 
+	 *
 	 * @param node
 	 *            The root node of the machine.
 	 */
@@ -34,7 +46,7 @@ public class NodeIdAssignment extends DepthFirstAdapter {
 
 	/**
 	 * Assign identifiers to all elements of the syntax tree.
-	 * 
+	 *
 	 * @param fileNumber
 	 *            the file number which will be assigned to <code>node</code>
 	 *            and its child nodes
@@ -47,27 +59,38 @@ public class NodeIdAssignment extends DepthFirstAdapter {
 		}
 		this.currentFileNumber = fileNumber;
 		node.apply(this);
-		this.currentFileNumber = -1;
+		this.currentFileNumber = NO_FILE_NUMBER;
 	}
 
 	/**
 	 * Looks up the ID of the given node.
-	 * 
+	 *
 	 * @param node
 	 *            The node, of which we want to have the ID.
 	 * @return The ID of the node, <code>null</code> if no ID can be found.
 	 */
 	public Integer lookup(Node node) {
-		return nodeToIdentifierMap.get(node);
+		final int index = indexOf(node);
+		return index < 0 ? null : ids[index];
+	}
+
+	/**
+	 * Like {@link #lookup(Node)}, but without boxing the result.
+	 *
+	 * @param node
+	 *            The node, of which we want to have the ID.
+	 * @return The ID of the node, -1 if no ID can be found.
+	 */
+	public int lookupId(Node node) {
+		final int index = indexOf(node);
+		return index < 0 ? -1 : ids[index];
 	}
 
 	public Node lookupById(int id) {
-		Node result;
-		try {
-			result = nodes.get(id);
-		} catch (IndexOutOfBoundsException e) {
-			throw new AssertionError("Unknown id " + id, e);
+		if (id < 0 || id >= currentIdentifier) {
+			throw new AssertionError("Unknown id " + id);
 		}
+		final Node result = nodes[id];
 		if (result == null) {
 			throw new AssertionError("Unknown id " + id);
 		}
@@ -75,19 +98,122 @@ public class NodeIdAssignment extends DepthFirstAdapter {
 	}
 
 	public int lookupFileNumber(Node node) {
-		Integer fileNumber = nodeToFileNumberMap.get(node);
-		return fileNumber == null ? -1 : fileNumber;
+		final int index = indexOf(node);
+		return index < 0 ? NO_FILE_NUMBER : fileNumbers[index];
+	}
+
+	/**
+	 * Removes the identifiers of all elements of the syntax tree, e.g., after
+	 * the tree has been printed. The identifiers are not reused.
+	 *
+	 * @param node
+	 *            The root node of the machine.
+	 */
+	public void releaseIdentifiers(Node node) {
+		node.apply(new DepthFirstAdapter() {
+			@Override
+			public void defaultIn(Node n) {
+				remove(n);
+			}
+		});
 	}
 
 	@Override
 	public void defaultIn(Node node) {
-		synchronized (nodeToIdentifierMap) {
-			nodeToIdentifierMap.put(node, currentIdentifier);
-			nodes.add(node);
-			if (currentFileNumber > 0) {
-				nodeToFileNumberMap.put(node, currentFileNumber);
+		final int id = currentIdentifier++;
+		if (id == nodes.length) {
+			nodes = Arrays.copyOf(nodes, nodes.length * 2);
+		}
+		nodes[id] = node;
+
+		int index = indexOf(node);
+		if (index < 0) {
+			if (2 * (size + 1) > keys.length) {
+				resize(keys.length * 2);
+				index = indexOf(node);
+			}
+			index = -index - 1;
+			keys[index] = node;
+			fileNumbers[index] = NO_FILE_NUMBER;
+			size++;
+		}
+		// a node which is visited again gets a new identifier, but keeps its
+		// file number if no new one is given
+		ids[index] = id;
+		if (currentFileNumber > 0) {
+			fileNumbers[index] = currentFileNumber;
+		}
+	}
+
+	private static int hash(final Node node, final int mask) {
+		final int h = System.identityHashCode(node) * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/*
+	 * the index of the node in the table or -(insertion point + 1) if the
+	 * node is not in the table
+	 */
+	private int indexOf(final Node node) {
+		final int mask = keys.length - 1;
+		int index = hash(node, mask);
+		while (true) {
+			final Node key = keys[index];
+			if (key == node) {
+				return index;
+			} else if (key == null) {
+				return -index - 1;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	private void remove(final Node node) {
+		int index = indexOf(node);
+		if (index < 0) {
+			return;
+		}
+		if (nodes[ids[index]] == node) {
+			nodes[ids[index]] = null;
+		}
+		size--;
+		// shift back the following entries of the same cluster (linear
+		// probing does not allow to leave a gap)
+		final int mask = keys.length - 1;
+		int next = (index + 1) & mask;
+		while (keys[next] != null) {
+			final int home = hash(keys[next], mask);
+			// move the entry if its home position is not in (index, next]
+			if (((next - home) & mask) >= ((next - index) & mask)) {
+				keys[index] = keys[next];
+				ids[index] = ids[next];
+				fileNumbers[index] = fileNumbers[next];
+				index = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[index] = null;
+	}
+
+	private void resize(final int capacity) {
+		final Node[] oldKeys = keys;
+		final int[] oldIds = ids;
+		final int[] oldFileNumbers = fileNumbers;
+		keys = new Node[capacity];
+		ids = new int[capacity];
+		fileNumbers = new int[capacity];
+		final int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			final Node key = oldKeys[i];
+			if (key != null) {
+				int index = hash(key, mask);
+				while (keys[index] != null) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = key;
+				ids[index] = oldIds[i];
+				fileNumbers[index] = oldFileNumbers[i];
 			}
-			currentIdentifier++;
 		}
 	}
 }
@@ -43,11 +43,18 @@ public final class PrologExceptionPrinter {
 
 	public static void printException(final OutputStream out, final IOException e, boolean useIndentation) {
 		IPrologTermOutput pto = new PrologTermOutput(out, useIndentation);
+		printException(pto, e, useIndentation);
+		pto.fullstop();
+		pto.flush();
+	}
+
+	/**
+	 * Prints the exception as a term, without a full stop.
+	 */
+	public static void printException(final IPrologTermOutput pto, final IOException e, boolean useIndentation) {
 		pto.openTerm("io_exception");
 		printMsg(pto, e, useIndentation);
 		pto.closeTerm();
-		pto.fullstop();
-		pto.flush();
 	}
 
 	public static void printException(final OutputStream out, final BCompoundException e) {
@@ -57,6 +64,16 @@ public final class PrologExceptionPrinter {
 	public static void printException(final OutputStream out, final BCompoundException e, boolean useIndentation,
 			boolean lineOneOff) {
 		IPrologTermOutput pto = new PrologTermOutput(out, useIndentation);
+		printException(pto, e, useIndentation, lineOneOff);
+		pto.fullstop();
+		pto.flush();
+	}
+
+	/**
+	 * Prints the exception as a term, without a full stop.
+	 */
+	public static void printException(final IPrologTermOutput pto, final BCompoundException e,
+			boolean useIndentation, boolean lineOneOff) {
 		if (e.getBExceptions().size() > 1) {
 			pto.openTerm("compound_exception", true);
 			pto.openList();
@@ -72,14 +89,9 @@ public final class PrologExceptionPrinter {
 			}
 			pto.closeList();
 			pto.closeTerm();
-			pto.fullstop();
-			pto.flush();
-			return;
 		} else if (e.getBExceptions().size() == 1) {
 			// single BException
 			printBException(pto, e.getBExceptions().get(0), useIndentation, lineOneOff);
-			pto.fullstop();
-			pto.flush();
 		} else {
 			throw new IllegalStateException("Empty compoundException.");
 		}
@@ -5,6 +5,8 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -12,12 +14,23 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 
 import de.be4.classicalb.core.parser.BParser;
+import de.be4.classicalb.core.parser.CachingDefinitionFileProvider;
+import de.be4.classicalb.core.parser.DefinitionFileCache;
+import de.be4.classicalb.core.parser.Definitions;
 import de.be4.classicalb.core.parser.FileSearchPathProvider;
 import de.be4.classicalb.core.parser.IDefinitionFileProvider;
 import de.be4.classicalb.core.parser.IDefinitions;
 import de.be4.classicalb.core.parser.IFileContentProvider;
+import de.be4.classicalb.core.parser.ParseCache;
 import de.be4.classicalb.core.parser.ParsingBehaviour;
 import de.be4.classicalb.core.parser.analysis.DepthFirstAdapter;
 import de.be4.classicalb.core.parser.exceptions.BCompoundException;
@@ -33,8 +46,8 @@ import de.be4.classicalb.core.parser.node.APropertiesMachineClause;
 import de.be4.classicalb.core.parser.node.AVariablesMachineClause;
 import de.be4.classicalb.core.parser.node.PDefinition;
 import de.be4.classicalb.core.parser.node.Start;
+import de.prob.prolog.output.BufferedPrologTermOutput;
 import de.prob.prolog.output.IPrologTermOutput;
-import de.prob.prolog.output.PrologTermOutput;
 
 /**
  * This class implements the functionality to load and parse all machines that
@@ -44,6 +57,10 @@ import de.prob.prolog.output.PrologTermOutput;
  * the error message is mapped to the uses/includes/etc. statement in the main
  * machine.
  * 
+ * If {@link ParsingBehaviour#isParallelLoading()} is set, the referenced
+ * machines are parsed concurrently. The result is the same as in sequential
+ * mode.
+ * 
  */
 public class RecursiveMachineLoader {
 	private static final String[] SUFFICES = new String[] { ".ref", ".mch", ".sys", ".imp" };
@@ -56,6 +73,19 @@ public class RecursiveMachineLoader {
 	private final List<File> definitionFilesLoaded = new ArrayList<>();
 	private final IFileContentProvider contentProvider;
 	private final ParsingBehaviour parsingBehaviour;
+	private final ParseCache parseCache;
+	private ExecutorService executor;
+	// the definition files of the machines parsed in the background, null if
+	// they are left to the loading thread
+	private volatile DefinitionFileCache prefetchCache;
+	// only set while loading in streaming mode
+	private IPrologTermOutput streamingOutput;
+	private ASTProlog streamingProlog;
+	// the machines are removed when they are loaded, so their ASTs can be
+	// released after printing
+	private final Map<File, Future<ParsedMachine>> prefetchedMachines = new HashMap<>();
+	// all machines ever submitted, guarded by prefetchedMachines
+	private final Set<File> prefetchRequested = new HashSet<>();
 
 	public RecursiveMachineLoader(final String directory, final IDefinitionFileProvider contentProvider,
 			ParsingBehaviour parsingBehaviour) throws BCompoundException {
@@ -67,6 +97,11 @@ public class RecursiveMachineLoader {
 					new BException(null, new IOException("Directory does not exist: " + directory)));
 		}
 		this.contentProvider = contentProvider;
+		if (parsingBehaviour.getCacheDirectory() != null) {
+			this.parseCache = new ParseCache(parsingBehaviour.getCacheDirectory());
+		} else {
+			this.parseCache = null;
+		}
 	}
 
 	public RecursiveMachineLoader(String path, IDefinitionFileProvider contentProvider) throws BCompoundException {
@@ -75,7 +110,71 @@ public class RecursiveMachineLoader {
 
 	public void loadAllMachines(final File startFile, final Start start,
 			final IDefinitions definitions) throws BCompoundException {
-		recursivlyLoadMachine(startFile, start, new ArrayList<String>(), true, rootDirectory, definitions);
+		loadAllMachines(startFile, start, definitions, null, null);
+	}
+
+	/**
+	 * Loads all machines and prints each machine as soon as it has been
+	 * loaded. Afterwards, the AST of the machine is released, i.e.,
+	 * {@link #getParsedMachines()} only contains the names of the machines. In
+	 * contrast to {@link #printAsProlog(IPrologTermOutput)}, the machines are
+	 * printed in the order in which they are loaded and the
+	 * <code>classical_b/2</code> fact with the list of loaded files is printed
+	 * after the machines. If an error occurs, the output is incomplete.
+	 * 
+	 * @param startFile
+	 *            the main machine file
+	 * @param start
+	 *            the AST of the main machine
+	 * @param definitions
+	 *            the definitions of the main machine
+	 * @param pout
+	 *            the output for the Prolog facts
+	 * @throws BCompoundException
+	 *             if a machine cannot be loaded
+	 */
+	public void loadAndPrintAllMachines(final File startFile, final Start start, final IDefinitions definitions,
+			final IPrologTermOutput pout) throws BCompoundException {
+		printParserVersion(pout);
+		final ClassicalPositionPrinter pprinter = new ClassicalPositionPrinter(getNodeIdMapping());
+		pprinter.printSourcePositions(parsingBehaviour.isAddLineNumbers());
+		loadAllMachines(startFile, start, definitions, pout, new ASTProlog(pout, pprinter));
+		printLoadedFiles(pout);
+		pout.flush();
+	}
+
+	private void loadAllMachines(final File startFile, final Start start, final IDefinitions definitions,
+			final IPrologTermOutput streamingOutput, final ASTProlog streamingProlog) throws BCompoundException {
+		this.streamingOutput = streamingOutput;
+		this.streamingProlog = streamingProlog;
+		if (parsingBehaviour.isParallelLoading()) {
+			final int threads = parsingBehaviour.getParallelLoadingThreads() > 0
+					? parsingBehaviour.getParallelLoadingThreads() : Runtime.getRuntime().availableProcessors();
+			prefetchCache = createPrefetchCache();
+			executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "RecursiveMachineLoader");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		try {
+			recursivlyLoadMachine(startFile, start, new ArrayList<String>(), true, rootDirectory, definitions);
+		} finally {
+			this.streamingOutput = null;
+			this.streamingProlog = null;
+			if (executor != null) {
+				executor.shutdownNow();
+				executor = null;
+				prefetchCache = null;
+				synchronized (prefetchedMachines) {
+					prefetchedMachines.clear();
+					prefetchRequested.clear();
+				}
+			}
+		}
 	}
 
 	private void loadMachine(final List<String> ancestors, final File machineFile)
@@ -83,15 +182,163 @@ public class RecursiveMachineLoader {
 		if (machineFilesLoaded.contains(machineFile)) {
 			return;
 		}
+		final Future<ParsedMachine> future = getPrefetchedMachine(machineFile);
+		ParsedMachine machine = future == null ? null : waitFor(future);
+		if (machine == null) {
+			machine = parseMachine(machineFile, contentProvider);
+		} else if (contentProvider instanceof CachingDefinitionFileProvider) {
+			// share the definition files with the other machines like in
+			// sequential mode
+			((CachingDefinitionFileProvider) contentProvider).adoptDefinitionFiles(machine.definitions);
+		}
+		recursivlyLoadMachine(machineFile, machine.tree, ancestors, false,
+				machineFile.getParentFile(), machine.definitions);
+	}
+
+	private ParsedMachine parseMachine(final File machineFile, final IFileContentProvider provider)
+			throws BCompoundException, IOException {
 		final BParser parser = new BParser(machineFile.getAbsolutePath());
-		Start tree;
-		tree = parser.parseFile(machineFile, parsingBehaviour.isVerbose(), contentProvider);
-		recursivlyLoadMachine(machineFile, tree, ancestors, false,
-				machineFile.getParentFile(), parser.getDefinitions());
+		parser.getOptions().setParseCache(parseCache);
+		final Start tree = parser.parseFile(machineFile, parsingBehaviour.isVerbose(), provider);
+		return new ParsedMachine(tree, parser.getDefinitions());
+	}
+
+	/*
+	 * Only a plain CachingDefinitionFileProvider is known to read the files
+	 * from the disk, a subclass may provide them differently. The definition
+	 * files are parsed once for all machines, in the shared cache of the
+	 * provider or in a cache of this loader.
+	 */
+	private DefinitionFileCache createPrefetchCache() {
+		if (contentProvider == null || contentProvider.getClass() != CachingDefinitionFileProvider.class) {
+			return null;
+		}
+		final DefinitionFileCache sharedCache = ((CachingDefinitionFileProvider) contentProvider).getSharedCache();
+		return sharedCache == null ? new DefinitionFileCache() : sharedCache;
+	}
+
+	/*
+	 * Parses a machine in the background. The content provider of the loader
+	 * is not thread-safe. If it reads plain files, they are read by a provider
+	 * of the task which takes copies of the definition files from the
+	 * prefetch cache. With other providers, machines using definition files
+	 * are left to the loading thread (result null).
+	 */
+	private ParsedMachine prefetchMachine(final File machineFile) throws BCompoundException, IOException {
+		final DefinitionFileCache cache = prefetchCache;
+		if (cache != null) {
+			final ParsedMachine machine = parseMachine(machineFile, new CachingDefinitionFileProvider(cache));
+			prefetchReferences(machineFile, machine.tree);
+			return machine;
+		}
+		final NoDefinitionFilesProvider provider = new NoDefinitionFilesProvider(contentProvider);
+		final ParsedMachine machine;
+		try {
+			machine = parseMachine(machineFile, provider);
+		} catch (BCompoundException e) {
+			if (provider.isDefinitionFileRequested()) {
+				return null;
+			}
+			throw e;
+		}
+		if (provider.isDefinitionFileRequested()) {
+			return null;
+		}
+		prefetchReferences(machineFile, machine.tree);
+		return machine;
+	}
+
+	private static ParsedMachine waitFor(final Future<ParsedMachine> future) throws BCompoundException, IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			// rethrow the exception the sequential loader would have thrown
+			final Throwable cause = e.getCause();
+			if (cause instanceof BCompoundException) {
+				throw (BCompoundException) cause;
+			} else if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	private Future<ParsedMachine> getPrefetchedMachine(final File machineFile) {
+		synchronized (prefetchedMachines) {
+			return prefetchedMachines.remove(machineFile);
+		}
+	}
+
+	/*
+	 * the number of machines parsed in the background which have not yet been
+	 * loaded
+	 */
+	int getPrefetchedMachineCount() {
+		synchronized (prefetchedMachines) {
+			return prefetchedMachines.size();
+		}
+	}
+
+	/*
+	 * In parallel mode, the referenced machines are parsed in the background
+	 * as soon as they are known. The machines are still processed in the same
+	 * order as in sequential mode (see loadMachine), hence file numbers, node
+	 * ids and error messages do not change.
+	 */
+	private void prefetch(final File directory, final List<MachineReference> references, final List<String> paths) {
+		if (executor == null) {
+			return;
+		}
+		for (final MachineReference reference : references) {
+			final File file = findFile(directory, reference, paths);
+			if (file == null) {
+				// the error is reported when the reference is processed
+				continue;
+			}
+			synchronized (prefetchedMachines) {
+				if (prefetchRequested.contains(file)) {
+					continue;
+				}
+				try {
+					prefetchedMachines.put(file, executor.submit(new Callable<ParsedMachine>() {
+						@Override
+						public ParsedMachine call() throws Exception {
+							return prefetchMachine(file);
+						}
+					}));
+					prefetchRequested.add(file);
+				} catch (RejectedExecutionException e) {
+					// loading has already finished
+					return;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Looks for the references of a machine parsed in the background. The
+	 * search is done on a copy because ReferencedMachines modifies the AST.
+	 */
+	private void prefetchReferences(final File machineFile, final Start tree) {
+		final ReferencedMachines refMachines = new ReferencedMachines(machineFile, (Start) tree.clone(), false);
+		try {
+			refMachines.findReferencedMachines();
+		} catch (BException e) {
+			// the error is reported when the machine is processed
+			return;
+		}
+		prefetch(machineFile.getParentFile(), refMachines.getReferences(), refMachines.getPathList());
 	}
 
 	public void printAsProlog(final PrintWriter out) {
-		final IPrologTermOutput pout = new PrologTermOutput(out, parsingBehaviour.isUseIndention());
+		final IPrologTermOutput pout = new BufferedPrologTermOutput(out, parsingBehaviour.isUseIndention());
 		printAsProlog(pout);
 	}
 
@@ -100,13 +347,23 @@ public class RecursiveMachineLoader {
 		pprinter.printSourcePositions(parsingBehaviour.isAddLineNumbers());
 		final ASTProlog prolog = new ASTProlog(pout, pprinter);
 
-		// parser version
+		printParserVersion(pout);
+		printLoadedFiles(pout);
+		for (final Map.Entry<String, Start> entry : getParsedMachines().entrySet()) {
+			printMachine(pout, prolog, entry.getValue());
+		}
+
+		pout.flush();
+	}
+
+	private void printParserVersion(final IPrologTermOutput pout) {
 		pout.openTerm("parser_version");
 		pout.printAtom(BParser.getBuildRevision());
 		pout.closeTerm();
 		pout.fullstop();
+	}
 
-		// machine
+	private void printLoadedFiles(final IPrologTermOutput pout) {
 		pout.openTerm("classical_b");
 		pout.printAtom(main);
 		pout.openList();
@@ -124,14 +381,13 @@ public class RecursiveMachineLoader {
 		pout.closeList();
 		pout.closeTerm();
 		pout.fullstop();
-		for (final Map.Entry<String, Start> entry : getParsedMachines().entrySet()) {
-			pout.openTerm("machine");
-			entry.getValue().apply(prolog);
-			pout.closeTerm();
-			pout.fullstop();
-		}
+	}
 
-		pout.flush();
+	private static void printMachine(final IPrologTermOutput pout, final ASTProlog prolog, final Start machine) {
+		pout.openTerm("machine");
+		machine.apply(prolog);
+		pout.closeTerm();
+		pout.fullstop();
 	}
 
 	/**
@@ -150,16 +406,9 @@ public class RecursiveMachineLoader {
 	 */
 	private File lookupFile(final File parentMachineDirectory, final MachineReference machineRef,
 			List<String> ancestors, List<String> paths) throws CheckException {
-		for (final String suffix : SUFFICES) {
-			try {
-				final String directoryString = machineRef.getDirectoryPath() != null ? machineRef.getDirectoryPath()
-						: parentMachineDirectory.getAbsolutePath();
-				return new FileSearchPathProvider(directoryString, machineRef.getName() + suffix, paths)
-						.resolve();
-			} catch (FileNotFoundException e) {
-				// could not resolve the combination of prefix, machineName and
-				// suffix, trying next one
-			}
+		final File file = lookupFile(parentMachineDirectory, machineRef, paths);
+		if (file != null) {
+			return file;
 		}
 		StringBuilder sb = new StringBuilder();
 		sb.append("Machine not found: '");
@@ -176,6 +425,38 @@ public class RecursiveMachineLoader {
 		throw new CheckException(sb.toString(), machineRef.getNode());
 	}
 
+	private static File lookupFile(final File parentMachineDirectory, final MachineReference machineRef,
+			List<String> paths) {
+		for (final String suffix : SUFFICES) {
+			try {
+				final String directoryString = machineRef.getDirectoryPath() != null ? machineRef.getDirectoryPath()
+						: parentMachineDirectory.getAbsolutePath();
+				return new FileSearchPathProvider(directoryString, machineRef.getName() + suffix, paths)
+						.resolve();
+			} catch (FileNotFoundException e) {
+				// could not resolve the combination of prefix, machineName and
+				// suffix, trying next one
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * the file of a referenced machine or null if it cannot be found
+	 */
+	private static File findFile(final File directory, final MachineReference refMachine, final List<String> paths) {
+		final String filePragma = refMachine.getPath();
+		if (filePragma == null) {
+			return lookupFile(directory, refMachine, paths);
+		}
+		final File p = new File(filePragma);
+		if (p.isAbsolute()) {
+			return p;
+		} else {
+			return new File(directory, filePragma);
+		}
+	}
+
 	private void recursivlyLoadMachine(final File machineFile, final Start currentAst, final List<String> ancestors,
 			final boolean isMain, File directory, final IDefinitions definitions)
 			throws BCompoundException {
@@ -205,11 +486,22 @@ public class RecursiveMachineLoader {
 		final int fileNumber = machineFilesLoaded.indexOf(machineFile) + 1;
 		getNodeIdMapping().assignIdentifiers(fileNumber, currentAst);
 
+		// the nodes of the definition files are shared by the machines using
+		// them, each machine gets its own copies
+		if (definitions instanceof Definitions) {
+			((Definitions) definitions).copyReferencedDefinitions();
+		}
 		definitions.assignIdsToNodes(getNodeIdMapping(), machineFilesLoaded);
 
 		injectDefinitions(currentAst, definitions);
 
-		getParsedMachines().put(name, currentAst);
+		if (streamingOutput == null) {
+			getParsedMachines().put(name, currentAst);
+		} else {
+			printMachine(streamingOutput, streamingProlog, currentAst);
+			getNodeIdMapping().releaseIdentifiers(currentAst);
+			getParsedMachines().put(name, null);
+		}
 		parsedFiles.put(name, machineFile);
 
 		if (name != null) {
@@ -227,6 +519,7 @@ public class RecursiveMachineLoader {
 		}
 
 		final List<MachineReference> references = refMachines.getReferences();
+		prefetch(directory, references, refMachines.getPathList());
 		for (final MachineReference refMachine : references) {
 			try {
 				final String filePragma = refMachine.getPath();
@@ -306,6 +599,41 @@ public class RecursiveMachineLoader {
 		return parsedMachines;
 	}
 
+	private static final class ParsedMachine {
+		private final Start tree;
+		private final IDefinitions definitions;
+
+		ParsedMachine(final Start tree, final IDefinitions definitions) {
+			this.tree = tree;
+			this.definitions = definitions;
+		}
+	}
+
+	private static final class NoDefinitionFilesProvider implements IFileContentProvider {
+		private final IFileContentProvider delegate;
+		private boolean definitionFileRequested = false;
+
+		NoDefinitionFilesProvider(final IFileContentProvider delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public String getFileContent(final File directory, final String fileName) throws IOException {
+			definitionFileRequested = true;
+			throw new IOException("Definition files are loaded by the main thread");
+		}
+
+		@Override
+		public File getFile(final File directory, final String fileName) throws IOException {
+			definitionFileRequested = true;
+			return delegate.getFile(directory, fileName);
+		}
+
+		boolean isDefinitionFileRequested() {
+			return definitionFileRequested;
+		}
+	}
+
 	private static class DefInjector extends DepthFirstAdapter {
 		private final IDefinitions definitions;
 
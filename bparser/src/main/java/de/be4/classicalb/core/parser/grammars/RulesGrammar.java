@@ -53,12 +53,10 @@ public class RulesGrammar implements IGrammar {
 
 	public static final String TAGS = "TAGS";
 
-	private static RulesGrammar ruleExtension;
+	// created eagerly, the grammar is stateless and shared by all threads
+	private static final RulesGrammar ruleExtension = new RulesGrammar();
 
 	public static RulesGrammar getInstance() {
-		if (ruleExtension == null) {
-			ruleExtension = new RulesGrammar();
-		}
 		return ruleExtension;
 	}
 
@@ -31,6 +31,7 @@ import de.be4.classicalb.core.parser.node.Node;
 import de.be4.classicalb.core.parser.node.PDefinition;
 import de.be4.classicalb.core.parser.node.Start;
 import de.be4.classicalb.core.parser.node.TIdentifierLiteral;
+import de.be4.classicalb.core.parser.util.DependencyGraph;
 import de.be4.classicalb.core.parser.util.Utils;
 import de.prob.prolog.output.IPrologTermOutput;
 import de.prob.prolog.output.PrologTermOutput;
@@ -370,26 +371,26 @@ public class RulesProject {
 		}
 	}
 
+	/**
+	 * Sorts the operations such that each operation comes after all of its
+	 * dependencies. Function operations are not included. Operations whose
+	 * transitive dependencies form a cycle cannot be sorted and are omitted.
+	 * This does not happen for a checked project: a cycle is reported as an
+	 * error and the transitive dependencies are cut at the cycle, so all
+	 * operations are returned.
+	 *
+	 * @param values
+	 *            the operations to sort
+	 * @return the sorted operations
+	 */
 	public List<AbstractOperation> sortOperations(Collection<AbstractOperation> values) {
-		HashMap<AbstractOperation, Set<AbstractOperation>> dependenciesMap = new HashMap<>();
+		Map<AbstractOperation, Set<AbstractOperation>> dependenciesMap = new LinkedHashMap<>();
 		for (AbstractOperation abstractOperation : values) {
 			if (!(abstractOperation instanceof FunctionOperation)) {
-				dependenciesMap.put(abstractOperation, new HashSet<>(abstractOperation.getTransitiveDependencies()));
+				dependenciesMap.put(abstractOperation, abstractOperation.getTransitiveDependencies());
 			}
 		}
-		List<AbstractOperation> resultList = new ArrayList<>();
-		List<AbstractOperation> todoList = new ArrayList<>(dependenciesMap.keySet());
-		while (!todoList.isEmpty()) {
-			for (AbstractOperation abstractOperation : new ArrayList<>(todoList)) {
-				final Set<AbstractOperation> deps = dependenciesMap.get(abstractOperation);
-				deps.removeAll(resultList);
-				if (deps.isEmpty()) {
-					resultList.add(abstractOperation);
-					todoList.remove(abstractOperation);
-				}
-			}
-		}
-		return resultList;
+		return new DependencyGraph<>(dependenciesMap).sortTopologically();
 	}
 
 	private void findImplicitDependenciesToComputations() {
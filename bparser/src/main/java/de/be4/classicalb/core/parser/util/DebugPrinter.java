@@ -5,7 +5,7 @@ import java.io.PrintStream;
 public class DebugPrinter {
 
 	
-	private static PrintStream out = System.out;
+	private static final PrintStream out = System.out;
 
 	private DebugPrinter() {
 	}
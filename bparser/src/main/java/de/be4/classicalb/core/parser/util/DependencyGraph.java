@@ -0,0 +1,244 @@
+package de.be4.classicalb.core.parser.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A directed graph given by the dependencies of its nodes. Sorting the nodes
+ * topologically (Kahn's algorithm) and finding all cycles (Tarjan's algorithm
+ * for strongly connected components) is done in O(V+E).
+ *
+ * The nodes of the graph are the keys of the dependency map, dependencies to
+ * other objects are ignored. The results are deterministic: nodes are
+ * considered in the iteration order of the map, so a {@link java.util.LinkedHashMap}
+ * can be used to prefer a certain order.
+ *
+ * @param <T>
+ *            the type of the nodes
+ */
+public final class DependencyGraph<T> {
+
+	private final List<T> nodes;
+	// the dependencies of node i are dependencies[dependencyStart[i]] to
+	// dependencies[dependencyStart[i+1] - 1]
+	private final int[] dependencyStart;
+	private final int[] dependencies;
+
+	/**
+	 * @param dependencies
+	 *            maps each node to the nodes it depends on
+	 */
+	public DependencyGraph(final Map<T, ? extends Collection<T>> dependencies) {
+		final int size = dependencies.size();
+		this.nodes = new ArrayList<>(dependencies.keySet());
+		final Map<T, Integer> index = new HashMap<>(size * 2);
+		for (int i = 0; i < size; i++) {
+			index.put(nodes.get(i), i);
+		}
+		int edgeCount = 0;
+		for (final Collection<T> deps : dependencies.values()) {
+			edgeCount += deps.size();
+		}
+		this.dependencyStart = new int[size + 1];
+		int[] edges = new int[edgeCount];
+		int edge = 0;
+		for (int i = 0; i < size; i++) {
+			dependencyStart[i] = edge;
+			for (final T dependency : dependencies.get(nodes.get(i))) {
+				final Integer target = index.get(dependency);
+				if (target != null) {
+					edges[edge++] = target;
+				}
+			}
+		}
+		dependencyStart[size] = edge;
+		this.dependencies = edge == edgeCount ? edges : Arrays.copyOf(edges, edge);
+	}
+
+	/**
+	 * Sorts the nodes such that each node comes after all of its dependencies.
+	 * Nodes which are part of a cycle or depend on a cycle are omitted.
+	 *
+	 * @return the sorted nodes
+	 */
+	public List<T> sortTopologically() {
+		final int size = nodes.size();
+		// the number of unsorted dependencies of each node
+		final int[] pending = new int[size];
+		// the nodes depending on each node (the reversed edges)
+		final int[] dependentStart = new int[size + 1];
+		final int[] dependents = new int[dependencies.length];
+		for (int i = 0; i < size; i++) {
+			pending[i] = dependencyStart[i + 1] - dependencyStart[i];
+			for (int e = dependencyStart[i]; e < dependencyStart[i + 1]; e++) {
+				dependentStart[dependencies[e] + 1]++;
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			dependentStart[i + 1] += dependentStart[i];
+		}
+		final int[] fill = Arrays.copyOf(dependentStart, size);
+		for (int i = 0; i < size; i++) {
+			for (int e = dependencyStart[i]; e < dependencyStart[i + 1]; e++) {
+				dependents[fill[dependencies[e]]++] = i;
+			}
+		}
+
+		// the sorted nodes are used as queue
+		final int[] queue = new int[size];
+		int tail = 0;
+		for (int i = 0; i < size; i++) {
+			if (pending[i] == 0) {
+				queue[tail++] = i;
+			}
+		}
+		for (int head = 0; head < tail; head++) {
+			final int node = queue[head];
+			for (int e = dependentStart[node]; e < dependentStart[node + 1]; e++) {
+				if (--pending[dependents[e]] == 0) {
+					queue[tail++] = dependents[e];
+				}
+			}
+		}
+		final List<T> result = new ArrayList<>(tail);
+		for (int i = 0; i < tail; i++) {
+			result.add(nodes.get(queue[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * Finds one cycle in each strongly connected component of the graph which
+	 * contains a cycle. A cycle is given by its nodes, the first node is
+	 * repeated at the end, e.g. <code>[a, b, a]</code>. Each cycle starts with
+	 * the first node of its component.
+	 *
+	 * @return the cycles, empty if the nodes can be sorted topologically
+	 */
+	public List<List<T>> findCycles() {
+		final int[] component = findStronglyConnectedComponents();
+		final List<List<T>> cycles = new ArrayList<>();
+		final boolean[] done = new boolean[nodes.size()];
+		for (int i = 0; i < nodes.size(); i++) {
+			if (!done[component[i]]) {
+				done[component[i]] = true;
+				final List<T> cycle = findCycle(i, component);
+				if (cycle != null) {
+					cycles.add(cycle);
+				}
+			}
+		}
+		return cycles;
+	}
+
+	/*
+	 * iterative version of Tarjan's algorithm, returns the number of the
+	 * component of each node
+	 */
+	private int[] findStronglyConnectedComponents() {
+		final int size = nodes.size();
+		final int[] number = new int[size];
+		final int[] lowLink = new int[size];
+		final int[] component = new int[size];
+		final boolean[] onStack = new boolean[size];
+		Arrays.fill(number, -1);
+		final int[] stack = new int[size];
+		int stackSize = 0;
+		// the call stack of the depth first search: node and next edge
+		final int[] callNodes = new int[size];
+		final int[] callEdges = new int[size];
+		int nextNumber = 0;
+		int components = 0;
+
+		for (int root = 0; root < size; root++) {
+			if (number[root] >= 0) {
+				continue;
+			}
+			int depth = 0;
+			callNodes[0] = root;
+			callEdges[0] = dependencyStart[root];
+			number[root] = lowLink[root] = nextNumber++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+			while (depth >= 0) {
+				final int node = callNodes[depth];
+				final int edge = callEdges[depth];
+				if (edge < dependencyStart[node + 1]) {
+					callEdges[depth]++;
+					final int next = dependencies[edge];
+					if (number[next] < 0) {
+						depth++;
+						callNodes[depth] = next;
+						callEdges[depth] = dependencyStart[next];
+						number[next] = lowLink[next] = nextNumber++;
+						stack[stackSize++] = next;
+						onStack[next] = true;
+					} else if (onStack[next]) {
+						lowLink[node] = Math.min(lowLink[node], number[next]);
+					}
+				} else {
+					if (lowLink[node] == number[node]) {
+						int member;
+						do {
+							member = stack[--stackSize];
+							onStack[member] = false;
+							component[member] = components;
+						} while (member != node);
+						components++;
+					}
+					depth--;
+					if (depth >= 0) {
+						final int parent = callNodes[depth];
+						lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+					}
+				}
+			}
+		}
+		// number the components in the order of their first node
+		final int[] renumbered = new int[components];
+		Arrays.fill(renumbered, -1);
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			if (renumbered[component[i]] < 0) {
+				renumbered[component[i]] = count++;
+			}
+			component[i] = renumbered[component[i]];
+		}
+		return component;
+	}
+
+	/*
+	 * a shortest cycle from start back to start within its component (breadth
+	 * first search), or null if there is none
+	 */
+	private List<T> findCycle(final int start, final int[] component) {
+		final Map<Integer, Integer> predecessor = new HashMap<>();
+		final List<Integer> queue = new ArrayList<>();
+		queue.add(start);
+		for (int head = 0; head < queue.size(); head++) {
+			final int node = queue.get(head);
+			for (int e = dependencyStart[node]; e < dependencyStart[node + 1]; e++) {
+				final int next = dependencies[e];
+				if (next == start) {
+					final List<T> cycle = new ArrayList<>();
+					cycle.add(nodes.get(start));
+					for (int n = node; n != start; n = predecessor.get(n)) {
+						cycle.add(nodes.get(n));
+					}
+					cycle.add(nodes.get(start));
+					Collections.reverse(cycle);
+					return cycle;
+				} else if (component[next] == component[start] && !predecessor.containsKey(next)) {
+					predecessor.put(next, node);
+					queue.add(next);
+				}
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,377 @@
+package de.be4.classicalb.core.parser.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import de.be4.classicalb.core.parser.node.Node;
+import de.be4.classicalb.core.parser.node.Token;
+import de.hhu.stups.sablecc.patch.SourcePosition;
+
+/**
+ * Writes syntax trees into a compact binary format and reads them back. The
+ * format is derived from the accessors of the generated node classes, i.e. it
+ * does not need to be adapted if the grammar changes. Class names and token texts
+ * are written only once and referenced by their index afterwards.
+ *
+ * The serialized form is only valid for the parser version that has written
+ * it.
+ */
+public final class NodeSerializer {
+
+	private static final int NULL_NODE = 0;
+	private static final byte NO_POSITION = 0;
+	private static final byte START_POSITION = 1;
+	private static final byte END_POSITION = 2;
+
+	private static final Map<Class<?>, NodeClassInfo> classInfos = new HashMap<>();
+
+	private NodeSerializer() {
+	}
+
+	/**
+	 * Writes nodes to a stream. All nodes written by one writer are numbered in
+	 * preorder, starting with 0. The numbers can be used to refer to nodes
+	 * which have already been written (see {@link #getIndex(Node)}).
+	 */
+	public static final class Writer {
+		private final DataOutputStream out;
+		private final Map<String, Integer> strings = new HashMap<>();
+		private final Map<Node, Integer> indices = new IdentityHashMap<>();
+
+		public Writer(final DataOutputStream out) {
+			this.out = out;
+		}
+
+		public void write(final Node node) throws IOException {
+			if (node == null) {
+				out.writeInt(NULL_NODE);
+				return;
+			}
+			final NodeClassInfo info = getClassInfo(node.getClass());
+			writeString(info.className, 1);
+			indices.put(node, indices.size());
+			if (node instanceof Token) {
+				final Token token = (Token) node;
+				writeString(token.getText(), 0);
+				out.writeInt(token.getLine());
+				out.writeInt(token.getPos());
+			} else {
+				writePositions(node);
+				for (final ChildInfo child : info.children) {
+					final Object value = child.get(node);
+					if (child.isList) {
+						final List<?> list = (List<?>) value;
+						out.writeInt(list.size());
+						for (final Object element : list) {
+							write((Node) element);
+						}
+					} else {
+						write((Node) value);
+					}
+				}
+			}
+		}
+
+		/**
+		 * @param node
+		 *            a node
+		 * @return the preorder index of the node or -1 if the node has not
+		 *         been written by this writer
+		 */
+		public int getIndex(final Node node) {
+			final Integer index = indices.get(node);
+			return index == null ? -1 : index;
+		}
+
+		public void writeString(final String string) throws IOException {
+			writeString(string, 0);
+		}
+
+		private void writePositions(final Node node) throws IOException {
+			final SourcePosition start = node.getStartPos();
+			final SourcePosition end = node.getEndPos();
+			byte flags = NO_POSITION;
+			if (start != null) {
+				flags |= START_POSITION;
+			}
+			if (end != null) {
+				flags |= END_POSITION;
+			}
+			out.writeByte(flags);
+			if (start != null) {
+				out.writeInt(start.getLine());
+				out.writeInt(start.getPos());
+			}
+			if (end != null) {
+				out.writeInt(end.getLine());
+				out.writeInt(end.getPos());
+			}
+		}
+
+		/*
+		 * Strings are written as index into the table of already written
+		 * strings, shifted by 'offset' so that reserved values can be used by
+		 * the caller. New strings are written as -1 followed by the number of
+		 * bytes and the UTF-8 encoding of the string (writeUTF is limited to
+		 * 65535 bytes, string literals and definitions may be longer).
+		 */
+		private void writeString(final String string, final int offset) throws IOException {
+			final Integer index = strings.get(string);
+			if (index == null) {
+				strings.put(string, strings.size());
+				out.writeInt(-1);
+				final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			} else {
+				out.writeInt(index + offset);
+			}
+		}
+	}
+
+	/**
+	 * Reads nodes written by a {@link Writer}. The reader has to read the
+	 * nodes and strings in the same order as they have been written.
+	 */
+	public static final class Reader {
+		private final DataInputStream in;
+		private final List<String> strings = new ArrayList<>();
+		private final List<Node> nodes = new ArrayList<>();
+
+		public Reader(final DataInputStream in) {
+			this.in = in;
+		}
+
+		public Node read() throws IOException {
+			final int classIndex = in.readInt();
+			if (classIndex == NULL_NODE) {
+				return null;
+			}
+			final String className = readString(classIndex, 1);
+			final NodeClassInfo info = getClassInfo(className);
+			final Node node;
+			if (info.isToken) {
+				final String text = readString(in.readInt(), 0);
+				node = info.createToken(text);
+				nodes.add(node);
+				final Token token = (Token) node;
+				token.setLine(in.readInt());
+				token.setPos(in.readInt());
+			} else {
+				node = info.create();
+				nodes.add(node);
+				readPositions(node);
+				for (final ChildInfo child : info.children) {
+					if (child.isList) {
+						final int size = in.readInt();
+						final List<Node> list = new ArrayList<>(size);
+						for (int i = 0; i < size; i++) {
+							list.add(read());
+						}
+						child.set(node, list);
+					} else {
+						child.set(node, read());
+					}
+				}
+			}
+			return node;
+		}
+
+		/**
+		 * @param index
+		 *            a preorder index as returned by
+		 *            {@link Writer#getIndex(Node)}
+		 * @return the node with the given index
+		 */
+		public Node getNode(final int index) {
+			return nodes.get(index);
+		}
+
+		public String readString() throws IOException {
+			return readString(in.readInt(), 0);
+		}
+
+		private void readPositions(final Node node) throws IOException {
+			final byte flags = in.readByte();
+			if ((flags & START_POSITION) != 0) {
+				node.setStartPos(new SourcePosition(in.readInt(), in.readInt()));
+			}
+			if ((flags & END_POSITION) != 0) {
+				node.setEndPos(new SourcePosition(in.readInt(), in.readInt()));
+			}
+		}
+
+		private String readString(final int index, final int offset) throws IOException {
+			if (index == -1) {
+				final int length = in.readInt();
+				if (length < 0) {
+					throw new IOException("Invalid string length " + length);
+				}
+				final byte[] bytes = new byte[length];
+				in.readFully(bytes);
+				final String string = new String(bytes, StandardCharsets.UTF_8);
+				strings.add(string);
+				return string;
+			} else {
+				return strings.get(index - offset);
+			}
+		}
+	}
+
+	private static NodeClassInfo getClassInfo(final Class<?> clazz) {
+		synchronized (classInfos) {
+			NodeClassInfo info = classInfos.get(clazz);
+			if (info == null) {
+				info = new NodeClassInfo(clazz);
+				classInfos.put(clazz, info);
+			}
+			return info;
+		}
+	}
+
+	private static NodeClassInfo getClassInfo(final String className) throws IOException {
+		try {
+			return getClassInfo(Class.forName(className));
+		} catch (ClassNotFoundException | IllegalArgumentException e) {
+			throw new IOException("Unknown node class " + className, e);
+		}
+	}
+
+	private static final class NodeClassInfo {
+		private final String className;
+		private final boolean isToken;
+		private final List<ChildInfo> children = new ArrayList<>();
+		private Constructor<?> constructor;
+		private boolean hasTextConstructor;
+
+		NodeClassInfo(final Class<?> clazz) {
+			if (!Node.class.isAssignableFrom(clazz)) {
+				throw new IllegalArgumentException(clazz.getName());
+			}
+			this.className = clazz.getName();
+			this.isToken = Token.class.isAssignableFrom(clazz);
+			try {
+				if (isToken) {
+					try {
+						constructor = clazz.getConstructor(String.class);
+						hasTextConstructor = true;
+					} catch (NoSuchMethodException e) {
+						constructor = clazz.getConstructor();
+					}
+				} else {
+					constructor = clazz.getConstructor();
+					collectChildren(clazz);
+				}
+			} catch (NoSuchMethodException e) {
+				throw new IllegalStateException("Node class " + clazz.getName() + " does not provide the generated "
+						+ "constructors and accessors", e);
+			}
+		}
+
+		/*
+		 * The generated node classes provide a getter getName and a setter
+		 * setName (which also sets the parent) for each child. The children
+		 * are stored in fields named _name_, each of them must be covered by
+		 * an accessor pair, otherwise the class is rejected.
+		 */
+		private void collectChildren(final Class<?> clazz) throws NoSuchMethodException {
+			final List<Method> getters = new ArrayList<>();
+			for (final Method method : clazz.getDeclaredMethods()) {
+				final Class<?> type = method.getReturnType();
+				if (Modifier.isPublic(method.getModifiers()) && !Modifier.isStatic(method.getModifiers())
+						&& method.getName().startsWith("get") && method.getParameterTypes().length == 0
+						&& (Node.class.isAssignableFrom(type) || type.equals(LinkedList.class))) {
+					getters.add(method);
+				}
+			}
+			Collections.sort(getters, new Comparator<Method>() {
+				@Override
+				public int compare(Method m1, Method m2) {
+					return m1.getName().compareTo(m2.getName());
+				}
+			});
+			for (final Method getter : getters) {
+				final boolean isList = getter.getReturnType().equals(LinkedList.class);
+				final Method setter = clazz.getMethod("set" + getter.getName().substring(3),
+						isList ? List.class : getter.getReturnType());
+				children.add(new ChildInfo(getter, setter, isList));
+			}
+
+			int childFields = 0;
+			for (final Field field : clazz.getDeclaredFields()) {
+				final String name = field.getName();
+				if (!Modifier.isStatic(field.getModifiers()) && name.length() > 2 && name.startsWith("_")
+						&& name.endsWith("_")) {
+					childFields++;
+				}
+			}
+			if (childFields != children.size()) {
+				throw new IllegalStateException("Node class " + clazz.getName() + " has " + childFields
+						+ " children, but " + children.size() + " accessors");
+			}
+		}
+
+		Node create() throws IOException {
+			try {
+				return (Node) constructor.newInstance();
+			} catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+				throw new IOException("Cannot create node " + className, e);
+			}
+		}
+
+		Node createToken(final String text) throws IOException {
+			try {
+				if (hasTextConstructor) {
+					return (Node) constructor.newInstance(text);
+				} else {
+					return (Node) constructor.newInstance();
+				}
+			} catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+				throw new IOException("Cannot create token " + className, e);
+			}
+		}
+	}
+
+	private static final class ChildInfo {
+		private final Method getter;
+		private final Method setter;
+		private final boolean isList;
+
+		ChildInfo(final Method getter, final Method setter, final boolean isList) {
+			this.getter = getter;
+			this.setter = setter;
+			this.isList = isList;
+		}
+
+		Object get(final Node node) throws IOException {
+			try {
+				return getter.invoke(node);
+			} catch (IllegalAccessException | InvocationTargetException e) {
+				throw new IOException(e);
+			}
+		}
+
+		void set(final Node node, final Object value) throws IOException {
+			try {
+				setter.invoke(node, value);
+			} catch (IllegalAccessException | InvocationTargetException e) {
+				throw new IOException(e);
+			}
+		}
+	}
+}
@@ -7,7 +7,6 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -74,44 +73,26 @@ public final class Utils {
 		return "[" + sourcePos.getLine() + "," + sourcePos.getPos() + "]";
 	}
 
+	/**
+	 * @see DependencyGraph#sortTopologically()
+	 */
 	public static <T> List<T> sortByTopologicalOrder(final Map<T, Set<T>> dependencies) {
-		final Set<T> allValues = new HashSet<>(dependencies.keySet());
-		ArrayList<T> sortedList = new ArrayList<>();
-		boolean newRun = true;
-		while (newRun) {
-			newRun = false;
-			final ArrayList<T> todo = new ArrayList<>(allValues);
-			todo.removeAll(sortedList);
-			for (T element : todo) {
-				Set<T> deps = new HashSet<>(dependencies.get(element));
-				deps.removeAll(sortedList);
-				if (deps.isEmpty()) {
-					sortedList.add(element);
-					newRun = true;
-				}
-			}
-		}
-		return sortedList;
+		return new DependencyGraph<>(dependencies).sortTopologically();
 	}
 
+	/**
+	 * Returns a cycle between the remaining elements, i.e., the elements
+	 * which cannot be sorted topologically.
+	 *
+	 * @see DependencyGraph#findCycles()
+	 */
 	public static <T> List<T> determineCycle(final Set<T> remaining, final Map<T, Set<T>> dependencies) {
-		ArrayList<T> cycle = new ArrayList<>();
-		Set<T> set = new HashSet<>(remaining);
-		boolean newRun = true;
-		while (newRun) {
-			for (T next : set) {
-				if (cycle.contains(next)) {
-					newRun = false;
-					cycle.add(next);
-					break;
-				} else if (remaining.contains(next)) {
-					cycle.add(next);
-					set = new HashSet<>(dependencies.get(next));
-					break;
-				}
+		for (final List<T> cycle : new DependencyGraph<>(dependencies).findCycles()) {
+			if (remaining.contains(cycle.get(0))) {
+				return cycle;
 			}
 		}
-		return cycle;
+		return new ArrayList<>();
 	}
 
 	public static String getFileWithoutExtension(String f) {
@@ -126,6 +107,30 @@ public final class Utils {
 		return res;
 	}
 
+	/**
+	 * Returns the canonical path of the file if it exists, otherwise the given
+	 * file name.
+	 *
+	 * @param fileName
+	 *            the file name, may be <code>null</code>
+	 * @return the canonical file name
+	 */
+	public static String getCanonicalFileName(final String fileName) {
+		if (fileName == null) {
+			return null;
+		}
+		File f = new File(fileName);
+		if (f.exists()) {
+			try {
+				return f.getCanonicalPath();
+			} catch (IOException e) {
+				return fileName;
+			}
+		} else {
+			return fileName;
+		}
+	}
+
 	public static final String readFile(final File filePath) throws IOException {
 		String content = null;
 		try (FileInputStream fileInputStream = new FileInputStream(filePath)) {
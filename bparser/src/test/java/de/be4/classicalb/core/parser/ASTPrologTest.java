@@ -2,6 +2,7 @@ package de.be4.classicalb.core.parser;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.Arrays;
@@ -45,6 +46,9 @@ import de.be4.classicalb.core.parser.node.TIdentifierLiteral;
 import de.be4.classicalb.core.parser.node.TIntegerLiteral;
 import de.prob.prolog.output.IPrologTermOutput;
 import de.prob.prolog.output.PrologTermOutput;
+import de.prob.prolog.output.StructuredPrologOutput;
+import de.prob.prolog.term.PrologTermInterner;
+import util.Helpers;
 
 public class ASTPrologTest {
 	private boolean remove_restrictions;
@@ -330,4 +334,16 @@ public class ASTPrologTest {
 
 	}
 
+	@Test
+	public void testInternedMachineTerm() throws Exception {
+		final File machine = new File("src/test/resources/parsable/PerformanceTest50II.mch");
+		final Start start = new BParser(machine.getName()).parseFile(machine, false);
+		final StructuredPrologOutput plain = new StructuredPrologOutput();
+		Helpers.printAsProlog(start, plain);
+		final StructuredPrologOutput shared = new StructuredPrologOutput(new PrologTermInterner());
+		Helpers.printAsProlog(start, shared);
+		assertEquals(1, plain.getSentences().size());
+		assertEquals(plain.getSentences(), shared.getSentences());
+	}
+
 }
@@ -0,0 +1,201 @@
+package de.be4.classicalb.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import util.AbstractParseMachineTest;
+
+/**
+ * Parses all machines of the parsable corpus in many threads at the same time,
+ * each with its own parsers, and checks that the results are the same as
+ * those of parsing them one after the other.
+ */
+public class ConcurrentParsingTest extends AbstractParseMachineTest {
+
+	private static final String PATH = "src/test/resources/parsable";
+	private static final int THREADS = 8;
+
+	@Test
+	public void testParsableCorpus() throws Exception {
+		final File[] machines = getMachines(PATH);
+		assertTrue(machines.length > 0);
+		final String[] expected = new String[machines.length];
+		for (int i = 0; i < machines.length; i++) {
+			expected[i] = parse(machines[i]);
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final List<Future<String[]>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				final int offset = t * machines.length / THREADS;
+				futures.add(executor.submit(new Callable<String[]>() {
+					@Override
+					public String[] call() throws Exception {
+						// every thread starts at a different machine
+						final String[] results = new String[machines.length];
+						for (int i = 0; i < machines.length; i++) {
+							final int index = (offset + i) % machines.length;
+							results[index] = parse(machines[index]);
+						}
+						return results;
+					}
+				}));
+			}
+			for (final Future<String[]> future : futures) {
+				final String[] results = future.get();
+				for (int i = 0; i < machines.length; i++) {
+					assertEquals(machines[i].getName(), expected[i], results[i]);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testConcurrentUseRejected() throws Exception {
+		final BParser parser = new BParser();
+		final AtomicReference<Exception> nested = new AtomicReference<>();
+		// the content provider is called while the parser is used: the same
+		// thread may use the parser again, another thread may not
+		final IFileContentProvider provider = new NoContentProvider() {
+			@Override
+			public String getFileContent(final File directory, final String filename) throws IOException {
+				final Thread other = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							parser.parse("#PREDICATE 1 = 1", false);
+						} catch (Exception e) {
+							nested.set(e);
+						}
+					}
+				});
+				other.start();
+				try {
+					other.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				try {
+					assertNotNull(parser.parse("#PREDICATE 1 = 1", false));
+				} catch (Exception e) {
+					throw new IOException(e);
+				}
+				return "DEFINITIONS def == 1";
+			}
+		};
+		assertNotNull(parser.parse("MACHINE Test DEFINITIONS \"Test.def\" END", false, provider));
+		assertTrue(nested.get() instanceof IllegalStateException);
+		// the parser can be used by another thread afterwards
+		final Thread other = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					new BParser().parse("#PREDICATE 1 = 1", false);
+					parser.parse("#PREDICATE 1 = 1", false);
+					nested.set(null);
+				} catch (Exception e) {
+					nested.set(e);
+				}
+			}
+		});
+		other.start();
+		other.join();
+		assertEquals(null, nested.get());
+	}
+
+	@Test
+	public void testStateNotChangedByOtherThread() throws Exception {
+		final BParser parser = new BParser();
+		final IDefinitionFileProvider contentProvider = parser.getContentProvider();
+		final IDefinitions definitions = parser.getDefinitions();
+		final ParseOptions options = parser.getOptions();
+		final List<Exception> rejected = new ArrayList<>();
+		final IFileContentProvider provider = new NoContentProvider() {
+			@Override
+			public String getFileContent(final File directory, final String filename) throws IOException {
+				final Thread other = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							parser.parseFile(new File(PATH, "Test.mch"), false);
+						} catch (Exception e) {
+							rejected.add(e);
+						}
+						try {
+							parser.setDirectory(new File(PATH));
+						} catch (Exception e) {
+							rejected.add(e);
+						}
+						try {
+							parser.setDefinitions(new Definitions());
+						} catch (Exception e) {
+							rejected.add(e);
+						}
+						try {
+							parser.setDoneDefFiles(new ArrayList<String>());
+						} catch (Exception e) {
+							rejected.add(e);
+						}
+						try {
+							parser.setParseOptions(new ParseOptions());
+						} catch (Exception e) {
+							rejected.add(e);
+						}
+					}
+				});
+				other.start();
+				try {
+					other.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return "DEFINITIONS def == 1";
+			}
+		};
+		assertNotNull(parser.parse("MACHINE Test DEFINITIONS \"Test.def\" END", false, provider));
+		assertEquals(5, rejected.size());
+		for (final Exception e : rejected) {
+			assertTrue(e.toString(), e instanceof IllegalStateException);
+		}
+		assertSame(contentProvider, parser.getContentProvider());
+		assertSame(definitions, parser.getDefinitions());
+		assertSame(options, parser.getOptions());
+	}
+
+	/*
+	 * the Prolog output of the machine and the machines it refers to, or the
+	 * error
+	 */
+	private static String parse(final File machine) throws UnsupportedEncodingException {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+		final PrintStream out = new PrintStream(output, true, "UTF-8");
+		final PrintStream err = new PrintStream(errors, true, "UTF-8");
+		final ParsingBehaviour behaviour = new ParsingBehaviour();
+		behaviour.setPrologOutput(true);
+		final int result = new BParser(machine.getAbsolutePath()).fullParsing(machine, behaviour, out, err);
+		out.close();
+		err.close();
+		return result + "\n" + output.toString("UTF-8") + "\n" + errors.toString("UTF-8");
+	}
+}
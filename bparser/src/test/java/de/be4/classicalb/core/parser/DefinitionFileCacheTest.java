@@ -0,0 +1,132 @@
+package de.be4.classicalb.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.be4.classicalb.core.parser.node.Start;
+
+/**
+ * Checks that definition files taken from a {@link DefinitionFileCache} yield
+ * the same results as freshly parsed ones and that changed files are parsed
+ * again.
+ */
+public class DefinitionFileCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private DefinitionFileCache cache;
+
+	@Before
+	public void createCache() {
+		cache = new DefinitionFileCache();
+	}
+
+	@Test
+	public void testSharedBetweenParsers() throws Exception {
+		writeFile("Defs.def", "DEFINITIONS foo == 1; sub == skip");
+		final File machine = writeFile("M.mch", "MACHINE M DEFINITIONS \"Defs.def\"; bar == foo + 1 CONSTANTS c "
+				+ "PROPERTIES c = bar OPERATIONS op = sub END");
+		final String expected = parse(machine, null);
+		assertEquals(expected, parse(machine, cache));
+		assertEquals(0, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		// the cached definitions are not modified by the parsers using them
+		assertEquals(expected, parse(machine, cache));
+		assertEquals(expected, parse(machine, cache));
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testChangedIncludedFileInvalidatesEntry() throws Exception {
+		writeFile("Inner.def", "DEFINITIONS foo == 1");
+		writeFile("Outer.def", "DEFINITIONS \"Inner.def\"; baz == 2");
+		final File machine = writeFile("M.mch", "MACHINE M DEFINITIONS \"Outer.def\" CONSTANTS c "
+				+ "PROPERTIES c = foo + baz END");
+		final String before = parse(machine, cache);
+		assertEquals(before, parse(machine, cache));
+		assertEquals(1, cache.getHitCount());
+
+		writeFile("Inner.def", "DEFINITIONS foo == 3");
+		final String after = parse(machine, cache);
+		assertFalse(before.equals(after));
+		assertEquals(after, parse(machine, null));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(after, parse(machine, cache));
+		assertEquals(2, cache.getHitCount());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+		cache = new DefinitionFileCache(1);
+		writeFile("A.def", "DEFINITIONS a == 1");
+		writeFile("B.def", "DEFINITIONS b == 2");
+		final File machineA = writeFile("A.mch", "MACHINE A DEFINITIONS \"A.def\" CONSTANTS c PROPERTIES c = a END");
+		final File machineB = writeFile("B.mch", "MACHINE B DEFINITIONS \"B.def\" CONSTANTS c PROPERTIES c = b END");
+		parse(machineA, cache);
+		parse(machineB, cache);
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		parse(machineB, cache);
+		assertEquals(1, cache.getHitCount());
+		parse(machineA, cache);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testDefaultCache() throws Exception {
+		writeFile("Defs.def", "DEFINITIONS foo == 1");
+		final File machine = writeFile("M.mch", "MACHINE M DEFINITIONS \"Defs.def\" CONSTANTS c "
+				+ "PROPERTIES c = foo END");
+		final DefinitionFileCache defaultCache = DefinitionFileCache.getDefault();
+		// only used if requested
+		final int misses = defaultCache.getMissCount();
+		new BParser(machine.getPath()).parseFile(machine, false);
+		new BParser(machine.getPath()).parseFile(machine, false, new CachingDefinitionFileProvider());
+		assertEquals(misses, defaultCache.getMissCount());
+
+		new BParser(machine.getPath()).parseFile(machine, false,
+				new CachingDefinitionFileProvider(DefinitionFileCache.getDefault()));
+		final int hits = defaultCache.getHitCount();
+		new BParser(machine.getPath()).parseFile(machine, false,
+				new CachingDefinitionFileProvider(DefinitionFileCache.getDefault()));
+		assertTrue(defaultCache.getHitCount() > hits);
+	}
+
+	/*
+	 * the Prolog output of the machine, parsed without a shared cache if the
+	 * cache is null
+	 */
+	private static String parse(final File machine, final DefinitionFileCache cache) throws Exception {
+		final CachingDefinitionFileProvider provider = new CachingDefinitionFileProvider(cache);
+		final BParser parser = new BParser(machine.getPath());
+		final Start tree = parser.parseFile(machine, false, provider);
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final PrintStream out = new PrintStream(bytes, true, "UTF-8");
+		BParser.printASTasProlog(out, parser, machine, tree, new ParsingBehaviour(), provider);
+		out.close();
+		return bytes.toString("UTF-8");
+	}
+
+	private File writeFile(final String name, final String content) throws IOException {
+		final File file = new File(folder.getRoot(), name);
+		try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+			out.print(content);
+		}
+		return file;
+	}
+}
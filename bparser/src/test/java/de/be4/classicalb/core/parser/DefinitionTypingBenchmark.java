@@ -0,0 +1,42 @@
+package de.be4.classicalb.core.parser;
+
+import org.junit.Test;
+
+import de.be4.classicalb.core.parser.definitions.DefinitionsOrderTest;
+
+/**
+ * Measures the time needed to parse machines with long chains of definitions,
+ * where each definition uses the previous one. The definitions are typed by
+ * the {@link PreParser} before the main parser runs.
+ */
+public class DefinitionTypingBenchmark {
+
+	private static final int WARMUP = 1;
+	private static final int RUNS = 3;
+
+	@Test
+	public void testChainedDefinitions() throws Exception {
+		for (final int size : new int[] { 100, 200, 400 }) {
+			benchmark(size);
+		}
+	}
+
+	private void benchmark(final int size) throws Exception {
+		final String machine = DefinitionsOrderTest.createChainedMachine(size);
+		for (int i = 0; i < WARMUP; i++) {
+			parse(machine);
+		}
+		long time = 0;
+		for (int i = 0; i < RUNS; i++) {
+			time += parse(machine);
+		}
+		System.out.println(3 * size + " chained definitions: " + time / RUNS + "ms");
+	}
+
+	private static long parse(final String machine) throws Exception {
+		final BParser parser = new BParser("Chain");
+		final long start = System.currentTimeMillis();
+		parser.parse(machine, false);
+		return System.currentTimeMillis() - start;
+	}
+}
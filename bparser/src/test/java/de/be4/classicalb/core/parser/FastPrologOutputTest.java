@@ -0,0 +1,99 @@
+package de.be4.classicalb.core.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import de.be4.classicalb.core.parser.analysis.prolog.RecursiveMachineLoader;
+import de.be4.classicalb.core.parser.exceptions.BCompoundException;
+import de.be4.classicalb.core.parser.node.Start;
+import de.prob.prolog.output.StructuredPrologOutput;
+import de.prob.prolog.term.PrologTerm;
+import util.AbstractParseMachineTest;
+import util.PolySuite;
+import util.PolySuite.Config;
+import util.PolySuite.Configuration;
+
+/**
+ * Checks that the fast_read output written while visiting the AST is the same
+ * as the encoding of the complete term by {@link FastReadTransformer}.
+ */
+@RunWith(PolySuite.class)
+public class FastPrologOutputTest extends AbstractParseMachineTest {
+
+	private static final String PATH = "src/test/resources/parsable";
+
+	private final File machine;
+
+	public FastPrologOutputTest(File machine) {
+		this.machine = machine;
+	}
+
+	@Test
+	public void testSameOutput() throws Exception {
+		final ParsingBehaviour behaviour = new ParsingBehaviour();
+		behaviour.setAddLineNumbers(true);
+
+		final String expected;
+		try {
+			expected = transform(machine, behaviour);
+		} catch (BCompoundException e) {
+			// some machines reference machines which are not available
+			return;
+		} catch (UnsupportedOperationException e) {
+			// strings are not supported by StructuredPrologOutput
+			return;
+		}
+
+		final BParser parser = new BParser(machine.getName());
+		final Start start = parser.parseFile(machine, false);
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final PrintStream out = new PrintStream(bytes, false, "UTF-8");
+		BParser.printASTasFastProlog(out, parser, machine, start, behaviour, parser.getContentProvider());
+		out.flush();
+		assertEquals(machine.getName(), expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	private static String transform(final File machine, final ParsingBehaviour behaviour) throws Exception {
+		final BParser parser = new BParser(machine.getName());
+		final Start start = parser.parseFile(machine, false);
+		final RecursiveMachineLoader rml = new RecursiveMachineLoader(machine.getParent(), parser.getContentProvider(),
+				behaviour);
+		rml.loadAllMachines(machine, start, parser.getDefinitions());
+		final StructuredPrologOutput facts = new StructuredPrologOutput();
+		rml.printAsProlog(facts);
+		final StructuredPrologOutput output = new StructuredPrologOutput();
+		output.openList();
+		for (final PrologTerm term : facts.getSentences()) {
+			output.printTerm(term);
+		}
+		output.closeList();
+		output.fullstop();
+		return new FastReadTransformer(output).write();
+	}
+
+	@Config
+	public static Configuration getConfig() {
+		final File[] machines = getMachines(PATH);
+		return new Configuration() {
+
+			public int size() {
+				return machines.length;
+			}
+
+			public File getTestValue(int index) {
+				return machines[index];
+			}
+
+			public String getTestName(int index) {
+				return machines[index].getName();
+			}
+		};
+	}
+}
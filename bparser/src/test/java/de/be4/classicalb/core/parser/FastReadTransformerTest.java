@@ -84,6 +84,20 @@ public class FastReadTransformerTest  {
 		check(expected);
 	}
 	
+	@Test
+	public void testLongList() {
+		final int size = 200000;
+		final StringBuilder expected = new StringBuilder("D");
+		spo.openList();
+		for (int i = 0; i < size; i++) {
+			spo.printNumber(i);
+			expected.append("[I").append(i).append(ZERO);
+		}
+		spo.closeList();
+		spo.fullstop();
+		check(expected.append(']').toString());
+	}
+
 	private void check(String expected) {
 		String actual = new FastReadTransformer(spo).write();
 		assertEquals(expected, actual);
@@ -0,0 +1,112 @@
+package de.be4.classicalb.core.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import de.be4.classicalb.core.parser.exceptions.BCompoundException;
+
+/**
+ * Measures the throughput of parsing short formulas with a new
+ * {@link BParser} for each formula and with {@link FormulaParser} sessions,
+ * in one and in several threads, without and with a large definitions
+ * context.
+ *
+ * Note that the generated parser method is too large to be compiled by
+ * HotSpot by default, running with <code>-XX:-DontCompileHugeMethods</code>
+ * speeds up both variants considerably.
+ */
+public class FormulaParserBenchmark {
+
+	private static final int WARMUP = 2;
+	private static final int RUNS = 3;
+	private static final int FORMULAS = 2000;
+	private static final int DEFINITIONS = 2000;
+
+	private static final String[] INPUTS = { "x > 1 & y : NAT & z = {1,2,3}", "card(s) + 1 < 10 or t = {}",
+			"!i.(i : 1..n => f(i) >= 0)", "a /\\ b <: c & d = TRUE" };
+
+	@Test
+	public void testThroughput() throws Exception {
+		final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		for (final IDefinitions context : new IDefinitions[] { null, createContext() }) {
+			final String name = context == null ? "no definitions" : DEFINITIONS + " definitions";
+			report(name + ", 1 thread", run(context, 1));
+			report(name + ", " + threads + " threads", run(context, threads));
+		}
+	}
+
+	private static void report(final String name, final long[] times) {
+		final long total = (long) FORMULAS * RUNS * 1000;
+		System.out.println(name + ": new BParser " + total / Math.max(times[0], 1) + " formulas/s, FormulaParser "
+				+ total / Math.max(times[1], 1) + " formulas/s");
+	}
+
+	/*
+	 * returns the total time of the runs with a new parser per formula and
+	 * with pooled sessions
+	 */
+	private static long[] run(final IDefinitions context, final int threads) throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (int i = 0; i < WARMUP; i++) {
+				parse(executor, threads, context, false);
+				parse(executor, threads, context, true);
+			}
+			final long[] times = new long[2];
+			for (int i = 0; i < RUNS; i++) {
+				times[0] += parse(executor, threads, context, false);
+				times[1] += parse(executor, threads, context, true);
+			}
+			return times;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static long parse(final ExecutorService executor, final int threads, final IDefinitions context,
+			final boolean pooled) throws Exception {
+		final FormulaParserPool pool = context == null ? new FormulaParserPool() : new FormulaParserPool(context);
+		final long start = System.currentTimeMillis();
+		final List<Future<Void>> futures = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			final int first = t;
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws BCompoundException {
+					for (int i = first; i < FORMULAS; i += threads) {
+						final String input = BParser.PREDICATE_PREFIX + "\n" + INPUTS[i % INPUTS.length];
+						if (pooled) {
+							pool.get().parse(input);
+						} else {
+							final BParser parser = new BParser();
+							if (context != null) {
+								parser.setDefinitions(context);
+							}
+							parser.parse(input, false);
+						}
+					}
+					return null;
+				}
+			}));
+		}
+		for (final Future<Void> future : futures) {
+			future.get();
+		}
+		return System.currentTimeMillis() - start;
+	}
+
+	private static IDefinitions createContext() {
+		final MockedDefinitions context = new MockedDefinitions();
+		final IDefinitions.Type[] types = IDefinitions.Type.values();
+		for (int i = 0; i < DEFINITIONS; i++) {
+			context.addMockedDefinition("def" + i, types[1 + i % (types.length - 1)], i % 3);
+		}
+		return context;
+	}
+}
@@ -0,0 +1,134 @@
+package de.be4.classicalb.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import de.be4.classicalb.core.parser.exceptions.BCompoundException;
+import de.be4.classicalb.core.parser.node.Start;
+import util.Ast2String;
+
+public class FormulaParserTest {
+
+	private static final String[] FORMULAS = { "#PREDICATE x > 1 & y : NAT", "#EXPRESSION {1,2,3} \\/ z",
+			"#SUBSTITUTION x := x + 1", "#PREDICATE def & x = 1", "#EXPRESSION fun(1) + 2" };
+
+	@Test
+	public void testReuse() throws Exception {
+		final FormulaParser parser = new FormulaParser();
+		for (int i = 0; i < 3; i++) {
+			assertEquals(expected("#PREDICATE x > 1", new Definitions()), tree(parser.parsePredicate("x > 1")));
+			assertEquals(expected("#EXPRESSION 1 + y", new Definitions()), tree(parser.parseExpression("1 + y")));
+			assertEquals(expected("#SUBSTITUTION x := 1", new Definitions()),
+					tree(parser.parseSubstitution("x := 1")));
+		}
+	}
+
+	@Test
+	public void testReuseAfterError() throws Exception {
+		final FormulaParser parser = new FormulaParser();
+		try {
+			parser.parsePredicate("x > ");
+			fail("exception expected");
+		} catch (BCompoundException e) {
+			// the session must still be usable
+		}
+		assertEquals(expected("#PREDICATE x > 1", new Definitions()), tree(parser.parsePredicate("x > 1")));
+	}
+
+	@Test
+	public void testContext() throws Exception {
+		final MockedDefinitions context = createContext();
+		final FormulaParser parser = new FormulaParser(context);
+		for (final String formula : FORMULAS) {
+			assertEquals(expected(formula, context), tree(parser.parse(formula)));
+		}
+	}
+
+	@Test
+	public void testDefinitionsChanged() throws Exception {
+		final MockedDefinitions context = new MockedDefinitions();
+		final FormulaParser parser = new FormulaParser(context);
+		// without the definition, def is an expression and cannot be a conjunct
+		try {
+			parser.parsePredicate("def & x = 1");
+			fail("exception expected");
+		} catch (BCompoundException e) {
+			// expected
+		}
+		context.addMockedDefinition("def", IDefinitions.Type.Predicate, 0);
+		parser.definitionsChanged();
+		assertEquals(expected("#PREDICATE def & x = 1", context), tree(parser.parsePredicate("def & x = 1")));
+	}
+
+	@Test
+	public void testExtendedParsing() throws Exception {
+		final MockedDefinitions context = createContext();
+		final FormulaParser parser = new FormulaParser(context);
+		final Start start = parser.eparse("#PREDICATE a & b = 1");
+		assertNotNull(start);
+		final BParser reference = new BParser();
+		reference.setDefinitions(context);
+		assertEquals(tree(reference.eparse("#PREDICATE a & b = 1", context)), tree(start));
+	}
+
+	@Test
+	public void testPool() throws Exception {
+		final MockedDefinitions context = createContext();
+		final List<String> expected = new ArrayList<>();
+		for (final String formula : FORMULAS) {
+			expected.add(expected(formula, context));
+		}
+		final FormulaParserPool pool = new FormulaParserPool(context);
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<List<String>>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(new Callable<List<String>>() {
+					@Override
+					public List<String> call() throws Exception {
+						final List<String> trees = new ArrayList<>();
+						for (int j = 0; j < 50; j++) {
+							trees.clear();
+							for (final String formula : FORMULAS) {
+								trees.add(tree(pool.get().parse(formula)));
+							}
+						}
+						return trees;
+					}
+				}));
+			}
+			for (final Future<List<String>> future : futures) {
+				assertEquals(expected, future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static MockedDefinitions createContext() {
+		final MockedDefinitions context = new MockedDefinitions();
+		context.addMockedDefinition("def", IDefinitions.Type.Predicate, 0);
+		context.addMockedDefinition("fun", IDefinitions.Type.Expression, 1);
+		return context;
+	}
+
+	private static String expected(final String formula, final IDefinitions context) throws BCompoundException {
+		final BParser parser = new BParser();
+		parser.setDefinitions(context);
+		return tree(parser.parse(formula, false));
+	}
+
+	private static String tree(final Start start) {
+		return Ast2String.getTreeAsString(start);
+	}
+}
@@ -0,0 +1,140 @@
+package de.be4.classicalb.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.be4.classicalb.core.parser.analysis.prolog.ASTProlog;
+import de.be4.classicalb.core.parser.analysis.prolog.ClassicalPositionPrinter;
+import de.be4.classicalb.core.parser.analysis.prolog.NodeIdAssignment;
+import de.be4.classicalb.core.parser.exceptions.BCompoundException;
+import de.be4.classicalb.core.parser.node.Start;
+import de.prob.prolog.output.PrologTermOutput;
+import util.AbstractParseMachineTest;
+
+/**
+ * Checks that machines loaded from a {@link ParseCache} are identical to
+ * freshly parsed machines and that entries are invalidated if a referenced
+ * definition file changes.
+ */
+public class ParseCacheTest extends AbstractParseMachineTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ParseCache cache;
+
+	@Before
+	public void createCache() {
+		cache = new ParseCache(new File(folder.getRoot(), "cache"));
+	}
+
+	@Test
+	public void testCachedMachinesYieldSameResult() throws Exception {
+		final File[] machines = getMachines("src/test/resources/parsable");
+		for (final File machine : machines) {
+			final String expected = parse(machine, null);
+			assertEquals(machine.getName(), expected, parse(machine, cache));
+			assertEquals(machine.getName(), expected, parse(machine, cache));
+		}
+		// definition files are counted as well
+		assertTrue(cache.getHitCount() >= machines.length);
+	}
+
+	@Test
+	public void testLargeStringLiteral() throws Exception {
+		// longer than the 65535 bytes supported by DataOutput.writeUTF
+		final StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 70000; i++) {
+			text.append((char) ('a' + i % 26));
+		}
+		writeFile("Defs.def", "DEFINITIONS text == \"" + text + "\"");
+		final File machine = writeFile("M.mch", "MACHINE M DEFINITIONS \"Defs.def\" CONSTANTS c PROPERTIES c = \""
+				+ text + "\" & c = text END");
+		final String expected = parse(machine, null);
+		assertEquals(expected, parse(machine, cache));
+		assertEquals(0, cache.getHitCount());
+		assertEquals(expected, parse(machine, cache));
+		assertEquals(2, cache.getHitCount());
+	}
+
+	@Test
+	public void testDefinitionsFromCachedDefinitionFile() throws Exception {
+		writeFile("Defs.def", "DEFINITIONS foo == 1");
+		final File machine = writeFile("M.mch", "MACHINE M DEFINITIONS \"Defs.def\"; bar == foo + 1 CONSTANTS c "
+				+ "PROPERTIES c = bar END");
+		final String expected = parse(machine, null);
+		assertEquals(expected, parse(machine, cache));
+		assertEquals(0, cache.getHitCount());
+		assertEquals(expected, parse(machine, cache));
+		// the machine and the definition file
+		assertEquals(2, cache.getHitCount());
+	}
+
+	@Test
+	public void testChangedDefinitionFileInvalidatesMachine() throws Exception {
+		writeFile("Inner.def", "DEFINITIONS foo == 1");
+		writeFile("Outer.def", "DEFINITIONS \"Inner.def\"; baz == 2");
+		final File machine = writeFile("M.mch", "MACHINE M DEFINITIONS \"Outer.def\" CONSTANTS c "
+				+ "PROPERTIES c = foo END");
+		final String before = parse(machine, cache);
+		assertEquals(before, parse(machine, cache));
+		assertEquals(3, cache.getHitCount());
+
+		// both the machine and Outer.def depend on Inner.def
+		writeFile("Inner.def", "DEFINITIONS foo == 3");
+		final String after = parse(machine, cache);
+		assertEquals(parse(machine, null), after);
+		assertFalse(before.equals(after));
+		assertEquals(3, cache.getHitCount());
+		assertEquals(after, parse(machine, cache));
+		assertEquals(6, cache.getHitCount());
+	}
+
+	private File writeFile(final String name, final String content) throws IOException {
+		final File file = new File(folder.getRoot(), name);
+		try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+			out.print(content);
+		}
+		assertTrue(file.isFile());
+		return file;
+	}
+
+	private static String parse(final File machine, final ParseCache cache) throws Exception {
+		final BParser parser = new BParser(machine.getName());
+		parser.getOptions().setParseCache(cache);
+		final Start start;
+		try {
+			start = parser.parseFile(machine, false);
+		} catch (BCompoundException e) {
+			return e.getMessage();
+		}
+		final NodeIdAssignment nodeIds = new NodeIdAssignment();
+		start.apply(nodeIds);
+		final ClassicalPositionPrinter pprinter = new ClassicalPositionPrinter(nodeIds);
+		pprinter.printSourcePositions(true);
+		final StringWriter swriter = new StringWriter();
+		final PrologTermOutput pout = new PrologTermOutput(new PrintWriter(swriter), false);
+		final ASTProlog prolog = new ASTProlog(pout, pprinter);
+		start.apply(prolog);
+		final IDefinitions definitions = parser.getDefinitions();
+		for (final String name : new TreeSet<>(definitions.getDefinitionNames())) {
+			pout.printAtom(name);
+			pout.printAtom(definitions.getType(name).name());
+			definitions.getDefinition(name).apply(prolog);
+		}
+		pout.flush();
+		return swriter.toString();
+	}
+}
@@ -0,0 +1,99 @@
+package de.be4.classicalb.core.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.be4.classicalb.core.parser.node.Start;
+import de.prob.prolog.output.StructuredPrologOutput;
+import de.prob.prolog.term.PrologTerm;
+import de.prob.prolog.term.PrologTermInterner;
+import util.Helpers;
+
+/**
+ * Compares the heap used by the Prolog terms of machine ASTs created by
+ * {@link StructuredPrologOutput} with and without a
+ * {@link PrologTermInterner}, and the time needed to create them.
+ */
+public class PrologTermInterningBenchmark {
+
+	private static final int WARMUP = 1;
+	private static final int RUNS = 3;
+
+	@Test
+	public void testPerformanceTest50II() throws Exception {
+		benchmark("src/test/resources/parsable/PerformanceTest50II.mch");
+	}
+
+	@Test
+	public void testMegaMachine1() throws Exception {
+		benchmark("src/test/resources/MegaMachine1.mch");
+	}
+
+	private void benchmark(final String path) throws Exception {
+		final File machine = new File(path);
+		final Start start = new BParser(machine.getName()).parseFile(machine, false);
+		assertEquals(createTerm(start, null), createTerm(start, new PrologTermInterner()));
+		for (int i = 0; i < WARMUP; i++) {
+			createTerm(start, null);
+			createTerm(start, new PrologTermInterner());
+		}
+		long plain = 0;
+		long shared = 0;
+		for (int i = 0; i < RUNS; i++) {
+			long time = System.currentTimeMillis();
+			createTerm(start, null);
+			plain += System.currentTimeMillis() - time;
+			time = System.currentTimeMillis();
+			createTerm(start, new PrologTermInterner());
+			shared += System.currentTimeMillis() - time;
+		}
+		retainedHeap(start, false);
+		final long plainHeap = retainedHeap(start, false);
+		final long sharedHeap = retainedHeap(start, true);
+		System.out.println(path + ": without interner " + plainHeap / 1024 + "KB in " + plain / RUNS
+				+ "ms, with interner " + sharedHeap / 1024 + "KB in " + shared / RUNS + "ms");
+	}
+
+	private static PrologTerm createTerm(final Start start, final PrologTermInterner interner) {
+		final StructuredPrologOutput pout = new StructuredPrologOutput(interner);
+		Helpers.printAsProlog(start, pout);
+		final List<PrologTerm> sentences = pout.getSentences();
+		assertEquals(1, sentences.size());
+		return sentences.get(0);
+	}
+
+	/*
+	 * the heap used by the term, the interner is garbage when it is measured
+	 */
+	private static long retainedHeap(final Start start, final boolean intern) {
+		final long before = usedHeap();
+		final PrologTerm term = createTerm(start, intern ? new PrologTermInterner() : null);
+		final long after = usedHeap();
+		// keep the term alive until the heap has been measured
+		assertEquals(term, term);
+		return after - before;
+	}
+
+	/*
+	 * collects the garbage until the used heap does not shrink anymore
+	 */
+	private static long usedHeap() {
+		final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		long used = Long.MAX_VALUE;
+		while (true) {
+			memory.gc();
+			System.runFinalization();
+			final long current = memory.getHeapMemoryUsage().getUsed();
+			if (current >= used) {
+				return current;
+			}
+			used = current;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package de.be4.classicalb.core.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.junit.Test;
+
+/**
+ * Compares the parse times of the default mode (preparser and main lexer both
+ * scan the whole input) and the single pass mode (see {@link TokenBuffer}).
+ */
+public class SinglePassLexingBenchmark {
+
+	private static final int WARMUP = 1;
+	private static final int RUNS = 3;
+
+	@Test
+	public void testPerformanceTest50II() throws Exception {
+		benchmark(new File("src/test/resources/parsable/PerformanceTest50II.mch"));
+	}
+
+	@Test
+	public void testMegaMachine1() throws Exception {
+		benchmark(new File("src/test/resources/MegaMachine1.mch"));
+	}
+
+	private void benchmark(final File machine) throws Exception {
+		assertEquals(SinglePassLexingTest.parse(machine, false), SinglePassLexingTest.parse(machine, true));
+		for (int i = 0; i < WARMUP; i++) {
+			parse(machine, false);
+			parse(machine, true);
+		}
+		long twoPasses = 0;
+		long singlePass = 0;
+		for (int i = 0; i < RUNS; i++) {
+			twoPasses += parse(machine, false);
+			singlePass += parse(machine, true);
+		}
+		System.out.println(machine.getName() + ": two passes " + twoPasses / RUNS + "ms, single pass "
+				+ singlePass / RUNS + "ms");
+	}
+
+	private long parse(final File machine, final boolean singlePassLexing) throws Exception {
+		final ParseOptions options = new ParseOptions();
+		options.setSinglePassLexing(singlePassLexing);
+		final BParser parser = new BParser(machine.getName(), options);
+		final long start = System.currentTimeMillis();
+		parser.parseFile(machine, false);
+		return System.currentTimeMillis() - start;
+	}
+}
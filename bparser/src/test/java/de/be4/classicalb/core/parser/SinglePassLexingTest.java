@@ -0,0 +1,89 @@
+package de.be4.classicalb.core.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import de.be4.classicalb.core.parser.analysis.prolog.ASTProlog;
+import de.be4.classicalb.core.parser.analysis.prolog.ClassicalPositionPrinter;
+import de.be4.classicalb.core.parser.analysis.prolog.NodeIdAssignment;
+import de.be4.classicalb.core.parser.exceptions.BCompoundException;
+import de.be4.classicalb.core.parser.node.Start;
+import de.prob.prolog.output.PrologTermOutput;
+import util.AbstractParseMachineTest;
+import util.PolySuite;
+import util.PolySuite.Config;
+import util.PolySuite.Configuration;
+
+/**
+ * Checks that parsing with a single lexer pass (see {@link TokenBuffer})
+ * yields the same ASTs, source positions and error messages as the default
+ * mode.
+ */
+@RunWith(PolySuite.class)
+public class SinglePassLexingTest extends AbstractParseMachineTest {
+
+	private final File machine;
+
+	public SinglePassLexingTest(File machine) {
+		this.machine = machine;
+	}
+
+	@Test
+	public void testSameResult() throws Exception {
+		assertEquals(parse(machine, false), parse(machine, true));
+	}
+
+	static String parse(final File machine, final boolean singlePassLexing) throws Exception {
+		final ParseOptions options = new ParseOptions();
+		options.setSinglePassLexing(singlePassLexing);
+		final BParser parser = new BParser(machine.getName(), options);
+		final Start start;
+		try {
+			start = parser.parseFile(machine, false);
+		} catch (BCompoundException e) {
+			return e.getMessage();
+		}
+		final NodeIdAssignment nodeIds = new NodeIdAssignment();
+		start.apply(nodeIds);
+		final ClassicalPositionPrinter pprinter = new ClassicalPositionPrinter(nodeIds);
+		pprinter.printSourcePositions(true);
+		final StringWriter swriter = new StringWriter();
+		final PrologTermOutput pout = new PrologTermOutput(new PrintWriter(swriter), false);
+		start.apply(new ASTProlog(pout, pprinter));
+		pout.flush();
+		return swriter.toString();
+	}
+
+	@Config
+	public static Configuration getConfig() {
+		final List<File> list = new ArrayList<>();
+		list.addAll(Arrays.asList(getMachines("src/test/resources/parsable")));
+		list.addAll(Arrays.asList(getMachines("src/test/resources/unparsable")));
+		list.add(new File("src/test/resources/MegaMachine1.mch"));
+		final File[] machines = list.toArray(new File[list.size()]);
+		return new Configuration() {
+
+			public int size() {
+				return machines.length;
+			}
+
+			public File getTestValue(int index) {
+				return machines[index];
+			}
+
+			public String getTestName(int index) {
+				return machines[index].getName();
+			}
+		};
+	}
+
+}
@@ -0,0 +1,115 @@
+package de.be4.classicalb.core.parser.analysis.prolog;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.be4.classicalb.core.parser.analysis.DepthFirstAdapter;
+import de.be4.classicalb.core.parser.node.Node;
+import de.be4.classicalb.core.parser.node.Start;
+
+/**
+ * Compares the time needed to assign and look up the node identifiers of a
+ * large machine with {@link NodeIdAssignment} and with the former
+ * implementation based on {@link HashMap}.
+ */
+public class NodeIdAssignmentBenchmark {
+
+	private static final int WARMUP = 1;
+	private static final int RUNS = 3;
+
+	@Test
+	public void testPerformanceTest50II() throws Exception {
+		benchmark("src/test/resources/parsable/PerformanceTest50II.mch");
+	}
+
+	@Test
+	public void testMegaMachine1() throws Exception {
+		benchmark("src/test/resources/MegaMachine1.mch");
+	}
+
+	private void benchmark(final String path) throws Exception {
+		final Start start = NodeIdAssignmentTest.parse(path);
+		final List<Node> nodes = NodeIdAssignmentTest.collectNodes(start);
+		assertEquals(run(start, nodes, false), run(start, nodes, true));
+		for (int i = 0; i < WARMUP; i++) {
+			run(start, nodes, false);
+			run(start, nodes, true);
+		}
+		long hashMap = 0;
+		long table = 0;
+		for (int i = 0; i < RUNS; i++) {
+			long time = System.currentTimeMillis();
+			run(start, nodes, false);
+			hashMap += System.currentTimeMillis() - time;
+			time = System.currentTimeMillis();
+			run(start, nodes, true);
+			table += System.currentTimeMillis() - time;
+		}
+		System.out.println(path + " (" + nodes.size() + " nodes): hash map " + hashMap / RUNS
+				+ "ms, identity table " + table / RUNS + "ms");
+	}
+
+	/*
+	 * assigns the identifiers and looks up each node like the position printer
+	 * does, returns the sum of the ids and file numbers
+	 */
+	private static long run(final Start start, final List<Node> nodes, final boolean table) {
+		long sum = 0;
+		if (table) {
+			final NodeIdAssignment nodeIds = new NodeIdAssignment();
+			nodeIds.assignIdentifiers(1, start);
+			for (final Node node : nodes) {
+				sum += nodeIds.lookupId(node) + nodeIds.lookupFileNumber(node);
+			}
+		} else {
+			final HashMapNodeIdAssignment nodeIds = new HashMapNodeIdAssignment();
+			nodeIds.assignIdentifiers(1, start);
+			for (final Node node : nodes) {
+				sum += nodeIds.lookup(node) + nodeIds.lookupFileNumber(node);
+			}
+		}
+		return sum;
+	}
+
+	/*
+	 * the former implementation of NodeIdAssignment
+	 */
+	private static class HashMapNodeIdAssignment extends DepthFirstAdapter {
+		private final Map<Node, Integer> nodeToIdentifierMap = new HashMap<Node, Integer>();
+		private final List<Node> nodes = new ArrayList<Node>(1000);
+		private final Map<Node, Integer> nodeToFileNumberMap = new HashMap<Node, Integer>();
+		private int currentIdentifier = 0;
+		private int currentFileNumber = -1;
+
+		public void assignIdentifiers(int fileNumber, Node node) {
+			this.currentFileNumber = fileNumber;
+			node.apply(this);
+			this.currentFileNumber = -1;
+		}
+
+		public Integer lookup(Node node) {
+			return nodeToIdentifierMap.get(node);
+		}
+
+		public int lookupFileNumber(Node node) {
+			final Integer value = nodeToFileNumberMap.get(node);
+			return value == null ? -1 : value;
+		}
+
+		@Override
+		public synchronized void defaultIn(Node node) {
+			nodeToIdentifierMap.put(node, currentIdentifier);
+			nodes.add(node);
+			if (currentFileNumber > 0) {
+				nodeToFileNumberMap.put(node, currentFileNumber);
+			}
+			currentIdentifier++;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package de.be4.classicalb.core.parser.analysis.prolog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.be4.classicalb.core.parser.BParser;
+import de.be4.classicalb.core.parser.analysis.DepthFirstAdapter;
+import de.be4.classicalb.core.parser.node.Node;
+import de.be4.classicalb.core.parser.node.Start;
+
+public class NodeIdAssignmentTest {
+
+	@Test
+	public void testIdsAndFileNumbers() throws Exception {
+		final Start first = parse("src/test/resources/parsable/PerformanceTest50II.mch");
+		final Start second = parse("src/test/resources/parsable/AbsInt.mch");
+		final NodeIdAssignment nodeIds = new NodeIdAssignment();
+		nodeIds.assignIdentifiers(1, first);
+		nodeIds.assignIdentifiers(2, second);
+
+		final List<Node> firstNodes = collectNodes(first);
+		final List<Node> secondNodes = collectNodes(second);
+		for (int i = 0; i < firstNodes.size(); i++) {
+			final Node node = firstNodes.get(i);
+			assertEquals(Integer.valueOf(i), nodeIds.lookup(node));
+			assertEquals(i, nodeIds.lookupId(node));
+			assertEquals(1, nodeIds.lookupFileNumber(node));
+			assertSame(node, nodeIds.lookupById(i));
+		}
+		for (int i = 0; i < secondNodes.size(); i++) {
+			final Node node = secondNodes.get(i);
+			final int id = firstNodes.size() + i;
+			assertEquals(id, nodeIds.lookupId(node));
+			assertEquals(2, nodeIds.lookupFileNumber(node));
+			assertSame(node, nodeIds.lookupById(id));
+		}
+	}
+
+	@Test
+	public void testUnknownNodes() throws Exception {
+		final Start start = parse("src/test/resources/parsable/AbsInt.mch");
+		final NodeIdAssignment nodeIds = new NodeIdAssignment();
+		assertNull(nodeIds.lookup(start));
+		assertEquals(-1, nodeIds.lookupId(start));
+		assertEquals(-1, nodeIds.lookupFileNumber(start));
+		assertUnknownId(nodeIds, 0);
+
+		// no file number is assigned if the adapter is applied directly
+		start.apply(nodeIds);
+		assertEquals(0, nodeIds.lookupId(start));
+		assertEquals(-1, nodeIds.lookupFileNumber(start));
+		assertUnknownId(nodeIds, -1);
+		assertUnknownId(nodeIds, collectNodes(start).size());
+	}
+
+	@Test
+	public void testReleaseIdentifiers() throws Exception {
+		final Start first = parse("src/test/resources/parsable/PerformanceTest50II.mch");
+		final Start second = parse("src/test/resources/parsable/AbsInt.mch");
+		final NodeIdAssignment nodeIds = new NodeIdAssignment();
+		nodeIds.assignIdentifiers(1, first);
+		nodeIds.assignIdentifiers(2, second);
+		nodeIds.releaseIdentifiers(first);
+
+		final List<Node> firstNodes = collectNodes(first);
+		for (final Node node : firstNodes) {
+			assertEquals(-1, nodeIds.lookupId(node));
+		}
+		assertUnknownId(nodeIds, 0);
+		// the remaining entries must still be found after removing others
+		final List<Node> secondNodes = collectNodes(second);
+		for (int i = 0; i < secondNodes.size(); i++) {
+			final Node node = secondNodes.get(i);
+			assertEquals(firstNodes.size() + i, nodeIds.lookupId(node));
+			assertEquals(2, nodeIds.lookupFileNumber(node));
+		}
+	}
+
+	private static void assertUnknownId(final NodeIdAssignment nodeIds, final int id) {
+		try {
+			nodeIds.lookupById(id);
+			fail("AssertionError expected for id " + id);
+		} catch (AssertionError e) {
+			assertEquals("Unknown id " + id, e.getMessage());
+		}
+	}
+
+	static Start parse(final String path) throws Exception {
+		final File file = new File(path);
+		return new BParser(file.getName()).parseFile(file, false);
+	}
+
+	static List<Node> collectNodes(final Node root) {
+		final List<Node> nodes = new ArrayList<>();
+		root.apply(new DepthFirstAdapter() {
+			@Override
+			public void defaultIn(Node node) {
+				nodes.add(node);
+			}
+		});
+		return nodes;
+	}
+}
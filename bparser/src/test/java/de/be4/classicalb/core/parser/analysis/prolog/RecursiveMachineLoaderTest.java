@@ -0,0 +1,62 @@
+package de.be4.classicalb.core.parser.analysis.prolog;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.be4.classicalb.core.parser.BParser;
+import de.be4.classicalb.core.parser.ParsingBehaviour;
+import de.be4.classicalb.core.parser.node.Start;
+import de.prob.prolog.output.IPrologTermOutput;
+import de.prob.prolog.output.PrologTermOutput;
+
+public class RecursiveMachineLoaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testPrefetchedMachinesAreReleased() throws Exception {
+		writeFile("Main.mch", "MACHINE Main INCLUDES M1, M2, M3 END");
+		for (int i = 1; i <= 3; i++) {
+			writeFile("M" + i + ".mch", "MACHINE M" + i + " CONSTANTS c" + i + " PROPERTIES c" + i + " = " + i + " END");
+		}
+		final File mainFile = new File(folder.getRoot(), "Main.mch");
+		final BParser parser = new BParser(mainFile.getAbsolutePath());
+		final Start start = parser.parseFile(mainFile, false);
+		final ParsingBehaviour behaviour = new ParsingBehaviour();
+		behaviour.setParallelLoading(true);
+		final RecursiveMachineLoader rml = new RecursiveMachineLoader(folder.getRoot().getPath(),
+				parser.getContentProvider(), behaviour);
+
+		// the number of prefetched machines still held after each fact
+		final List<Integer> counts = new ArrayList<>();
+		final PrologTermOutput pout = new PrologTermOutput(new PrintWriter(new StringWriter()), false) {
+			@Override
+			public IPrologTermOutput fullstop() {
+				counts.add(rml.getPrefetchedMachineCount());
+				return super.fullstop();
+			}
+		};
+		rml.loadAndPrintAllMachines(mainFile, start, parser.getDefinitions(), pout);
+
+		// parser_version, Main, M1, M2, M3, classical_b
+		assertEquals(Arrays.asList(0, 0, 2, 1, 0, 0), counts);
+	}
+
+	private void writeFile(final String name, final String content) throws IOException {
+		try (PrintWriter out = new PrintWriter(new File(folder.getRoot(), name), "UTF-8")) {
+			out.print(content);
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package de.be4.classicalb.core.parser.composition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.be4.classicalb.core.parser.BParser;
+import de.be4.classicalb.core.parser.CachingDefinitionFileProvider;
+import de.be4.classicalb.core.parser.DefinitionFileCache;
+import de.be4.classicalb.core.parser.ParsingBehaviour;
+import de.be4.classicalb.core.parser.analysis.prolog.RecursiveMachineLoader;
+import de.be4.classicalb.core.parser.node.Start;
+import util.Helpers;
+
+/**
+ * Checks that loading the referenced machines concurrently yields the same
+ * output as the sequential loading.
+ */
+public class ParallelLoadingTest {
+
+	private static final int CHAIN_LENGTH = 60;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testAllTestMachines() throws Exception {
+		final List<File> machines = new ArrayList<>();
+		collectMachines(new File("src/test/resources"), machines);
+		for (final File machine : machines) {
+			final String path = machine.getPath();
+			assertEquals(path, parse(path, false), parse(path, true));
+		}
+	}
+
+	@Test
+	public void testRefinementChain() throws Exception {
+		writeFile("Common.def", "DEFINITIONS common == 42");
+		for (int i = 0; i < CHAIN_LENGTH; i++) {
+			final StringBuilder sb = new StringBuilder();
+			sb.append("MACHINE M").append(i).append('\n');
+			if (i + 1 < CHAIN_LENGTH) {
+				sb.append("INCLUDES M").append(i + 1).append('\n');
+			}
+			if (i + 2 < CHAIN_LENGTH) {
+				sb.append("SEES M").append(i + 2).append('\n');
+			}
+			if (i % 10 == 0) {
+				sb.append("DEFINITIONS \"Common.def\"\n");
+			}
+			sb.append("CONSTANTS c").append(i).append('\n');
+			sb.append("PROPERTIES c").append(i).append(" = ").append(i).append('\n');
+			sb.append("END");
+			writeFile("M" + i + ".mch", sb.toString());
+		}
+		final String path = new File(folder.getRoot(), "M0.mch").getPath();
+		final String sequential = parse(path, false);
+		assertTrue(sequential.contains("M" + (CHAIN_LENGTH - 1)));
+		assertEquals(sequential, parse(path, true));
+	}
+
+	@Test
+	public void testErrorInReferencedMachine() throws Exception {
+		writeFile("Main.mch", "MACHINE Main INCLUDES A, B END");
+		writeFile("A.mch", "MACHINE A SEES C END");
+		writeFile("B.mch", "MACHINE B CONSTANTS x PROPERTIES x = END");
+		writeFile("C.mch", "MACHINE C SEES A END");
+		final String path = new File(folder.getRoot(), "Main.mch").getPath();
+		final String sequential = parse(path, false);
+		assertTrue(sequential.contains("Cycle detected"));
+		assertEquals(sequential, parse(path, true));
+	}
+
+	@Test
+	public void testDefinitionFilesInBackground() throws Exception {
+		writeFile("Main.mch", "MACHINE Main INCLUDES A, B END");
+		writeFile("A.mch", "MACHINE A DEFINITIONS \"Common.def\" CONSTANTS a PROPERTIES a = common & valid "
+				+ "OPERATIONS opA = subst END");
+		writeFile("B.mch", "MACHINE B DEFINITIONS \"Common.def\"; \"Nested.def\" CONSTANTS b "
+				+ "PROPERTIES b = nested OPERATIONS opB = subst END");
+		writeFile("Common.def", "DEFINITIONS \"Nested.def\"; common == nested + 1; valid == (1 = 1); subst == skip");
+		writeFile("Nested.def", "DEFINITIONS nested == 41");
+		final File mainFile = new File(folder.getRoot(), "Main.mch");
+
+		final String sequential = load(mainFile, new CachingDefinitionFileProvider(), false);
+		assertEquals(sequential, load(mainFile, new CachingDefinitionFileProvider(), true));
+
+		// the machines using the definition files are parsed in the
+		// background with the cache of the provider
+		final DefinitionFileCache cache = new DefinitionFileCache();
+		assertEquals(sequential, load(mainFile, new CachingDefinitionFileProvider(cache), true));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testDefinitionFilesOfProviderSubclass() throws Exception {
+		writeFile("Main.mch", "MACHINE Main INCLUDES A, B END");
+		writeFile("A.mch", "MACHINE A DEFINITIONS \"Virtual.def\" CONSTANTS a PROPERTIES a = virtual END");
+		writeFile("B.mch", "MACHINE B DEFINITIONS \"Virtual.def\" CONSTANTS b PROPERTIES b = virtual END");
+		final File mainFile = new File(folder.getRoot(), "Main.mch");
+
+		// the definition file only exists in the provider
+		final VirtualProvider sequentialProvider = new VirtualProvider();
+		final String sequential = load(mainFile, sequentialProvider, false);
+		assertFalse(sequential, sequential.isEmpty());
+		assertEquals(1, sequentialProvider.definitionFilesRead);
+
+		final VirtualProvider parallelProvider = new VirtualProvider();
+		assertEquals(sequential, load(mainFile, parallelProvider, true));
+		assertEquals(1, parallelProvider.definitionFilesRead);
+	}
+
+	private static String load(final File mainFile, final CachingDefinitionFileProvider provider,
+			final boolean parallel) throws Exception {
+		final ParsingBehaviour behaviour = new ParsingBehaviour();
+		behaviour.setAddLineNumbers(true);
+		behaviour.setParallelLoading(parallel);
+		behaviour.setParallelLoadingThreads(2);
+		final BParser parser = new BParser(mainFile.getAbsolutePath());
+		final Start start = parser.parseFile(mainFile, false, provider);
+		final RecursiveMachineLoader rml = new RecursiveMachineLoader(mainFile.getParent(), provider, behaviour);
+		rml.loadAllMachines(mainFile, start, parser.getDefinitions());
+		final StringWriter out = new StringWriter();
+		rml.printAsProlog(new PrintWriter(out));
+		return out.toString();
+	}
+
+	private static String parse(final String path, final boolean parallel) {
+		final ParsingBehaviour behaviour = new ParsingBehaviour();
+		behaviour.setPrologOutput(true);
+		behaviour.setAddLineNumbers(true);
+		behaviour.setParallelLoading(parallel);
+		return Helpers.fullParsing(path, behaviour);
+	}
+
+	private void writeFile(final String name, final String content) throws IOException {
+		try (PrintWriter out = new PrintWriter(new File(folder.getRoot(), name), "UTF-8")) {
+			out.print(content);
+		}
+	}
+
+	private static void collectMachines(final File directory, final List<File> result) {
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (final File file : files) {
+			final String name = file.getName();
+			if (file.isDirectory()) {
+				collectMachines(file, result);
+			} else if (!name.startsWith("MegaMachine")
+					&& (name.endsWith(".mch") || name.endsWith(".ref") || name.endsWith(".imp"))) {
+				result.add(file);
+			}
+		}
+	}
+
+	/*
+	 * provides a definition file which does not exist on the disk
+	 */
+	private static final class VirtualProvider extends CachingDefinitionFileProvider {
+		private int definitionFilesRead = 0;
+
+		@Override
+		public String getFileContent(final File directory, final String filename) throws IOException {
+			if ("Virtual.def".equals(filename)) {
+				definitionFilesRead++;
+				return "DEFINITIONS virtual == 42";
+			}
+			return super.getFileContent(directory, filename);
+		}
+
+		@Override
+		public File getFile(final File directory, final String filename) throws IOException {
+			if ("Virtual.def".equals(filename)) {
+				return new File(directory, filename);
+			}
+			return super.getFile(directory, filename);
+		}
+	}
+}
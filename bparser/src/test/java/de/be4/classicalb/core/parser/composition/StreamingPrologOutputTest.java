@@ -0,0 +1,144 @@
+package de.be4.classicalb.core.parser.composition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.be4.classicalb.core.parser.BParser;
+import de.be4.classicalb.core.parser.ParsingBehaviour;
+import de.be4.classicalb.core.parser.analysis.prolog.RecursiveMachineLoader;
+import de.be4.classicalb.core.parser.node.Start;
+import de.prob.prolog.output.PrologTermOutput;
+import util.Helpers;
+
+/**
+ * Checks that the streaming output of {@link RecursiveMachineLoader} contains
+ * the same facts as the default output.
+ */
+public class StreamingPrologOutputTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSameFactsAsDefaultOutput() throws Exception {
+		writeMachines();
+		final String path = new File(folder.getRoot(), "Main.mch").getPath();
+		final List<String> facts = getFacts(parse(path, false));
+		final List<String> streamedFacts = getFacts(parse(path, true));
+
+		// parser_version first, classical_b last, machines in loading order
+		assertEquals(5, streamedFacts.size());
+		assertTrue(streamedFacts.get(0).startsWith("parser_version("));
+		assertTrue(streamedFacts.get(1).contains("'Main',[]),[includes("));
+		assertTrue(streamedFacts.get(4).startsWith("classical_b("));
+		assertEquals(facts.get(1), streamedFacts.get(4));
+
+		final List<String> machines = new ArrayList<>(facts.subList(2, facts.size()));
+		final List<String> streamedMachines = new ArrayList<>(streamedFacts.subList(1, 4));
+		Collections.sort(machines);
+		Collections.sort(streamedMachines);
+		assertEquals(machines, streamedMachines);
+	}
+
+	@Test
+	public void testMachinesAreReleased() throws Exception {
+		writeMachines();
+		final File mainFile = new File(folder.getRoot(), "Main.mch");
+		final BParser parser = new BParser(mainFile.getAbsolutePath());
+		final Start start = parser.parseFile(mainFile, false);
+		final RecursiveMachineLoader rml = new RecursiveMachineLoader(folder.getRoot().getPath(),
+				parser.getContentProvider());
+		final StringWriter out = new StringWriter();
+		rml.loadAndPrintAllMachines(mainFile, start, parser.getDefinitions(),
+				new PrologTermOutput(new PrintWriter(out), false));
+
+		assertEquals(Arrays.asList("A", "B", "Main"), Arrays.asList(rml.getParsedMachines().keySet().toArray()));
+		for (final Start machine : rml.getParsedMachines().values()) {
+			assertNull(machine);
+		}
+		assertNull(rml.getNodeIdMapping().lookup(start));
+	}
+
+	@Test
+	public void testSharedDefinitionFiles() throws Exception {
+		// the machines are loaded in the order of their names
+		writeFile("M0.mch", "MACHINE M0 INCLUDES M1, M2 DEFINITIONS \"Common.def\" CONSTANTS c0 "
+				+ "PROPERTIES c0 = common END");
+		writeFile("M1.mch", "MACHINE M1 DEFINITIONS \"Common.def\"; own == 1 CONSTANTS c1 "
+				+ "PROPERTIES c1 = common + own OPERATIONS op1 = subst END");
+		writeFile("M2.mch", "MACHINE M2 DEFINITIONS \"Common.def\" CONSTANTS c2 PROPERTIES c2 = common END");
+		writeFile("Common.def", "DEFINITIONS common == 41 + 1; subst == skip");
+		final File mainFile = new File(folder.getRoot(), "M0.mch");
+
+		final List<String> facts = getFacts(load(mainFile, false));
+		final List<String> streamedFacts = getFacts(load(mainFile, true));
+		// the same facts, but the files are printed last
+		final List<String> expected = new ArrayList<>();
+		expected.add(facts.get(0));
+		expected.addAll(facts.subList(2, facts.size()));
+		expected.add(facts.get(1));
+		assertEquals(expected, streamedFacts);
+		for (int i = 1; i <= 3; i++) {
+			assertTrue(streamedFacts.get(i), streamedFacts.get(i).contains("common"));
+		}
+	}
+
+	/*
+	 * the default or the streaming output of the loader
+	 */
+	private static String load(final File mainFile, final boolean streaming) throws Exception {
+		final BParser parser = new BParser(mainFile.getAbsolutePath());
+		final Start start = parser.parseFile(mainFile, false);
+		final ParsingBehaviour behaviour = new ParsingBehaviour();
+		behaviour.setAddLineNumbers(true);
+		final RecursiveMachineLoader rml = new RecursiveMachineLoader(mainFile.getParent(),
+				parser.getContentProvider(), behaviour);
+		final StringWriter out = new StringWriter();
+		final PrologTermOutput pout = new PrologTermOutput(new PrintWriter(out), false);
+		if (streaming) {
+			rml.loadAndPrintAllMachines(mainFile, start, parser.getDefinitions(), pout);
+		} else {
+			rml.loadAllMachines(mainFile, start, parser.getDefinitions());
+			rml.printAsProlog(pout);
+		}
+		return out.toString();
+	}
+
+	private void writeMachines() throws IOException {
+		writeFile("Main.mch", "MACHINE Main INCLUDES A SEES B VARIABLES x INVARIANT x : NAT INITIALISATION x := 1 END");
+		writeFile("A.mch", "MACHINE A SEES B CONSTANTS a PROPERTIES a = 1 END");
+		writeFile("B.mch", "MACHINE B DEFINITIONS d == 2 CONSTANTS b PROPERTIES b = d END");
+	}
+
+	private static String parse(final String path, final boolean streaming) {
+		final ParsingBehaviour behaviour = new ParsingBehaviour();
+		behaviour.setPrologOutput(true);
+		behaviour.setAddLineNumbers(true);
+		behaviour.setStreamingPrologOutput(streaming);
+		return Helpers.fullParsing(path, behaviour);
+	}
+
+	private static List<String> getFacts(final String output) {
+		return Arrays.asList(output.split("\\.\n"));
+	}
+
+	private void writeFile(final String name, final String content) throws IOException {
+		try (PrintWriter out = new PrintWriter(new File(folder.getRoot(), name), "UTF-8")) {
+			out.print(content);
+		}
+	}
+}
@@ -1,9 +1,15 @@
 package de.be4.classicalb.core.parser.definitions;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.PrintWriter;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import de.be4.classicalb.core.parser.BParser;
 import de.be4.classicalb.core.parser.exceptions.BCompoundException;
@@ -12,6 +18,9 @@ import util.Ast2String;
 
 public class DefinitionsErrorsTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Test
 	public void checkForInvalidSubstitution() throws Exception {
 		String s = "MACHINE Definitions \n DEFINITIONS \n foo == BEGIN\n x=1 END \nEND";
@@ -117,6 +126,35 @@ public class DefinitionsErrorsTest {
 		}
 	}
 
+	@Test
+	public void checkAllCyclicDefinitionsAreReported() throws Exception {
+		String s = "MACHINE Definitions \n DEFINITIONS\n a == b; b == a;\n c == d + 1; d == c; e == a\nEND";
+		try {
+			getTreeAsString(s);
+			fail("Cyclic definitions were not detected.");
+		} catch (BCompoundException e) {
+			assertEquals(2, e.getBExceptions().size());
+			assertTrue(e.getBExceptions().get(0).getMessage().contains("Cyclic references in definitions: a -> b -> a"));
+			assertTrue(e.getBExceptions().get(1).getMessage().contains("Cyclic references in definitions: c -> d -> c"));
+		}
+	}
+
+	@Test
+	public void checkCyclicDefinitionsAreReportedWithCanonicalFileName() throws Exception {
+		File file = folder.newFile("Cycle.mch");
+		try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+			out.print("MACHINE Cycle \n DEFINITIONS\n a == b; b == a\nEND");
+		}
+		File nonCanonical = new File(new File(folder.getRoot(), "."), "Cycle.mch");
+		final BParser parser = new BParser(nonCanonical.getPath());
+		try {
+			parser.parseFile(nonCanonical, false);
+			fail("Cyclic definitions were not detected.");
+		} catch (BCompoundException e) {
+			assertEquals(file.getCanonicalPath(), e.getBExceptions().get(0).getFilename());
+		}
+	}
+
 	private String getTreeAsString(final String testMachine) throws BCompoundException {
 		// System.out.println("Parsing: \"" + testMachine + "\":");
 		final BParser parser = new BParser("testcase");
@@ -1,5 +1,6 @@
 package de.be4.classicalb.core.parser.definitions;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import java.io.File;
@@ -8,6 +9,7 @@ import java.io.IOException;
 import org.junit.Test;
 
 import de.be4.classicalb.core.parser.BParser;
+import de.be4.classicalb.core.parser.IDefinitions;
 import de.be4.classicalb.core.parser.exceptions.BCompoundException;
 import de.be4.classicalb.core.parser.node.Start;
 
@@ -34,4 +36,36 @@ public class DefinitionsOrderTest {
 		Start start = parser.parseFile(machine, false);
 		assertNotNull(start);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testChainedDefinitionsInReverseOrder() throws Exception {
+		final int size = 100;
+		final BParser parser = new BParser("Chain");
+		parser.parse(createChainedMachine(size), false);
+		final IDefinitions definitions = parser.getDefinitions();
+		for (int i = 0; i < size; i++) {
+			assertEquals(IDefinitions.Type.Expression, definitions.getType("e" + i));
+			assertEquals(IDefinitions.Type.Predicate, definitions.getType("p" + i));
+			assertEquals(IDefinitions.Type.Substitution, definitions.getType("s" + i));
+		}
+	}
+
+	/*
+	 * expression, predicate and substitution definitions, each referring to
+	 * its predecessor; the definitions are listed in reverse order (also used
+	 * by DefinitionTypingBenchmark)
+	 */
+	public static String createChainedMachine(final int size) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("MACHINE Chain\nDEFINITIONS\n");
+		for (int i = size - 1; i > 0; i--) {
+			sb.append("  e").append(i).append(" == e").append(i - 1).append(" + 1;\n");
+			sb.append("  p").append(i).append(" == p").append(i - 1).append(" & e").append(i).append(" > 0;\n");
+			sb.append("  s").append(i).append(" == BEGIN s").append(i - 1).append(" ; x := e").append(i).append(" END;\n");
+		}
+		sb.append("  e0 == 1;\n  p0 == x > 0;\n  s0 == x := 0\n");
+		sb.append("VARIABLES x\nINVARIANT x : NAT & p").append(size - 1).append('\n');
+		sb.append("INITIALISATION s").append(size - 1).append("\nEND\n");
+		return sb.toString();
+	}
+}
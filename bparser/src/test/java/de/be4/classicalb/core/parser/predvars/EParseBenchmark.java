@@ -0,0 +1,61 @@
+package de.be4.classicalb.core.parser.predvars;
+
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.Test;
+
+import de.be4.classicalb.core.parser.BParser;
+import de.be4.classicalb.core.parser.Definitions;
+
+/**
+ * Measures the time needed by {@link BParser#eparse} for formulas in which
+ * some of the identifiers are used as predicates. Neither treating all
+ * identifiers as expressions nor treating all of them as predicates works for
+ * these formulas.
+ */
+public class EParseBenchmark {
+
+	private static final int WARMUP = 1;
+	private static final int RUNS = 3;
+
+	@Test
+	public void testMixedIdentifiers() throws Exception {
+		for (final int size : new int[] { 5, 20, 50 }) {
+			benchmark(size);
+		}
+	}
+
+	private void benchmark(final int size) throws Exception {
+		final String formula = createFormula(size);
+		for (int i = 0; i < WARMUP; i++) {
+			eparse(formula);
+		}
+		long time = 0;
+		for (int i = 0; i < RUNS; i++) {
+			time += eparse(formula);
+		}
+		System.out.println(size + " identifiers: " + time / RUNS + "ms");
+	}
+
+	/*
+	 * every second identifier is a predicate, the others are compared to a
+	 * number
+	 */
+	private static String createFormula(final int size) {
+		final StringBuilder sb = new StringBuilder("#FORMULA x0");
+		for (int i = 1; i < size; i++) {
+			sb.append(" & x").append(i);
+			if (i % 2 == 1) {
+				sb.append(" > ").append(i);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static long eparse(final String formula) throws Exception {
+		final BParser parser = new BParser("testcase");
+		final long start = System.currentTimeMillis();
+		assertNotNull(parser.eparse(formula, new Definitions()));
+		return System.currentTimeMillis() - start;
+	}
+}
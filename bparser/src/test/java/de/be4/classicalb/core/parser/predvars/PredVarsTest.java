@@ -2,16 +2,30 @@ package de.be4.classicalb.core.parser.predvars;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 
+import de.be4.classicalb.core.parser.BLexer;
 import de.be4.classicalb.core.parser.BParser;
+import de.be4.classicalb.core.parser.DefinitionTypes;
 import de.be4.classicalb.core.parser.Definitions;
+import de.be4.classicalb.core.parser.EBLexer;
 import de.be4.classicalb.core.parser.exceptions.BCompoundException;
 import de.be4.classicalb.core.parser.lexer.LexerException;
+import de.be4.classicalb.core.parser.node.EOF;
 import de.be4.classicalb.core.parser.node.Start;
+import de.be4.classicalb.core.parser.node.TIdentifierLiteral;
+import de.be4.classicalb.core.parser.node.Token;
+import de.be4.classicalb.core.parser.parser.Parser;
+import de.be4.classicalb.core.parser.parser.ParserException;
 import util.Ast2String;
 
 public class PredVarsTest {
@@ -60,6 +74,92 @@ public class PredVarsTest {
 		assertEquals(result1, result2);
 	}
 
+	@Test
+	public void testManyIdentifiers() throws Exception {
+		// only every second identifier is a predicate, 2^50 combinations
+		final StringBuilder formula = new StringBuilder("#FORMULA x0");
+		final StringBuilder res = new StringBuilder("#PREDICATE (x0=TRUE)");
+		for (int i = 1; i < 50; i++) {
+			if (i % 2 == 0) {
+				formula.append(" & x").append(i);
+				res.append(" & (x").append(i).append("=TRUE)");
+			} else {
+				formula.append(" & x").append(i).append(" > 0");
+				res.append(" & x").append(i).append(" > 0");
+			}
+		}
+		assertEquals(getTreeAsStringOrg(res.toString()), getTreeAsString(formula.toString()));
+	}
+
+	@Test
+	public void testAmbiguousAfterError() throws Exception {
+		// y and z could be predicates as well, but only x in front of the
+		// error at '&' is changed
+		final String testMachine = "#FORMULA x & y = z";
+		String res = "#PREDICATE (x=TRUE) & y = z";
+		assertEquals(getTreeAsStringOrg(res), getTreeAsString(testMachine));
+	}
+
+	@Test
+	public void testNotParsable() throws Exception {
+		final BParser parser = new BParser("testcase");
+		assertNull(parser.eparse("#FORMULA A & B >", new Definitions()));
+	}
+
+	@Test(timeout = 10000)
+	public void testNotParsableWithManyIdentifiers() throws Exception {
+		// too many identifiers to try all combinations
+		final StringBuilder formula = new StringBuilder("#FORMULA x0");
+		for (int i = 1; i < 50; i++) {
+			formula.append(" & x").append(i);
+		}
+		formula.append(" >");
+		final BParser parser = new BParser("testcase");
+		assertNull(parser.eparse(formula.toString(), new Definitions()));
+	}
+
+	@Test
+	public void testAcceptsFormulasOfExhaustiveSearch() throws Exception {
+		final String[] formulas = { "#FORMULA a <=> b", "#FORMULA (a <=> b) & c = 1", "#FORMULA c = 1 & (a <=> b)",
+				"#FORMULA not(a) or b > c", "#FORMULA bool(a) = b", "#FORMULA bool(a & b) = c",
+				"#FORMULA x = bool(a or b) & not(c)", "#FORMULA {x | x : c & a}", "#FORMULA !x.(x : c => a)",
+				"#FORMULA #x.(x : c & (a => b))", "#FORMULA %x.(a & x : c | x + 1)", "#FORMULA rec(a: b)'a = 1 & c",
+				"#FORMULA (a = b) <=> c", "#FORMULA a & (a => b = c)", "#FORMULA a & a = 1", "#FORMULA a & b >",
+				"#FORMULA (a or b) + 1", "#FORMULA x : {a, b} & c" };
+		for (final String formula : formulas) {
+			final BParser parser = new BParser("testcase");
+			final boolean accepted = parser.eparse(formula, new Definitions()) != null;
+			assertEquals(formula, exhaustiveSearchAccepts(formula), accepted);
+		}
+	}
+
+	/*
+	 * the search of earlier versions, which tries all combinations of
+	 * expressions and predicates
+	 */
+	private static boolean exhaustiveSearchAccepts(final String formula) throws Exception {
+		final List<String> ids = new ArrayList<>();
+		final BLexer lexer = new BLexer(new PushbackReader(new StringReader(formula), BLexer.PUSHBACK_BUFFER_SIZE),
+				new DefinitionTypes());
+		Token t;
+		do {
+			t = lexer.next();
+			if (t instanceof TIdentifierLiteral && !ids.contains(t.getText())) {
+				ids.add(t.getText());
+			}
+		} while (!(t instanceof EOF));
+		for (BigInteger b = BigInteger.ONE.shiftLeft(ids.size()).subtract(BigInteger.ONE); b.signum() >= 0; b = b
+				.subtract(BigInteger.ONE)) {
+			try {
+				new Parser(new EBLexer(formula, b, ids, new DefinitionTypes())).parse();
+				return true;
+			} catch (ParserException e) {
+				// try the next combination
+			}
+		}
+		return false;
+	}
+
 	private String getTreeAsString(final String testMachine) throws BCompoundException,
 			LexerException, IOException {
 		final BParser parser = new BParser("testcase");
@@ -1,8 +1,13 @@
 package de.be4.classicalb.core.parser.rules;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
@@ -27,4 +32,54 @@ public class RulesProjectTest {
 		assertEquals("c1", deps.get(2).getOriginalName());
 	}
 
+	@Test
+	public void testSortOperationsOfCyclicProject() {
+		RulesProject p = new RulesProject();
+		p.parseRulesMachines(getCyclicMachine());
+		p.checkAndTranslateProject();
+		assertTrue(p.hasErrors());
+		assertTrue(p.getBExceptionList().get(0).getMessage().contains("Cyclic dependencies between operations"));
+		List<String> names = getNames(p.sortOperations(p.getOperationsMap().values()));
+		assertEquals(5, names.size());
+		assertTrue(names.indexOf("r5") < names.indexOf("r4"));
+	}
+
+	@Test
+	public void testSortOperationsOmitsCyclicOperations() {
+		RulesProject p = new RulesProject();
+		p.parseRulesMachines(getCyclicMachine());
+		p.checkAndTranslateProject();
+		Map<String, AbstractOperation> operations = p.getOperationsMap();
+		// close the cycle between r1 and r2 which was cut by the check
+		operations.get("r1").setTransitiveDependencies(
+				new HashSet<>(Arrays.asList(operations.get("r1"), operations.get("r2"))));
+		operations.get("r2").setTransitiveDependencies(
+				new HashSet<>(Arrays.asList(operations.get("r1"), operations.get("r2"))));
+		operations.get("r3").setTransitiveDependencies(
+				new HashSet<>(Arrays.asList(operations.get("r1"), operations.get("r2"))));
+		List<String> names = getNames(p.sortOperations(operations.values()));
+		// r1 and r2 form a cycle and r3 depends on it
+		assertEquals(new HashSet<>(Arrays.asList("r4", "r5")), new HashSet<>(names));
+		assertTrue(names.indexOf("r5") < names.indexOf("r4"));
+	}
+
+	private static String getCyclicMachine() {
+		String testMachine = "RULES_MACHINE Test OPERATIONS\n";
+		testMachine += "RULE r1 DEPENDS_ON_RULE r2 BODY RULE_FAIL WHEN 1=2 COUNTEREXAMPLE \"never\" END END;\n";
+		testMachine += "RULE r2 DEPENDS_ON_RULE r1 BODY RULE_FAIL WHEN 1=2 COUNTEREXAMPLE \"never\" END END;\n";
+		testMachine += "RULE r3 DEPENDS_ON_RULE r1 BODY RULE_FAIL WHEN 1=2 COUNTEREXAMPLE \"never\" END END;\n";
+		testMachine += "RULE r4 DEPENDS_ON_RULE r5 BODY RULE_FAIL WHEN 1=2 COUNTEREXAMPLE \"never\" END END;\n";
+		testMachine += "RULE r5 BODY RULE_FAIL WHEN 1=2 COUNTEREXAMPLE \"never\" END END\n";
+		testMachine += "END";
+		return testMachine;
+	}
+
+	private static List<String> getNames(List<AbstractOperation> operations) {
+		List<String> names = new ArrayList<>();
+		for (AbstractOperation op : operations) {
+			names.add(op.getOriginalName());
+		}
+		return names;
+	}
+
 }
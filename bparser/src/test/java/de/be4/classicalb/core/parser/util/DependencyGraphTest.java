@@ -0,0 +1,112 @@
+package de.be4.classicalb.core.parser.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class DependencyGraphTest {
+
+	private static final int SIZE = 10000;
+
+	@Test
+	public void testSort() {
+		final Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+		dependencies.put("a", set("b", "c"));
+		dependencies.put("b", set("c"));
+		dependencies.put("c", set());
+		dependencies.put("d", set("a", "unknown"));
+		assertEquals(Arrays.asList("c", "b", "a", "d"), new DependencyGraph<>(dependencies).sortTopologically());
+		assertTrue(new DependencyGraph<>(dependencies).findCycles().isEmpty());
+	}
+
+	@Test
+	public void testAllCycles() {
+		final Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+		dependencies.put("a", set("b"));
+		dependencies.put("b", set("c"));
+		dependencies.put("c", set("a", "d"));
+		dependencies.put("d", set());
+		dependencies.put("e", set("e"));
+		dependencies.put("f", set("a"));
+		dependencies.put("g", set("h"));
+		dependencies.put("h", set("g"));
+		final DependencyGraph<String> graph = new DependencyGraph<>(dependencies);
+		assertEquals(Arrays.asList("d"), graph.sortTopologically());
+		final List<List<String>> cycles = graph.findCycles();
+		assertEquals(3, cycles.size());
+		assertEquals(Arrays.asList("a", "b", "c", "a"), cycles.get(0));
+		assertEquals(Arrays.asList("e", "e"), cycles.get(1));
+		assertEquals(Arrays.asList("g", "h", "g"), cycles.get(2));
+	}
+
+	@Test
+	public void testLongChain() {
+		// each node depends on its successor, the nodes are given in reverse
+		// order of the result
+		final Map<Integer, Set<Integer>> dependencies = new LinkedHashMap<>();
+		for (int i = 0; i < SIZE; i++) {
+			dependencies.put(i, i + 1 < SIZE ? Collections.singleton(i + 1) : Collections.<Integer>emptySet());
+		}
+		final List<Integer> sorted = new DependencyGraph<>(dependencies).sortTopologically();
+		assertEquals(SIZE, sorted.size());
+		for (int i = 0; i < SIZE; i++) {
+			assertEquals(Integer.valueOf(SIZE - 1 - i), sorted.get(i));
+		}
+
+		// closing the chain results in one large cycle
+		dependencies.put(SIZE - 1, Collections.singleton(0));
+		final DependencyGraph<Integer> graph = new DependencyGraph<>(dependencies);
+		assertTrue(graph.sortTopologically().isEmpty());
+		final List<List<Integer>> cycles = graph.findCycles();
+		assertEquals(1, cycles.size());
+		assertEquals(SIZE + 1, cycles.get(0).size());
+	}
+
+	@Test
+	public void testScaling() {
+		// 10k nodes, each depending on up to 10 nodes with a smaller number
+		final Map<Integer, Set<Integer>> dependencies = new HashMap<>();
+		for (int i = 0; i < SIZE; i++) {
+			final Set<Integer> deps = new HashSet<>();
+			for (int j = 1; j <= 10 && j <= i; j++) {
+				deps.add((i * 31 + j * 17) % i);
+			}
+			dependencies.put(i, deps);
+		}
+		final long start = System.currentTimeMillis();
+		final List<Integer> sorted = Utils.sortByTopologicalOrder(dependencies);
+		final long time = System.currentTimeMillis() - start;
+		assertEquals(SIZE, sorted.size());
+		final Set<Integer> seen = new HashSet<>();
+		for (final Integer node : sorted) {
+			assertTrue(seen.containsAll(dependencies.get(node)));
+			seen.add(node);
+		}
+		assertTrue("sorting took " + time + "ms", time < 1000);
+
+		// all other edges lead to smaller nodes, so each pair is a cycle
+		int pairs = 0;
+		for (int i = 100; i < SIZE; i += 1000) {
+			dependencies.get(i).add(i + 1);
+			dependencies.get(i + 1).add(i);
+			pairs++;
+		}
+		final List<List<Integer>> cycles = new DependencyGraph<>(dependencies).findCycles();
+		assertEquals(pairs, cycles.size());
+		assertEquals(Arrays.asList(100, 101, 100), cycles.get(0));
+	}
+
+	private static Set<String> set(final String... elements) {
+		return new HashSet<>(Arrays.asList(elements));
+	}
+}
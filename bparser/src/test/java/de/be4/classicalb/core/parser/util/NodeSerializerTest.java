@@ -0,0 +1,172 @@
+package de.be4.classicalb.core.parser.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.be4.classicalb.core.parser.analysis.Analysis;
+import de.be4.classicalb.core.parser.analysis.DepthFirstAdapter;
+import de.be4.classicalb.core.parser.node.Node;
+import de.be4.classicalb.core.parser.node.Token;
+import de.hhu.stups.sablecc.patch.SourcePosition;
+
+/**
+ * Round-trips an instance of every node class of the grammar. The node
+ * classes are taken from the generated {@link Analysis} interface, the
+ * children are set with the generated constructors.
+ */
+public class NodeSerializerTest {
+
+	private int position = 1;
+
+	@Test
+	public void testAllNodeTypes() throws Exception {
+		final List<Class<? extends Node>> nodeClasses = getNodeClasses();
+		assertTrue(nodeClasses.size() > 500);
+		for (final Class<? extends Node> nodeClass : nodeClasses) {
+			final Node node = create(nodeClass, nodeClasses, true);
+			final Node copy = roundTrip(node);
+			assertNotSame(node, copy);
+			assertEquals(nodeClass.getName(), describe(node), describe(copy));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Class<? extends Node>> getNodeClasses() {
+		final List<Class<? extends Node>> result = new ArrayList<>();
+		for (final Method method : Analysis.class.getMethods()) {
+			if (method.getName().startsWith("case") && method.getParameterTypes().length == 1
+					&& Node.class.isAssignableFrom(method.getParameterTypes()[0])) {
+				result.add((Class<? extends Node>) method.getParameterTypes()[0]);
+			}
+		}
+		Collections.sort(result, new Comparator<Class<?>>() {
+			@Override
+			public int compare(Class<?> c1, Class<?> c2) {
+				return c1.getName().compareTo(c2.getName());
+			}
+		});
+		return result;
+	}
+
+	/*
+	 * creates a node of the given type; if withChildren is set, all children
+	 * are set (lists get two elements), the children have no children
+	 * themselves
+	 */
+	private Node create(final Class<?> type, final List<Class<? extends Node>> nodeClasses,
+			final boolean withChildren) throws Exception {
+		final Class<?> nodeClass = getConcreteClass(type, nodeClasses);
+		if (Token.class.isAssignableFrom(nodeClass)) {
+			Token token;
+			try {
+				token = (Token) nodeClass.getConstructor(String.class).newInstance("text" + position);
+			} catch (NoSuchMethodException e) {
+				token = (Token) nodeClass.getConstructor().newInstance();
+			}
+			token.setLine(position++);
+			token.setPos(position++);
+			return token;
+		}
+
+		final Node node;
+		final Constructor<?> constructor = getLongestConstructor(nodeClass);
+		if (withChildren) {
+			final Type[] parameterTypes = constructor.getGenericParameterTypes();
+			final Object[] arguments = new Object[parameterTypes.length];
+			for (int i = 0; i < parameterTypes.length; i++) {
+				if (parameterTypes[i] instanceof ParameterizedType) {
+					final Type elementType = ((ParameterizedType) parameterTypes[i]).getActualTypeArguments()[0];
+					arguments[i] = Arrays.asList(create((Class<?>) elementType, nodeClasses, false),
+							create((Class<?>) elementType, nodeClasses, false));
+				} else {
+					arguments[i] = create((Class<?>) parameterTypes[i], nodeClasses, false);
+				}
+			}
+			node = (Node) constructor.newInstance(arguments);
+		} else {
+			node = (Node) nodeClass.getConstructor().newInstance();
+		}
+		node.setStartPos(new SourcePosition(position++, position++));
+		node.setEndPos(new SourcePosition(position++, position++));
+		return node;
+	}
+
+	private static Class<?> getConcreteClass(final Class<?> type, final List<Class<? extends Node>> nodeClasses) {
+		if (!Modifier.isAbstract(type.getModifiers())) {
+			return type;
+		}
+		for (final Class<? extends Node> nodeClass : nodeClasses) {
+			if (type.isAssignableFrom(nodeClass)) {
+				return nodeClass;
+			}
+		}
+		throw new IllegalArgumentException("No node class for " + type.getName());
+	}
+
+	private static Constructor<?> getLongestConstructor(final Class<?> nodeClass) {
+		Constructor<?> result = null;
+		for (final Constructor<?> constructor : nodeClass.getConstructors()) {
+			if (result == null || constructor.getParameterTypes().length > result.getParameterTypes().length) {
+				result = constructor;
+			}
+		}
+		return result;
+	}
+
+	private static Node roundTrip(final Node node) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		new NodeSerializer.Writer(out).write(node);
+		out.flush();
+		return new NodeSerializer.Reader(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))).read();
+	}
+
+	/*
+	 * the nodes in preorder with their positions and the type of their parent
+	 */
+	private static List<String> describe(final Node node) {
+		final List<String> result = new ArrayList<>();
+		node.apply(new DepthFirstAdapter() {
+			@Override
+			public void defaultIn(Node n) {
+				result.add(getName(n) + describe(n.getStartPos()) + describe(n.getEndPos()) + " in "
+						+ getName(n.parent()));
+			}
+
+			@Override
+			public void defaultCase(Node n) {
+				final Token token = (Token) n;
+				result.add(getName(n) + "(" + token.getText() + ")@" + token.getLine() + ":" + token.getPos() + " in "
+						+ getName(n.parent()));
+			}
+		});
+		return result;
+	}
+
+	private static String describe(final SourcePosition position) {
+		return position == null ? "-" : "@" + position.getLine() + ":" + position.getPos();
+	}
+
+	private static String getName(final Node node) {
+		return node == null ? "null" : node.getClass().getSimpleName();
+	}
+}
@@ -6,27 +6,81 @@ package de.prob.cliparser;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import de.be4.classicalb.core.parser.BParser;
+import de.be4.classicalb.core.parser.CachingDefinitionFileProvider;
+import de.be4.classicalb.core.parser.DefinitionFileCache;
 import de.be4.classicalb.core.parser.ParsingBehaviour;
 import de.be4.classicalb.core.parser.exceptions.BCompoundException;
 import de.be4.classicalb.core.parser.node.Start;
+import de.prob.prolog.output.PrologTermOutput;
 
 /**
  * This is a command line version of the parser that just takes all command line
  * arguments as machines to be parsed, parses them and write the parsed AST as
  * Prolog terms into a matching .prob file
  * 
+ * With <code>-threads n</code>, the machines are parsed concurrently by
+ * <code>n</code> threads which share the parsed definition files. All
+ * machines are parsed even if some of them fail, afterwards a summary is
+ * printed as Prolog facts:
+ * 
+ * <pre>
+ * batch_result(File, ok, Milliseconds).
+ * batch_result(File, error(Message), Milliseconds).
+ * batch_summary(Machines, Failed, Milliseconds).
+ * </pre>
+ * 
  * @author plagge
  */
 public class BatchParser {
 
+	private static final String CLI_SWITCH_THREADS = "-threads";
+
 	public static void main(final String[] args) {
+		final ConsoleOptions options = new ConsoleOptions();
+		options.setIntro("usage: BatchParser [options] <BMachine files>\n\nAvailable options are:");
+		options.addOption(CLI_SWITCH_THREADS,
+				"Parse the machines concurrently with the given number of threads and print a summary", 1);
+		try {
+			options.parseOptions(args);
+		} catch (final IllegalArgumentException e) {
+			System.err.println(e.getLocalizedMessage());
+			options.printUsage(System.err);
+			System.exit(-1);
+		}
+		final String[] filenames = options.getRemainingOptions();
+		if (options.isOptionSet(CLI_SWITCH_THREADS)) {
+			final String threads = options.getOptions(CLI_SWITCH_THREADS)[0];
+			final int threadCount;
+			try {
+				threadCount = Integer.parseInt(threads);
+				if (threadCount < 1)
+					throw new NumberFormatException();
+			} catch (final NumberFormatException e) {
+				System.err.println("Invalid number of threads: " + threads);
+				System.exit(-1);
+				return;
+			}
+			final PrintWriter out = new PrintWriter(System.out);
+			final boolean success = parseConcurrently(filenames, threadCount, out);
+			out.flush();
+			System.exit(success ? 0 : 1);
+		}
+		// the definition files are parsed only once for all machines
+		final DefinitionFileCache definitionFiles = new DefinitionFileCache();
 		try {
-			for (final String filename : args) {
+			for (final String filename : filenames) {
 				System.out.print("Parsing machine '" + filename + "' ... ");
 				System.out.flush();
-				parseFile(filename);
+				parseFile(filename, new CachingDefinitionFileProvider(definitionFiles));
 				System.out.println("ok");
 			}
 		} catch (Exception e) {
@@ -37,20 +91,108 @@ public class BatchParser {
 		}
 	}
 
-	private static void parseFile(final String filename) throws IOException, BCompoundException {
+	/**
+	 * Parses the machines with the given number of threads and prints the
+	 * summary. The definition files are parsed only once for all machines.
+	 *
+	 * @return <code>true</code> if all machines have been parsed
+	 */
+	static boolean parseConcurrently(final String[] filenames, final int threads, final PrintWriter out) {
+		final DefinitionFileCache definitionFiles = new DefinitionFileCache();
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		final long start = System.currentTimeMillis();
+		final List<Future<Result>> futures = new ArrayList<>();
+		try {
+			for (final String filename : filenames) {
+				futures.add(pool.submit(new Callable<Result>() {
+					@Override
+					public Result call() {
+						return parseFileAndMeasure(filename, definitionFiles);
+					}
+				}));
+			}
+			final PrologTermOutput pout = new PrologTermOutput(out, false);
+			int failed = 0;
+			for (int i = 0; i < filenames.length; i++) {
+				final Result result = waitFor(futures.get(i));
+				pout.openTerm("batch_result").printAtom(filenames[i]);
+				if (result.error == null) {
+					pout.printAtom("ok");
+				} else {
+					failed++;
+					pout.openTerm("error").printAtom(result.error).closeTerm();
+				}
+				pout.printNumber(result.time).closeTerm().fullstop();
+			}
+			pout.openTerm("batch_summary").printNumber(filenames.length).printNumber(failed)
+					.printNumber(System.currentTimeMillis() - start).closeTerm().fullstop();
+			pout.flush();
+			return failed == 0;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static Result parseFileAndMeasure(final String filename, final DefinitionFileCache definitionFiles) {
+		final long start = System.currentTimeMillis();
+		String error = null;
+		try {
+			parseFile(filename, new CachingDefinitionFileProvider(definitionFiles));
+		} catch (BCompoundException e) {
+			error = e.getLocalizedMessage();
+		} catch (IOException | RuntimeException e) {
+			error = e.toString();
+		}
+		return new Result(error, System.currentTimeMillis() - start);
+	}
+
+	private static Result waitFor(final Future<Result> future) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					return new Result(e.getCause().toString(), 0);
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static void parseFile(final String filename, final CachingDefinitionFileProvider provider)
+			throws IOException, BCompoundException {
 		final int dot = filename.lastIndexOf('.');
 		if (dot >= 0) {
 			final File machineFile = new File(filename);
 			final String probfilename = filename.substring(0, dot) + ".prob";
 
 			BParser parser = new BParser(filename);
-			Start tree = parser.parseFile(machineFile, false);
+			Start tree = parser.parseFile(machineFile, false, provider);
 
 			PrintStream output = new PrintStream(probfilename);
-			BParser.printASTasProlog(output, parser, machineFile, tree, new ParsingBehaviour(),
-					parser.getContentProvider());
-			output.close();
+			try {
+				BParser.printASTasProlog(output, parser, machineFile, tree, new ParsingBehaviour(), provider);
+			} finally {
+				output.close();
+			}
 		} else
 			throw new IllegalArgumentException("Filename '" + filename + "' has no extension");
 	}
+
+	private static final class Result {
+		// null if the machine has been parsed
+		private final String error;
+		private final long time;
+
+		Result(final String error, final long time) {
+			this.error = error;
+			this.time = time;
+		}
+	}
 }
@@ -1,38 +1,21 @@
 package de.prob.cliparser;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.concurrent.Executor;
 
 import de.be4.classicalb.core.parser.BParser;
-import de.be4.classicalb.core.parser.IDefinitions;
-import de.be4.classicalb.core.parser.MockedDefinitions;
 import de.be4.classicalb.core.parser.ParsingBehaviour;
-import de.be4.classicalb.core.parser.analysis.prolog.ASTProlog;
-import de.be4.classicalb.core.parser.analysis.prolog.ClassicalPositionPrinter;
-import de.be4.classicalb.core.parser.analysis.prolog.NodeIdAssignment;
 import de.be4.classicalb.core.parser.analysis.prolog.PrologExceptionPrinter;
-import de.be4.classicalb.core.parser.exceptions.BCompoundException;
-import de.be4.classicalb.core.parser.lexer.LexerException;
-import de.be4.classicalb.core.parser.node.Start;
 import de.be4.classicalb.core.parser.rules.RulesProject;
 import de.be4.classicalb.core.parser.util.Utils;
-import de.be4.ltl.core.parser.CtlParser;
-import de.be4.ltl.core.parser.LtlParseException;
-import de.be4.ltl.core.parser.LtlParser;
-import de.be4.ltl.core.parser.TemporalLogicParser;
-import de.prob.parserbase.ProBParserBase;
-import de.prob.prolog.output.PrologTermStringOutput;
-import de.prob.prolog.term.PrologTerm;
 
 public class CliBParser {
 
@@ -47,15 +30,17 @@ public class CliBParser {
 	private static final String CLI_SWITCH_OUTPUT = "-out";
 	private static final String CLI_SWITCH_INDENTION = "-indent";
 	private static final String CLI_SWITCH_PREPL = "-prepl";
+	private static final String CLI_SWITCH_PREPL_SERVER = "-preplserver";
+	private static final String CLI_SWITCH_PARALLEL_FORMULAS = "-parallelformulas";
 	private static final String CLI_SWITCH_NAME_CHECK = "-checkname";
+	private static final String CLI_SWITCH_CACHE = "-cache";
+	private static final String CLI_SWITCH_PARALLEL = "-parallel";
+	private static final String CLI_SWITCH_STREAM = "-stream";
 
 	private static final String osEncoding = System.getProperty("file.encoding");
 	private static final String encoding = "MacRoman".equals(osEncoding) || "Cp1252".equals(osEncoding) ? "UTF-8"
 			: osEncoding;
 
-	private static Socket socket;
-	private static OutputStream socketOutputStream;
-
 	public static void main(final String[] args) throws IOException {
 		// System.out.println("Ready. Press enter");
 		// System.in.read();
@@ -68,7 +53,8 @@ public class CliBParser {
 		}
 
 		final String[] arguments = options.getRemainingOptions();
-		if (!options.isOptionSet(CLI_SWITCH_PREPL) && arguments.length != 1) {
+		final boolean prepl = options.isOptionSet(CLI_SWITCH_PREPL) || options.isOptionSet(CLI_SWITCH_PREPL_SERVER);
+		if (!prepl && arguments.length != 1) {
 			options.printUsage(System.err);
 			System.exit(-1);
 		}
@@ -107,8 +93,26 @@ public class CliBParser {
 		behaviour.setVerbose(options.isOptionSet(CLI_SWITCH_VERBOSE));
 		behaviour.setFastPrologOutput(options.isOptionSet(CLI_SWITCH_FASTPROLOG));
 		behaviour.setMachineNameMustMatchFileName(options.isOptionSet(CLI_SWITCH_NAME_CHECK));
+		behaviour.setParallelLoading(options.isOptionSet(CLI_SWITCH_PARALLEL));
+		behaviour.setStreamingPrologOutput(options.isOptionSet(CLI_SWITCH_STREAM));
+		if (options.isOptionSet(CLI_SWITCH_CACHE)) {
+			behaviour.setCacheDirectory(new File(options.getOptions(CLI_SWITCH_CACHE)[0]));
+		}
 
-		if (options.isOptionSet(CLI_SWITCH_PREPL)) {
+		if (options.isOptionSet(CLI_SWITCH_PREPL_SERVER)) {
+			final String threads = options.getOptions(CLI_SWITCH_PREPL_SERVER)[0];
+			int maxConcurrentCommands;
+			try {
+				maxConcurrentCommands = Integer.parseInt(threads);
+			} catch (final NumberFormatException e) {
+				maxConcurrentCommands = 0;
+			}
+			if (maxConcurrentCommands <= 0) {
+				System.err.println("Invalid number of worker threads: " + threads);
+				System.exit(-1);
+			}
+			runPReplServer(behaviour, maxConcurrentCommands, options.isOptionSet(CLI_SWITCH_PARALLEL_FORMULAS));
+		} else if (options.isOptionSet(CLI_SWITCH_PREPL)) {
 			runPRepl(behaviour);
 		} else {
 			// there should be just one remaining argument
@@ -131,245 +135,32 @@ public class CliBParser {
 	}
 
 	private static void runPRepl(final ParsingBehaviour behaviour) throws IOException, FileNotFoundException {
-
-		PrintStream out;
-
 		ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
 		// write port number as prolog term
 		System.out.println(serverSocket.getLocalPort() + ".");
-		socket = serverSocket.accept();
-		socketOutputStream = socket.getOutputStream();
+		Socket socket = serverSocket.accept();
 
 		BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), encoding));
-		String line = "";
-		MockedDefinitions context = new MockedDefinitions();
-		boolean terminate = false;
-		while (!terminate) {
-			line = in.readLine();
-
-			EPreplCommands command;
-			String theFormula;
-
-			if (line == null) {
-				// the prob instance has been terminated. exit gracefully
-				command = EPreplCommands.halt;
-			} else {
-				command = EPreplCommands.valueOf(line);
-			}
-
-			switch (command) {
-			case version:
-				print(CliBParser.getBuildRevision() + System.lineSeparator());
-				break;
-			case definition:
-				String name = in.readLine();
-				String type = in.readLine();
-				String parameterCount = in.readLine();
-				context.addMockedDefinition(name, type, parameterCount);
-				break;
-			case machine:
-				String filename = in.readLine();
-				String outFile = in.readLine();
-				out = new PrintStream(outFile, encoding);
-				final File bfile = new File(filename);
-
-				int returnValue;
-				ByteArrayOutputStream baos = new ByteArrayOutputStream();
-				PrintStream ps = new PrintStream(baos);
-				try {
-					final String fileName = bfile.getName();
-					final String extension = fileName.substring(fileName.lastIndexOf(".") + 1);
-					if (extension.equals("rmch")) {
-						returnValue = RulesProject.parseProject(bfile, behaviour, out, ps);
-					} else {
-						final BParser parser = new BParser(bfile.getAbsolutePath());
-						returnValue = parser.fullParsing(bfile, behaviour, out, ps);
-					}
-					context = new MockedDefinitions();
-				} catch (Exception e) {
-					e.printStackTrace();
-					returnValue = -4;
-				} finally {
-					if (true) {
-						out.close();
+		// the commands are handled directly by the thread reading them
+		final PreplSession session = new PreplSession(behaviour, in, socket.getOutputStream(), encoding,
+				new Executor() {
+					@Override
+					public void execute(Runnable command) {
+						command.run();
 					}
-				}
-
-				if (returnValue == 0) {
-					print("exit(" + returnValue + ")." + System.lineSeparator());
-				} else {
-					String output = baos.toString().replace(System.lineSeparator(), " ").trim();
-					print(output + System.lineSeparator());
-				}
-				break;
-			case formula:
-				theFormula = "#FORMULA\n" + in.readLine();
-				parseFormula(theFormula, context);
-				break;
-			case expression:
-				theFormula = "#EXPRESSION\n" + in.readLine();
-				parseFormula(theFormula, context);
-				break;
-			case predicate:
-				theFormula = "#PREDICATE\n" + in.readLine();
-				parseFormula(theFormula, context);
-				break;
-			case substitution:
-				theFormula = "#SUBSTITUTION\n" + in.readLine();
-				parseFormula(theFormula, context);
-				break;
-			case extendedformula:
-				theFormula = "#FORMULA\n" + in.readLine();
-				parseExtendedFormula(theFormula, context);
-				break;
-			case extendedexpression:
-				theFormula = "#EXPRESSION\n" + in.readLine();
-				parseExtendedFormula(theFormula, context);
-				break;
-			case extendedpredicate:
-				theFormula = "#PREDICATE\n" + in.readLine();
-				parseExtendedFormula(theFormula, context);
-				break;
-			case extendedsubstitution:
-				theFormula = "#SUBSTITUTION\n" + in.readLine();
-				parseExtendedFormula(theFormula, context);
-				break;
-			case ltl:
-				String extension = in.readLine();
-				final ProBParserBase extParser = LtlConsoleParser.getExtensionParser(extension);
-				final TemporalLogicParser<?> parser = new LtlParser(extParser);
-
-				parseTemporalFormula(in, parser);
-
-				break;
-			case ctl:
-				String extension2 = in.readLine();
-				final ProBParserBase extParser2 = LtlConsoleParser.getExtensionParser(extension2);
-				final TemporalLogicParser<?> parser2 = new CtlParser(extParser2);
-				parseTemporalFormula(in, parser2);
-				break;
-
-			case halt:
-				socket.close();
-				serverSocket.close();
-				terminate = true;
-				break;
-			default:
-				throw new UnsupportedOperationException("Unsupported Command " + line);
-			}
-
-		}
-	}
-
-	private static void parseTemporalFormula(BufferedReader in, final TemporalLogicParser<?> parser)
-			throws IOException {
-		String theFormula;
-		PrologTermStringOutput strOutput = new PrologTermStringOutput();
-		theFormula = in.readLine();
-
-		try {
-			final PrologTerm term = parser.generatePrologTerm(theFormula, null);
-			strOutput.openTerm("ltl").printTerm(term).closeTerm();
-		} catch (LtlParseException e) {
-			strOutput.openTerm("syntax_error").printAtom(e.getLocalizedMessage()).closeTerm();
-		}
-
-		strOutput.fullstop();
-
-		// A Friendly Reminder: strOutput includes a newline!
-		print(strOutput.toString());
-	}
-
-	private static void parseExtendedFormula(String theFormula, IDefinitions context) {
-		try {
-			BParser parser = new BParser();
-			parser.setDefinitions(context);
-			Start start = parser.eparse(theFormula, context);
-
-			PrologTermStringOutput strOutput = new PrologTermStringOutput();
-
-			NodeIdAssignment na = new NodeIdAssignment();
-			start.apply(na);
-
-			ClassicalPositionPrinter pprinter = new ClassicalPositionPrinter(na, -1, 0);
-			ASTProlog printer = new ASTProlog(strOutput, pprinter);
-
-			start.apply(printer);
-			strOutput.fullstop();
-
-			// A Friendly Reminder: strOutput includes a newline!
-			print(strOutput.toString());
-		} catch (NullPointerException e) {
-			// Not Parseable - Sadly, calling e.getLocalizedMessage() on the
-			// NullPointerException returns NULL itself, thus triggering another
-			// NullPointerException in the catch statement. Therefore we need a
-			// second catch statement with a special case for the
-			// NullPointerException instead of catching a general Exception
-			// print("EXCEPTION NullPointerException" + System.lineSeparator());
-			PrologTermStringOutput strOutput = new PrologTermStringOutput();
-			strOutput.openTerm("exception").printAtom("NullPointerException").closeTerm();
-			strOutput.fullstop();
-			strOutput.flush();
-			print(strOutput.toString());
-		} catch (BCompoundException e) {
-			PrologExceptionPrinter.printException(socketOutputStream, e, false, true);
-		} catch (LexerException e) {
-			PrologTermStringOutput strOutput = new PrologTermStringOutput();
-			strOutput.openTerm("exception").printAtom(e.getLocalizedMessage()).closeTerm();
-			strOutput.fullstop();
-			strOutput.flush();
-			print(strOutput.toString());
-		} catch (IOException e) {
-			PrologExceptionPrinter.printException(socketOutputStream, e);
-		}
+				});
+		session.run();
+		socket.close();
+		serverSocket.close();
 	}
 
-	private static void parseFormula(String theFormula, IDefinitions context) {
-		try {
-			BParser parser = new BParser();
-			parser.setDefinitions(context);
-			Start start = parser.parse(theFormula, false);
-			PrologTermStringOutput strOutput = new PrologTermStringOutput();
-
-			NodeIdAssignment na = new NodeIdAssignment();
-			start.apply(na);
-
-			ClassicalPositionPrinter pprinter = new ClassicalPositionPrinter(na, -1, 0);
-
-			ASTProlog printer = new ASTProlog(strOutput, pprinter);
-
-			start.apply(printer);
-			strOutput.fullstop();
-
-			// A Friendly Reminder: strOutput includes a newline!
-			String output = strOutput.toString();
-			print(output);
-		} catch (NullPointerException e) {
-			// Not Parseable - Sadly, calling e.getLocalizedMessage() on the
-			// NullPointerException returns NULL itself, thus triggering another
-			// NullPointerException in the catch statement. Therefore we need a
-			// second catch statement with a special case for the
-			// NullPointerException instead of catching a general Exception
-			// print("EXCEPTION NullPointerException" + System.lineSeparator());
-			PrologTermStringOutput strOutput = new PrologTermStringOutput();
-			strOutput.openTerm("exception").printAtom("NullPointerException").closeTerm();
-			strOutput.fullstop();
-			strOutput.flush();
-			String output = strOutput.toString();
-			print(output);
-		} catch (BCompoundException e) {
-			PrologExceptionPrinter.printException(socketOutputStream, e, false, true);
-
-		}
-	}
-
-	private static void print(String output) {
-		try {
-			PrintStream out = new PrintStream(socketOutputStream, true, CliBParser.encoding);
-			out.print(output);
-		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
-		}
+	private static void runPReplServer(final ParsingBehaviour behaviour, final int maxConcurrentCommands,
+			final boolean parallelFormulas) throws IOException {
+		final PreplServer server = new PreplServer(behaviour, encoding, maxConcurrentCommands);
+		server.setParallelFormulas(parallelFormulas);
+		// write port number as prolog term
+		System.out.println(server.getPort() + ".");
+		server.run();
 	}
 
 	private static int doFileParsing(final ParsingBehaviour behaviour, final PrintStream out, final PrintStream err,
@@ -410,8 +201,17 @@ public class CliBParser {
 		options.addOption(CLI_SWITCH_FASTPROLOG,
 				"Show AST as Prolog term for fast loading (Do not use this representation in your tool! It depends on internal representation of Sicstus Prolog and will very likely change arbitrarily in the future!)");
 		options.addOption(CLI_SWITCH_PREPL, "Enter parser-repl. Should only be used from inside ProB's Prolog Core.");
+		options.addOption(CLI_SWITCH_PREPL_SERVER,
+				"Enter parser-repl accepting several connections until a shutdown command, the argument is the number of commands handled concurrently. Should only be used from inside ProB's Prolog Core.",
+				1);
+		options.addOption(CLI_SWITCH_PARALLEL_FORMULAS,
+				"Parse the formulas of a batch concurrently, using the worker threads of the parser-repl server");
 		options.addOption(CLI_SWITCH_NAME_CHECK,
 				"The name of a machine have to match file name (except for the file name extension)");
+		options.addOption(CLI_SWITCH_CACHE, "Directory of a persistent cache for parsed machines", 1);
+		options.addOption(CLI_SWITCH_PARALLEL, "Parse referenced machines concurrently");
+		options.addOption(CLI_SWITCH_STREAM,
+				"Print each machine as Prolog term as soon as it is loaded (the list of files is printed at the end)");
 		try {
 			options.parseOptions(args);
 		} catch (final IllegalArgumentException e) {
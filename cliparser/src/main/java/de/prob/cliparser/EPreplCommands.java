@@ -1,5 +1,5 @@
 package de.prob.cliparser;
 
 public enum EPreplCommands {
-	machine, formula, expression, predicate, substitution, extendedexpression, extendedpredicate, extendedsubstitution, halt, definition, ltl, ctl, version, extendedformula;
+	machine, formula, expression, predicate, substitution, extendedexpression, extendedpredicate, extendedsubstitution, halt, definition, ltl, ctl, version, extendedformula, formulas, shutdown;
 }
@@ -0,0 +1,192 @@
+package de.prob.cliparser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.be4.classicalb.core.parser.ParsingBehaviour;
+
+/**
+ * A parser-repl which accepts several connections. Each connection is a
+ * {@link PreplSession} with its own definitions context. The commands of all
+ * sessions are handled by a shared pool of worker threads, so a long running
+ * command of one session does not block the other sessions. The answers of
+ * each session are written in the order of its commands.
+ *
+ * The server accepts connections until {@link #close()} is called or a
+ * session sends the <code>shutdown</code> command. {@link #run()} returns
+ * after all sessions are closed.
+ */
+public class PreplServer {
+
+	private final ParsingBehaviour behaviour;
+	private final String encoding;
+	private final ServerSocket serverSocket;
+	private final ExecutorService workers;
+	private final int maxConcurrentCommands;
+	private volatile boolean parallelFormulas = false;
+	private final AtomicInteger sessionCount = new AtomicInteger();
+	private int openSessions = 0;
+
+	/**
+	 * Opens a server socket on a free port of the loopback interface.
+	 *
+	 * @param behaviour
+	 *            the options for parsing machines
+	 * @param encoding
+	 *            the encoding of the connections
+	 * @param maxConcurrentCommands
+	 *            the number of worker threads, i.e., the maximal number of
+	 *            commands which are handled at the same time
+	 * @throws IOException
+	 *             if the server socket cannot be opened
+	 */
+	public PreplServer(final ParsingBehaviour behaviour, final String encoding, final int maxConcurrentCommands)
+			throws IOException {
+		if (maxConcurrentCommands < 1) {
+			throw new IllegalArgumentException("At least one worker thread is needed: " + maxConcurrentCommands);
+		}
+		this.behaviour = behaviour;
+		this.encoding = encoding;
+		this.maxConcurrentCommands = maxConcurrentCommands;
+		this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		this.workers = Executors.newFixedThreadPool(maxConcurrentCommands, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				final Thread thread = new Thread(r, "PreplWorker-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * If set, the formulas of a <code>formulas</code> command are parsed
+	 * concurrently by the worker threads. The formulas of all sessions are
+	 * still parsed by at most <code>maxConcurrentCommands</code> threads.
+	 *
+	 * @param parallelFormulas
+	 *            whether batches of formulas are parsed concurrently
+	 */
+	public void setParallelFormulas(final boolean parallelFormulas) {
+		this.parallelFormulas = parallelFormulas;
+	}
+
+	public boolean isParallelFormulas() {
+		return parallelFormulas;
+	}
+
+	ExecutorService getWorkers() {
+		return workers;
+	}
+
+	int getMaxConcurrentCommands() {
+		return maxConcurrentCommands;
+	}
+
+	/**
+	 * Accepts connections until {@link #close()} is called, also if no session
+	 * is open. Afterwards, waits until the open sessions have been closed.
+	 *
+	 * @throws IOException
+	 *             if accepting a connection fails
+	 */
+	public void run() throws IOException {
+		try {
+			while (true) {
+				final Socket socket;
+				try {
+					socket = serverSocket.accept();
+				} catch (IOException e) {
+					if (serverSocket.isClosed()) {
+						return;
+					}
+					throw e;
+				}
+				startSession(socket);
+			}
+		} finally {
+			waitForOpenSessions();
+			workers.shutdown();
+		}
+	}
+
+	private synchronized void waitForOpenSessions() {
+		boolean interrupted = false;
+		while (openSessions > 0) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Stops accepting connections. The open sessions are not closed.
+	 *
+	 * @throws IOException
+	 *             if the server socket cannot be closed
+	 */
+	public void close() throws IOException {
+		serverSocket.close();
+	}
+
+	private void startSession(final Socket socket) throws IOException {
+		final SerialExecutor executor = new SerialExecutor(workers);
+		final PreplSession session = new PreplSession(behaviour,
+				new BufferedReader(new InputStreamReader(socket.getInputStream(), encoding)), socket.getOutputStream(),
+				encoding, executor, this);
+		synchronized (this) {
+			openSessions++;
+		}
+		final Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					session.run();
+				} catch (IOException | RuntimeException e) {
+					e.printStackTrace();
+				} finally {
+					// closed after all commands of the session are answered
+					executor.execute(new Runnable() {
+						@Override
+						public void run() {
+							closeSession(socket);
+						}
+					});
+				}
+			}
+		}, "PreplSession-" + sessionCount.incrementAndGet());
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	private void closeSession(final Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		synchronized (this) {
+			openSessions--;
+			notifyAll();
+		}
+	}
+}
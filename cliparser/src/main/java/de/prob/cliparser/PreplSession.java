@@ -0,0 +1,518 @@
+package de.prob.cliparser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.be4.classicalb.core.parser.BParser;
+import de.be4.classicalb.core.parser.FormulaParser;
+import de.be4.classicalb.core.parser.MockedDefinitions;
+import de.be4.classicalb.core.parser.ParsingBehaviour;
+import de.be4.classicalb.core.parser.analysis.prolog.ASTProlog;
+import de.be4.classicalb.core.parser.analysis.prolog.ClassicalPositionPrinter;
+import de.be4.classicalb.core.parser.analysis.prolog.NodeIdAssignment;
+import de.be4.classicalb.core.parser.analysis.prolog.PrologExceptionPrinter;
+import de.be4.classicalb.core.parser.exceptions.BCompoundException;
+import de.be4.classicalb.core.parser.lexer.LexerException;
+import de.be4.classicalb.core.parser.node.Start;
+import de.be4.classicalb.core.parser.rules.RulesProject;
+import de.be4.ltl.core.parser.CtlParser;
+import de.be4.ltl.core.parser.LtlParseException;
+import de.be4.ltl.core.parser.LtlParser;
+import de.be4.ltl.core.parser.TemporalLogicParser;
+import de.prob.parserbase.ProBParserBase;
+import de.prob.prolog.output.IPrologTermOutput;
+import de.prob.prolog.output.PrologTermStringOutput;
+import de.prob.prolog.term.PrologTerm;
+
+/**
+ * One connection of the parser-repl. The commands are read from the
+ * connection and handled by the given executor, the answers are written back
+ * in the order of the commands. Each session has its own definitions context.
+ *
+ * The executor must run the tasks one after the other in the order they were
+ * submitted, see {@link SerialExecutor}.
+ *
+ * The <code>formulas</code> command parses a batch of formulas with one
+ * answer: a line with the number of formulas is followed by two lines for each
+ * formula, the formula command (e.g. <code>predicate</code> or
+ * <code>extendedexpression</code>) and the formula. The answer is a list with
+ * the AST or the error of each formula, in the order of the formulas. If
+ * {@link PreplServer#isParallelFormulas()} is set for the server of the
+ * session, the formulas are parsed concurrently by its worker threads.
+ */
+class PreplSession {
+
+	private final ParsingBehaviour behaviour;
+	private final BufferedReader in;
+	private final String encoding;
+	private final Executor executor;
+	// null if the session is not part of a server
+	private final PreplServer server;
+	// only used by the tasks, which are run one after the other
+	private final Writer out;
+
+	// only accessed by the tasks, which are run one after the other
+	private MockedDefinitions context = new MockedDefinitions();
+	// the parsers for the context, created when needed: the first one is used
+	// by the commands, the others by the helpers of a concurrent batch
+	private final List<FormulaParser> parsers = new ArrayList<>();
+
+	PreplSession(final ParsingBehaviour behaviour, final BufferedReader in, final OutputStream out,
+			final String encoding, final Executor executor) throws UnsupportedEncodingException {
+		this(behaviour, in, out, encoding, executor, null);
+	}
+
+	/*
+	 * the shutdown command closes the server
+	 */
+	PreplSession(final ParsingBehaviour behaviour, final BufferedReader in, final OutputStream out,
+			final String encoding, final Executor executor, final PreplServer server)
+			throws UnsupportedEncodingException {
+		this.behaviour = behaviour;
+		this.in = in;
+		this.encoding = encoding;
+		this.executor = executor;
+		this.server = server;
+		this.out = new BufferedWriter(new OutputStreamWriter(out, encoding));
+	}
+
+	/**
+	 * Reads and submits commands until the <code>halt</code> or
+	 * <code>shutdown</code> command is read or the connection is closed by the
+	 * client. The <code>shutdown</code> command also closes the server, which
+	 * stops after its open sessions have been closed. Commands which have been
+	 * submitted may still be running when this method returns.
+	 *
+	 * @throws IOException
+	 *             if the connection cannot be read
+	 */
+	public void run() throws IOException {
+		boolean terminate = false;
+		while (!terminate) {
+			final String line = in.readLine();
+
+			EPreplCommands command;
+
+			if (line == null) {
+				// the prob instance has been terminated. exit gracefully
+				command = EPreplCommands.halt;
+			} else {
+				command = EPreplCommands.valueOf(line);
+			}
+
+			switch (command) {
+			case version:
+				submit(new Runnable() {
+					@Override
+					public void run() {
+						print(CliBParser.getBuildRevision() + System.lineSeparator());
+					}
+				});
+				break;
+			case definition:
+				final String name = in.readLine();
+				final String type = in.readLine();
+				final String parameterCount = in.readLine();
+				// not answered, hence an exception is only logged
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							context.addMockedDefinition(name, type, parameterCount);
+							for (final FormulaParser parser : parsers) {
+								parser.definitionsChanged();
+							}
+						} catch (RuntimeException e) {
+							e.printStackTrace();
+						}
+					}
+				});
+				break;
+			case machine:
+				final String filename = in.readLine();
+				final String outFile = in.readLine();
+				submit(new Runnable() {
+					@Override
+					public void run() {
+						parseMachine(filename, outFile);
+					}
+				});
+				break;
+			case formula:
+				submitFormula("#FORMULA\n" + in.readLine(), false);
+				break;
+			case expression:
+				submitFormula("#EXPRESSION\n" + in.readLine(), false);
+				break;
+			case predicate:
+				submitFormula("#PREDICATE\n" + in.readLine(), false);
+				break;
+			case substitution:
+				submitFormula("#SUBSTITUTION\n" + in.readLine(), false);
+				break;
+			case extendedformula:
+				submitFormula("#FORMULA\n" + in.readLine(), true);
+				break;
+			case extendedexpression:
+				submitFormula("#EXPRESSION\n" + in.readLine(), true);
+				break;
+			case extendedpredicate:
+				submitFormula("#PREDICATE\n" + in.readLine(), true);
+				break;
+			case extendedsubstitution:
+				submitFormula("#SUBSTITUTION\n" + in.readLine(), true);
+				break;
+			case formulas:
+				submitFormulas();
+				break;
+			case ltl:
+				final ProBParserBase extParser = LtlConsoleParser.getExtensionParser(in.readLine());
+				submitTemporalFormula(new LtlParser(extParser), in.readLine());
+				break;
+			case ctl:
+				final ProBParserBase extParser2 = LtlConsoleParser.getExtensionParser(in.readLine());
+				submitTemporalFormula(new CtlParser(extParser2), in.readLine());
+				break;
+			case halt:
+				terminate = true;
+				break;
+			case shutdown:
+				if (server != null) {
+					server.close();
+				}
+				terminate = true;
+				break;
+			default:
+				throw new UnsupportedOperationException("Unsupported Command " + line);
+			}
+		}
+	}
+
+	/*
+	 * the task has to print exactly one answer, an unexpected exception is
+	 * answered with exception(Message)
+	 */
+	private void submit(final Runnable task) {
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+					final PrologTermStringOutput strOutput = new PrologTermStringOutput();
+					strOutput.openTerm("exception").printAtom(String.valueOf(e)).closeTerm().fullstop();
+					print(strOutput.toString());
+				}
+			}
+		});
+	}
+
+	private void submitFormula(final String theFormula, final boolean extended) {
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				parseFormula(theFormula, extended);
+			}
+		});
+	}
+
+	/*
+	 * a line with the number of formulas, then two lines for each formula:
+	 * the formula command (e.g. predicate) and the formula
+	 */
+	private void submitFormulas() throws IOException {
+		final int count = Integer.parseInt(in.readLine().trim());
+		final String[] kinds = new String[count];
+		final String[] formulas = new String[count];
+		for (int i = 0; i < count; i++) {
+			kinds[i] = in.readLine();
+			formulas[i] = in.readLine();
+		}
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				parseFormulas(kinds, formulas);
+			}
+		});
+	}
+
+	private void submitTemporalFormula(final TemporalLogicParser<?> parser, final String theFormula) {
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				parseTemporalFormula(parser, theFormula);
+			}
+		});
+	}
+
+	private void parseMachine(final String filename, final String outFile) {
+		final File bfile = new File(filename);
+
+		int returnValue;
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		PrintStream ps = new PrintStream(baos);
+		PrintStream out = null;
+		try {
+			out = new PrintStream(outFile, encoding);
+			final String fileName = bfile.getName();
+			final String extension = fileName.substring(fileName.lastIndexOf(".") + 1);
+			if (extension.equals("rmch")) {
+				returnValue = RulesProject.parseProject(bfile, behaviour, out, ps);
+			} else {
+				final BParser parser = new BParser(bfile.getAbsolutePath());
+				returnValue = parser.fullParsing(bfile, behaviour, out, ps);
+			}
+			context = new MockedDefinitions();
+			parsers.clear();
+		} catch (Exception e) {
+			e.printStackTrace();
+			returnValue = -4;
+		} finally {
+			if (out != null) {
+				out.close();
+			}
+		}
+
+		if (returnValue == 0) {
+			print("exit(" + returnValue + ")." + System.lineSeparator());
+		} else {
+			String output = baos.toString().replace(System.lineSeparator(), " ").trim();
+			print(output + System.lineSeparator());
+		}
+	}
+
+	private void parseTemporalFormula(final TemporalLogicParser<?> parser, final String theFormula) {
+		PrologTermStringOutput strOutput = new PrologTermStringOutput();
+
+		try {
+			final PrologTerm term = parser.generatePrologTerm(theFormula, null);
+			strOutput.openTerm("ltl").printTerm(term).closeTerm();
+		} catch (LtlParseException e) {
+			strOutput.openTerm("syntax_error").printAtom(e.getLocalizedMessage()).closeTerm();
+		}
+
+		strOutput.fullstop();
+
+		// A Friendly Reminder: strOutput includes a newline!
+		print(strOutput.toString());
+	}
+
+	private void parseFormulas(final String[] kinds, final String[] formulas) {
+		final String[] results = new String[formulas.length];
+		if (server != null && server.isParallelFormulas() && formulas.length > 1) {
+			parseFormulasConcurrently(kinds, formulas, results);
+		} else {
+			for (int i = 0; i < formulas.length; i++) {
+				results[i] = formatFormula(getParser(0), kinds[i], formulas[i]);
+			}
+		}
+		final StringBuilder sb = new StringBuilder();
+		sb.append('[');
+		for (int i = 0; i < results.length; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(results[i]);
+		}
+		sb.append("].").append(System.lineSeparator());
+		print(sb.toString());
+	}
+
+	/*
+	 * the definitions context is only read while the formulas are parsed, the
+	 * next command is not handled before all formulas are done. The thread of
+	 * the command takes part in parsing the formulas, hence the batch is
+	 * finished even if all other worker threads are busy.
+	 */
+	private void parseFormulasConcurrently(final String[] kinds, final String[] formulas, final String[] results) {
+		final int helpers = Math.min(formulas.length, server.getMaxConcurrentCommands()) - 1;
+		// the parsers are created before the helpers are started, each helper
+		// uses its own one
+		getParser(helpers);
+		final AtomicInteger next = new AtomicInteger();
+		final List<Future<?>> futures = new ArrayList<>();
+		// set by a helper when it starts or by this thread if the helper is
+		// no longer needed
+		final List<AtomicBoolean> started = new ArrayList<>();
+		try {
+			for (int i = 1; i <= helpers; i++) {
+				final Runnable worker = createWorker(parsers.get(i), kinds, formulas, results, next);
+				final AtomicBoolean helperStarted = new AtomicBoolean();
+				futures.add(server.getWorkers().submit(new Runnable() {
+					@Override
+					public void run() {
+						if (helperStarted.compareAndSet(false, true)) {
+							worker.run();
+						}
+					}
+				}));
+				started.add(helperStarted);
+			}
+		} catch (RejectedExecutionException e) {
+			// the server is shutting down, the remaining formulas are parsed
+			// by this thread
+		}
+		createWorker(parsers.get(0), kinds, formulas, results, next).run();
+		for (int i = 0; i < futures.size(); i++) {
+			// a helper which has not yet started would not find any formula
+			if (!started.get(i).compareAndSet(false, true)) {
+				waitFor(futures.get(i));
+			}
+		}
+	}
+
+	/*
+	 * parses the formulas not yet taken by another worker
+	 */
+	private Runnable createWorker(final FormulaParser parser, final String[] kinds, final String[] formulas,
+			final String[] results, final AtomicInteger next) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				for (int i = next.getAndIncrement(); i < formulas.length; i = next.getAndIncrement()) {
+					results[i] = formatFormula(parser, kinds[i], formulas[i]);
+				}
+			}
+		};
+	}
+
+	private static void waitFor(final Future<?> future) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					future.get();
+					return;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					// formatFormula does not throw exceptions
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/*
+	 * the result of one formula of a batch, without a full stop
+	 */
+	private static String formatFormula(final FormulaParser parser, final String kind, final String formula) {
+		final PrologTermStringOutput strOutput = new PrologTermStringOutput();
+		final String header = getFormulaHeader(kind);
+		if (header == null) {
+			strOutput.openTerm("exception").printAtom("Unsupported formula kind " + kind).closeTerm();
+		} else {
+			try {
+				printFormula(parser, strOutput, header + formula, kind.startsWith("extended"));
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				return formatException(e);
+			}
+		}
+		return strOutput.toString();
+	}
+
+	private static String formatException(final Throwable e) {
+		final PrologTermStringOutput strOutput = new PrologTermStringOutput();
+		strOutput.openTerm("exception").printAtom(String.valueOf(e)).closeTerm();
+		return strOutput.toString();
+	}
+
+	/*
+	 * returns null if the kind is not a formula command
+	 */
+	private static String getFormulaHeader(final String kind) {
+		switch (kind) {
+		case "formula":
+		case "extendedformula":
+			return "#FORMULA\n";
+		case "expression":
+		case "extendedexpression":
+			return "#EXPRESSION\n";
+		case "predicate":
+		case "extendedpredicate":
+			return "#PREDICATE\n";
+		case "substitution":
+		case "extendedsubstitution":
+			return "#SUBSTITUTION\n";
+		default:
+			return null;
+		}
+	}
+
+	private void parseFormula(final String theFormula, final boolean extended) {
+		PrologTermStringOutput strOutput = new PrologTermStringOutput();
+		printFormula(getParser(0), strOutput, theFormula, extended);
+		strOutput.fullstop();
+		// A Friendly Reminder: strOutput includes a newline!
+		print(strOutput.toString());
+	}
+
+	/*
+	 * prints the AST of the formula or the error, without a full stop
+	 */
+	private static void printFormula(final FormulaParser parser, final IPrologTermOutput pout,
+			final String theFormula, final boolean extended) {
+		try {
+			Start start = extended ? parser.eparse(theFormula) : parser.parse(theFormula);
+
+			NodeIdAssignment na = new NodeIdAssignment();
+			start.apply(na);
+
+			ClassicalPositionPrinter pprinter = new ClassicalPositionPrinter(na, -1, 0);
+			ASTProlog printer = new ASTProlog(pout, pprinter);
+
+			start.apply(printer);
+		} catch (NullPointerException e) {
+			// Not Parseable - Sadly, calling e.getLocalizedMessage() on the
+			// NullPointerException returns NULL itself, thus triggering another
+			// NullPointerException in the catch statement. Therefore we need a
+			// second catch statement with a special case for the
+			// NullPointerException instead of catching a general Exception
+			pout.openTerm("exception").printAtom("NullPointerException").closeTerm();
+		} catch (BCompoundException e) {
+			PrologExceptionPrinter.printException(pout, e, false, true);
+		} catch (LexerException e) {
+			pout.openTerm("exception").printAtom(e.getLocalizedMessage()).closeTerm();
+		} catch (IOException e) {
+			PrologExceptionPrinter.printException(pout, e, false);
+		}
+	}
+
+	private FormulaParser getParser(final int index) {
+		while (parsers.size() <= index) {
+			parsers.add(new FormulaParser(context));
+		}
+		return parsers.get(index);
+	}
+
+	private void print(String output) {
+		try {
+			out.write(output);
+			out.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package de.prob.cliparser;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks one after the other in the order they were submitted, using
+ * another (usually shared) executor. Several serial executors can share one
+ * thread pool, tasks of different serial executors run concurrently.
+ */
+class SerialExecutor implements Executor {
+
+	private final Queue<Runnable> tasks = new ArrayDeque<>();
+	private final Executor executor;
+	private Runnable active;
+
+	SerialExecutor(final Executor executor) {
+		this.executor = executor;
+	}
+
+	@Override
+	public synchronized void execute(final Runnable task) {
+		tasks.add(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					task.run();
+				} finally {
+					scheduleNext();
+				}
+			}
+		});
+		if (active == null) {
+			scheduleNext();
+		}
+	}
+
+	private synchronized void scheduleNext() {
+		active = tasks.poll();
+		if (active != null) {
+			executor.execute(active);
+		}
+	}
+}
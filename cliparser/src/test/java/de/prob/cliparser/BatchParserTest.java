@@ -0,0 +1,101 @@
+package de.prob.cliparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.be4.classicalb.core.parser.BParser;
+import de.be4.classicalb.core.parser.ParsingBehaviour;
+import de.be4.classicalb.core.parser.node.Start;
+
+public class BatchParserTest {
+
+	private static final int MACHINES = 20;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSharedDefinitionFiles() throws Exception {
+		writeFile("Common.def", "DEFINITIONS \"Nested.def\"; common == 42; subst == skip; valid == (1 = 1)");
+		writeFile("Nested.def", "DEFINITIONS nested == common + 1");
+		final String[] filenames = new String[MACHINES];
+		for (int i = 0; i < MACHINES; i++) {
+			writeFile("M" + i + ".mch", "MACHINE M" + i + "\nDEFINITIONS \"Common.def\"; local == " + i
+					+ "\nCONSTANTS c\nPROPERTIES c = common + nested + local & valid\n"
+					+ "VARIABLES x\nINVARIANT x : NAT\nINITIALISATION x := 0\nOPERATIONS op = subst\nEND");
+			filenames[i] = new File(folder.getRoot(), "M" + i + ".mch").getPath();
+		}
+
+		final StringWriter summary = new StringWriter();
+		assertTrue(BatchParser.parseConcurrently(filenames, 4, new PrintWriter(summary)));
+		final String[] lines = summary.toString().split("\n");
+		assertEquals(MACHINES + 1, lines.length);
+		for (int i = 0; i < MACHINES; i++) {
+			assertTrue(lines[i], lines[i].startsWith("batch_result('" + filenames[i] + "',ok,"));
+			assertEquals(filenames[i], parseAlone(filenames[i]), readProbFile(i));
+		}
+		assertTrue(lines[MACHINES], lines[MACHINES].startsWith("batch_summary(" + MACHINES + ",0,"));
+	}
+
+	@Test
+	public void testErrorsDoNotStopTheBatch() throws Exception {
+		writeFile("A.mch", "MACHINE A END");
+		writeFile("B.mch", "MACHINE B CONSTANTS x PROPERTIES x = END");
+		writeFile("C.mch", "MACHINE C DEFINITIONS \"Missing.def\" END");
+		writeFile("D.mch", "MACHINE D END");
+		final String[] filenames = new String[4];
+		for (int i = 0; i < filenames.length; i++) {
+			filenames[i] = new File(folder.getRoot(), (char) ('A' + i) + ".mch").getPath();
+		}
+
+		final StringWriter summary = new StringWriter();
+		assertFalse(BatchParser.parseConcurrently(filenames, 2, new PrintWriter(summary)));
+		final String[] lines = summary.toString().split("\n");
+		assertEquals(5, lines.length);
+		assertTrue(lines[0], lines[0].startsWith("batch_result('" + filenames[0] + "',ok,"));
+		assertTrue(lines[1], lines[1].startsWith("batch_result('" + filenames[1] + "',error('"));
+		assertTrue(lines[2], lines[2].startsWith("batch_result('" + filenames[2] + "',error('"));
+		assertTrue(lines[3], lines[3].startsWith("batch_result('" + filenames[3] + "',ok,"));
+		assertTrue(lines[4], lines[4].startsWith("batch_summary(4,2,"));
+		assertTrue(new File(folder.getRoot(), "D.prob").exists());
+	}
+
+	/*
+	 * the Prolog output of the machine parsed with its own definition files
+	 */
+	private static String parseAlone(final String filename) throws Exception {
+		final File machineFile = new File(filename);
+		final BParser parser = new BParser(filename);
+		final Start tree = parser.parseFile(machineFile, false);
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final PrintStream out = new PrintStream(bytes, true, "UTF-8");
+		BParser.printASTasProlog(out, parser, machineFile, tree, new ParsingBehaviour(), parser.getContentProvider());
+		out.close();
+		return bytes.toString("UTF-8");
+	}
+
+	private String readProbFile(final int index) throws IOException {
+		return new String(Files.readAllBytes(new File(folder.getRoot(), "M" + index + ".prob").toPath()),
+				StandardCharsets.UTF_8);
+	}
+
+	private void writeFile(final String name, final String content) throws IOException {
+		try (PrintWriter out = new PrintWriter(new File(folder.getRoot(), name), "UTF-8")) {
+			out.print(content);
+		}
+	}
+}
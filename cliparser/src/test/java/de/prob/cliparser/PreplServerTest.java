@@ -0,0 +1,223 @@
+package de.prob.cliparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.be4.classicalb.core.parser.ParsingBehaviour;
+
+public class PreplServerTest {
+
+	private PreplServer server;
+	private Thread serverThread;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new PreplServer(new ParsingBehaviour(), "UTF-8", 2);
+		serverThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					server.run();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		serverThread.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.close();
+		serverThread.join(10000);
+	}
+
+	@Test(timeout = 10000)
+	public void testSessionsHaveTheirOwnDefinitions() throws Exception {
+		final Client first = new Client();
+		final Client second = new Client();
+
+		first.send("definition", "foo", "expression", "0");
+		first.send("expression", "foo");
+		second.send("expression", "foo");
+		final String withDefinition = first.readLine();
+		final String withoutDefinition = second.readLine();
+		assertTrue(withDefinition, withDefinition.contains("definition"));
+		assertTrue(withoutDefinition, withoutDefinition.contains("identifier"));
+
+		first.halt();
+		second.halt();
+	}
+
+	@Test(timeout = 10000)
+	public void testDefinitionAfterFormula() throws Exception {
+		// the parser of the session is kept, but learns the new definition
+		final Client client = new Client();
+		client.send("expression", "foo");
+		final String withoutDefinition = client.readLine();
+		client.send("definition", "foo", "expression", "0");
+		client.send("expression", "foo");
+		final String withDefinition = client.readLine();
+		assertTrue(withoutDefinition, withoutDefinition.contains("identifier"));
+		assertTrue(withDefinition, withDefinition.contains("definition"));
+		client.halt();
+	}
+
+	@Test(timeout = 10000)
+	public void testAnswersAreOrderedPerSession() throws Exception {
+		final Client first = new Client();
+		final Client second = new Client();
+		for (int i = 0; i < 100; i++) {
+			first.send("expression", Integer.toString(i));
+			second.send("predicate", "x > " + i);
+		}
+		for (int i = 0; i < 100; i++) {
+			final String expression = first.readLine();
+			final String predicate = second.readLine();
+			assertTrue(expression, expression.startsWith("integer(") && expression.endsWith("," + i + ")."));
+			assertTrue(predicate, predicate.startsWith("greater(") && predicate.endsWith("," + i + "))."));
+		}
+		first.halt();
+		second.halt();
+	}
+
+	@Test(timeout = 10000)
+	public void testServerAcceptsAfterLastSession() throws Exception {
+		final Client first = new Client();
+		first.send("version");
+		assertNotNull(first.readLine());
+		first.halt();
+		final Client second = new Client();
+		second.send("version");
+		assertNotNull(second.readLine());
+		second.halt();
+		assertTrue(serverThread.isAlive());
+	}
+
+	@Test(timeout = 10000)
+	public void testShutdown() throws Exception {
+		final Client first = new Client();
+		final Client second = new Client();
+		second.send("shutdown");
+		assertNull(second.readLine());
+		// the open session is still served
+		first.send("expression", "1");
+		assertNotNull(first.readLine());
+		first.halt();
+		serverThread.join();
+	}
+
+	@Test(timeout = 10000)
+	public void testFormulaBatch() throws Exception {
+		final String[] batch = { "predicate", "x > 1", "expression", "1 +", "extendedpredicate", "y : NAT",
+				"substitution", "x := 1", "nonsense", "1" };
+		final Client client = new Client();
+		final StringBuilder expected = new StringBuilder("[");
+		for (int i = 0; i < batch.length - 2; i += 2) {
+			client.send(batch[i], batch[i + 1]);
+			final String answer = client.readLine();
+			expected.append(answer.substring(0, answer.length() - 1)).append(',');
+		}
+		expected.append("exception('Unsupported formula kind nonsense')].");
+
+		client.send("formulas", Integer.toString(batch.length / 2));
+		client.send(batch);
+		assertEquals(expected.toString(), client.readLine());
+		client.send("formulas", "0");
+		assertEquals("[].", client.readLine());
+		client.halt();
+	}
+
+	@Test(timeout = 20000)
+	public void testConcurrentFormulaBatch() throws Exception {
+		// with a single worker, the thread of the command parses all formulas
+		for (final int workers : new int[] { 1, 3 }) {
+			final PreplServer parallelServer = new PreplServer(new ParsingBehaviour(), "UTF-8", workers);
+			parallelServer.setParallelFormulas(true);
+			final Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						parallelServer.run();
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+			});
+			thread.start();
+			final Client sequential = new Client();
+			final Client concurrent = new Client(parallelServer);
+			final String[] batch = new String[400];
+			for (int i = 0; i < batch.length; i += 2) {
+				batch[i] = i % 3 == 0 ? "expression" : "predicate";
+				batch[i + 1] = i % 3 == 0 ? "{x | x : 1.." + i + "}" : "x > " + i + (i % 7 == 0 ? " &" : "");
+			}
+			for (final Client client : new Client[] { sequential, concurrent }) {
+				client.send("definition", "foo", "expression", "0");
+				client.send("formulas", Integer.toString(batch.length / 2));
+				client.send(batch);
+			}
+			assertEquals(sequential.readLine(), concurrent.readLine());
+			sequential.halt();
+			concurrent.halt();
+			parallelServer.close();
+			thread.join();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsInvalidLimit() throws Exception {
+		new PreplServer(new ParsingBehaviour(), "UTF-8", 0);
+	}
+
+	private class Client {
+		private final Socket socket;
+		private final Writer out;
+		private final BufferedReader in;
+
+		Client() throws IOException {
+			this(server);
+		}
+
+		Client(final PreplServer server) throws IOException {
+			socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+			out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+			in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+		}
+
+		void send(final String... lines) throws IOException {
+			for (final String line : lines) {
+				out.write(line);
+				out.write('\n');
+			}
+			out.flush();
+		}
+
+		String readLine() throws IOException {
+			return in.readLine();
+		}
+
+		void halt() throws IOException {
+			send("halt");
+			// the server closes the connection after all answers are sent
+			assertNull(in.readLine());
+			socket.close();
+		}
+	}
+}
+
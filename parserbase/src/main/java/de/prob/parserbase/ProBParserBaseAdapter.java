@@ -7,6 +7,7 @@ import java.util.Collection;
 
 import de.prob.prolog.output.StructuredPrologOutput;
 import de.prob.prolog.term.PrologTerm;
+import de.prob.prolog.term.PrologTermInterner;
 
 /**
  * @author plagge
@@ -14,22 +15,34 @@ import de.prob.prolog.term.PrologTerm;
  */
 public class ProBParserBaseAdapter {
 	private final ProBParserBase base;
+	private final PrologTermInterner interner;
 
 	public ProBParserBaseAdapter(final ProBParserBase base) {
+		this(base, null);
+	}
+
+	/**
+	 * @param interner
+	 *            shares equal atoms and small ground terms between all parsed
+	 *            formulas, may be <code>null</code>
+	 */
+	public ProBParserBaseAdapter(final ProBParserBase base,
+			final PrologTermInterner interner) {
 		this.base = base;
+		this.interner = interner;
 	}
 
 	public PrologTerm parseExpression(final String expression,
 			final boolean wrap) throws ProBParseException,
 			UnsupportedOperationException {
-		final StructuredPrologOutput pto = new StructuredPrologOutput();
+		final StructuredPrologOutput pto = new StructuredPrologOutput(interner);
 		base.parseExpression(pto, expression, wrap);
 		return getSingleTerm(pto);
 	}
 
 	public PrologTerm parsePredicate(final String predicate, final boolean wrap)
 			throws ProBParseException, UnsupportedOperationException {
-		final StructuredPrologOutput pto = new StructuredPrologOutput();
+		final StructuredPrologOutput pto = new StructuredPrologOutput(interner);
 		base.parsePredicate(pto, predicate, wrap);
 		return getSingleTerm(pto);
 	}
@@ -37,7 +50,7 @@ public class ProBParserBaseAdapter {
 	public PrologTerm parseTransitionPredicate(final String transPredicate,
 			final boolean wrap) throws ProBParseException,
 			UnsupportedOperationException {
-		final StructuredPrologOutput pto = new StructuredPrologOutput();
+		final StructuredPrologOutput pto = new StructuredPrologOutput(interner);
 		base.parseTransitionPredicate(pto, transPredicate, wrap);
 		return getSingleTerm(pto);
 	}
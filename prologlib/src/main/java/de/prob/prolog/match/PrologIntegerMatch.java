@@ -57,4 +57,26 @@ public class PrologIntegerMatch extends PrologMatch {
 		}
 		return match;
 	}
+
+	@Override
+	PrologMatcher.Node compile(final PrologMatcher.Compiler compiler) {
+		// values which fit into a long are compared without a BigInteger
+		final boolean small = integer != null && integer.bitLength() < 64;
+		final long value = small ? integer.longValue() : 0;
+		return new PrologMatcher.Node(compiler.slot(getName())) {
+			@Override
+			boolean test(final PrologTerm term, final PrologTerm[] slots) {
+				if (!(term instanceof IntegerPrologTerm))
+					return false;
+				final IntegerPrologTerm intTerm = (IntegerPrologTerm) term;
+				if (integer == null) {
+					return true;
+				} else if (small) {
+					return intTerm.fitsInLong() && intTerm.longValue() == value;
+				} else {
+					return integer.equals(intTerm.getValue());
+				}
+			}
+		};
+	}
 }
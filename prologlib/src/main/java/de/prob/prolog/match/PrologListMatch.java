@@ -15,7 +15,8 @@ import de.prob.prolog.term.PrologTerm;
  * @author plagge
  */
 public class PrologListMatch extends PrologMatch {
-	private final Integer size;
+	// -1 if the size is not checked
+	private final int size;
 
 	public static PrologListMatch anonList(int size) {
 		return namedList(null, size);
@@ -46,10 +47,20 @@ public class PrologListMatch extends PrologMatch {
 	@Override
 	protected boolean isMatch(PrologTerm term, Map<String, PrologTerm> hits) {
 		boolean match = term instanceof ListPrologTerm;
-		if (match && size != null) {
+		if (match && size >= 0) {
 			match = ((ListPrologTerm) term).size() == size;
 		}
 		return match;
 	}
 
+	@Override
+	PrologMatcher.Node compile(final PrologMatcher.Compiler compiler) {
+		return new PrologMatcher.Node(compiler.slot(getName())) {
+			@Override
+			boolean test(final PrologTerm term, final PrologTerm[] slots) {
+				return term instanceof ListPrologTerm && (size < 0 || ((ListPrologTerm) term).size() == size);
+			}
+		};
+	}
+
 }
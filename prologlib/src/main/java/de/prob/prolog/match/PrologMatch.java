@@ -54,4 +54,25 @@ public class PrologMatch {
 	public final boolean matches(final PrologTerm term) {
 		return matches(term, null);
 	}
+
+	final String getName() {
+		return name;
+	}
+
+	/**
+	 * Creates the node of a {@link PrologMatcher} which performs the same
+	 * checks as {@link #isMatch(PrologTerm, Map)}. Subclasses outside of this
+	 * package are interpreted by the node.
+	 */
+	PrologMatcher.Node compile(final PrologMatcher.Compiler compiler) {
+		if (getClass() == PrologMatch.class) {
+			return new PrologMatcher.Node(compiler.slot(name)) {
+				@Override
+				boolean test(final PrologTerm term, final PrologTerm[] slots) {
+					return true;
+				}
+			};
+		}
+		return compiler.interpreted(this);
+	}
 }
@@ -0,0 +1,295 @@
+/**
+ * 
+ */
+package de.prob.prolog.match;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.prob.prolog.term.PrologTerm;
+
+/**
+ * A set of {@link PrologMatch} patterns compiled for matching many terms.
+ *
+ * The patterns are selected by the functor and arity of the term before any
+ * of them is tried, and the named parts of a match are stored in an array of
+ * slots instead of a map. Every name used in the patterns gets one slot,
+ * patterns which use the same name share the slot. A matcher is immutable and
+ * can be used by several threads, each with its own slots.
+ *
+ * <pre>
+ * PrologMatcher matcher = PrologMatcher.compile(pattern1, pattern2);
+ * int id = matcher.getSlot(&quot;id&quot;);
+ * PrologTerm[] slots = matcher.createSlots();
+ * for (PrologTerm term : terms) {
+ * 	if (matcher.match(term, slots) &gt;= 0) {
+ * 		... slots[id] ...
+ * 	}
+ * }
+ * </pre>
+ */
+public final class PrologMatcher {
+
+	private static final Node[] NO_NODES = new Node[0];
+
+	private final Map<String, Integer> slots;
+	// patterns which have to be tried for the functor, by arity
+	private final Map<String, Bucket> buckets;
+	// patterns which have to be tried for every term
+	private final Node[] generic;
+
+	private PrologMatcher(final Map<String, Integer> slots, final Map<String, Bucket> buckets, final Node[] generic) {
+		this.slots = slots;
+		this.buckets = buckets;
+		this.generic = generic;
+	}
+
+	/**
+	 * Compiles the patterns into a matcher. The patterns are tried in the
+	 * given order, the result of {@link #match(PrologTerm, PrologTerm[])} is
+	 * the index of the first matching pattern.
+	 *
+	 * Subclasses of {@link PrologMatch} which are not part of this package are
+	 * interpreted, the terms matched by their nested patterns are only stored
+	 * if the names are used elsewhere in the patterns, too.
+	 */
+	public static PrologMatcher compile(final PrologMatch... patterns) {
+		final Compiler compiler = new Compiler();
+		final Node[] nodes = new Node[patterns.length];
+		for (int i = 0; i < patterns.length; i++) {
+			nodes[i] = patterns[i].compile(compiler);
+			nodes[i].index = i;
+		}
+
+		final List<Node> generic = new ArrayList<Node>();
+		final Map<String, List<Node>> byFunctor = new LinkedHashMap<String, List<Node>>();
+		for (final Node node : nodes) {
+			if (node.functor == null) {
+				generic.add(node);
+			} else {
+				List<Node> list = byFunctor.get(node.functor);
+				if (list == null) {
+					list = new ArrayList<Node>();
+					byFunctor.put(node.functor, list);
+				}
+				list.add(node);
+			}
+		}
+		final Map<String, Bucket> buckets = new HashMap<String, Bucket>();
+		for (final Map.Entry<String, List<Node>> entry : byFunctor.entrySet()) {
+			buckets.put(entry.getKey(), new Bucket(entry.getValue(), generic));
+		}
+		return new PrologMatcher(compiler.slots, buckets, generic.toArray(NO_NODES));
+	}
+
+	/**
+	 * @return the number of slots needed for a match
+	 */
+	public int getSlotCount() {
+		return slots.size();
+	}
+
+	/**
+	 * @param name
+	 *            a name used in the patterns
+	 * @return the index of the slot where the term matched by the named
+	 *         pattern is stored, -1 if no pattern has this name
+	 */
+	public int getSlot(final String name) {
+		final Integer slot = slots.get(name);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * @return a new array which can hold the named parts of a match
+	 */
+	public PrologTerm[] createSlots() {
+		return new PrologTerm[slots.size()];
+	}
+
+	/**
+	 * Matches the term against the patterns. The slots are cleared first,
+	 * after a successful match they contain the terms matched by the named
+	 * parts of the matching pattern, all other slots are <code>null</code>.
+	 *
+	 * @param term
+	 *            the term to match, not <code>null</code>
+	 * @param slots
+	 *            an array created by {@link #createSlots()}, or
+	 *            <code>null</code> if the named parts are not needed
+	 * @return the index of the first matching pattern, -1 if no pattern
+	 *         matches
+	 */
+	public int match(final PrologTerm term, final PrologTerm[] slots) {
+		if (slots != null) {
+			Arrays.fill(slots, null);
+		}
+		final Node[] candidates = candidates(term);
+		for (final Node candidate : candidates) {
+			if (candidate.match(term, slots))
+				return candidate.index;
+			if (slots != null) {
+				// remove the parts bound before the pattern failed
+				Arrays.fill(slots, null);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return <code>true</code> if any pattern matches the term
+	 */
+	public boolean matches(final PrologTerm term) {
+		return match(term, null) >= 0;
+	}
+
+	private Node[] candidates(final PrologTerm term) {
+		if (buckets.isEmpty())
+			return generic;
+		final Bucket bucket = buckets.get(term.getFunctor());
+		return bucket == null ? generic : bucket.get(term.getArity());
+	}
+
+	/**
+	 * The patterns for one functor, merged with the generic patterns and
+	 * sorted by their position in the pattern list.
+	 */
+	private static final class Bucket {
+		private final Node[][] byArity;
+		// patterns for arities without specific patterns
+		private final Node[] anyArity;
+
+		Bucket(final List<Node> nodes, final List<Node> generic) {
+			int maxArity = -1;
+			final List<Node> anyArityNodes = new ArrayList<Node>(generic);
+			for (final Node node : nodes) {
+				maxArity = Math.max(maxArity, node.arity);
+				if (node.arity < 0) {
+					anyArityNodes.add(node);
+				}
+			}
+			anyArity = sorted(anyArityNodes);
+			byArity = new Node[maxArity + 1][];
+			for (int arity = 0; arity <= maxArity; arity++) {
+				final List<Node> arityNodes = new ArrayList<Node>(anyArityNodes);
+				for (final Node node : nodes) {
+					if (node.arity == arity) {
+						arityNodes.add(node);
+					}
+				}
+				byArity[arity] = sorted(arityNodes);
+			}
+		}
+
+		Node[] get(final int arity) {
+			return arity < byArity.length ? byArity[arity] : anyArity;
+		}
+
+		private static Node[] sorted(final List<Node> nodes) {
+			final Node[] array = nodes.toArray(NO_NODES);
+			Arrays.sort(array, new Comparator<Node>() {
+				@Override
+				public int compare(final Node node1, final Node node2) {
+					return node1.index < node2.index ? -1 : node1.index == node2.index ? 0 : 1;
+				}
+			});
+			return array;
+		}
+	}
+
+	/**
+	 * Assigns the slots to the names while the patterns are compiled.
+	 */
+	static final class Compiler {
+		private final Map<String, Integer> slots = new HashMap<String, Integer>();
+
+		int slot(final String name) {
+			if (name == null)
+				return -1;
+			Integer slot = slots.get(name);
+			if (slot == null) {
+				slot = slots.size();
+				slots.put(name, slot);
+			}
+			return slot;
+		}
+
+		Node interpreted(final PrologMatch pattern) {
+			// the map is complete when the first term is matched
+			return new InterpretedNode(pattern, slot(pattern.getName()), slots);
+		}
+	}
+
+	/**
+	 * A compiled pattern. The parts of a pattern are matched before the pattern
+	 * itself stores the term in its slot.
+	 */
+	abstract static class Node {
+		private final int slot;
+		// the functor and arity the node is selected by, if it is a pattern
+		private final String functor;
+		private final int arity;
+		private int index;
+
+		Node(final int slot) {
+			this(slot, null, -1);
+		}
+
+		Node(final int slot, final String functor, final int arity) {
+			this.slot = slot;
+			this.functor = functor;
+			this.arity = arity;
+		}
+
+		final boolean match(final PrologTerm term, final PrologTerm[] slots) {
+			final boolean match = test(term, slots);
+			if (match && slots != null && slot >= 0) {
+				slots[slot] = term;
+			}
+			return match;
+		}
+
+		/**
+		 * @param slots
+		 *            the slots to store named parts in, may be
+		 *            <code>null</code>
+		 */
+		abstract boolean test(PrologTerm term, PrologTerm[] slots);
+	}
+
+	/**
+	 * A pattern which is matched by {@link PrologMatch#matches(PrologTerm, Map)}
+	 * because it cannot be compiled.
+	 */
+	private static final class InterpretedNode extends Node {
+		private final PrologMatch pattern;
+		private final Map<String, Integer> slots;
+
+		InterpretedNode(final PrologMatch pattern, final int slot, final Map<String, Integer> slots) {
+			super(slot);
+			this.pattern = pattern;
+			this.slots = slots;
+		}
+
+		@Override
+		boolean test(final PrologTerm term, final PrologTerm[] values) {
+			if (values == null)
+				return pattern.matches(term);
+			final Map<String, PrologTerm> hits = new HashMap<String, PrologTerm>();
+			if (!pattern.matches(term, hits))
+				return false;
+			for (final Map.Entry<String, PrologTerm> hit : hits.entrySet()) {
+				final Integer slot = slots.get(hit.getKey());
+				if (slot != null) {
+					values[slot] = hit.getValue();
+				}
+			}
+			return true;
+		}
+	}
+}
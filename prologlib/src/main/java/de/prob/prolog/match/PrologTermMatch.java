@@ -97,17 +97,50 @@ public class PrologTermMatch extends PrologMatch {
 	@Override
 	protected boolean isMatch(PrologTerm term, Map<String, PrologTerm> hits) {
 		boolean match = false;
-			if ((arity < 0 || term.getArity() == arity)
-					&& (functor == null || functor.equals(term.getFunctor()))) {
-				match = args == null || allArgsMatch(term, hits);
-			}
+		if ((arity < 0 || term.getArity() == arity)
+				&& (functor == null || functor.equals(term.getFunctor()))) {
+			match = args == null || allArgsMatch(term, hits);
+		}
 		return match;
 	}
 
+	@Override
+	PrologMatcher.Node compile(final PrologMatcher.Compiler compiler) {
+		// only the arguments which are checked
+		int count = 0;
+		for (int i = 0; args != null && i < args.length; i++) {
+			if (args[i] != null) {
+				count++;
+			}
+		}
+		final int[] positions = new int[count];
+		final PrologMatcher.Node[] nodes = new PrologMatcher.Node[count];
+		count = 0;
+		for (int i = 0; args != null && i < args.length; i++) {
+			if (args[i] != null) {
+				positions[count] = i + 1;
+				nodes[count] = args[i].compile(compiler);
+				count++;
+			}
+		}
+		return new PrologMatcher.Node(compiler.slot(getName()), functor, arity) {
+			@Override
+			boolean test(final PrologTerm term, final PrologTerm[] slots) {
+				if (arity >= 0 && term.getArity() != arity || functor != null && !functor.equals(term.getFunctor()))
+					return false;
+				for (int i = 0; i < nodes.length; i++) {
+					if (!nodes[i].match(term.getArgument(positions[i]), slots))
+						return false;
+				}
+				return true;
+			}
+		};
+	}
+
 	private boolean allArgsMatch(PrologTerm term,
 			Map<String, PrologTerm> hits) {
 		for (int i = 1; i <= arity; i++) {
-			PrologMatch argMatch = args[i];
+			PrologMatch argMatch = args[i - 1];
 			if (argMatch != null
 					&& !argMatch.matches(term.getArgument(i), hits)) {
 				return false;
@@ -51,4 +51,15 @@ public class PrologVariableMatch extends PrologMatch {
 		}
 		return match;
 	}
+
+	@Override
+	PrologMatcher.Node compile(final PrologMatcher.Compiler compiler) {
+		return new PrologMatcher.Node(compiler.slot(getName())) {
+			@Override
+			boolean test(final PrologTerm term, final PrologTerm[] slots) {
+				return term instanceof VariablePrologTerm
+						&& (varName == null || varName.equals(((VariablePrologTerm) term).getName()));
+			}
+		};
+	}
 }
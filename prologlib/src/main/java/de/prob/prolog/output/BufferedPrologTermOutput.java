@@ -0,0 +1,366 @@
+package de.prob.prolog.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+
+import de.prob.prolog.term.PrologTerm;
+
+/**
+ * Generates the same output as {@link PrologTermOutput}, but writes the terms
+ * into an internal buffer which is passed to the underlying writer in large
+ * chunks. Atoms are checked and escaped with lookup tables, and no lock is
+ * acquired per call. Like {@link PrologTermOutput}, an instance must not be
+ * used by several threads at the same time.
+ *
+ * The buffer is written when it is full and on {@link #flush()}. Errors of the
+ * underlying writer are thrown as {@link IllegalStateException}.
+ */
+public class BufferedPrologTermOutput implements IPrologTermOutput {
+	private static final int BUFFER_SIZE = 8192;
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	// the same characters as in PrologTermOutput, indexed by the character
+	private static final boolean[] VALID_CHARS = table("abcdefghijklmnopqrstuvwxyz" + "ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+			+ "0123456789" + "_ +-*/^<>=~:.?@#$&!;%(),[]{|}");
+	private static final boolean[] VALID_ATOM_CHARS = table(
+			"abcdefghijklmnopqrstuvwxyz" + "ABCDEFGHIJKLMNOPQRSTUVWXYZ" + "0123456789_");
+
+	private final Writer out;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int length = 0;
+
+	// comma_needed states if the next term can be printed directly (false) or
+	// if a separating comma is needed first
+	private boolean comma_needed = false;
+
+	private final boolean use_indention;
+	private int indent_level = 0;
+	private int ignore_indention_level = 0;
+
+	private int termCount = 0;
+	private int listCount = 0;
+
+	// see PrologTermOutput
+	private boolean lazy_parenthesis = false;
+
+	public BufferedPrologTermOutput(final Writer out, final boolean use_indention) {
+		this.out = out;
+		this.use_indention = use_indention;
+	}
+
+	public BufferedPrologTermOutput(final Writer out) {
+		this(out, true);
+	}
+
+	/**
+	 * The output is encoded in the platform's default charset, like the
+	 * output of {@link PrologTermOutput#PrologTermOutput(OutputStream)}.
+	 */
+	public BufferedPrologTermOutput(final OutputStream out, final boolean use_indention) {
+		this(new OutputStreamWriter(out), use_indention);
+	}
+
+	public BufferedPrologTermOutput(final OutputStream out) {
+		this(out, true);
+	}
+
+	private static boolean[] table(final String chars) {
+		final boolean[] table = new boolean[128];
+		for (int i = 0; i < chars.length(); i++) {
+			table[chars.charAt(i)] = true;
+		}
+		return table;
+	}
+
+	private static boolean isValidChar(final char c) {
+		return c < 128 && VALID_CHARS[c];
+	}
+
+	private static boolean isValidAtomChar(final char c) {
+		return c < 128 && VALID_ATOM_CHARS[c];
+	}
+
+	private static boolean escapeIsNeeded(final String input) {
+		if (input == null) {
+			return false; // null is a valid atom
+		}
+		final int length = input.length();
+		if (length == 0) {
+			return true;
+		}
+		final char first = input.charAt(0);
+		if (first < 'a' || first > 'z') {
+			return true;
+		}
+		for (int i = 1; i < length; i++) {
+			if (!isValidAtomChar(input.charAt(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void escape(final String input, final boolean single_quotes, final boolean double_quotes) {
+		final int inputLength = input.length();
+		int start = 0;
+		for (int i = 0; i < inputLength; i++) {
+			final char c = input.charAt(i);
+			if (isValidChar(c)) {
+				continue;
+			}
+			// copy the valid characters in front of c at once
+			write(input, start, i);
+			start = i + 1;
+			if (c == '\'') {
+				write(single_quotes ? "'" : "\\'");
+			} else if (c == '\\') {
+				write("\\\\");
+			} else if (c == '\n') {
+				write("\\n");
+			} else if (c == '"') {
+				write(double_quotes ? "\"" : "\\\"");
+			} else {
+				write('\\');
+				write(Integer.toOctalString(c));
+				write('\\');
+			}
+		}
+		write(input, start, inputLength);
+	}
+
+	private void write(final char c) {
+		if (length == buffer.length) {
+			writeBuffer();
+		}
+		buffer[length++] = c;
+	}
+
+	private void write(final String s) {
+		write(s, 0, s.length());
+	}
+
+	private void write(final String s, int start, final int end) {
+		while (start < end) {
+			if (length == buffer.length) {
+				writeBuffer();
+			}
+			final int count = Math.min(end - start, buffer.length - length);
+			s.getChars(start, start + count, buffer, length);
+			length += count;
+			start += count;
+		}
+	}
+
+	private void write(long number) {
+		if (number == Long.MIN_VALUE) {
+			write(Long.toString(number));
+			return;
+		}
+		if (buffer.length - length < 20) {
+			writeBuffer();
+		}
+		if (number < 0) {
+			buffer[length++] = '-';
+			number = -number;
+		}
+		// write the digits backwards, then move them to the end of the buffer
+		final int start = length;
+		do {
+			buffer[length++] = (char) ('0' + number % 10);
+			number /= 10;
+		} while (number != 0);
+		for (int i = start, j = length - 1; i < j; i++, j--) {
+			final char c = buffer[i];
+			buffer[i] = buffer[j];
+			buffer[j] = c;
+		}
+	}
+
+	private void writeBuffer() {
+		try {
+			out.write(buffer, 0, length);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		length = 0;
+	}
+
+	public IPrologTermOutput openTerm(final String functor) {
+		return openTerm(functor, false);
+	}
+
+	public IPrologTermOutput openTerm(final String functor, final boolean ignoreIndention) {
+		termCount++;
+		printAtom(functor);
+		lazy_parenthesis = true;
+		comma_needed = false;
+		indent_level += 2;
+		if (ignore_indention_level > 0) {
+			ignore_indention_level++;
+		} else if (ignoreIndention) {
+			ignore_indention_level = 1;
+		}
+		return this;
+	}
+
+	private void printIndention() {
+		if (use_indention && ignore_indention_level == 0) {
+			write(LINE_SEPARATOR);
+			for (int i = 0; i < indent_level; i++) {
+				write(' ');
+			}
+		}
+	}
+
+	public IPrologTermOutput closeTerm() {
+		termCount--;
+		if (termCount < 0)
+			throw new IllegalStateException("Tried to close a term that has not been opened.");
+		if (lazy_parenthesis) {
+			lazy_parenthesis = false;
+		} else {
+			write(')');
+		}
+		comma_needed = true;
+		indent_level -= 2;
+		if (ignore_indention_level > 0) {
+			ignore_indention_level--;
+		}
+		return this;
+	}
+
+	public IPrologTermOutput printAtom(final String content) {
+		printCommaIfNeeded();
+		if (escapeIsNeeded(content)) {
+			write('\'');
+			escape(content, false, true);
+			write('\'');
+		} else {
+			write(String.valueOf(content));
+		}
+		comma_needed = true;
+		return this;
+	}
+
+	public IPrologTermOutput printAtomOrNumber(final String content) {
+		try {
+			printNumber(Long.parseLong(content));
+		} catch (NumberFormatException e) {
+			printAtom(content);
+		}
+		return this;
+	}
+
+	public IPrologTermOutput printString(final String content) {
+		printCommaIfNeeded();
+		write('"');
+		escape(content, true, false);
+		write('"');
+		comma_needed = true;
+		return this;
+	}
+
+	public IPrologTermOutput printNumber(final long number) {
+		printCommaIfNeeded();
+		write(number);
+		comma_needed = true;
+		return this;
+	}
+
+	public IPrologTermOutput printNumber(final BigInteger number) {
+		printCommaIfNeeded();
+		write(String.valueOf(number));
+		comma_needed = true;
+		return this;
+	}
+
+	public IPrologTermOutput openList() {
+		listCount++;
+		printCommaIfNeeded();
+		write('[');
+		comma_needed = false;
+		indent_level += 1;
+		return this;
+	}
+
+	public IPrologTermOutput closeList() {
+		listCount--;
+		if (listCount < 0)
+			throw new IllegalStateException("Tried to close a list that has not been opened.");
+		write(']');
+		comma_needed = true;
+		indent_level -= 1;
+		return this;
+	}
+
+	public IPrologTermOutput emptyList() {
+		printCommaIfNeeded();
+		write("[]");
+		comma_needed = true;
+		return this;
+	}
+
+	public IPrologTermOutput printVariable(final String var) {
+		printCommaIfNeeded();
+		checkVariable(var);
+		write(var);
+		comma_needed = true;
+		return this;
+	}
+
+	private void checkVariable(final String var) {
+		boolean ok = var.length() > 0;
+		if (ok) {
+			char c = var.charAt(0);
+			ok = c == '_' || Character.isUpperCase(c);
+			for (int i = 1; ok && i < var.length(); i++) {
+				c = var.charAt(i);
+				ok &= c == '_' || Character.isLetterOrDigit(c);
+			}
+		}
+		if (!ok)
+			throw new IllegalArgumentException("Invalid name for Prolog variable '" + var + "'");
+	}
+
+	public IPrologTermOutput flush() {
+		writeBuffer();
+		try {
+			out.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return this;
+	}
+
+	private void printCommaIfNeeded() {
+		if (lazy_parenthesis) {
+			write('(');
+			lazy_parenthesis = false;
+		}
+		if (comma_needed) {
+			write(',');
+			printIndention();
+		}
+	}
+
+	public IPrologTermOutput fullstop() {
+		if (listCount != 0)
+			throw new IllegalStateException(
+					"Number of openList and closeList do not match. openList Counter is " + listCount);
+		if (termCount != 0)
+			throw new IllegalStateException(
+					"Number of openTerm and closeTerm do not match. openTerm Counter is " + termCount);
+		write('.');
+		write(LINE_SEPARATOR);
+		comma_needed = false;
+		return this;
+	}
+
+	public IPrologTermOutput printTerm(final PrologTerm term) {
+		term.toTermOutput(this);
+		return this;
+	}
+}
@@ -0,0 +1,264 @@
+package de.prob.prolog.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.prob.prolog.term.PrologTerm;
+
+/**
+ * Writes terms in the binary format of SICStus' <code>fast_read/1</code>.
+ *
+ * In this format, the arity of a compound term precedes its arguments. Thus
+ * the encoding of an open term is kept in a buffer until the term is closed
+ * and the arity is known. Everything else is written to the underlying stream
+ * as soon as no compound term is open anymore, e.g. after each element of a
+ * top-level list. No intermediate {@link PrologTerm} objects are created.
+ *
+ * Each sentence (a term followed by {@link #fullstop()}) is written as a
+ * separate term, variables are numbered per sentence.
+ */
+public class FastReadPrologOutput implements IPrologTermOutput {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int FLUSH_THRESHOLD = 8192;
+	private static final int MAX_ARITY = 255;
+
+	private final OutputStream out;
+
+	private byte[] buffer = new byte[FLUSH_THRESHOLD * 2];
+	private int length = 0;
+
+	// one entry per open list or term: the position of the type byte of a
+	// term (-1 for lists) and the number of the arguments printed so far
+	private int[] termStarts = new int[32];
+	private int[] argCounts = new int[32];
+	private int depth = 0;
+	private int openTerms = 0;
+
+	private boolean sentenceStarted = false;
+	private int sentenceElements = 0;
+	private final Map<String, Integer> variables = new HashMap<String, Integer>();
+
+	public FastReadPrologOutput(final OutputStream out) {
+		this.out = out;
+	}
+
+	public IPrologTermOutput openTerm(final String functor) {
+		startElement();
+		final int start = length;
+		write('S');
+		writeText(functor);
+		// placeholder for the arity
+		write(0);
+		push(start);
+		openTerms++;
+		return this;
+	}
+
+	public IPrologTermOutput openTerm(final String functor, final boolean ignoreIndention) {
+		return openTerm(functor);
+	}
+
+	public IPrologTermOutput closeTerm() {
+		if (depth == 0 || termStarts[depth - 1] < 0) {
+			throw new IllegalStateException("no open term");
+		}
+		depth--;
+		openTerms--;
+		final int arity = argCounts[depth];
+		if (arity == 0) {
+			// a term without arguments is an atom: the arity is the last byte
+			buffer[termStarts[depth]] = 'A';
+			length--;
+		} else if (arity > MAX_ARITY) {
+			throw new IllegalArgumentException("fast_read does not support terms with arity " + arity);
+		} else {
+			// the arity directly follows the 0-terminated functor
+			int pos = termStarts[depth] + 1;
+			while (buffer[pos] != 0) {
+				pos++;
+			}
+			buffer[pos + 1] = (byte) arity;
+		}
+		writeBufferIfPossible();
+		return this;
+	}
+
+	public IPrologTermOutput printAtom(final String content) {
+		startElement();
+		write('A');
+		writeText(content);
+		writeBufferIfPossible();
+		return this;
+	}
+
+	public IPrologTermOutput printAtomOrNumber(final String content) {
+		try {
+			printNumber(Long.parseLong(content));
+		} catch (NumberFormatException e) {
+			printAtom(content);
+		}
+		return this;
+	}
+
+	/**
+	 * Prints the string as a list of character codes, which is the
+	 * representation of a string in SICStus Prolog.
+	 */
+	public IPrologTermOutput printString(final String content) {
+		openList();
+		for (int i = 0; i < content.length(); i = content.offsetByCodePoints(i, 1)) {
+			printNumber(content.codePointAt(i));
+		}
+		closeList();
+		return this;
+	}
+
+	public IPrologTermOutput printNumber(final long number) {
+		startElement();
+		write('I');
+		writeText(String.valueOf(number));
+		writeBufferIfPossible();
+		return this;
+	}
+
+	public IPrologTermOutput printNumber(final BigInteger number) {
+		startElement();
+		write('I');
+		writeText(number.toString());
+		writeBufferIfPossible();
+		return this;
+	}
+
+	public IPrologTermOutput openList() {
+		startElement();
+		push(-1);
+		return this;
+	}
+
+	public IPrologTermOutput closeList() {
+		if (depth == 0 || termStarts[depth - 1] >= 0) {
+			throw new IllegalStateException("no open list");
+		}
+		depth--;
+		write(']');
+		writeBufferIfPossible();
+		return this;
+	}
+
+	public IPrologTermOutput emptyList() {
+		startElement();
+		write(']');
+		writeBufferIfPossible();
+		return this;
+	}
+
+	public IPrologTermOutput printVariable(final String var) {
+		startElement();
+		Integer number = variables.get(var);
+		if (number == null) {
+			number = variables.size();
+			variables.put(var, number);
+		}
+		write('_');
+		writeText(number.toString());
+		writeBufferIfPossible();
+		return this;
+	}
+
+	public IPrologTermOutput printTerm(final PrologTerm term) {
+		term.toTermOutput(this);
+		return this;
+	}
+
+	public IPrologTermOutput flush() {
+		if (openTerms == 0) {
+			writeBuffer();
+		}
+		try {
+			out.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not write fast_read output", e);
+		}
+		return this;
+	}
+
+	public IPrologTermOutput fullstop() {
+		if (depth != 0) {
+			throw new IllegalArgumentException("term stacksize is not 1");
+		}
+		if (sentenceElements != 1) {
+			throw new IllegalArgumentException("number of arguments is not 1");
+		}
+		writeBuffer();
+		sentenceStarted = false;
+		sentenceElements = 0;
+		variables.clear();
+		return this;
+	}
+
+	private void startElement() {
+		if (depth == 0) {
+			if (!sentenceStarted) {
+				write('D');
+				sentenceStarted = true;
+			}
+			sentenceElements++;
+		} else if (termStarts[depth - 1] < 0) {
+			// the next element of a list
+			write('[');
+		} else {
+			argCounts[depth - 1]++;
+		}
+	}
+
+	private void push(final int termStart) {
+		if (depth == termStarts.length) {
+			termStarts = Arrays.copyOf(termStarts, depth * 2);
+			argCounts = Arrays.copyOf(argCounts, depth * 2);
+		}
+		termStarts[depth] = termStart;
+		argCounts[depth] = 0;
+		depth++;
+	}
+
+	private void writeText(final String text) {
+		final byte[] bytes = text.getBytes(UTF8);
+		ensureCapacity(bytes.length + 1);
+		System.arraycopy(bytes, 0, buffer, length, bytes.length);
+		length += bytes.length;
+		buffer[length++] = 0;
+	}
+
+	private void write(final int b) {
+		ensureCapacity(1);
+		buffer[length++] = (byte) b;
+	}
+
+	private void ensureCapacity(final int additional) {
+		if (length + additional > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + additional));
+		}
+	}
+
+	private void writeBufferIfPossible() {
+		if (openTerms == 0 && length >= FLUSH_THRESHOLD) {
+			writeBuffer();
+		}
+	}
+
+	private void writeBuffer() {
+		if (length > 0) {
+			try {
+				out.write(buffer, 0, length);
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not write fast_read output", e);
+			}
+			length = 0;
+		}
+	}
+}
@@ -1,6 +1,5 @@
 package de.prob.prolog.output;
 
-import java.io.PrintWriter;
 import java.io.StringWriter;
 
 /**
@@ -17,7 +16,7 @@ public class PrologTermStringOutput extends PrologTermDelegate {
 	}
 
 	private PrologTermStringOutput(StringWriter sw) {
-		super(new PrologTermOutput(new PrintWriter(sw), false));
+		super(new BufferedPrologTermOutput(sw, false));
 		this.sw = sw;
 	}
 
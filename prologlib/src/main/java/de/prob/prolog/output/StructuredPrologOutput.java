@@ -5,35 +5,69 @@ package de.prob.prolog.output;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.EmptyStackException;
 import java.util.List;
-import java.util.Stack;
 
 import de.prob.prolog.term.CompoundPrologTerm;
 import de.prob.prolog.term.IntegerPrologTerm;
 import de.prob.prolog.term.ListPrologTerm;
 import de.prob.prolog.term.PrologTerm;
+import de.prob.prolog.term.PrologTermInterner;
 import de.prob.prolog.term.VariablePrologTerm;
 
 /**
+ * Builds {@link PrologTerm}s from the calls of {@link IPrologTermOutput}.
+ * 
+ * The terms and open functors are kept in arrays which grow when needed, an
+ * instance is not thread-safe.
+ * 
  * @author plagge
  * 
  */
 public class StructuredPrologOutput implements IPrologTermOutput {
+	private static final PrologTerm[] NO_ARGUMENTS = new PrologTerm[0];
+
+	// null if the terms are not shared
+	private final PrologTermInterner interner;
+
 	private final Collection<PrologTerm> sentences = new ArrayList<PrologTerm>();
 
-	private final Stack<PrologTerm> termStack = new Stack<PrologTerm>();
+	// the arguments of all open terms and lists, the arguments of the
+	// innermost one are at the end
+	private PrologTerm[] termStack = new PrologTerm[32];
+	private int termStackSize = 0;
 
-	private final Stack<Integer> numArgStack = new Stack<Integer>();
-	private final Stack<String> functorStack = new Stack<String>();
+	// the number of arguments and the functor of the enclosing terms
+	private int[] numArgStack = new int[16];
+	private String[] functorStack = new String[16];
+	private int depth = 0;
 
 	private String currentFunctor = null;
 	private int currentArguments = 0;
 
+	public StructuredPrologOutput() {
+		this(null);
+	}
+
+	/**
+	 * @param interner
+	 *            used to share equal atoms and small ground terms between
+	 *            the created terms, may be <code>null</code>
+	 */
+	public StructuredPrologOutput(final PrologTermInterner interner) {
+		this.interner = interner;
+	}
+
 	public IPrologTermOutput closeList() {
 		PrologTerm[] elements = getArguments();
 		popFromStack();
-		addArgument(new ListPrologTerm(elements));
+		if (elements.length == 0) {
+			addArgument(ListPrologTerm.emptyList());
+		} else {
+			addArgument(interner == null ? new ListPrologTerm(elements) : interner.list(elements));
+		}
 		return this;
 	}
 
@@ -41,7 +75,8 @@ public class StructuredPrologOutput implements IPrologTermOutput {
 		PrologTerm[] elements = getArguments();
 		final String functor = currentFunctor;
 		popFromStack();
-		addArgument(new CompoundPrologTerm(functor, elements));
+		addArgument(interner == null ? new CompoundPrologTerm(functor, elements)
+				: interner.compound(functor, elements));
 		return this;
 	}
 
@@ -55,11 +90,13 @@ public class StructuredPrologOutput implements IPrologTermOutput {
 	}
 
 	public IPrologTermOutput fullstop() {
-		if (termStack.size() != 1)
+		if (termStackSize != 1)
 			throw new IllegalArgumentException("term stacksize is not 1");
 		if (currentArguments != 1)
 			throw new IllegalArgumentException("number of arguments is not 1");
-		sentences.add(termStack.pop());
+		sentences.add(termStack[0]);
+		termStack[0] = null;
+		termStackSize = 0;
 		currentArguments = 0;
 		return this;
 	}
@@ -84,7 +121,7 @@ public class StructuredPrologOutput implements IPrologTermOutput {
 	}
 
 	public IPrologTermOutput printAtom(final String content) {
-		addArgument(new CompoundPrologTerm(content));
+		addArgument(interner == null ? new CompoundPrologTerm(content) : interner.atom(content));
 		return this;
 	}
 
@@ -98,12 +135,12 @@ public class StructuredPrologOutput implements IPrologTermOutput {
 	}
 
 	public IPrologTermOutput printNumber(final long number) {
-		addArgument(new IntegerPrologTerm(number));
+		addArgument(interner == null ? IntegerPrologTerm.valueOf(number) : interner.integer(number));
 		return this;
 	}
 
 	public IPrologTermOutput printNumber(final BigInteger number) {
-		addArgument(new IntegerPrologTerm(number));
+		addArgument(interner == null ? IntegerPrologTerm.valueOf(number) : interner.integer(number));
 		return this;
 	}
 
@@ -112,7 +149,7 @@ public class StructuredPrologOutput implements IPrologTermOutput {
 	}
 
 	public IPrologTermOutput printVariable(final String var) {
-		addArgument(new VariablePrologTerm(var));
+		addArgument(interner == null ? new VariablePrologTerm(var) : interner.variable(var));
 		return this;
 	}
 
@@ -130,32 +167,52 @@ public class StructuredPrologOutput implements IPrologTermOutput {
 	}
 
 	public boolean isSentenceStarted() {
-		return !functorStack.isEmpty() || !termStack.isEmpty();
+		return depth > 0 || termStackSize > 0;
 	}
 
+	/*
+	 * the created terms keep the returned array, so it cannot be reused
+	 */
 	private PrologTerm[] getArguments() {
-		PrologTerm[] args = new PrologTerm[currentArguments];
-		for (int i = currentArguments - 1; i >= 0; i--) {
-			args[i] = termStack.pop();
-		}
+		final int count = currentArguments;
+		if (count == 0)
+			return NO_ARGUMENTS;
+		final int start = termStackSize - count;
+		final PrologTerm[] args = new PrologTerm[count];
+		System.arraycopy(termStack, start, args, 0, count);
+		// do not keep the arguments alive
+		Arrays.fill(termStack, start, termStackSize, null);
+		termStackSize = start;
 		currentArguments = 0;
 		return args;
 	}
 
 	private void addArgument(final PrologTerm term) {
-		termStack.push(term);
+		if (termStackSize == termStack.length) {
+			termStack = Arrays.copyOf(termStack, termStackSize * 2);
+		}
+		termStack[termStackSize++] = term;
 		currentArguments++;
 	}
 
 	private void pushOnStack() {
-		numArgStack.push(currentArguments);
-		functorStack.push(currentFunctor);
+		if (depth == numArgStack.length) {
+			numArgStack = Arrays.copyOf(numArgStack, depth * 2);
+			functorStack = Arrays.copyOf(functorStack, depth * 2);
+		}
+		numArgStack[depth] = currentArguments;
+		functorStack[depth] = currentFunctor;
+		depth++;
 		currentArguments = 0;
 		currentFunctor = null;
 	}
 
 	private void popFromStack() {
-		currentArguments = numArgStack.pop();
-		currentFunctor = functorStack.pop();
+		if (depth == 0)
+			throw new EmptyStackException();
+		depth--;
+		currentArguments = numArgStack[depth];
+		currentFunctor = functorStack[depth];
+		functorStack[depth] = null;
 	}
 }
@@ -0,0 +1,224 @@
+package de.prob.prolog.term;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the terms written by {@link BinaryPrologTermWriter}, either from a
+ * stream or from a {@link ByteBuffer}, e.g. a memory mapped file.
+ *
+ * Terms are read without recursion, they can be nested arbitrarily deep. Equal
+ * names share the same {@link String} object.
+ */
+public final class BinaryPrologTermReader {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	// null if all bytes are in the buffer
+	private final InputStream in;
+	private final ByteBuffer buffer;
+
+	private final List<String> strings = new ArrayList<String>();
+	private byte[] stringBytes = new byte[64];
+
+	// the compound terms and lists which are being read
+	private Frame[] frames = new Frame[16];
+	private int depth;
+
+	public BinaryPrologTermReader(final InputStream in) throws IOException {
+		this.in = in;
+		this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		buffer.flip();
+		readHeader();
+	}
+
+	/**
+	 * Reads the terms from the remaining bytes of the buffer.
+	 */
+	public BinaryPrologTermReader(final ByteBuffer buffer) throws IOException {
+		this.in = null;
+		this.buffer = buffer;
+		readHeader();
+	}
+
+	private void readHeader() throws IOException {
+		for (final byte b : BinaryPrologTermWriter.MAGIC) {
+			if (readByte() != b)
+				throw new IOException("Not a binary Prolog term stream");
+		}
+		final int version = readByte();
+		if (version != BinaryPrologTermWriter.VERSION)
+			throw new IOException("Unsupported version " + version + " of binary Prolog term stream");
+	}
+
+	/**
+	 * @return the next term of the stream, <code>null</code> if all terms have
+	 *         been read
+	 */
+	public PrologTerm read() throws IOException {
+		if (!ensure(1))
+			return null;
+		while (true) {
+			PrologTerm term = readNode();
+			// complete the terms whose last argument has been read
+			while (term != null) {
+				if (depth == 0)
+					return term;
+				final Frame frame = frames[depth - 1];
+				frame.args[frame.position++] = term;
+				if (frame.position < frame.args.length) {
+					term = null;
+				} else {
+					depth--;
+					term = frame.create();
+				}
+			}
+		}
+	}
+
+	/*
+	 * reads a term without arguments, or starts a compound term or list and
+	 * returns null
+	 */
+	private PrologTerm readNode() throws IOException {
+		final int tag = readByte();
+		switch (tag) {
+		case BinaryPrologTermWriter.ATOM:
+			return new CompoundPrologTerm(readString());
+		case BinaryPrologTermWriter.COMPOUND: {
+			final int arity = readSize();
+			push(readString(), arity);
+			return null;
+		}
+		case BinaryPrologTermWriter.EMPTY_LIST:
+			return ListPrologTerm.emptyList();
+		case BinaryPrologTermWriter.LIST:
+			push(null, readSize());
+			return null;
+		case BinaryPrologTermWriter.INTEGER: {
+			final long zigzag = readVarLong();
+			return IntegerPrologTerm.valueOf(zigzag >>> 1 ^ -(zigzag & 1));
+		}
+		case BinaryPrologTermWriter.BIG_INTEGER: {
+			final int length = readSize();
+			final byte[] bytes = new byte[length];
+			readBytes(bytes, length);
+			return IntegerPrologTerm.valueOf(new BigInteger(bytes));
+		}
+		case BinaryPrologTermWriter.VARIABLE:
+			return new VariablePrologTerm(readString());
+		default:
+			throw new IOException("Invalid tag " + tag + " in binary Prolog term stream");
+		}
+	}
+
+	private void push(final String functor, final int arity) throws IOException {
+		if (arity == 0)
+			throw new IOException("Compound term or list without arguments in binary Prolog term stream");
+		if (depth == frames.length) {
+			frames = Arrays.copyOf(frames, depth * 2);
+		}
+		Frame frame = frames[depth];
+		if (frame == null) {
+			frame = new Frame();
+			frames[depth] = frame;
+		}
+		frame.functor = functor;
+		frame.args = new PrologTerm[arity];
+		frame.position = 0;
+		depth++;
+	}
+
+	private String readString() throws IOException {
+		final int index = readSize();
+		if (index < strings.size())
+			return strings.get(index);
+		if (index > strings.size())
+			throw new IOException("Invalid string index " + index + " in binary Prolog term stream");
+		final int length = readSize();
+		if (length > stringBytes.length) {
+			stringBytes = new byte[Math.max(length, stringBytes.length * 2)];
+		}
+		readBytes(stringBytes, length);
+		final String string = new String(stringBytes, 0, length, BinaryPrologTermWriter.UTF8);
+		strings.add(string);
+		return string;
+	}
+
+	private int readSize() throws IOException {
+		final long size = readVarLong();
+		if (size < 0 || size > Integer.MAX_VALUE)
+			throw new IOException("Invalid size " + size + " in binary Prolog term stream");
+		return (int) size;
+	}
+
+	private long readVarLong() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final int b = readByte();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Invalid number in binary Prolog term stream");
+	}
+
+	private int readByte() throws IOException {
+		if (!ensure(1))
+			throw new EOFException("Unexpected end of binary Prolog term stream");
+		return buffer.get() & 0xff;
+	}
+
+	private void readBytes(final byte[] bytes, final int length) throws IOException {
+		int offset = 0;
+		while (offset < length) {
+			if (!ensure(1))
+				throw new EOFException("Unexpected end of binary Prolog term stream");
+			final int count = Math.min(length - offset, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			offset += count;
+		}
+	}
+
+	/*
+	 * returns false if less than the given number of bytes are left
+	 */
+	private boolean ensure(final int count) throws IOException {
+		if (buffer.remaining() >= count)
+			return true;
+		if (in == null)
+			return false;
+		buffer.compact();
+		try {
+			while (buffer.position() < count) {
+				final int read = in.read(buffer.array(), buffer.position(), buffer.remaining());
+				if (read < 0)
+					return false;
+				buffer.position(buffer.position() + read);
+			}
+		} finally {
+			buffer.flip();
+		}
+		return true;
+	}
+
+	private static final class Frame {
+		// null for a list
+		private String functor;
+		private PrologTerm[] args;
+		private int position;
+
+		PrologTerm create() {
+			final PrologTerm term = functor == null ? new ListPrologTerm(args) : new CompoundPrologTerm(functor, args);
+			// the frame is reused, it must not keep the arguments alive
+			args = null;
+			return term;
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package de.prob.prolog.term;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a stream of {@link PrologTerm}s in a compact binary format which can
+ * be read by {@link BinaryPrologTermReader}.
+ *
+ * Every functor, atom and variable name is written only once per stream, later
+ * occurrences refer to it by its index in a string table. Integers, sizes and
+ * indexes are written as variable length integers, so most of them need only
+ * one byte. Terms are written without recursion, they can be nested
+ * arbitrarily deep.
+ *
+ * The string table grows with every new name, so a stream should not contain
+ * an unbounded number of different names.
+ */
+public final class BinaryPrologTermWriter implements Closeable, Flushable {
+
+	static final byte[] MAGIC = { 'P', 'L', 'T', 'B' };
+	static final int VERSION = 1;
+
+	// the tags of the terms
+	static final int ATOM = 0;
+	static final int COMPOUND = 1;
+	static final int EMPTY_LIST = 2;
+	static final int LIST = 3;
+	static final int INTEGER = 4;
+	static final int BIG_INTEGER = 5;
+	static final int VARIABLE = 6;
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final OutputStream out;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position;
+
+	private final Map<String, Integer> strings = new HashMap<String, Integer>();
+	// the terms which still have to be written, the next one is at the end
+	private final List<PrologTerm> pending = new ArrayList<PrologTerm>();
+
+	public BinaryPrologTermWriter(final OutputStream out) throws IOException {
+		this.out = out;
+		for (final byte b : MAGIC) {
+			writeByte(b);
+		}
+		writeByte(VERSION);
+	}
+
+	/**
+	 * Appends a term to the stream.
+	 */
+	public void write(final PrologTerm term) throws IOException {
+		pending.add(term);
+		while (!pending.isEmpty()) {
+			writeNode(pending.remove(pending.size() - 1));
+		}
+	}
+
+	private void writeNode(final PrologTerm term) throws IOException {
+		if (term instanceof ListPrologTerm) {
+			final ListPrologTerm list = (ListPrologTerm) term;
+			final int size = list.size();
+			if (size == 0) {
+				writeByte(EMPTY_LIST);
+			} else {
+				writeByte(LIST);
+				writeVarInt(size);
+				for (int i = size - 1; i >= 0; i--) {
+					pending.add(list.get(i));
+				}
+			}
+		} else if (term instanceof IntegerPrologTerm) {
+			final IntegerPrologTerm integer = (IntegerPrologTerm) term;
+			if (integer.fitsInLong()) {
+				writeByte(INTEGER);
+				final long value = integer.longValue();
+				// zig-zag encoding, small negative numbers need few bytes
+				writeVarLong(value << 1 ^ value >> 63);
+			} else {
+				final byte[] bytes = integer.getValue().toByteArray();
+				writeByte(BIG_INTEGER);
+				writeVarInt(bytes.length);
+				writeBytes(bytes, bytes.length);
+			}
+		} else if (term instanceof VariablePrologTerm) {
+			writeByte(VARIABLE);
+			writeString(((VariablePrologTerm) term).getName());
+		} else {
+			final int arity = term.getArity();
+			if (arity == 0) {
+				writeByte(ATOM);
+			} else {
+				writeByte(COMPOUND);
+				writeVarInt(arity);
+				for (int i = arity; i >= 1; i--) {
+					pending.add(term.getArgument(i));
+				}
+			}
+			writeString(term.getFunctor());
+		}
+	}
+
+	/*
+	 * the index in the string table, the index of the next new string is
+	 * followed by its UTF-8 encoding
+	 */
+	private void writeString(final String string) throws IOException {
+		final Integer index = strings.get(string);
+		if (index != null) {
+			writeVarInt(index);
+		} else {
+			final int newIndex = strings.size();
+			strings.put(string, newIndex);
+			writeVarInt(newIndex);
+			final byte[] bytes = string.getBytes(UTF8);
+			writeVarInt(bytes.length);
+			writeBytes(bytes, bytes.length);
+		}
+	}
+
+	private void writeVarInt(final int value) throws IOException {
+		writeVarLong(value & 0xffffffffL);
+	}
+
+	private void writeVarLong(final long value) throws IOException {
+		long rest = value;
+		while ((rest & ~0x7fL) != 0) {
+			writeByte((int) (rest & 0x7f) | 0x80);
+			rest >>>= 7;
+		}
+		writeByte((int) rest);
+	}
+
+	private void writeByte(final int b) throws IOException {
+		if (position == buffer.length) {
+			flushBuffer();
+		}
+		buffer[position++] = (byte) b;
+	}
+
+	private void writeBytes(final byte[] bytes, final int length) throws IOException {
+		if (length > buffer.length - position) {
+			flushBuffer();
+			if (length > buffer.length) {
+				out.write(bytes, 0, length);
+				return;
+			}
+		}
+		System.arraycopy(bytes, 0, buffer, position, length);
+		position += length;
+	}
+
+	private void flushBuffer() throws IOException {
+		out.write(buffer, 0, position);
+		position = 0;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		flushBuffer();
+		out.close();
+	}
+}
@@ -22,6 +22,9 @@ import de.prob.prolog.output.IPrologTermOutput;
 public final class CompoundPrologTerm extends PrologTerm {
 	private static final long serialVersionUID = 4825557199378803498L;
 
+	// 0 if the hash code has not been computed yet
+	private transient int hash;
+
 	public CompoundPrologTerm(final String functor,
 			final PrologTerm... arguments) {
 		super(functor,arguments);
@@ -57,9 +60,11 @@ public final class CompoundPrologTerm extends PrologTerm {
 		boolean isEqual;
 		if (this == other) {
 			isEqual = true;
-		} else if (other != null && other instanceof PrologTerm) {
-			PrologTerm cother = (PrologTerm) other;
-			isEqual = functor.equals(cother.functor)
+		} else if (other instanceof CompoundPrologTerm) {
+			final CompoundPrologTerm cother = (CompoundPrologTerm) other;
+			// terms with different hash codes cannot be equal
+			isEqual = (hash == 0 || cother.hash == 0 || hash == cother.hash)
+					&& functor.equals(cother.functor)
 					&& Arrays.equals(arguments, cother.arguments);
 		} else {
 			isEqual = false;
@@ -69,7 +74,13 @@ public final class CompoundPrologTerm extends PrologTerm {
 
 	@Override
 	public int hashCode() {
-		return (functor.hashCode() * 17 + Arrays.hashCode(arguments)) * 5 + 4;
+		// terms are immutable, the hash code is computed only once
+		int h = hash;
+		if (h == 0) {
+			h = (functor.hashCode() * 17 + Arrays.hashCode(arguments)) * 5 + 4;
+			hash = h;
+		}
+		return h;
 	}
 
 	@Override
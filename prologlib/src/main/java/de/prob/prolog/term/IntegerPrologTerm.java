@@ -11,27 +11,78 @@ import java.math.BigInteger;
 import de.prob.prolog.output.IPrologTermOutput;
 
 /**
- * Represents a Prolog integer.
+ * Represents a Prolog integer. Values which fit into a <code>long</code> are
+ * stored as such, a {@link BigInteger} is only used for larger values. Use
+ * {@link #valueOf(long)} to share the terms of small values.
  * 
  * @author plagge
  */
 public final class IntegerPrologTerm extends PrologTerm {
-	private static final long serialVersionUID = -485207706557171193L;
+	private static final long serialVersionUID = -2426939372652431722L;
 
-	private final BigInteger value;
+	// the functor is computed on demand by getFunctor()
+	private static final String LAZY_FUNCTOR = "";
+
+	private static final int CACHE_LOW = -128;
+	private static final int CACHE_HIGH = 1024;
+	private static final IntegerPrologTerm[] CACHE = new IntegerPrologTerm[CACHE_HIGH - CACHE_LOW + 1];
+
+	static {
+		for (int i = 0; i < CACHE.length; i++) {
+			CACHE[i] = new IntegerPrologTerm(CACHE_LOW + i);
+		}
+	}
+
+	private final long longValue;
+	// null if the value fits into a long
+	private final BigInteger bigValue;
 
 	public IntegerPrologTerm(final BigInteger value) {
-		super(value.toString());
-		this.value = value;
+		super(LAZY_FUNCTOR);
+		if (value.bitLength() < 64) {
+			this.longValue = value.longValue();
+			this.bigValue = null;
+		} else {
+			this.longValue = 0;
+			this.bigValue = value;
+		}
 	}
 
 	public IntegerPrologTerm(final long value) {
-		this(BigInteger.valueOf(value));
+		super(LAZY_FUNCTOR);
+		this.longValue = value;
+		this.bigValue = null;
 	}
-	
+
 	public IntegerPrologTerm(final byte[] arr) {
-		super(new BigInteger(arr).toString());
-		this.value = new BigInteger(arr);
+		this(new BigInteger(arr));
+	}
+
+	public static IntegerPrologTerm valueOf(final long value) {
+		if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+			return CACHE[(int) value - CACHE_LOW];
+		}
+		return new IntegerPrologTerm(value);
+	}
+
+	public static IntegerPrologTerm valueOf(final BigInteger value) {
+		return value.bitLength() < 64 ? valueOf(value.longValue()) : new IntegerPrologTerm(value);
+	}
+
+	/**
+	 * @param text
+	 *            the decimal representation of an integer, optionally with a
+	 *            leading minus sign
+	 * @return the integer term
+	 * @throws NumberFormatException
+	 *             if the text is not a decimal integer
+	 */
+	public static IntegerPrologTerm valueOf(final String text) {
+		// at most 18 digits always fit into a long
+		if (text.length() <= 18) {
+			return valueOf(Long.parseLong(text));
+		}
+		return valueOf(new BigInteger(text));
 	}
 
 	@Override
@@ -39,13 +90,42 @@ public final class IntegerPrologTerm extends PrologTerm {
 		return true;
 	}
 
+	@Override
+	public String getFunctor() {
+		return bigValue == null ? Long.toString(longValue) : bigValue.toString();
+	}
+
 	public BigInteger getValue() {
-		return value;
+		return bigValue == null ? BigInteger.valueOf(longValue) : bigValue;
+	}
+
+	/**
+	 * @return <code>true</code> if the value can be retrieved with
+	 *         {@link #longValue()}
+	 */
+	public boolean fitsInLong() {
+		return bigValue == null;
+	}
+
+	/**
+	 * @return the value
+	 * @throws ArithmeticException
+	 *             if the value does not fit into a long
+	 */
+	public long longValue() {
+		if (bigValue != null) {
+			throw new ArithmeticException("Integer does not fit into a long: " + bigValue);
+		}
+		return longValue;
 	}
 
 	@Override
 	public void toTermOutput(final IPrologTermOutput pto) {
-		pto.printNumber(value);
+		if (bigValue == null) {
+			pto.printNumber(longValue);
+		} else {
+			pto.printNumber(bigValue);
+		}
 	}
 
 	@Override
@@ -54,7 +134,13 @@ public final class IntegerPrologTerm extends PrologTerm {
 		if (this == other) {
 			isEqual = true;
 		} else if (other != null && other instanceof IntegerPrologTerm) {
-			isEqual = this.value.equals(((IntegerPrologTerm) other).value);
+			final IntegerPrologTerm otherInt = (IntegerPrologTerm) other;
+			// both are stored as long if they fit into a long
+			if (bigValue == null) {
+				isEqual = otherInt.bigValue == null && longValue == otherInt.longValue;
+			} else {
+				isEqual = bigValue.equals(otherInt.bigValue);
+			}
 		} else {
 			isEqual = false;
 		}
@@ -63,7 +149,21 @@ public final class IntegerPrologTerm extends PrologTerm {
 
 	@Override
 	public int hashCode() {
-		return value.hashCode() * 11 + 4;
+		final int hash = bigValue == null ? bigIntegerHashCode(longValue) : bigValue.hashCode();
+		return hash * 11 + 4;
+	}
+
+	/*
+	 * the same as BigInteger.valueOf(value).hashCode(), which hashes the
+	 * 32-bit words of the magnitude
+	 */
+	private static int bigIntegerHashCode(final long value) {
+		// Math.abs(Long.MIN_VALUE) is Long.MIN_VALUE, i.e. 2^63 as unsigned
+		final long magnitude = Math.abs(value);
+		final int high = (int) (magnitude >>> 32);
+		final int low = (int) magnitude;
+		final int hash = high == 0 ? low : 31 * high + low;
+		return value < 0 ? -hash : hash;
 	}
 
 }
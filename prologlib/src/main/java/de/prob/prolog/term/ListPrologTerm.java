@@ -33,6 +33,9 @@ public final class ListPrologTerm extends PrologTerm implements List<PrologTerm>
 	private final int start;
 	private final int end;
 
+	// 0 if the hash code has not been computed yet
+	private transient int hash;
+
 	public ListPrologTerm(final PrologTerm... elements) {
 		super(".", elements);
 		if (elements == null)
@@ -46,12 +49,20 @@ public final class ListPrologTerm extends PrologTerm implements List<PrologTerm>
 		return EMPTY_LIST;
 	}
 
+	/**
+	 * Creates a view of the elements <code>start</code> (inclusive) to
+	 * <code>end</code> (exclusive) of another list. The elements are not
+	 * copied.
+	 */
 	public ListPrologTerm(int start, int end, ListPrologTerm org) {
 		super(".");
-		this.start = start;
-		this.end = end;
 		if (org == null)
 			throw new IllegalStateException("elements of Prolog list must not be null");
+		if (start < 0 || end > org.size() || start > end)
+			throw new IndexOutOfBoundsException("Invalid range " + start + " to " + end + " of list with size "
+					+ org.size());
+		this.start = org.start + start;
+		this.end = org.start + end;
 		this.elements = org.elements;
 	}
 
@@ -66,8 +77,8 @@ public final class ListPrologTerm extends PrologTerm implements List<PrologTerm>
 
 	public PrologTerm get(final int index) {
 		int i = index + start;
-		if (i >= end)
-			throw new ArrayIndexOutOfBoundsException();
+		if (index < 0 || i >= end)
+			throw new ArrayIndexOutOfBoundsException(index);
 		return elements[i];
 	}
 
@@ -85,14 +96,32 @@ public final class ListPrologTerm extends PrologTerm implements List<PrologTerm>
 		if (this == other) {
 			return true;
 		}
-		if (other == null || !(other instanceof ListPrologTerm))
+		if (!(other instanceof ListPrologTerm))
+			return false;
+		final ListPrologTerm list = (ListPrologTerm) other;
+		final int size = size();
+		// lists with different hash codes cannot be equal
+		if (size != list.size() || hash != 0 && list.hash != 0 && hash != list.hash)
 			return false;
-		return Arrays.equals(elements, ((ListPrologTerm) other).elements);
+		for (int i = 0; i < size; i++) {
+			if (!elements[start + i].equals(list.elements[list.start + i]))
+				return false;
+		}
+		return true;
 	}
 
 	@Override
 	public int hashCode() {
-		return Arrays.hashCode(elements) + start * 13 + end;
+		// lists are immutable, the hash code is computed only once
+		int h = hash;
+		if (h == 0) {
+			h = 1;
+			for (int i = start; i < end; i++) {
+				h = 31 * h + elements[i].hashCode();
+			}
+			hash = h;
+		}
+		return h;
 	}
 
 	public Iterator<PrologTerm> iterator() {
@@ -155,7 +184,7 @@ public final class ListPrologTerm extends PrologTerm implements List<PrologTerm>
 		if (a.length < size) {
 			a = (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
 		}
-		System.arraycopy(elements, 0, a, 0, size);
+		System.arraycopy(elements, start, a, 0, size);
 		if (a.length > size) {
 			a[size] = null;
 		}
@@ -173,7 +202,7 @@ public final class ListPrologTerm extends PrologTerm implements List<PrologTerm>
 	public int indexOf(final Object object) {
 		for (int i = start; i < end; i++) {
 			if (elements[i].equals(object))
-				return i;
+				return i - start;
 		}
 		return -1;
 	}
@@ -181,17 +210,19 @@ public final class ListPrologTerm extends PrologTerm implements List<PrologTerm>
 	public int lastIndexOf(final Object object) {
 		for (int i = end - 1; i >= start; i--) {
 			if (elements[i].equals(object))
-				return i;
+				return i - start;
 		}
 		return -1;
 	}
 
 	public ListIterator<PrologTerm> listIterator() {
-		return new PrologTermListIterator(elements, start, end);
+		return new PrologTermListIterator(elements, start, end, start);
 	}
 
 	public ListIterator<PrologTerm> listIterator(final int index) {
-		return new PrologTermListIterator(elements, index, end);
+		if (index < 0 || index > size())
+			throw new IndexOutOfBoundsException("Index: " + index);
+		return new PrologTermListIterator(elements, start, end, start + index);
 	}
 
 	public PrologTerm remove(final int arg0) {
@@ -206,12 +237,17 @@ public final class ListPrologTerm extends PrologTerm implements List<PrologTerm>
 		return new ListPrologTerm(start, end, this);
 	}
 
+	/**
+	 * @return the list without its first element, a view which shares the
+	 *         elements with this list. To visit all elements, use
+	 *         {@link #get(int)} or an iterator instead of repeated calls.
+	 */
 	public ListPrologTerm tail() {
 		if (isEmpty())
 			throw new IllegalStateException("Cannot call tail on an empty list");
 		if (size() == 1)
 			return EMPTY_LIST;
-		return new ListPrologTerm(start + 1, end, this);
+		return new ListPrologTerm(1, size(), this);
 	}
 
 	public PrologTerm head() {
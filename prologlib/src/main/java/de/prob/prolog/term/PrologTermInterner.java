@@ -0,0 +1,168 @@
+package de.prob.prolog.term;
+
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Creates Prolog terms and shares equal ones. Functors and variable names are
+ * deduplicated, and for atoms, integers and small ground terms the same
+ * instance is returned for structurally equal terms. This reduces the memory
+ * needed for large terms which contain the same subterms many times, like
+ * <code>none</code>, identifiers or elements of enumerated sets.
+ *
+ * Terms are shared only if they contain no variables and consist of at most
+ * {@link #getMaxTermSize()} terms, so looking up a term never hashes more
+ * than a few subterms. Both caches are bounded, the least recently used
+ * entries are removed first. An interner can be used by several threads.
+ */
+public final class PrologTermInterner {
+	public static final int DEFAULT_CAPACITY = 4096;
+	public static final int DEFAULT_MAX_TERM_SIZE = 16;
+
+	private final int maxTermSize;
+	private final Map<String, String> names;
+	private final Map<PrologTerm, PrologTerm> terms;
+
+	private long requests = 0;
+	private long hits = 0;
+
+	public PrologTermInterner() {
+		this(DEFAULT_CAPACITY, DEFAULT_MAX_TERM_SIZE);
+	}
+
+	/**
+	 * @param capacity
+	 *            the maximum number of cached names and of cached terms
+	 * @param maxTermSize
+	 *            the maximum number of terms (including all subterms) of a
+	 *            shared term
+	 */
+	public PrologTermInterner(final int capacity, final int maxTermSize) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity must be positive");
+		this.maxTermSize = maxTermSize;
+		this.names = new LruMap<String, String>(capacity);
+		this.terms = new LruMap<PrologTerm, PrologTerm>(capacity);
+	}
+
+	public int getMaxTermSize() {
+		return maxTermSize;
+	}
+
+	/**
+	 * @return a string equal to name, the same instance for equal names which
+	 *         are still cached
+	 */
+	public synchronized String name(final String name) {
+		final String cached = names.get(name);
+		if (cached != null) {
+			return cached;
+		}
+		names.put(name, name);
+		return name;
+	}
+
+	public PrologTerm atom(final String atom) {
+		return intern(new CompoundPrologTerm(name(atom)));
+	}
+
+	public PrologTerm compound(final String functor, final PrologTerm... arguments) {
+		return intern(new CompoundPrologTerm(name(functor), arguments));
+	}
+
+	public PrologTerm list(final PrologTerm... elements) {
+		return intern(new ListPrologTerm(elements));
+	}
+
+	public PrologTerm integer(final long value) {
+		return intern(IntegerPrologTerm.valueOf(value));
+	}
+
+	public PrologTerm integer(final BigInteger value) {
+		return intern(IntegerPrologTerm.valueOf(value));
+	}
+
+	public VariablePrologTerm variable(final String name) {
+		return new VariablePrologTerm(name(name));
+	}
+
+	/**
+	 * @return a term equal to the given term, the same instance for equal
+	 *         small ground terms which are still cached
+	 */
+	public PrologTerm intern(final PrologTerm term) {
+		if (groundSize(term, maxTermSize) < 0) {
+			return term;
+		}
+		synchronized (this) {
+			requests++;
+			final PrologTerm cached = terms.get(term);
+			if (cached != null) {
+				hits++;
+				return cached;
+			}
+			terms.put(term, term);
+			return term;
+		}
+	}
+
+	/**
+	 * @return the number of terms passed to {@link #intern(PrologTerm)} which
+	 *         could be shared
+	 */
+	public synchronized long getRequests() {
+		return requests;
+	}
+
+	/**
+	 * @return the number of terms for which a cached instance was returned
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/*
+	 * the number of terms in the term, -1 if it contains a variable or more
+	 * than limit terms
+	 */
+	private static int groundSize(final PrologTerm term, final int limit) {
+		if (limit < 1 || term.isVariable()) {
+			return -1;
+		}
+		int size = 1;
+		if (term.isList()) {
+			final ListPrologTerm list = (ListPrologTerm) term;
+			for (int i = 0; i < list.size(); i++) {
+				final int elementSize = groundSize(list.get(i), limit - size);
+				if (elementSize < 0)
+					return -1;
+				size += elementSize;
+			}
+		} else if (term.isTerm()) {
+			for (int i = 1; i <= term.getArity(); i++) {
+				final int argumentSize = groundSize(term.getArgument(i), limit - size);
+				if (argumentSize < 0)
+					return -1;
+				size += argumentSize;
+			}
+		}
+		return size;
+	}
+
+	private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+		private static final long serialVersionUID = 2283165946316410934L;
+
+		private final int capacity;
+
+		LruMap(final int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+			return size() > capacity;
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package de.prob.prolog.term;
 
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
 
 class PrologTermListIterator implements ListIterator<PrologTerm> {
 
@@ -9,11 +10,11 @@ class PrologTermListIterator implements ListIterator<PrologTerm> {
 	private final int end;
 	private int next;
 
-	public PrologTermListIterator(PrologTerm[] elements, int start, int end) {
+	public PrologTermListIterator(PrologTerm[] elements, int start, int end, int next) {
 		this.elements = elements;
 		this.start = start;
 		this.end = end;
-		this.next = start;
+		this.next = next;
 	}
 
 	public boolean hasNext() {
@@ -21,6 +22,8 @@ class PrologTermListIterator implements ListIterator<PrologTerm> {
 	}
 
 	public PrologTerm next() {
+		if (next >= end)
+			throw new NoSuchElementException();
 		return elements[next++];
 	}
 
@@ -37,17 +40,17 @@ class PrologTermListIterator implements ListIterator<PrologTerm> {
 	}
 
 	public int nextIndex() {
-		return Math.min(next-start, end);
+		return next - start;
 	}
 
 	public PrologTerm previous() {
+		if (next <= start)
+			throw new NoSuchElementException();
 		return elements[--next];
 	}
 
 	public int previousIndex() {
-		if (next == start)
-			return -1;
-		return next - 1;
+		return next - start - 1;
 	}
 
 	public void set(PrologTerm arg0) {
@@ -0,0 +1,121 @@
+package de.prob.prolog.match;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.prob.prolog.term.CompoundPrologTerm;
+import de.prob.prolog.term.IntegerPrologTerm;
+import de.prob.prolog.term.ListPrologTerm;
+import de.prob.prolog.term.PrologTerm;
+
+/**
+ * Compares the time needed to match many terms against a set of patterns with
+ * {@link PrologMatch#getMatches(PrologTerm)}, trying the patterns one after
+ * another, and with a {@link PrologMatcher} compiled from the same patterns.
+ */
+public class PrologMatcherBenchmark {
+
+	private static final int WARMUP = 3;
+	private static final int RUNS = 5;
+	private static final int TERMS = 200000;
+	private static final int FUNCTORS = 20;
+
+	@Test
+	public void testManyTerms() {
+		final PrologMatch[] patterns = createPatterns();
+		final PrologMatcher matcher = PrologMatcher.compile(patterns);
+		final List<PrologTerm> terms = createTerms();
+		assertEquals(interpreted(patterns, terms), compiled(matcher, terms));
+		for (int i = 0; i < WARMUP; i++) {
+			interpreted(patterns, terms);
+			compiled(matcher, terms);
+		}
+		long interpreted = 0;
+		long compiled = 0;
+		for (int i = 0; i < RUNS; i++) {
+			long time = System.currentTimeMillis();
+			interpreted(patterns, terms);
+			interpreted += System.currentTimeMillis() - time;
+			time = System.currentTimeMillis();
+			compiled(matcher, terms);
+			compiled += System.currentTimeMillis() - time;
+		}
+		System.out.println(TERMS + " terms, " + patterns.length + " patterns: interpreted " + interpreted / RUNS
+				+ "ms, compiled " + compiled / RUNS + "ms");
+	}
+
+	/*
+	 * returns the sum of the matched values and pattern indexes
+	 */
+	private static long interpreted(final PrologMatch[] patterns, final List<PrologTerm> terms) {
+		long sum = 0;
+		for (final PrologTerm term : terms) {
+			for (int p = 0; p < patterns.length; p++) {
+				final Map<String, PrologTerm> hits = patterns[p].getMatches(term);
+				if (hits != null) {
+					sum += p + ((IntegerPrologTerm) hits.get("N")).longValue();
+					break;
+				}
+			}
+		}
+		return sum;
+	}
+
+	private static long compiled(final PrologMatcher matcher, final List<PrologTerm> terms) {
+		final int n = matcher.getSlot("N");
+		final PrologTerm[] slots = matcher.createSlots();
+		long sum = 0;
+		for (final PrologTerm term : terms) {
+			final int p = matcher.match(term, slots);
+			if (p >= 0) {
+				sum += p + ((IntegerPrologTerm) slots[n]).longValue();
+			}
+		}
+		return sum;
+	}
+
+	/*
+	 * fI(N,Name,[_,_]) and fI(N,Name) for every functor, then any term N
+	 */
+	private static PrologMatch[] createPatterns() {
+		final List<PrologMatch> patterns = new ArrayList<PrologMatch>();
+		for (int i = 0; i < FUNCTORS; i++) {
+			patterns.add(PrologTermMatch.anonTerm("f" + i, new PrologMatch[] { PrologIntegerMatch.namedInt("N"),
+					PrologTermMatch.namedTerm("Name", null, 0), PrologListMatch.namedList("L", 2) }));
+			patterns.add(PrologTermMatch.anonTerm("f" + i, new PrologMatch[] { PrologIntegerMatch.namedInt("N"),
+					PrologTermMatch.namedTerm("Name", null, 0) }));
+		}
+		patterns.add(PrologIntegerMatch.namedInt("N"));
+		return patterns.toArray(new PrologMatch[patterns.size()]);
+	}
+
+	private static List<PrologTerm> createTerms() {
+		final List<PrologTerm> terms = new ArrayList<PrologTerm>();
+		final PrologTerm name = new CompoundPrologTerm("name");
+		final PrologTerm list = new ListPrologTerm(name, name);
+		for (int i = 0; i < TERMS; i++) {
+			final PrologTerm n = IntegerPrologTerm.valueOf(i % 1000);
+			final String functor = "f" + i % (FUNCTORS + 1);
+			switch (i % 4) {
+			case 0:
+				terms.add(new CompoundPrologTerm(functor, n, name, list));
+				break;
+			case 1:
+				terms.add(new CompoundPrologTerm(functor, n, name));
+				break;
+			case 2:
+				terms.add(new CompoundPrologTerm(functor, name, name));
+				break;
+			default:
+				terms.add(n);
+				break;
+			}
+		}
+		return terms;
+	}
+}
@@ -0,0 +1,152 @@
+package de.prob.prolog.match;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.prob.prolog.term.CompoundPrologTerm;
+import de.prob.prolog.term.IntegerPrologTerm;
+import de.prob.prolog.term.ListPrologTerm;
+import de.prob.prolog.term.PrologTerm;
+import de.prob.prolog.term.VariablePrologTerm;
+
+public class PrologMatcherTest {
+
+	private static final PrologTerm A = new CompoundPrologTerm("a");
+	private static final PrologTerm B = new CompoundPrologTerm("b");
+
+	@Test
+	public void testArguments() {
+		final PrologMatch pattern = PrologTermMatch.namedTerm("T", "f", new PrologMatch[] {
+				PrologTermMatch.namedAtom("X", "a"), null, PrologIntegerMatch.namedInt("N") });
+		final PrologTerm term = new CompoundPrologTerm("f", A, B, IntegerPrologTerm.valueOf(7));
+		final Map<String, PrologTerm> hits = pattern.getMatches(term);
+		assertEquals(3, hits.size());
+		assertSame(A, hits.get("X"));
+
+		final PrologMatcher matcher = PrologMatcher.compile(pattern);
+		final PrologTerm[] slots = matcher.createSlots();
+		assertEquals(3, matcher.getSlotCount());
+		assertEquals(0, matcher.match(term, slots));
+		assertSame(term, slots[matcher.getSlot("T")]);
+		assertSame(A, slots[matcher.getSlot("X")]);
+		assertEquals(IntegerPrologTerm.valueOf(7), slots[matcher.getSlot("N")]);
+		assertEquals(-1, matcher.getSlot("Y"));
+
+		final PrologTerm other = new CompoundPrologTerm("f", B, A, IntegerPrologTerm.valueOf(7));
+		assertNull(pattern.getMatches(other));
+		assertEquals(-1, matcher.match(other, slots));
+		assertNull(slots[matcher.getSlot("N")]);
+	}
+
+	@Test
+	public void testDispatch() {
+		final PrologMatcher matcher = PrologMatcher.compile(PrologTermMatch.anonTerm("f", 1),
+				PrologListMatch.anonList(), PrologTermMatch.anonTerm("f"), PrologTermMatch.anonTerm("g", 2),
+				PrologVariableMatch.anonVar());
+		assertEquals(0, matcher.match(new CompoundPrologTerm("f", A), null));
+		assertEquals(2, matcher.match(new CompoundPrologTerm("f", A, B), null));
+		assertEquals(2, matcher.match(new CompoundPrologTerm("f"), null));
+		assertEquals(3, matcher.match(new CompoundPrologTerm("g", A, B), null));
+		assertEquals(-1, matcher.match(new CompoundPrologTerm("g", A), null));
+		assertEquals(1, matcher.match(new ListPrologTerm(A), null));
+		assertEquals(4, matcher.match(new VariablePrologTerm("X"), null));
+		assertEquals(-1, matcher.match(A, null));
+		assertFalse(matcher.matches(IntegerPrologTerm.valueOf(1)));
+	}
+
+	@Test
+	public void testPatternOrder() {
+		// a generic pattern before a specific one is tried first
+		final PrologMatcher matcher = PrologMatcher.compile(PrologTermMatch.anonTerm("h", 0),
+				new PrologMatch(null), PrologTermMatch.anonTerm("f", 1));
+		assertEquals(1, matcher.match(new CompoundPrologTerm("f", A), null));
+		assertEquals(0, matcher.match(new CompoundPrologTerm("h"), null));
+		assertEquals(1, matcher.match(IntegerPrologTerm.valueOf(1), null));
+	}
+
+	@Test
+	public void testSharedSlots() {
+		final PrologMatcher matcher = PrologMatcher.compile(
+				PrologTermMatch.anonTerm("f", new PrologMatch[] { PrologTermMatch.namedTerm("Y"),
+						PrologTermMatch.namedAtom("X", "a") }),
+				PrologTermMatch.anonTerm("f", new PrologMatch[] { PrologTermMatch.namedTerm("X"), null }));
+		assertEquals(2, matcher.getSlotCount());
+		final PrologTerm[] slots = matcher.createSlots();
+		assertEquals(1, matcher.match(new CompoundPrologTerm("f", A, B), slots));
+		assertSame(A, slots[matcher.getSlot("X")]);
+		// Y was bound by the first pattern before it failed
+		assertNull(slots[matcher.getSlot("Y")]);
+	}
+
+	@Test
+	public void testValues() {
+		final BigInteger big = BigInteger.TEN.pow(30);
+		final PrologMatcher matcher = PrologMatcher.compile(PrologIntegerMatch.anonInt(5),
+				PrologIntegerMatch.anonInt(big), PrologListMatch.anonList(2),
+				PrologVariableMatch.anonVar("X"));
+		assertEquals(0, matcher.match(IntegerPrologTerm.valueOf(5), null));
+		assertEquals(1, matcher.match(IntegerPrologTerm.valueOf(big), null));
+		assertEquals(-1, matcher.match(IntegerPrologTerm.valueOf(big.negate()), null));
+		assertEquals(-1, matcher.match(IntegerPrologTerm.valueOf(6), null));
+		assertEquals(2, matcher.match(new ListPrologTerm(A, B), null));
+		assertEquals(-1, matcher.match(new ListPrologTerm(A), null));
+		assertEquals(3, matcher.match(new VariablePrologTerm("X"), null));
+		assertEquals(-1, matcher.match(new VariablePrologTerm("Y"), null));
+	}
+
+	@Test
+	public void testInterpretedPattern() {
+		// a pattern defined outside of the package
+		final PrologMatch even = new PrologMatch("E") {
+			@Override
+			protected boolean isMatch(final PrologTerm term, final Map<String, PrologTerm> hits) {
+				return term instanceof IntegerPrologTerm && !((IntegerPrologTerm) term).getValue().testBit(0);
+			}
+		};
+		final PrologMatcher matcher = PrologMatcher
+				.compile(PrologTermMatch.anonTerm("f", new PrologMatch[] { even }));
+		final PrologTerm[] slots = matcher.createSlots();
+		assertEquals(0, matcher.match(new CompoundPrologTerm("f", IntegerPrologTerm.valueOf(4)), slots));
+		assertEquals(IntegerPrologTerm.valueOf(4), slots[matcher.getSlot("E")]);
+		assertEquals(-1, matcher.match(new CompoundPrologTerm("f", IntegerPrologTerm.valueOf(3)), slots));
+		assertTrue(matcher.matches(new CompoundPrologTerm("f", IntegerPrologTerm.valueOf(2))));
+	}
+
+	@Test
+	public void testSameAsInterpreted() {
+		final PrologMatch[] patterns = { PrologTermMatch.anonTerm("f", new PrologMatch[] {
+				PrologIntegerMatch.namedInt("N"), PrologTermMatch.namedTerm("Name", null, 0),
+				PrologListMatch.namedList("L", 2) }),
+				PrologTermMatch.anonTerm("f",
+						new PrologMatch[] { PrologIntegerMatch.namedInt("N"), PrologTermMatch.namedTerm("Name", null, 0) }),
+				PrologIntegerMatch.namedInt("N") };
+		final PrologMatcher matcher = PrologMatcher.compile(patterns);
+		final PrologTerm[] slots = matcher.createSlots();
+		final PrologTerm n = IntegerPrologTerm.valueOf(7);
+		final PrologTerm[] terms = { new CompoundPrologTerm("f", n, A, new ListPrologTerm(A, B)),
+				new CompoundPrologTerm("f", n, A, new ListPrologTerm(A)), new CompoundPrologTerm("f", n, A),
+				new CompoundPrologTerm("f", A, A), new CompoundPrologTerm("g", n, A), n, A };
+		for (final PrologTerm term : terms) {
+			int expected = -1;
+			Map<String, PrologTerm> hits = null;
+			for (int p = 0; p < patterns.length && hits == null; p++) {
+				hits = patterns[p].getMatches(term);
+				if (hits != null) {
+					expected = p;
+				}
+			}
+			assertEquals(term.toString(), expected, matcher.match(term, slots));
+			if (hits != null) {
+				assertEquals(hits.get("N"), slots[matcher.getSlot("N")]);
+			}
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package de.prob.prolog.output;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link BufferedPrologTermOutput} prints exactly the same as
+ * {@link PrologTermOutput}.
+ */
+public class BufferedPrologTermOutputTest {
+
+	private static final String[] ATOMS = { "normal", "camelStyle", "with_underscore", "UpperCase",
+			"_begin_with_underscore", "22number", "with white spaces", "hallo\nwelt", "back\\slash", "Ümlaute",
+			" donttrim ", "apo'stroph", "double\"quote", "", "a", "ä", "€€", "x.y", "[]", "tab\there" };
+
+	@Test
+	public void testSameAsPrologTermOutput() {
+		for (final boolean indention : new boolean[] { false, true }) {
+			final StringWriter expected = new StringWriter();
+			final StringWriter actual = new StringWriter();
+			print(new PrologTermOutput(new PrintWriter(expected), indention), 42);
+			print(new BufferedPrologTermOutput(actual, indention), 42);
+			assertEquals(expected.toString(), actual.toString());
+		}
+	}
+
+	@Test
+	public void testNumbers() {
+		final StringWriter actual = new StringWriter();
+		final IPrologTermOutput pout = new BufferedPrologTermOutput(actual, false);
+		pout.openList();
+		pout.printNumber(0).printNumber(-1).printNumber(Long.MAX_VALUE).printNumber(Long.MIN_VALUE);
+		pout.printNumber(new BigInteger("-123456789012345678901234567890"));
+		pout.printAtomOrNumber("17").printAtomOrNumber("17a");
+		pout.closeList().flush();
+		assertEquals("[0,-1,9223372036854775807,-9223372036854775808,-123456789012345678901234567890,17,'17a']",
+				actual.toString());
+	}
+
+	@Test
+	public void testNullAtom() {
+		final StringWriter actual = new StringWriter();
+		new BufferedPrologTermOutput(actual, false).printAtom(null).flush();
+		assertEquals("null", actual.toString());
+	}
+
+	@Test
+	public void testLongAtoms() {
+		// atoms longer than the buffer
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			sb.append(i % 7 == 0 ? "'" : "ab");
+		}
+		final StringWriter expected = new StringWriter();
+		final StringWriter actual = new StringWriter();
+		new PrologTermOutput(new PrintWriter(expected), false).printAtom(sb.toString()).printString(sb.toString())
+				.fullstop().flush();
+		new BufferedPrologTermOutput(actual, false).printAtom(sb.toString()).printString(sb.toString()).fullstop()
+				.flush();
+		assertEquals(expected.toString(), actual.toString());
+	}
+
+	/*
+	 * prints a large random term, the sequence of calls only depends on the
+	 * seed
+	 */
+	private static void print(final IPrologTermOutput pout, final long seed) {
+		final Random random = new Random(seed);
+		for (int sentence = 0; sentence < 200; sentence++) {
+			pout.openTerm("fact", random.nextBoolean());
+			printRandom(pout, random, 0);
+			pout.closeTerm();
+			pout.fullstop();
+		}
+		pout.flush();
+	}
+
+	private static void printRandom(final IPrologTermOutput pout, final Random random, final int depth) {
+		final int count = random.nextInt(6);
+		for (int i = 0; i < count; i++) {
+			switch (depth < 5 ? random.nextInt(9) : random.nextInt(5)) {
+			case 0:
+				pout.printAtom(ATOMS[random.nextInt(ATOMS.length)]);
+				break;
+			case 1:
+				pout.printString(ATOMS[random.nextInt(ATOMS.length)]);
+				break;
+			case 2:
+				pout.printNumber(random.nextLong() >> random.nextInt(64));
+				break;
+			case 3:
+				pout.printVariable("V" + random.nextInt(100));
+				break;
+			case 4:
+				pout.emptyList();
+				break;
+			case 5:
+			case 6:
+				pout.openTerm(ATOMS[random.nextInt(ATOMS.length)], random.nextInt(4) == 0);
+				printRandom(pout, random, depth + 1);
+				pout.closeTerm();
+				break;
+			default:
+				pout.openList();
+				printRandom(pout, random, depth + 1);
+				pout.closeList();
+			}
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package de.prob.prolog.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.prob.prolog.term.CompoundPrologTerm;
+import de.prob.prolog.term.IntegerPrologTerm;
+import de.prob.prolog.term.ListPrologTerm;
+import de.prob.prolog.term.VariablePrologTerm;
+
+public class FastReadPrologOutputTest {
+	private static final char Z = (char) 0;
+
+	private ByteArrayOutputStream bytes;
+	private IPrologTermOutput pout;
+
+	@Before
+	public void setUp() {
+		bytes = new ByteArrayOutputStream();
+		pout = new FastReadPrologOutput(bytes);
+	}
+
+	private void assertOutput(final String expected) throws UnsupportedEncodingException {
+		pout.flush();
+		assertEquals(expected, bytes.toString("UTF-8"));
+	}
+
+	@Test
+	public void testNumbers() throws Exception {
+		pout.printNumber(42).fullstop();
+		pout.printNumber(-7).fullstop();
+		assertOutput("DI42" + Z + "DI-7" + Z);
+	}
+
+	@Test
+	public void testAtoms() throws Exception {
+		pout.printAtom("a").fullstop();
+		pout.openTerm("C").closeTerm().fullstop();
+		pout.printAtom("ä").fullstop();
+		assertOutput("DAa" + Z + "DAC" + Z + "DAä" + Z);
+	}
+
+	@Test
+	public void testTerms() throws Exception {
+		// a(['G',f([]),[[w]]])
+		pout.openTerm("a").openList();
+		pout.printAtom("G");
+		pout.openTerm("f").openList().closeList().closeTerm();
+		pout.openList().openList().printAtom("w").closeList().closeList();
+		pout.closeList().closeTerm();
+		pout.fullstop();
+		assertOutput("DSa" + Z + (char) 1 + "[AG" + Z + "[Sf" + Z + (char) 1 + "][[[Aw" + Z + "]]]");
+	}
+
+	@Test
+	public void testArity() throws Exception {
+		pout.openTerm("f").printNumber(1).openTerm("g").closeTerm().emptyList().closeTerm().fullstop();
+		assertOutput("DSf" + Z + (char) 3 + "I1" + Z + "Ag" + Z + "]");
+	}
+
+	@Test
+	public void testVariablesAreNumberedPerSentence() throws Exception {
+		pout.openTerm("f").printVariable("X").printVariable("Y").printVariable("X").closeTerm().fullstop();
+		pout.printVariable("Y").fullstop();
+		assertOutput("DSf" + Z + (char) 3 + "_0" + Z + "_1" + Z + "_0" + Z + "D_0" + Z);
+	}
+
+	@Test
+	public void testString() throws Exception {
+		pout.printString("ab").fullstop();
+		assertOutput("D[I97" + Z + "[I98" + Z + "]");
+	}
+
+	@Test
+	public void testPrintTerm() throws Exception {
+		pout.printTerm(new CompoundPrologTerm("f", new ListPrologTerm(new IntegerPrologTerm(3)),
+				new VariablePrologTerm("A"), new CompoundPrologTerm("b"))).fullstop();
+		assertOutput("DSf" + Z + (char) 3 + "[I3" + Z + "]_0" + Z + "Ab" + Z);
+	}
+
+	@Test
+	public void testLongList() throws Exception {
+		final StringBuilder expected = new StringBuilder("D");
+		pout.openList();
+		for (int i = 0; i < 10000; i++) {
+			pout.openTerm("e").printNumber(i).closeTerm();
+			expected.append("[Se").append(Z).append((char) 1).append('I').append(i).append(Z);
+		}
+		pout.closeList().fullstop();
+		expected.append(']');
+		assertOutput(expected.toString());
+	}
+
+	@Test
+	public void testIncompleteSentence() {
+		pout.openTerm("f");
+		try {
+			pout.fullstop();
+			fail("exception expected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
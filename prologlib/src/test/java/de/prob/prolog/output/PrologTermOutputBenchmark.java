@@ -0,0 +1,64 @@
+package de.prob.prolog.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+
+import org.junit.Test;
+
+/**
+ * Compares the time needed by {@link PrologTermOutput} and
+ * {@link BufferedPrologTermOutput} to print a large term which is similar to
+ * the AST of a machine: nested terms with positions, identifiers and numbers.
+ */
+public class PrologTermOutputBenchmark {
+
+	private static final int WARMUP = 2;
+	private static final int RUNS = 5;
+	private static final int SIZE = 200000;
+
+	@Test
+	public void testOutputs() {
+		for (final boolean indention : new boolean[] { false, true }) {
+			long plain = 0;
+			long buffered = 0;
+			for (int i = 0; i < WARMUP + RUNS; i++) {
+				final long t1 = run(false, indention);
+				final long t2 = run(true, indention);
+				if (i >= WARMUP) {
+					plain += t1;
+					buffered += t2;
+				}
+			}
+			System.out.println("indention " + indention + ": PrologTermOutput " + plain / RUNS
+					+ "ms, BufferedPrologTermOutput " + buffered / RUNS + "ms");
+		}
+	}
+
+	private static long run(final boolean buffered, final boolean indention) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 24);
+		final long start = System.currentTimeMillis();
+		final IPrologTermOutput pout = buffered ? new BufferedPrologTermOutput(bytes, indention)
+				: new PrologTermOutput(new PrintWriter(bytes), indention);
+		pout.openTerm("machine").openList();
+		for (int i = 0; i < SIZE; i++) {
+			pout.openTerm("equal");
+			printPosition(pout, i);
+			pout.openTerm("identifier");
+			printPosition(pout, i + 1);
+			pout.printAtom(i % 3 == 0 ? "xx" : "Identifier_" + (i % 100));
+			pout.closeTerm();
+			pout.openTerm("integer");
+			printPosition(pout, i + 2);
+			pout.printNumber(i);
+			pout.closeTerm();
+			pout.closeTerm();
+		}
+		pout.closeList().closeTerm().fullstop().flush();
+		return System.currentTimeMillis() - start;
+	}
+
+	private static void printPosition(final IPrologTermOutput pout, final int id) {
+		pout.openTerm("pos").printNumber(id).printNumber(-1).printNumber(1).printNumber(id % 80).printNumber(1)
+				.printNumber(id % 80 + 5).closeTerm();
+	}
+}
@@ -0,0 +1,221 @@
+package de.prob.prolog.output;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+
+import org.junit.Test;
+
+import de.prob.prolog.term.CompoundPrologTerm;
+import de.prob.prolog.term.IntegerPrologTerm;
+import de.prob.prolog.term.ListPrologTerm;
+import de.prob.prolog.term.PrologTerm;
+
+/**
+ * Measures the throughput of {@link StructuredPrologOutput#openTerm(String)}
+ * and {@link StructuredPrologOutput#closeTerm()} for terms shaped like the
+ * AST of a formula, compared with the former implementation which used
+ * {@link Stack}s and boxed the numbers of arguments.
+ */
+public class StructuredPrologOutputBenchmark {
+
+	private static final int WARMUP = 3;
+	private static final int RUNS = 5;
+	private static final int FORMULAS = 200000;
+
+	@Test
+	public void testFormulas() {
+		final StructuredPrologOutput current = new StructuredPrologOutput();
+		final StackPrologOutput former = new StackPrologOutput();
+		assertEquals(run(current), run(former));
+		for (int i = 0; i < WARMUP; i++) {
+			run(current);
+			run(former);
+		}
+		long currentTime = 0;
+		long formerTime = 0;
+		for (int i = 0; i < RUNS; i++) {
+			long time = System.currentTimeMillis();
+			run(current);
+			currentTime += System.currentTimeMillis() - time;
+			time = System.currentTimeMillis();
+			run(former);
+			formerTime += System.currentTimeMillis() - time;
+		}
+		// every formula opens and closes 13 terms and lists
+		final long terms = 13L * FORMULAS;
+		System.out.println(FORMULAS + " formulas: Stack " + formerTime / RUNS + "ms (" + terms * RUNS * 1000
+				/ Math.max(formerTime, 1) + " terms/s), arrays " + currentTime / RUNS + "ms (" + terms * RUNS * 1000
+				/ Math.max(currentTime, 1) + " terms/s)");
+	}
+
+	/*
+	 * conjunct(p(1),member(p(2),identifier(p(3),xI)),equal(p(4),[integer(p(5),I)],empty_set(p(6))))
+	 * for every formula, returns the number of created arguments
+	 */
+	private static long run(final IPrologTermOutput pout) {
+		long count = 0;
+		for (int i = 0; i < FORMULAS; i++) {
+			pout.openTerm("conjunct");
+			position(pout, 1);
+			pout.openTerm("member");
+			position(pout, 2);
+			pout.openTerm("identifier");
+			position(pout, 3);
+			pout.printAtom("x");
+			pout.closeTerm();
+			pout.closeTerm();
+			pout.openTerm("equal");
+			position(pout, 4);
+			pout.openList();
+			pout.openTerm("integer");
+			position(pout, 5);
+			pout.printNumber(i);
+			pout.closeTerm();
+			pout.closeList();
+			pout.openTerm("empty_set");
+			position(pout, 6);
+			pout.closeTerm();
+			pout.closeTerm();
+			pout.closeTerm();
+			pout.fullstop();
+			count += sentence(pout).getArity();
+		}
+		return count;
+	}
+
+	private static void position(final IPrologTermOutput pout, final int id) {
+		pout.openTerm("p").printNumber(id).closeTerm();
+	}
+
+	private static PrologTerm sentence(final IPrologTermOutput pout) {
+		final List<PrologTerm> sentences;
+		if (pout instanceof StructuredPrologOutput) {
+			sentences = ((StructuredPrologOutput) pout).getSentences();
+			((StructuredPrologOutput) pout).clearSentences();
+		} else {
+			sentences = ((StackPrologOutput) pout).sentences;
+		}
+		final PrologTerm sentence = sentences.get(0);
+		sentences.clear();
+		return sentence;
+	}
+
+	/*
+	 * the former implementation of StructuredPrologOutput, without the
+	 * interner and the methods not used by the benchmark
+	 */
+	private static final class StackPrologOutput implements IPrologTermOutput {
+		private final List<PrologTerm> sentences = new ArrayList<PrologTerm>();
+		private final Stack<PrologTerm> termStack = new Stack<PrologTerm>();
+		private final Stack<Integer> numArgStack = new Stack<Integer>();
+		private final Stack<String> functorStack = new Stack<String>();
+		private String currentFunctor = null;
+		private int currentArguments = 0;
+
+		public IPrologTermOutput closeList() {
+			PrologTerm[] elements = getArguments();
+			popFromStack();
+			addArgument(new ListPrologTerm(elements));
+			return this;
+		}
+
+		public IPrologTermOutput closeTerm() {
+			PrologTerm[] elements = getArguments();
+			final String functor = currentFunctor;
+			popFromStack();
+			addArgument(new CompoundPrologTerm(functor, elements));
+			return this;
+		}
+
+		public IPrologTermOutput emptyList() {
+			addArgument(ListPrologTerm.emptyList());
+			return this;
+		}
+
+		public IPrologTermOutput flush() {
+			return this;
+		}
+
+		public IPrologTermOutput fullstop() {
+			sentences.add(termStack.pop());
+			currentArguments = 0;
+			return this;
+		}
+
+		public IPrologTermOutput openList() {
+			pushOnStack();
+			return this;
+		}
+
+		public IPrologTermOutput openTerm(final String functor) {
+			pushOnStack();
+			currentFunctor = functor;
+			return this;
+		}
+
+		public IPrologTermOutput openTerm(final String functor, final boolean ignoreIndention) {
+			return openTerm(functor);
+		}
+
+		public IPrologTermOutput printAtom(final String content) {
+			addArgument(new CompoundPrologTerm(content));
+			return this;
+		}
+
+		public IPrologTermOutput printAtomOrNumber(final String content) {
+			throw new UnsupportedOperationException();
+		}
+
+		public IPrologTermOutput printNumber(final long number) {
+			addArgument(IntegerPrologTerm.valueOf(number));
+			return this;
+		}
+
+		public IPrologTermOutput printNumber(final BigInteger number) {
+			throw new UnsupportedOperationException();
+		}
+
+		public IPrologTermOutput printString(final String content) {
+			throw new UnsupportedOperationException();
+		}
+
+		public IPrologTermOutput printVariable(final String var) {
+			throw new UnsupportedOperationException();
+		}
+
+		public IPrologTermOutput printTerm(final PrologTerm term) {
+			addArgument(term);
+			return this;
+		}
+
+		private PrologTerm[] getArguments() {
+			PrologTerm[] args = new PrologTerm[currentArguments];
+			for (int i = currentArguments - 1; i >= 0; i--) {
+				args[i] = termStack.pop();
+			}
+			currentArguments = 0;
+			return args;
+		}
+
+		private void addArgument(final PrologTerm term) {
+			termStack.push(term);
+			currentArguments++;
+		}
+
+		private void pushOnStack() {
+			numArgStack.push(currentArguments);
+			functorStack.push(currentFunctor);
+			currentArguments = 0;
+			currentFunctor = null;
+		}
+
+		private void popFromStack() {
+			currentArguments = numArgStack.pop();
+			currentFunctor = functorStack.pop();
+		}
+	}
+}
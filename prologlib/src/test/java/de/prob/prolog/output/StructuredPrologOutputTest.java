@@ -0,0 +1,63 @@
+package de.prob.prolog.output;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.prob.prolog.term.CompoundPrologTerm;
+import de.prob.prolog.term.IntegerPrologTerm;
+import de.prob.prolog.term.ListPrologTerm;
+import de.prob.prolog.term.PrologTerm;
+
+public class StructuredPrologOutputTest {
+
+	@Test
+	public void testNestedTermsAndLists() {
+		final StructuredPrologOutput pout = new StructuredPrologOutput();
+		pout.openTerm("conjunct").printNumber(1);
+		pout.openTerm("member").openTerm("identifier").printAtom("x").closeTerm().closeTerm();
+		pout.openList().openTerm("integer").printNumber(5).closeTerm().emptyList().closeList();
+		pout.openTerm("empty_set").closeTerm();
+		pout.closeTerm().fullstop();
+
+		final PrologTerm expected = new CompoundPrologTerm("conjunct", IntegerPrologTerm.valueOf(1),
+				new CompoundPrologTerm("member", new CompoundPrologTerm("identifier", new CompoundPrologTerm("x"))),
+				new ListPrologTerm(new CompoundPrologTerm("integer", IntegerPrologTerm.valueOf(5)),
+						new ListPrologTerm()),
+				new CompoundPrologTerm("empty_set"));
+		assertEquals(1, pout.getSentences().size());
+		assertEquals(expected, pout.getSentences().get(0));
+	}
+
+	@Test
+	public void testDeepAndWideTerms() {
+		// deeper and wider than the initial sizes of the stacks
+		final int size = 100;
+		final StructuredPrologOutput pout = new StructuredPrologOutput();
+		for (int i = 0; i < size; i++) {
+			pout.openTerm("f");
+		}
+		pout.openList();
+		for (int i = 0; i < size; i++) {
+			pout.printNumber(i);
+		}
+		pout.closeList();
+		for (int i = 0; i < size; i++) {
+			pout.closeTerm();
+		}
+		pout.fullstop();
+
+		final List<PrologTerm> numbers = new ArrayList<PrologTerm>();
+		for (int i = 0; i < size; i++) {
+			numbers.add(IntegerPrologTerm.valueOf(i));
+		}
+		PrologTerm expected = new ListPrologTerm(numbers.toArray(new PrologTerm[size]));
+		for (int i = 0; i < size; i++) {
+			expected = new CompoundPrologTerm("f", expected);
+		}
+		assertEquals(expected, pout.getSentences().get(0));
+	}
+}
@@ -0,0 +1,119 @@
+package de.prob.prolog.term;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Compares the size and the time needed to write and read a stream of terms
+ * shaped like the bindings of ProB answers with {@link BinaryPrologTermWriter}
+ * and {@link BinaryPrologTermReader} and with Java serialization.
+ */
+public class BinaryPrologTermBenchmark {
+
+	private static final int WARMUP = 2;
+	private static final int RUNS = 5;
+	private static final int TERMS = 200000;
+
+	@Test
+	public void testBindings() throws Exception {
+		final List<PrologTerm> terms = new ArrayList<PrologTerm>();
+		for (int i = 0; i < TERMS; i++) {
+			terms.add(term(i));
+		}
+		final byte[] binary = writeBinary(terms);
+		final byte[] serialized = writeSerialized(terms);
+		assertEquals(terms, readBinary(binary));
+		assertEquals(terms, readSerialized(serialized));
+		for (int i = 0; i < WARMUP; i++) {
+			readBinary(writeBinary(terms));
+			readSerialized(writeSerialized(terms));
+		}
+		long binaryWrite = 0;
+		long binaryRead = 0;
+		long serializedWrite = 0;
+		long serializedRead = 0;
+		for (int i = 0; i < RUNS; i++) {
+			long time = System.currentTimeMillis();
+			writeBinary(terms);
+			binaryWrite += System.currentTimeMillis() - time;
+			time = System.currentTimeMillis();
+			readBinary(binary);
+			binaryRead += System.currentTimeMillis() - time;
+			time = System.currentTimeMillis();
+			writeSerialized(terms);
+			serializedWrite += System.currentTimeMillis() - time;
+			time = System.currentTimeMillis();
+			readSerialized(serialized);
+			serializedRead += System.currentTimeMillis() - time;
+		}
+		System.out.println(TERMS + " terms: binary " + binary.length / 1024 + "KB, write " + binaryWrite / RUNS
+				+ "ms, read " + binaryRead / RUNS + "ms; serialized " + serialized.length / 1024 + "KB, write "
+				+ serializedWrite / RUNS + "ms, read " + serializedRead / RUNS + "ms");
+	}
+
+	/*
+	 * binding('xI',[int(I),set([fd(1,'Colour'),...]),pred_true],X)
+	 */
+	private static PrologTerm term(final int i) {
+		final PrologTerm[] elements = new PrologTerm[i % 5];
+		for (int j = 0; j < elements.length; j++) {
+			elements[j] = new CompoundPrologTerm("fd", IntegerPrologTerm.valueOf(j + 1), new CompoundPrologTerm(
+					"Colour"));
+		}
+		return new CompoundPrologTerm("binding", new CompoundPrologTerm("x" + i % 1000), new ListPrologTerm(
+				new CompoundPrologTerm("int", IntegerPrologTerm.valueOf(i * 7919L)), new CompoundPrologTerm("set",
+						new ListPrologTerm(elements)), new CompoundPrologTerm("pred_true")), new VariablePrologTerm(
+				"X"));
+	}
+
+	private static byte[] writeBinary(final List<PrologTerm> terms) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final BinaryPrologTermWriter writer = new BinaryPrologTermWriter(bytes);
+		for (final PrologTerm term : terms) {
+			writer.write(term);
+		}
+		writer.close();
+		return bytes.toByteArray();
+	}
+
+	private static List<PrologTerm> readBinary(final byte[] bytes) throws IOException {
+		final List<PrologTerm> terms = new ArrayList<PrologTerm>();
+		final BinaryPrologTermReader reader = new BinaryPrologTermReader(ByteBuffer.wrap(bytes));
+		PrologTerm term;
+		while ((term = reader.read()) != null) {
+			terms.add(term);
+		}
+		return terms;
+	}
+
+	private static byte[] writeSerialized(final List<PrologTerm> terms) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeInt(terms.size());
+		for (final PrologTerm term : terms) {
+			out.writeObject(term);
+		}
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static List<PrologTerm> readSerialized(final byte[] bytes) throws Exception {
+		final List<PrologTerm> terms = new ArrayList<PrologTerm>();
+		final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		final int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			terms.add((PrologTerm) in.readObject());
+		}
+		return terms;
+	}
+}
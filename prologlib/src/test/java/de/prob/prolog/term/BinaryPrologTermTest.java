@@ -0,0 +1,135 @@
+package de.prob.prolog.term;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class BinaryPrologTermTest {
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		final PrologTerm[] terms = { new CompoundPrologTerm("a"), new CompoundPrologTerm("[]"),
+				new CompoundPrologTerm("f", new CompoundPrologTerm("\u00fc\u20ac"), new VariablePrologTerm("X")),
+				ListPrologTerm.emptyList(),
+				new ListPrologTerm(IntegerPrologTerm.valueOf(1), new ListPrologTerm(new CompoundPrologTerm("a"))),
+				new ListPrologTerm(new CompoundPrologTerm("a"), new CompoundPrologTerm("b")).tail(),
+				IntegerPrologTerm.valueOf(0), IntegerPrologTerm.valueOf(-1), IntegerPrologTerm.valueOf(Long.MAX_VALUE),
+				IntegerPrologTerm.valueOf(Long.MIN_VALUE), IntegerPrologTerm.valueOf(BigInteger.TEN.pow(40)),
+				IntegerPrologTerm.valueOf(BigInteger.TEN.pow(40).negate()) };
+		final byte[] bytes = write(terms);
+		assertEquals(Arrays.asList(terms), Arrays.asList(readAll(new BinaryPrologTermReader(
+				new ByteArrayInputStream(bytes)), terms.length)));
+		assertEquals(Arrays.asList(terms), Arrays.asList(readAll(new BinaryPrologTermReader(
+				ByteBuffer.wrap(bytes)), terms.length)));
+	}
+
+	@Test
+	public void testSharedNames() throws IOException {
+		final PrologTerm term = new CompoundPrologTerm("f", new CompoundPrologTerm("name"));
+		final byte[] one = write(term);
+		final byte[] two = write(term, term);
+		// the second term refers to the names of the first one: tags, arity and
+		// string indexes
+		assertEquals(17, one.length);
+		assertEquals(5, two.length - one.length);
+		final BinaryPrologTermReader reader = new BinaryPrologTermReader(ByteBuffer.wrap(two));
+		assertSame(reader.read().getFunctor(), reader.read().getFunctor());
+		assertNull(reader.read());
+	}
+
+	@Test
+	public void testDeepTerm() throws IOException {
+		PrologTerm term = new CompoundPrologTerm("nil");
+		for (int i = 0; i < 1000000; i++) {
+			term = new CompoundPrologTerm("cons", IntegerPrologTerm.valueOf(i % 10), term);
+		}
+		final BinaryPrologTermReader reader = new BinaryPrologTermReader(new ByteArrayInputStream(write(term)));
+		PrologTerm read = reader.read();
+		for (int i = 1000000 - 1; i >= 0; i--) {
+			assertEquals("cons", read.getFunctor());
+			assertEquals(IntegerPrologTerm.valueOf(i % 10), read.getArgument(1));
+			read = read.getArgument(2);
+		}
+		assertEquals(new CompoundPrologTerm("nil"), read);
+	}
+
+	@Test
+	public void testManyTermsMapped() throws IOException {
+		final int count = 1000000;
+		final File file = File.createTempFile("terms", ".bin");
+		try {
+			final BinaryPrologTermWriter writer = new BinaryPrologTermWriter(new FileOutputStream(file));
+			for (int i = 0; i < count; i++) {
+				writer.write(term(i));
+			}
+			writer.close();
+			final RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				final MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+				final BinaryPrologTermReader reader = new BinaryPrologTermReader(buffer);
+				for (int i = 0; i < count; i++) {
+					assertEquals(term(i), reader.read());
+				}
+				assertNull(reader.read());
+			} finally {
+				raf.close();
+			}
+		} finally {
+			assertTrue(file.delete());
+		}
+	}
+
+	@Test(expected = EOFException.class)
+	public void testTruncated() throws IOException {
+		final byte[] bytes = write(term(1234567));
+		new BinaryPrologTermReader(ByteBuffer.wrap(bytes, 0, bytes.length - 1)).read();
+	}
+
+	@Test(expected = IOException.class)
+	public void testNoHeader() throws IOException {
+		new BinaryPrologTermReader(ByteBuffer.wrap(new byte[] { 'P', 'L', 'T', 'X', 1 }));
+	}
+
+	/*
+	 * binding(xI,[int(I),none])
+	 */
+	private static PrologTerm term(final int i) {
+		return new CompoundPrologTerm("binding", new CompoundPrologTerm("x" + i % 100), new ListPrologTerm(
+				new CompoundPrologTerm("int", IntegerPrologTerm.valueOf(i)), new CompoundPrologTerm("none")));
+	}
+
+	private static byte[] write(final PrologTerm... terms) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final BinaryPrologTermWriter writer = new BinaryPrologTermWriter(out);
+		for (final PrologTerm term : terms) {
+			writer.write(term);
+		}
+		writer.close();
+		return out.toByteArray();
+	}
+
+	private static PrologTerm[] readAll(final BinaryPrologTermReader reader, final int count) throws IOException {
+		final PrologTerm[] terms = new PrologTerm[count];
+		for (int i = 0; i < count; i++) {
+			terms[i] = reader.read();
+		}
+		assertNull(reader.read());
+		return terms;
+	}
+}
@@ -0,0 +1,83 @@
+package de.prob.prolog.term;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntegerPrologTermTest {
+
+	@Test
+	public void testCompatibleWithBigInteger() {
+		for (final BigInteger value : values()) {
+			final IntegerPrologTerm fromBig = new IntegerPrologTerm(value);
+			final IntegerPrologTerm fromString = IntegerPrologTerm.valueOf(value.toString());
+			assertEquals(value, fromBig.getValue());
+			assertEquals(value, fromString.getValue());
+			assertEquals(fromBig, fromString);
+			assertEquals(value.toString(), value.hashCode() * 11 + 4, fromBig.hashCode());
+			assertEquals(value.hashCode() * 11 + 4, fromString.hashCode());
+			assertEquals(value.toString(), fromBig.getFunctor());
+			assertEquals(value.toString(), fromBig.toString());
+			assertEquals(value.bitLength() < 64, fromBig.fitsInLong());
+			if (fromBig.fitsInLong()) {
+				assertEquals(value.longValue(), fromBig.longValue());
+				assertEquals(fromBig, new IntegerPrologTerm(value.longValue()));
+			}
+		}
+	}
+
+	@Test
+	public void testEquals() {
+		assertFalse(IntegerPrologTerm.valueOf(1).equals(IntegerPrologTerm.valueOf(2)));
+		final BigInteger big = BigInteger.ONE.shiftLeft(64);
+		assertFalse(IntegerPrologTerm.valueOf(0).equals(IntegerPrologTerm.valueOf(big)));
+		assertFalse(IntegerPrologTerm.valueOf(big).equals(IntegerPrologTerm.valueOf(0)));
+		assertEquals(IntegerPrologTerm.valueOf(big), new IntegerPrologTerm(big.toByteArray()));
+		assertFalse(IntegerPrologTerm.valueOf(1).equals(new CompoundPrologTerm("1")));
+	}
+
+	@Test
+	public void testSmallValuesAreShared() {
+		assertSame(IntegerPrologTerm.valueOf(0), IntegerPrologTerm.valueOf("0"));
+		assertSame(IntegerPrologTerm.valueOf(-128), IntegerPrologTerm.valueOf(BigInteger.valueOf(-128)));
+		assertSame(IntegerPrologTerm.valueOf(1024), IntegerPrologTerm.valueOf(1024));
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void testLongValueOfBigInteger() {
+		IntegerPrologTerm.valueOf("123456789012345678901234567890").longValue();
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testInvalidText() {
+		IntegerPrologTerm.valueOf("12a");
+	}
+
+	private static List<BigInteger> values() {
+		final List<BigInteger> values = new ArrayList<>();
+		final BigInteger[] special = { BigInteger.valueOf(Long.MIN_VALUE), BigInteger.valueOf(Long.MAX_VALUE),
+				BigInteger.ONE.shiftLeft(32), BigInteger.ONE.shiftLeft(31), BigInteger.ONE.shiftLeft(63),
+				BigInteger.ONE.shiftLeft(64), BigInteger.ONE.shiftLeft(100) };
+		for (final BigInteger value : special) {
+			for (int d = -2; d <= 2; d++) {
+				values.add(value.add(BigInteger.valueOf(d)));
+				values.add(value.negate().add(BigInteger.valueOf(d)));
+			}
+		}
+		for (int i = -2000; i <= 2000; i++) {
+			values.add(BigInteger.valueOf(i));
+		}
+		final Random random = new Random(1);
+		for (int i = 0; i < 2000; i++) {
+			values.add(BigInteger.valueOf(random.nextLong() >> random.nextInt(64)));
+		}
+		return values;
+	}
+}
@@ -154,6 +154,40 @@ public class ListPrologTermTest {
 		assertEquals(2, t1.lastIndexOf(new IntegerPrologTerm(5)));
 	}
 
+	@Test
+	public void testSubListOfSubList() {
+		ListPrologTerm t1 = new ListPrologTerm(createFixture(10));
+		ListPrologTerm t2 = new ListPrologTerm(2, 8, t1);
+		ListPrologTerm t3 = new ListPrologTerm(1, 3, t2);
+		assertEquals(2, t3.size());
+		assertEquals("3", getAsString(t3, 0));
+		assertEquals("4", getAsString(t3, 1));
+		assertEquals(t3, t2.subList(1, 3));
+		assertEquals(t3, t1.subList(3, 5));
+		assertEquals(new ListPrologTerm(t1.get(7)), t2.tail().tail().tail().tail().tail());
+	}
+
+	@Test(expected = ArrayIndexOutOfBoundsException.class)
+	public void testGetNegativeIndex() {
+		new ListPrologTerm(1, 5, new ListPrologTerm(createFixture(10))).get(-1);
+	}
+
+	@Test
+	public void testIndexesOfSubList() {
+		ListPrologTerm term = new ListPrologTerm(2, 6, new ListPrologTerm(createFixture(10)));
+		assertEquals(1, term.indexOf(new CompoundPrologTerm("3")));
+		assertEquals(1, term.lastIndexOf(new CompoundPrologTerm("3")));
+		assertEquals(-1, term.indexOf(new CompoundPrologTerm("1")));
+		ListIterator<PrologTerm> i = term.listIterator(3);
+		assertEquals(3, i.nextIndex());
+		assertEquals(2, i.previousIndex());
+		assertEquals("5", getAsString(i.next()));
+		assertFalse(i.hasNext());
+		PrologTerm[] array = term.toArray(new PrologTerm[0]);
+		assertEquals(4, array.length);
+		assertEquals("2", getAsString(array[0]));
+	}
+
 	private String getAsString(ListPrologTerm l, int pos) {
 		return l.get(pos).getFunctor();
 	}
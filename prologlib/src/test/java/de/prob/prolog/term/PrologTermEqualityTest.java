@@ -0,0 +1,79 @@
+package de.prob.prolog.term;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class PrologTermEqualityTest {
+
+	@Test
+	public void testEqualTerms() {
+		final PrologTerm term1 = term(3);
+		final PrologTerm term2 = term(3);
+		// hash codes computed for none, one and both terms
+		assertEquals(term1, term2);
+		final int hash = term1.hashCode();
+		assertEquals(term1, term2);
+		assertEquals(term2, term1);
+		assertEquals(hash, term2.hashCode());
+		assertEquals(term1, term2);
+		final PrologTerm other = term(4);
+		assertFalse(term1.equals(other));
+		other.hashCode();
+		assertFalse(term1.equals(other));
+	}
+
+	@Test
+	public void testSubLists() {
+		final PrologTerm a = new CompoundPrologTerm("a");
+		final PrologTerm b = new CompoundPrologTerm("b");
+		final ListPrologTerm list = new ListPrologTerm(a, b, b);
+		assertEquals(new ListPrologTerm(b, b), list.tail());
+		assertEquals(new ListPrologTerm(b, b).hashCode(), list.tail().hashCode());
+		assertEquals(new ListPrologTerm(a, b), list.subList(0, 2));
+		assertFalse(list.equals(list.tail()));
+		assertFalse(list.tail().equals(list));
+		assertEquals(Arrays.asList(a, b, b).hashCode(), list.hashCode());
+	}
+
+	@Test
+	public void testDifferentKinds() {
+		final PrologTerm a = new CompoundPrologTerm("a");
+		assertFalse(new CompoundPrologTerm(".", a).equals(new ListPrologTerm(a)));
+		assertFalse(new ListPrologTerm(a).equals(new CompoundPrologTerm(".", a)));
+		assertFalse(new CompoundPrologTerm("").equals(IntegerPrologTerm.valueOf(5)));
+		assertFalse(new CompoundPrologTerm("X").equals(new VariablePrologTerm("X")));
+	}
+
+	@Test
+	public void testSerializedHashCode() throws Exception {
+		final PrologTerm term = term(5);
+		final int hash = term.hashCode();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(term);
+		out.close();
+		final Object copy = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertEquals(term, copy);
+		assertEquals(hash, copy.hashCode());
+	}
+
+	/*
+	 * f([g(depth),f([g(depth - 1),...])])
+	 */
+	private static PrologTerm term(final int depth) {
+		PrologTerm term = IntegerPrologTerm.valueOf(depth);
+		for (int i = 0; i < depth; i++) {
+			term = new CompoundPrologTerm("f",
+					new ListPrologTerm(new CompoundPrologTerm("g", IntegerPrologTerm.valueOf(i)), term));
+		}
+		return term;
+	}
+}
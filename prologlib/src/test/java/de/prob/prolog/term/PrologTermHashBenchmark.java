@@ -0,0 +1,159 @@
+package de.prob.prolog.term;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Compares the time needed to use deeply nested terms as keys of a
+ * {@link HashMap} with the cached hash codes of the terms and with hash codes
+ * and equality computed over the whole term on every call, as it was done
+ * before.
+ */
+public class PrologTermHashBenchmark {
+
+	private static final int WARMUP = 2;
+	private static final int RUNS = 5;
+	private static final int KEYS = 1000;
+	private static final int DEPTH = 200;
+	private static final int LOOKUPS = 50;
+
+	@Test
+	public void testDeepKeys() {
+		final List<PrologTerm> keys = new ArrayList<>();
+		final List<PrologTerm> copies = new ArrayList<>();
+		for (int i = 0; i < KEYS; i++) {
+			keys.add(term(i, DEPTH));
+			copies.add(term(i, DEPTH));
+		}
+		benchmark("same keys", keys, keys);
+		benchmark("equal copies", keys, copies);
+	}
+
+	private void benchmark(final String name, final List<PrologTerm> keys, final List<PrologTerm> lookups) {
+		assertEquals(run(keys, lookups, false), run(keys, lookups, true));
+		for (int i = 0; i < WARMUP; i++) {
+			run(keys, lookups, false);
+			run(keys, lookups, true);
+		}
+		long uncached = 0;
+		long cached = 0;
+		for (int i = 0; i < RUNS; i++) {
+			long time = System.currentTimeMillis();
+			run(keys, lookups, false);
+			uncached += System.currentTimeMillis() - time;
+			time = System.currentTimeMillis();
+			run(keys, lookups, true);
+			cached += System.currentTimeMillis() - time;
+		}
+		System.out.println(KEYS + " keys of depth " + DEPTH + ", " + name + ": uncached " + uncached / RUNS
+				+ "ms, cached " + cached / RUNS + "ms");
+	}
+
+	/*
+	 * puts the keys into a map, then looks up the given terms repeatedly,
+	 * returns the sum of the found values
+	 */
+	private static long run(final List<PrologTerm> keys, final List<PrologTerm> lookups, final boolean cached) {
+		final Map<Object, Integer> map = new HashMap<>();
+		for (int i = 0; i < keys.size(); i++) {
+			map.put(key(keys.get(i), cached), i);
+		}
+		long sum = 0;
+		for (int l = 0; l < LOOKUPS; l++) {
+			for (final PrologTerm lookup : lookups) {
+				sum += map.get(key(lookup, cached));
+			}
+		}
+		return sum;
+	}
+
+	private static Object key(final PrologTerm term, final boolean cached) {
+		return cached ? term : new UncachedKey(term);
+	}
+
+	/*
+	 * f(i,[g(depth),f(i,[g(depth - 1),...])])
+	 */
+	private static PrologTerm term(final int id, final int depth) {
+		final PrologTerm number = IntegerPrologTerm.valueOf(id);
+		PrologTerm term = number;
+		for (int i = 0; i < depth; i++) {
+			term = new CompoundPrologTerm("f", number,
+					new ListPrologTerm(new CompoundPrologTerm("g", IntegerPrologTerm.valueOf(i)), term));
+		}
+		return term;
+	}
+
+	/*
+	 * the former implementations of hashCode and equals of compound terms and
+	 * lists, which traverse the whole term on every call
+	 */
+	private static final class UncachedKey {
+		private final PrologTerm term;
+
+		UncachedKey(final PrologTerm term) {
+			this.term = term;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash(term);
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+			return other instanceof UncachedKey && equal(term, ((UncachedKey) other).term);
+		}
+
+		private static int hash(final PrologTerm term) {
+			if (term instanceof ListPrologTerm) {
+				final ListPrologTerm list = (ListPrologTerm) term;
+				int hash = 1;
+				for (final PrologTerm element : list) {
+					hash = 31 * hash + hash(element);
+				}
+				return hash;
+			} else if (term instanceof CompoundPrologTerm) {
+				int hash = 1;
+				for (int i = 1; i <= term.getArity(); i++) {
+					hash = 31 * hash + hash(term.getArgument(i));
+				}
+				return (term.getFunctor().hashCode() * 17 + (term.getArity() == 0 ? 0 : hash)) * 5 + 4;
+			} else {
+				return term.hashCode();
+			}
+		}
+
+		private static boolean equal(final PrologTerm term1, final PrologTerm term2) {
+			if (term1 == term2) {
+				return true;
+			} else if (term1 instanceof ListPrologTerm && term2 instanceof ListPrologTerm) {
+				final ListPrologTerm list1 = (ListPrologTerm) term1;
+				final ListPrologTerm list2 = (ListPrologTerm) term2;
+				if (list1.size() != list2.size())
+					return false;
+				for (int i = 0; i < list1.size(); i++) {
+					if (!equal(list1.get(i), list2.get(i)))
+						return false;
+				}
+				return true;
+			} else if (term1 instanceof CompoundPrologTerm && term2 instanceof CompoundPrologTerm) {
+				if (!term1.getFunctor().equals(term2.getFunctor()) || term1.getArity() != term2.getArity())
+					return false;
+				for (int i = 1; i <= term1.getArity(); i++) {
+					if (!equal(term1.getArgument(i), term2.getArgument(i)))
+						return false;
+				}
+				return true;
+			} else {
+				return term1.equals(term2);
+			}
+		}
+	}
+}
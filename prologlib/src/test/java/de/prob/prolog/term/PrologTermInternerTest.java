@@ -0,0 +1,87 @@
+package de.prob.prolog.term;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+import de.prob.prolog.output.StructuredPrologOutput;
+
+public class PrologTermInternerTest {
+
+	@Test
+	public void testSharedTerms() {
+		final PrologTermInterner interner = new PrologTermInterner();
+		assertSame(interner.atom("none"), interner.atom(new String("none")));
+		assertSame(interner.integer(123456), interner.integer(123456));
+		assertSame(interner.integer(BigInteger.TEN.pow(30)), interner.integer(BigInteger.TEN.pow(30)));
+		final PrologTerm id1 = interner.compound("identifier", interner.atom("none"), interner.atom("x"));
+		final PrologTerm id2 = interner.compound(new String("identifier"), interner.atom("none"),
+				new CompoundPrologTerm("x"));
+		assertSame(id1, id2);
+		assertSame(interner.list(id1, interner.integer(1)), interner.list(id2, interner.integer(1)));
+		assertSame(interner.list(), interner.list());
+		assertEquals(17, interner.getRequests());
+		assertEquals(9, interner.getHits());
+	}
+
+	@Test
+	public void testSharedNames() {
+		final PrologTermInterner interner = new PrologTermInterner();
+		final String functor = new String("f");
+		assertSame(functor, interner.variable(functor).getName());
+		assertSame(functor, interner.variable(new String("f")).getName());
+		assertSame(functor, interner.compound(new String("f"), new VariablePrologTerm("X")).getFunctor());
+	}
+
+	@Test
+	public void testNotShared() {
+		final PrologTermInterner interner = new PrologTermInterner(100, 3);
+		// variables are not ground
+		assertNotSame(interner.compound("f", new VariablePrologTerm("X")),
+				interner.compound("f", new VariablePrologTerm("X")));
+		// too large
+		assertNotSame(interner.compound("f", interner.atom("a"), interner.atom("b"), interner.atom("c")),
+				interner.compound("f", interner.atom("a"), interner.atom("b"), interner.atom("c")));
+		assertSame(interner.compound("f", interner.atom("a"), interner.atom("b")),
+				interner.compound("f", interner.atom("a"), interner.atom("b")));
+		// an atom and an integer with the same functor are different terms
+		final PrologTerm atom = interner.atom("");
+		assertNotSame(atom, interner.intern(new IntegerPrologTerm(5)));
+	}
+
+	@Test
+	public void testCapacity() {
+		final PrologTermInterner interner = new PrologTermInterner(2, 16);
+		final PrologTerm a = interner.atom("a");
+		interner.atom("b");
+		// a is the least recently used term now
+		interner.atom("b");
+		interner.atom("c");
+		assertNotSame(a, interner.atom(new String("a")));
+	}
+
+	@Test
+	public void testStructuredPrologOutput() {
+		final PrologTermInterner interner = new PrologTermInterner();
+		final StructuredPrologOutput plain = new StructuredPrologOutput();
+		final StructuredPrologOutput shared = new StructuredPrologOutput(interner);
+		for (final StructuredPrologOutput pout : new StructuredPrologOutput[] { plain, shared }) {
+			pout.openTerm("machine").openList();
+			for (int i = 0; i < 3; i++) {
+				pout.openTerm("identifier").printAtom("none").printAtom("x").closeTerm();
+				pout.openTerm("integer").printNumber(i).printVariable("X").closeTerm();
+			}
+			pout.emptyList().closeList().closeTerm().fullstop();
+		}
+		final PrologTerm expected = plain.getSentences().get(0);
+		final PrologTerm actual = shared.getSentences().get(0);
+		assertEquals(expected, actual);
+		final ListPrologTerm list = (ListPrologTerm) actual.getArgument(1);
+		assertSame(list.get(0), list.get(2));
+		assertNotSame(list.get(1), list.get(3));
+	}
+}